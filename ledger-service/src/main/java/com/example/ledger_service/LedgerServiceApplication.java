@@ -1,9 +1,12 @@
 package com.example.ledger_service;
 
+import com.example.ledger_service.config.LedgerProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties(LedgerProperties.class)
 public class LedgerServiceApplication {
 
 	public static void main(String[] args) {
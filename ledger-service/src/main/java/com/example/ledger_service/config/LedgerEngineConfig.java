@@ -0,0 +1,37 @@
+package com.example.ledger_service.config;
+
+import com.example.ledger_service.engine.LedgerJournal;
+import com.example.ledger_service.engine.ShardedBalanceEngine;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.JournalCheckpointRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountCache;
+import com.example.ledger_service.service.TrialBalance;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Path;
+
+@Configuration
+public class LedgerEngineConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "shutdown")
+    @ConditionalOnProperty(name = "ledger.engine", havingValue = "sharded")
+    public ShardedBalanceEngine shardedBalanceEngine(LedgerProperties properties,
+                                                     AccountRepository accountRepository,
+                                                     LedgerEntryRepository ledgerEntryRepository,
+                                                     AccountCache accountCache,
+                                                     TrialBalance trialBalance,
+                                                     PlatformTransactionManager transactionManager,
+                                                     JournalCheckpointRepository checkpointRepository) {
+        LedgerProperties.Journal journalConfig = properties.getJournal();
+        LedgerJournal journal = journalConfig.isEnabled()
+                ? new LedgerJournal(Path.of(journalConfig.getDirectory()), journalConfig.getSegmentSize().toBytes(),
+                        journalConfig.isForceOnAppend())
+                : null;
+        return new ShardedBalanceEngine(properties.getSharded(), accountRepository,
+                ledgerEntryRepository, accountCache, trialBalance, transactionManager, journal, checkpointRepository);
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.ledger_service.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tunables for the ledger, bound from the {@code ledger.*} properties.
+ */
+@ConfigurationProperties(prefix = "ledger")
+public class LedgerProperties {
+
+    public enum Engine { JPA, SHARDED }
+
+    public enum Strategy { OPTIMISTIC, PESSIMISTIC, ATOMIC }
+
+    /** Which balance engine applies transfers. */
+    private Engine engine = Engine.JPA;
+
+    private final Transfer transfer = new Transfer();
+    private final GroupCommit groupCommit = new GroupCommit();
+    private final Async async = new Async();
+    private final Idempotency idempotency = new Idempotency();
+    private final AccountCache accountCache = new AccountCache();
+    private final Export export = new Export();
+    private final Snapshots snapshots = new Snapshots();
+    private final Reconciliation reconciliation = new Reconciliation();
+    private final Archive archive = new Archive();
+    private final HotAccounts hotAccounts = new HotAccounts();
+    private final Split split = new Split();
+    private final FanOut fanOut = new FanOut();
+    private final Holds holds = new Holds();
+    private final Journal journal = new Journal();
+    private final Sharded sharded = new Sharded();
+    private final Fx fx = new Fx();
+
+    public Engine getEngine() { return engine; }
+    public void setEngine(Engine engine) { this.engine = engine; }
+    public Transfer getTransfer() { return transfer; }
+    public GroupCommit getGroupCommit() { return groupCommit; }
+    public Async getAsync() { return async; }
+    public Idempotency getIdempotency() { return idempotency; }
+    public AccountCache getAccountCache() { return accountCache; }
+    public Export getExport() { return export; }
+    public Snapshots getSnapshots() { return snapshots; }
+    public Reconciliation getReconciliation() { return reconciliation; }
+    public Archive getArchive() { return archive; }
+    public HotAccounts getHotAccounts() { return hotAccounts; }
+    public Split getSplit() { return split; }
+    public FanOut getFanOut() { return fanOut; }
+    public Holds getHolds() { return holds; }
+    public Journal getJournal() { return journal; }
+    public Sharded getSharded() { return sharded; }
+    public Fx getFx() { return fx; }
+
+    public static class Transfer {
+        /** How the JPA engine guards concurrent balance updates. */
+        private Strategy strategy = Strategy.OPTIMISTIC;
+
+        public Strategy getStrategy() { return strategy; }
+        public void setStrategy(Strategy strategy) { this.strategy = strategy; }
+    }
+
+    public static class GroupCommit {
+        /** Coalesce concurrent single transfers into shared transactions (JPA engine only). */
+        private boolean enabled = false;
+        /** How long the first transfer of a group waits for company. */
+        private Duration window = Duration.ofMillis(2);
+        /** A group is committed as soon as it holds this many transfers. */
+        private int maxSize = 64;
+        /** Transfers waiting for a group before callers block. */
+        private int queueCapacity = 10_000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Duration getWindow() { return window; }
+        public void setWindow(Duration window) { this.window = window; }
+        public int getMaxSize() { return maxSize; }
+        public void setMaxSize(int maxSize) { this.maxSize = maxSize; }
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+    }
+
+    public static class Async {
+        /** Workers applying accepted transfers. */
+        private int threads = 4;
+        /** Accepted transfers allowed to wait for a worker before new ones are refused with 503. */
+        private int queueCapacity = 1_000;
+
+        public int getThreads() { return threads; }
+        public void setThreads(int threads) { this.threads = threads; }
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+    }
+
+    public static class Idempotency {
+        /** Number of distinct transferIds the duplicate filter is sized for. */
+        private long expectedTransfers = 1_000_000;
+        /** Target false-positive rate of the filter at that size. */
+        private double falsePositiveRate = 0.01;
+
+        public long getExpectedTransfers() { return expectedTransfers; }
+        public void setExpectedTransfers(long expectedTransfers) { this.expectedTransfers = expectedTransfers; }
+        public double getFalsePositiveRate() { return falsePositiveRate; }
+        public void setFalsePositiveRate(double falsePositiveRate) { this.falsePositiveRate = falsePositiveRate; }
+    }
+
+    public static class AccountCache {
+        /** Max number of account snapshots kept; 0 disables the cache. */
+        private long maximumSize = 10_000;
+        /** Upper bound on how long a snapshot is served, covering writes made by other nodes. */
+        private Duration expireAfterWrite = Duration.ofSeconds(30);
+
+        public long getMaximumSize() { return maximumSize; }
+        public void setMaximumSize(long maximumSize) { this.maximumSize = maximumSize; }
+        public Duration getExpireAfterWrite() { return expireAfterWrite; }
+        public void setExpireAfterWrite(Duration expireAfterWrite) { this.expireAfterWrite = expireAfterWrite; }
+    }
+
+    public static class Export {
+        /** Rows the JDBC driver fetches per round trip while streaming an export. */
+        private int fetchSize = 1000;
+
+        public int getFetchSize() { return fetchSize; }
+        public void setFetchSize(int fetchSize) { this.fetchSize = fetchSize; }
+    }
+
+    public static class Snapshots {
+        /** Run the background balance snapshot job. */
+        private boolean enabled = true;
+        /** Time between snapshots; bounds how many entries an as-of query replays. */
+        private Duration interval = Duration.ofMinutes(5);
+        /**
+         * Snapshots are taken this far in the past so in-flight transactions have committed;
+         * must exceed the longest time from creating an entry to committing it.
+         */
+        private Duration lag = Duration.ofSeconds(10);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Duration getInterval() { return interval; }
+        public void setInterval(Duration interval) { this.interval = interval; }
+        public Duration getLag() { return lag; }
+        public void setLag(Duration lag) { this.lag = lag; }
+    }
+
+    public static class Reconciliation {
+        /** Ids verified per task; each task is one short read-only statement. */
+        private int rangeSize = 10_000;
+        /** Ranges verified concurrently; keep below the connection pool size. */
+        private int parallelism = 4;
+        /** Cap on mismatches kept per kind in a report. */
+        private int maxReportedMismatches = 1000;
+
+        public int getRangeSize() { return rangeSize; }
+        public void setRangeSize(int rangeSize) { this.rangeSize = rangeSize; }
+        public int getParallelism() { return parallelism; }
+        public void setParallelism(int parallelism) { this.parallelism = parallelism; }
+        public int getMaxReportedMismatches() { return maxReportedMismatches; }
+        public void setMaxReportedMismatches(int maxReportedMismatches) { this.maxReportedMismatches = maxReportedMismatches; }
+    }
+
+    public static class Archive {
+        /** Periodically move entries older than {@link #retention} out of {@code ledger_entries}. */
+        private boolean enabled = false;
+        /** Directory holding the archive segment files. */
+        private String directory = "./data/archive";
+        /** Entries younger than this stay in the hot table. */
+        private Duration retention = Duration.ofDays(90);
+        /** Time between archive runs. */
+        private Duration interval = Duration.ofHours(1);
+        /** Entries per segment file, and per archive transaction. */
+        private int segmentEntries = 100_000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+        public Duration getRetention() { return retention; }
+        public void setRetention(Duration retention) { this.retention = retention; }
+        public Duration getInterval() { return interval; }
+        public void setInterval(Duration interval) { this.interval = interval; }
+        public int getSegmentEntries() { return segmentEntries; }
+        public void setSegmentEntries(int segmentEntries) { this.segmentEntries = segmentEntries; }
+    }
+
+    public static class HotAccounts {
+        /** Track per-account request and conflict counts in Count-Min sketches. */
+        private boolean enabled = true;
+        /** Counters per sketch row, rounded up to a power of two; more means fewer collisions. */
+        private int width = 4096;
+        /** Sketch rows, each with its own hash; the estimate is the minimum across rows. */
+        private int depth = 4;
+        /** Heaviest accounts reported per kind. */
+        private int topK = 10;
+        /** Counts cover the current window plus the one before it. */
+        private Duration window = Duration.ofMinutes(1);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public int getWidth() { return width; }
+        public void setWidth(int width) { this.width = width; }
+        public int getDepth() { return depth; }
+        public void setDepth(int depth) { this.depth = depth; }
+        public int getTopK() { return topK; }
+        public void setTopK(int topK) { this.topK = topK; }
+        public Duration getWindow() { return window; }
+        public void setWindow(Duration window) { this.window = window; }
+    }
+
+    public static class Split {
+        /** Most slots one account can be split into. */
+        private int maxSlots = 64;
+
+        public int getMaxSlots() { return maxSlots; }
+        public void setMaxSlots(int maxSlots) { this.maxSlots = maxSlots; }
+    }
+
+    public static class FanOut {
+        /** Fan-out items credited per transaction. */
+        private int chunkSize = 500;
+        /** Runs credited concurrently. */
+        private int threads = 2;
+
+        public int getChunkSize() { return chunkSize; }
+        public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+        public int getThreads() { return threads; }
+        public void setThreads(int threads) { this.threads = threads; }
+    }
+
+    public static class Holds {
+        /** How long a hold stays open when the request does not say. */
+        private Duration defaultTtl = Duration.ofDays(7);
+        /** Longest lifetime a hold may ask for. */
+        private Duration maxTtl = Duration.ofDays(30);
+        /** Time between sweeps releasing expired holds. */
+        private Duration sweepInterval = Duration.ofSeconds(30);
+        /** Expired holds released per transaction. */
+        private int sweepBatchSize = 500;
+
+        public Duration getDefaultTtl() { return defaultTtl; }
+        public void setDefaultTtl(Duration defaultTtl) { this.defaultTtl = defaultTtl; }
+        public Duration getMaxTtl() { return maxTtl; }
+        public void setMaxTtl(Duration maxTtl) { this.maxTtl = maxTtl; }
+        public Duration getSweepInterval() { return sweepInterval; }
+        public void setSweepInterval(Duration sweepInterval) { this.sweepInterval = sweepInterval; }
+        public int getSweepBatchSize() { return sweepBatchSize; }
+        public void setSweepBatchSize(int sweepBatchSize) { this.sweepBatchSize = sweepBatchSize; }
+    }
+
+    public static class Journal {
+        /** Journal every transfer before acknowledging it (sharded engine only). */
+        private boolean enabled = false;
+        /** Directory holding the journal segment files. */
+        private String directory = "./data/journal";
+        /** Size of one memory-mapped segment file; a new one is started when it is full. */
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        /** Flush each record to disk before acknowledging it, surviving OS crashes as well as process crashes. */
+        private boolean forceOnAppend = false;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+        public DataSize getSegmentSize() { return segmentSize; }
+        public void setSegmentSize(DataSize segmentSize) { this.segmentSize = segmentSize; }
+        public boolean isForceOnAppend() { return forceOnAppend; }
+        public void setForceOnAppend(boolean forceOnAppend) { this.forceOnAppend = forceOnAppend; }
+    }
+
+    public static class Sharded {
+        /** Number of single-threaded shard loops; accounts map to shard {@code id % shards}. */
+        private int shards = 4;
+        /** Capacity of each shard's inbound ring. */
+        private int ringSize = 1024;
+        /** Max number of queued writes the persister flushes per transaction. */
+        private int persistBatchSize = 256;
+        /**
+         * Applied transferIds the engine remembers, on top of those in flight, so that a duplicate
+         * is caught before the persister has written the original; must cover the persister's backlog.
+         */
+        private int dedupWindow = 65_536;
+
+        public int getShards() { return shards; }
+        public void setShards(int shards) { this.shards = shards; }
+        public int getRingSize() { return ringSize; }
+        public void setRingSize(int ringSize) { this.ringSize = ringSize; }
+        public int getPersistBatchSize() { return persistBatchSize; }
+        public void setPersistBatchSize(int persistBatchSize) { this.persistBatchSize = persistBatchSize; }
+        public int getDedupWindow() { return dedupWindow; }
+        public void setDedupWindow(int dedupWindow) { this.dedupWindow = dedupWindow; }
+    }
+
+    public static class Fx {
+        /** Allow accounts in currencies other than the base one, and convert transfers between them. */
+        private boolean enabled = false;
+        /** Currency of accounts opened without one; every rate is quoted against it. */
+        private String baseCurrency = "USD";
+        /** Units of each currency per unit of the base currency, published as version 1 on first start. */
+        private Map<String, BigDecimal> rates = new HashMap<>();
+        /** How often a node looks for a rate table published by another node. */
+        private Duration refreshInterval = Duration.ofSeconds(10);
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public String getBaseCurrency() { return baseCurrency; }
+        public void setBaseCurrency(String baseCurrency) { this.baseCurrency = baseCurrency; }
+        public Map<String, BigDecimal> getRates() { return rates; }
+        public void setRates(Map<String, BigDecimal> rates) { this.rates = rates; }
+        public Duration getRefreshInterval() { return refreshInterval; }
+        public void setRefreshInterval(Duration refreshInterval) { this.refreshInterval = refreshInterval; }
+    }
+}
@@ -1,20 +1,45 @@
 package com.example.ledger_service.controller;
 
 
+import com.example.ledger_service.dto.AccountIdsRequest;
 import com.example.ledger_service.dto.AccountResponse;
+import com.example.ledger_service.dto.AccountsResponse;
+import com.example.ledger_service.dto.BalanceResponse;
 import com.example.ledger_service.dto.CreateAccount;
+import com.example.ledger_service.dto.StatementResponse;
 import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.BalanceHistoryService;
+import com.example.ledger_service.service.StatementService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 @RequestMapping("/v1")
 public class AccountController {
     private final AccountService accountService;
+    private final StatementService statementService;
+    private final BalanceHistoryService balanceHistoryService;
+    private final ObjectMapper objectMapper;
 
-    public AccountController(AccountService accountService) {
+    public AccountController(AccountService accountService, StatementService statementService,
+                             BalanceHistoryService balanceHistoryService, ObjectMapper objectMapper) {
         this.accountService = accountService;
+        this.statementService = statementService;
+        this.balanceHistoryService = balanceHistoryService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/accounts")
@@ -22,8 +47,115 @@ public class AccountController {
         return ResponseEntity.ok(accountService.create(req));
     }
 
+    /**
+     * Tagged with the account version; a matching {@code If-None-Match} is answered with
+     * {@code 304} from the version alone, without loading or serializing the account.
+     */
     @GetMapping("accounts/{id}")
-    public ResponseEntity<AccountResponse> get(@PathVariable Long id) {
-        return ResponseEntity.ok(accountService.get(id));
+    public ResponseEntity<AccountResponse> get(@PathVariable Long id,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            String etag = etag(accountService.version(id));
+            if (matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+        }
+        AccountResponse acc = accountService.get(id);
+        return ResponseEntity.ok().eTag(etag(acc.getVersion())).body(acc);
+    }
+
+    /**
+     * Splits the account's balance over {@code slots} sub-rows for accounts that receive a large
+     * share of all transfers. Reads still return one account with the summed balance.
+     */
+    @PostMapping("accounts/{id}/split")
+    public ResponseEntity<AccountResponse> split(@PathVariable Long id, @RequestParam int slots) {
+        return ResponseEntity.ok(accountService.split(id, slots));
+    }
+
+    /**
+     * Account statement, newest first. Follow {@code nextCursor} for older pages; {@code from}
+     * and {@code to} (ISO-8601 instants, to exclusive) narrow it to a time range.
+     */
+    @GetMapping("accounts/{id}/entries")
+    public ResponseEntity<StatementResponse> entries(@PathVariable Long id,
+                                                     @RequestParam(required = false) Long cursor,
+                                                     @RequestParam(required = false) Instant from,
+                                                     @RequestParam(required = false) Instant to,
+                                                     @RequestParam(defaultValue = "" + StatementService.DEFAULT_PAGE_SIZE) int limit) {
+        return ResponseEntity.ok(statementService.entries(id, cursor, from, to, limit));
+    }
+
+    /** Balance as of {@code asOf} (ISO-8601 instant, default now), replayed from the nearest snapshot. */
+    @GetMapping("accounts/{id}/balance")
+    public ResponseEntity<BalanceResponse> balance(@PathVariable Long id,
+                                                   @RequestParam(required = false) Instant asOf) {
+        return ResponseEntity.ok(balanceHistoryService.balanceAt(id, asOf));
+    }
+
+    /**
+     * Multi-get: {@code accounts} lists found accounts in request order, {@code missing} the
+     * ids that do not exist. Use {@link #lookup} when the id list is too long for a URL.
+     */
+    @GetMapping("/accounts")
+    public ResponseEntity<StreamingResponseBody> getMany(@RequestParam List<Long> ids) {
+        return multiGet(ids);
+    }
+
+    @PostMapping("/accounts/lookup")
+    public ResponseEntity<StreamingResponseBody> lookup(@Valid @RequestBody AccountIdsRequest req) {
+        return multiGet(req.getIds());
+    }
+
+    // Large requests are written out chunk by chunk instead of being materialized first
+    private ResponseEntity<StreamingResponseBody> multiGet(List<Long> ids) {
+        if (ids.size() <= AccountService.MULTI_GET_CHUNK) {
+            // Read here, so a failure still gets the usual error response
+            AccountsResponse found = accountService.getAll(ids);
+            return json(out -> {
+                JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+                json.writeObject(found);
+                json.flush();
+            });
+        }
+        return json(out -> {
+            JsonGenerator json = objectMapper.getFactory().createGenerator(out);
+            List<Long> missing = new ArrayList<>();
+            json.writeStartObject();
+            json.writeArrayFieldStart("accounts");
+            accountService.forEachAccount(ids, acc -> {
+                try {
+                    json.writeObject(acc);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, missing::add);
+            json.writeEndArray();
+            json.writeObjectField("missing", missing);
+            json.writeEndObject();
+            json.flush();
+        });
+    }
+
+    private static ResponseEntity<StreamingResponseBody> json(StreamingResponseBody body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static String etag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    /** Weak comparison as required for If-None-Match; {@code *} matches any existing account. */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
\ No newline at end of file
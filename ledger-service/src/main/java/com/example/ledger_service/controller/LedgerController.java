@@ -1,27 +1,235 @@
 package com.example.ledger_service.controller;
 
+import com.example.ledger_service.dto.BatchTransferRequest;
+import com.example.ledger_service.dto.BatchTransferResponse;
+import com.example.ledger_service.dto.CaptureRequest;
+import com.example.ledger_service.dto.FanOutRequest;
+import com.example.ledger_service.dto.FanOutResponse;
+import com.example.ledger_service.dto.FxRatesRequest;
+import com.example.ledger_service.dto.FxRatesResponse;
+import com.example.ledger_service.dto.HoldRequest;
+import com.example.ledger_service.dto.HoldResponse;
+import com.example.ledger_service.dto.HotAccountsResponse;
+import com.example.ledger_service.dto.PostingRequest;
+import com.example.ledger_service.dto.PostingResponse;
+import com.example.ledger_service.dto.ReconciliationReport;
 import com.example.ledger_service.dto.TransferRequest;
 import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.dto.TrialBalanceResponse;
+import com.example.ledger_service.service.AsyncTransferService;
+import com.example.ledger_service.service.BatchTransferService;
+import com.example.ledger_service.service.ExportService;
+import com.example.ledger_service.service.FanOutService;
+import com.example.ledger_service.service.FxRates;
+import com.example.ledger_service.service.HoldService;
+import com.example.ledger_service.service.HotAccounts;
 import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.ReconciliationService;
+import com.example.ledger_service.service.TrialBalance;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
 
 
 @RestController
 @RequestMapping("/v1")
 public class LedgerController {
     private final LedgerService ledgerService;
+    private final BatchTransferService batchTransferService;
+    private final AsyncTransferService asyncTransferService;
+    private final ExportService exportService;
+    private final ReconciliationService reconciliationService;
+    private final TrialBalance trialBalance;
+    private final HotAccounts hotAccounts;
+    private final FanOutService fanOutService;
+    private final HoldService holdService;
+    private final FxRates fxRates;
 
-    public LedgerController(LedgerService ledgerService) {
+    public LedgerController(LedgerService ledgerService, BatchTransferService batchTransferService,
+                            AsyncTransferService asyncTransferService,
+                            ExportService exportService, ReconciliationService reconciliationService,
+                            TrialBalance trialBalance, HotAccounts hotAccounts, FanOutService fanOutService,
+                            HoldService holdService, FxRates fxRates) {
         this.ledgerService = ledgerService;
+        this.batchTransferService = batchTransferService;
+        this.asyncTransferService = asyncTransferService;
+        this.exportService = exportService;
+        this.reconciliationService = reconciliationService;
+        this.trialBalance = trialBalance;
+        this.hotAccounts = hotAccounts;
+        this.fanOutService = fanOutService;
+        this.holdService = holdService;
+        this.fxRates = fxRates;
     }
 
+    /** Applied right away, or only accepted (202) when the client sends {@code Prefer: respond-async} (RFC 7240). */
     @PostMapping("/ledger/transfer")
-    public ResponseEntity<TransferResponse> transfer(@Valid @RequestBody TransferRequest req) {
+    public ResponseEntity<TransferResponse> transfer(@Valid @RequestBody TransferRequest req,
+                                                     @RequestHeader(value = "Prefer", required = false) String prefer) {
+        if (prefersAsync(prefer)) {
+            return transferAsync(req);
+        }
         return ResponseEntity.ok(ledgerService.doApplyTransfer(req));
     }
 
+    private ResponseEntity<TransferResponse> transferAsync(TransferRequest req) {
+        TransferResponse accepted = asyncTransferService.accept(req);
+        return ResponseEntity.accepted()
+                .location(URI.create("/v1/ledger/transfer/" + accepted.getTransferId()))
+                .body(accepted);
+    }
+
+    /**
+     * Whether the preferences ask for respond-async. The header is a comma-separated list, each
+     * preference optionally with a value and parameters ({@code respond-async, wait=5}); several
+     * Prefer headers arrive joined by commas.
+     */
+    static boolean prefersAsync(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            String token = preference.split("[;=]", 2)[0].trim();
+            if (token.equalsIgnoreCase("respond-async")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @GetMapping("/ledger/transfer/{transferId}")
+    public ResponseEntity<TransferResponse> transferStatus(@PathVariable String transferId) {
+        return ResponseEntity.ok(asyncTransferService.status(transferId));
+    }
+
+    /** Several debit and credit legs under one transferId, applied all together or not at all. */
+    @PostMapping("/ledger/postings")
+    public ResponseEntity<PostingResponse> posting(@Valid @RequestBody PostingRequest req) {
+        return ResponseEntity.ok(ledgerService.doApplyPosting(req));
+    }
+
+    @PostMapping("/ledger/transfers/batch")
+    public ResponseEntity<BatchTransferResponse> batchTransfer(@Valid @RequestBody BatchTransferRequest req) {
+        return ResponseEntity.ok(batchTransferService.applyBatch(req));
+    }
+
+    /**
+     * One source paying many destinations (payroll). The source is debited once when the run is
+     * accepted; destinations are credited in the background and polled with the GET below.
+     */
+    @PostMapping("/ledger/fan-outs")
+    public ResponseEntity<FanOutResponse> fanOut(@Valid @RequestBody FanOutRequest req) {
+        FanOutResponse run = fanOutService.start(req);
+        return ResponseEntity.accepted()
+                .location(URI.create("/v1/ledger/fan-outs/" + run.getRunId()))
+                .body(run);
+    }
+
+    @GetMapping("/ledger/fan-outs/{runId}")
+    public ResponseEntity<FanOutResponse> fanOutStatus(@PathVariable String runId) {
+        return ResponseEntity.ok(fanOutService.status(runId));
+    }
+
+    /** Reserves funds: the account's available balance drops, but no money moves until capture. */
+    @PostMapping("/ledger/holds")
+    public ResponseEntity<HoldResponse> authorize(@Valid @RequestBody HoldRequest req) {
+        return ResponseEntity.ok(holdService.authorize(req));
+    }
+
+    @PostMapping("/ledger/holds/{holdId}/capture")
+    public ResponseEntity<HoldResponse> capture(@PathVariable String holdId, @Valid @RequestBody CaptureRequest req) {
+        return ResponseEntity.ok(holdService.capture(holdId, req));
+    }
+
+    @PostMapping("/ledger/holds/{holdId}/void")
+    public ResponseEntity<HoldResponse> voidHold(@PathVariable String holdId) {
+        return ResponseEntity.ok(holdService.voidHold(holdId));
+    }
+
+    @GetMapping("/ledger/holds/{holdId}")
+    public ResponseEntity<HoldResponse> hold(@PathVariable String holdId) {
+        return ResponseEntity.ok(holdService.get(holdId));
+    }
+
+    @GetMapping("/ledger/fx/rates")
+    public ResponseEntity<FxRatesResponse> fxRates() {
+        return ResponseEntity.ok(fxRates.current());
+    }
+
+    /** A past version of the rate table, as recorded on the entries converted at it. */
+    @GetMapping("/ledger/fx/rates/{version}")
+    public ResponseEntity<FxRatesResponse> fxRates(@PathVariable long version) {
+        return ResponseEntity.ok(fxRates.version(version));
+    }
+
+    /** Publishes a new version of the rate table; transfers convert at it from the next one on. */
+    @PostMapping("/ledger/fx/rates")
+    public ResponseEntity<FxRatesResponse> publishFxRates(@Valid @RequestBody FxRatesRequest req) {
+        return ResponseEntity.ok(fxRates.publish(req.getRates()));
+    }
+
+    /**
+     * Streams ledger entries in id order as NDJSON (default) or CSV, optionally filtered by
+     * account and a {@code [from, to)} time range. With {@code gzip=true} the body is sent
+     * with {@code Content-Encoding: gzip}.
+     */
+    @GetMapping("/ledger/entries/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format,
+                                                        @RequestParam(required = false) Long accountId,
+                                                        @RequestParam(required = false) Instant from,
+                                                        @RequestParam(required = false) Instant to,
+                                                        @RequestParam(defaultValue = "false") boolean gzip) {
+        ExportService.Format fmt = ExportService.Format.of(format);
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream zip = new GZIPOutputStream(out, 64 * 1024);
+                exportService.export(fmt, accountId, from, to, zip);
+                zip.finish();
+            } else {
+                exportService.export(fmt, accountId, from, to, out);
+            }
+        };
+        ResponseEntity.BodyBuilder res = ResponseEntity.ok()
+                .contentType(fmt == ExportService.Format.CSV
+                        ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"ledger-entries." + fmt.name().toLowerCase() + "\"");
+        if (gzip) {
+            res.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return res.body(body);
+    }
+
+    /**
+     * Verifies every account balance against its entries and every transfer's debits against
+     * its credits, and reports mismatches plus per-range timings. Safe to run on a live ledger.
+     */
+    @PostMapping("/ledger/reconciliation")
+    public ResponseEntity<ReconciliationReport> reconcile() {
+        return ResponseEntity.ok(reconciliationService.reconcile());
+    }
+
+    /** Running debit/credit totals and daily turnover, maintained per commit; {@code balanced} turns false on drift. */
+    @GetMapping("/ledger/trial-balance")
+    public ResponseEntity<TrialBalanceResponse> trialBalance() {
+        return ResponseEntity.ok(trialBalance.snapshot());
+    }
+
+    /** Accounts with the most transfers and the most concurrency conflicts over the recent window (estimates). */
+    @GetMapping("/ledger/hot-accounts")
+    public ResponseEntity<HotAccountsResponse> hotAccounts(@RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(hotAccounts.snapshot(limit));
+    }
+
     @GetMapping("/health")
     public ResponseEntity<?> health() {
         return ResponseEntity.ok().body(java.util.Map.of("status", "UP"));
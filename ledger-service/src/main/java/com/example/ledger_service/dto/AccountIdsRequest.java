@@ -0,0 +1,15 @@
+package com.example.ledger_service.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class AccountIdsRequest {
+    @NotEmpty @Size(max = 100_000)
+    private List<@NotNull Long> ids;
+
+    public List<Long> getIds() { return ids; }
+    public void setIds(List<Long> ids) { this.ids = ids; }
+}
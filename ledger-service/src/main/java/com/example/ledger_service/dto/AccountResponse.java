@@ -4,22 +4,39 @@ import java.time.Instant;
 
 public class AccountResponse {
     private Long id;
-    private Integer balance;
+    private long balance;
+    // Sum of open holds; balance - held is what transfers can still spend
+    private long held;
     private Long version;
     private Instant createdAt;
     private String name;
+    private String currency;
 
-    public AccountResponse(Long id, Integer balance, Long version, Instant createdAt, String name) {
+    public AccountResponse(Long id, long balance, Long version, Instant createdAt, String name) {
+        this(id, balance, 0, version, createdAt, name);
+    }
+
+    public AccountResponse(Long id, long balance, long held, Long version, Instant createdAt, String name) {
+        this(id, balance, held, version, createdAt, name, null);
+    }
+
+    public AccountResponse(Long id, long balance, long held, Long version, Instant createdAt, String name,
+                           String currency) {
         this.id = id;
         this.balance = balance;
+        this.held = held;
         this.version = version;
         this.createdAt = createdAt;
         this.name = name;
+        this.currency = currency;
     }
 
     public Long getId() { return id; }
-    public Integer getBalance() { return balance; }
+    public long getBalance() { return balance; }
+    public long getHeld() { return held; }
+    public long getAvailable() { return balance - held; }
     public Long getVersion() { return version; }
     public Instant getCreatedAt() { return createdAt; }
     public String getName() { return name; }
+    public String getCurrency() { return currency; }
 }
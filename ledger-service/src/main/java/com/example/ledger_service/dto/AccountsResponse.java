@@ -0,0 +1,17 @@
+package com.example.ledger_service.dto;
+
+import java.util.List;
+
+public class AccountsResponse {
+    private List<AccountResponse> accounts;
+    // Requested ids with no matching account
+    private List<Long> missing;
+
+    public AccountsResponse(List<AccountResponse> accounts, List<Long> missing) {
+        this.accounts = accounts;
+        this.missing = missing;
+    }
+
+    public List<AccountResponse> getAccounts() { return accounts; }
+    public List<Long> getMissing() { return missing; }
+}
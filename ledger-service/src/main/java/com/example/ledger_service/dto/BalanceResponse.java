@@ -0,0 +1,19 @@
+package com.example.ledger_service.dto;
+
+import java.time.Instant;
+
+public class BalanceResponse {
+    private Long accountId;
+    private Instant asOf;
+    private Long balance;
+
+    public BalanceResponse(Long accountId, Instant asOf, Long balance) {
+        this.accountId = accountId;
+        this.asOf = asOf;
+        this.balance = balance;
+    }
+
+    public Long getAccountId() { return accountId; }
+    public Instant getAsOf() { return asOf; }
+    public Long getBalance() { return balance; }
+}
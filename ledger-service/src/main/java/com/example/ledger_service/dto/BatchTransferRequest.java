@@ -0,0 +1,26 @@
+package com.example.ledger_service.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class BatchTransferRequest {
+    @NotEmpty @Size(max = 1000)
+    private List<@Valid TransferRequest> transfers;
+
+    // When true, a single failed item rolls back the whole batch
+    private boolean allOrNothing;
+
+    // When true, balances move by each account's net across the batch and funds are checked on
+    // that net only; the batch is then always all-or-nothing
+    private boolean netting;
+
+    public List<TransferRequest> getTransfers() { return transfers; }
+    public void setTransfers(List<TransferRequest> transfers) { this.transfers = transfers; }
+    public boolean isAllOrNothing() { return allOrNothing; }
+    public void setAllOrNothing(boolean allOrNothing) { this.allOrNothing = allOrNothing; }
+    public boolean isNetting() { return netting; }
+    public void setNetting(boolean netting) { this.netting = netting; }
+}
@@ -0,0 +1,19 @@
+package com.example.ledger_service.dto;
+
+import java.util.List;
+
+public class BatchTransferResponse {
+    private List<TransferResponse> results;
+    private int succeeded;
+    private int failed;
+
+    public BatchTransferResponse(List<TransferResponse> results) {
+        this.results = results;
+        this.succeeded = (int) results.stream().filter(r -> "SUCCESS".equals(r.getStatus())).count();
+        this.failed = results.size() - succeeded;
+    }
+
+    public List<TransferResponse> getResults() { return results; }
+    public int getSucceeded() { return succeeded; }
+    public int getFailed() { return failed; }
+}
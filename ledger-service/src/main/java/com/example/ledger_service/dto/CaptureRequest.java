@@ -0,0 +1,18 @@
+package com.example.ledger_service.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public class CaptureRequest {
+    @NotNull
+    private Long toAccountId;
+
+    // At most the held amount; the whole hold when absent. Any remainder is released
+    @Positive
+    private Long amount;
+
+    public Long getToAccountId() { return toAccountId; }
+    public void setToAccountId(Long toAccountId) { this.toAccountId = toAccountId; }
+    public Long getAmount() { return amount; }
+    public void setAmount(Long amount) { this.amount = amount; }
+}
@@ -2,17 +2,25 @@ package com.example.ledger_service.dto;
 
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 
 public class CreateAccount {
+    // Minor units (cents), like every amount in the API
     @NotNull @Min(0)
-    private Integer initialBalance;
+    private Long initialBalance;
 
     @Size(max = 120)
     private String name;
 
-    public Integer getInitialBalance() { return initialBalance; }
-    public void setInitialBalance(Integer initialBalance) { this.initialBalance = initialBalance; }
+    // ISO 4217 code; the base currency when omitted
+    @Pattern(regexp = "[A-Z]{3}")
+    private String currency;
+
+    public Long getInitialBalance() { return initialBalance; }
+    public void setInitialBalance(Long initialBalance) { this.initialBalance = initialBalance; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
+    public String getCurrency() { return currency; }
+    public void setCurrency(String currency) { this.currency = currency; }
 }
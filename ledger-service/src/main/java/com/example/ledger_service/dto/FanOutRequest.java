@@ -0,0 +1,30 @@
+package com.example.ledger_service.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class FanOutRequest {
+    // Item i is applied as transfer "<runId>-<i>", which has to fit the 64-character transferId
+    @NotBlank @Size(max = 48)
+    private String runId;
+
+    @NotNull
+    private Long sourceAccountId;
+
+    @NotNull @Size(min = 1, max = 10_000)
+    private List<@Valid Item> items;
+
+    public record Item(@NotNull Long accountId, @NotNull @Positive Long amount) {}
+
+    public String getRunId() { return runId; }
+    public void setRunId(String runId) { this.runId = runId; }
+    public Long getSourceAccountId() { return sourceAccountId; }
+    public void setSourceAccountId(Long sourceAccountId) { this.sourceAccountId = sourceAccountId; }
+    public List<Item> getItems() { return items; }
+    public void setItems(List<Item> items) { this.items = items; }
+}
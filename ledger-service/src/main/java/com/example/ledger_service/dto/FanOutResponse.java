@@ -0,0 +1,41 @@
+package com.example.ledger_service.dto;
+
+import java.util.List;
+
+public class FanOutResponse {
+    private String runId;
+    private String status;
+    private Long sourceAccountId;
+    private Long clearingAccountId;
+    private long total;
+    private int processed;
+    private int succeeded;
+    private int failed;
+    private List<Result> results;
+
+    /** Outcome of one destination: {@code PENDING}, {@code SUCCESS}, or {@code FAILED} with the amount refunded. */
+    public record Result(int index, String transferId, Long accountId, long amount, String status, String message) {}
+
+    public FanOutResponse(String runId, String status, Long sourceAccountId, Long clearingAccountId, long total,
+                          int processed, int failed, List<Result> results) {
+        this.runId = runId;
+        this.status = status;
+        this.sourceAccountId = sourceAccountId;
+        this.clearingAccountId = clearingAccountId;
+        this.total = total;
+        this.processed = processed;
+        this.succeeded = processed - failed;
+        this.failed = failed;
+        this.results = results;
+    }
+
+    public String getRunId() { return runId; }
+    public String getStatus() { return status; }
+    public Long getSourceAccountId() { return sourceAccountId; }
+    public Long getClearingAccountId() { return clearingAccountId; }
+    public long getTotal() { return total; }
+    public int getProcessed() { return processed; }
+    public int getSucceeded() { return succeeded; }
+    public int getFailed() { return failed; }
+    public List<Result> getResults() { return results; }
+}
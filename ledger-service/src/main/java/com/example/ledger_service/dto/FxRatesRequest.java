@@ -0,0 +1,17 @@
+package com.example.ledger_service.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+public class FxRatesRequest {
+    // Units of each currency per unit of the base currency; currencies left out keep their rate
+    @NotEmpty
+    private Map<String, @NotNull @Positive BigDecimal> rates;
+
+    public Map<String, BigDecimal> getRates() { return rates; }
+    public void setRates(Map<String, BigDecimal> rates) { this.rates = rates; }
+}
@@ -0,0 +1,29 @@
+package com.example.ledger_service.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+public class FxRatesResponse {
+    private long version;
+    private String baseCurrency;
+    private Map<String, BigDecimal> rates;
+    // FX position account of each currency
+    private Map<String, Long> positions;
+    private Instant publishedAt;
+
+    public FxRatesResponse(long version, String baseCurrency, Map<String, BigDecimal> rates,
+                           Map<String, Long> positions, Instant publishedAt) {
+        this.version = version;
+        this.baseCurrency = baseCurrency;
+        this.rates = rates;
+        this.positions = positions;
+        this.publishedAt = publishedAt;
+    }
+
+    public long getVersion() { return version; }
+    public String getBaseCurrency() { return baseCurrency; }
+    public Map<String, BigDecimal> getRates() { return rates; }
+    public Map<String, Long> getPositions() { return positions; }
+    public Instant getPublishedAt() { return publishedAt; }
+}
@@ -0,0 +1,32 @@
+package com.example.ledger_service.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+import java.time.Duration;
+
+public class HoldRequest {
+    // Also the transferId of the capture
+    @NotBlank @Size(max = 64)
+    private String holdId;
+
+    @NotNull
+    private Long accountId;
+
+    @NotNull @Positive
+    private Long amount;
+
+    // ISO-8601 (e.g. "PT15M"); ledger.holds.default-ttl when absent
+    private Duration ttl;
+
+    public String getHoldId() { return holdId; }
+    public void setHoldId(String holdId) { this.holdId = holdId; }
+    public Long getAccountId() { return accountId; }
+    public void setAccountId(Long accountId) { this.accountId = accountId; }
+    public Long getAmount() { return amount; }
+    public void setAmount(Long amount) { this.amount = amount; }
+    public Duration getTtl() { return ttl; }
+    public void setTtl(Duration ttl) { this.ttl = ttl; }
+}
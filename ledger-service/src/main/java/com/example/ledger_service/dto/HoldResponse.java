@@ -0,0 +1,32 @@
+package com.example.ledger_service.dto;
+
+import java.time.Instant;
+
+public class HoldResponse {
+    private String holdId;
+    private Long accountId;
+    private long amount;
+    private String status;
+    private Instant expiresAt;
+    private Long capturedTo;
+    private Long capturedAmount;
+
+    public HoldResponse(String holdId, Long accountId, long amount, String status, Instant expiresAt,
+                        Long capturedTo, Long capturedAmount) {
+        this.holdId = holdId;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.status = status;
+        this.expiresAt = expiresAt;
+        this.capturedTo = capturedTo;
+        this.capturedAmount = capturedAmount;
+    }
+
+    public String getHoldId() { return holdId; }
+    public Long getAccountId() { return accountId; }
+    public long getAmount() { return amount; }
+    public String getStatus() { return status; }
+    public Instant getExpiresAt() { return expiresAt; }
+    public Long getCapturedTo() { return capturedTo; }
+    public Long getCapturedAmount() { return capturedAmount; }
+}
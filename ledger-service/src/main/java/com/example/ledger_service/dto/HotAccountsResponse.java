@@ -0,0 +1,24 @@
+package com.example.ledger_service.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+public class HotAccountsResponse {
+
+    /** Estimated count for one account over the window; never below the true count. */
+    public record HotAccount(Long accountId, long count, double perSecond) {}
+
+    private Instant since;
+    private List<HotAccount> requests;
+    private List<HotAccount> conflicts;
+
+    public HotAccountsResponse(Instant since, List<HotAccount> requests, List<HotAccount> conflicts) {
+        this.since = since;
+        this.requests = requests;
+        this.conflicts = conflicts;
+    }
+
+    public Instant getSince() { return since; }
+    public List<HotAccount> getRequests() { return requests; }
+    public List<HotAccount> getConflicts() { return conflicts; }
+}
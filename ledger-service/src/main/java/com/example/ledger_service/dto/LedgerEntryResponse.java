@@ -0,0 +1,31 @@
+package com.example.ledger_service.dto;
+
+import com.example.ledger_service.entity.LedgerEntry;
+
+import java.time.Instant;
+
+public class LedgerEntryResponse {
+    private Long id;
+    private String transferId;
+    private Long accountId;
+    private long amount;
+    private LedgerEntry.Type type;
+    private Instant createdAt;
+
+    public LedgerEntryResponse(Long id, String transferId, Long accountId, long amount,
+                               LedgerEntry.Type type, Instant createdAt) {
+        this.id = id;
+        this.transferId = transferId;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.type = type;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() { return id; }
+    public String getTransferId() { return transferId; }
+    public Long getAccountId() { return accountId; }
+    public long getAmount() { return amount; }
+    public LedgerEntry.Type getType() { return type; }
+    public Instant getCreatedAt() { return createdAt; }
+}
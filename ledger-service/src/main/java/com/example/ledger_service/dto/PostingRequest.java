@@ -0,0 +1,26 @@
+package com.example.ledger_service.dto;
+
+import com.example.ledger_service.entity.LedgerEntry;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class PostingRequest {
+    @NotBlank @Size(max = 64)
+    private String transferId;
+
+    // Debits and credits must add up to the same total
+    @NotNull @Size(min = 2, max = 100)
+    private List<@Valid Leg> legs;
+
+    public record Leg(@NotNull Long accountId, @NotNull LedgerEntry.Type type, @NotNull @Positive Long amount) {}
+
+    public String getTransferId() { return transferId; }
+    public void setTransferId(String transferId) { this.transferId = transferId; }
+    public List<Leg> getLegs() { return legs; }
+    public void setLegs(List<Leg> legs) { this.legs = legs; }
+}
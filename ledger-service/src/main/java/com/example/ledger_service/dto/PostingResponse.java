@@ -0,0 +1,22 @@
+package com.example.ledger_service.dto;
+
+import java.util.List;
+
+public class PostingResponse {
+    private String transferId;
+    private String status;
+    private String message;
+    private List<PostingRequest.Leg> legs;
+
+    public PostingResponse(String transferId, String status, String message, List<PostingRequest.Leg> legs) {
+        this.transferId = transferId;
+        this.status = status;
+        this.message = message;
+        this.legs = legs;
+    }
+
+    public String getTransferId() { return transferId; }
+    public String getStatus() { return status; }
+    public String getMessage() { return message; }
+    public List<PostingRequest.Leg> getLegs() { return legs; }
+}
@@ -0,0 +1,57 @@
+package com.example.ledger_service.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+public class ReconciliationReport {
+
+    /** Account whose stored balance differs from its opening balance plus its entries. */
+    public record AccountMismatch(Long accountId, long balance, long expected) {}
+
+    /** Transfer whose debits and credits do not add up. */
+    public record TransferMismatch(String transferId, long debits, long credits) {}
+
+    /** Timing of one verified id range; {@code kind} is {@code accounts} or {@code entries}. */
+    public record RangeStats(String kind, long fromId, long toId, long rows, long millis, double rowsPerSecond) {
+        public RangeStats(String kind, long fromId, long toId, long rows, long millis) {
+            this(kind, fromId, toId, rows, millis, rows * 1000.0 / Math.max(1, millis));
+        }
+    }
+
+    private Instant startedAt;
+    private long millis;
+    private long accountsChecked;
+    private long transfersChecked;
+    private long accountMismatchCount;
+    private long transferMismatchCount;
+    private List<AccountMismatch> accountMismatches;
+    private List<TransferMismatch> transferMismatches;
+    private List<RangeStats> ranges;
+
+    public ReconciliationReport(Instant startedAt, long millis, long accountsChecked, long transfersChecked,
+                                long accountMismatchCount, long transferMismatchCount,
+                                List<AccountMismatch> accountMismatches,
+                                List<TransferMismatch> transferMismatches,
+                                List<RangeStats> ranges) {
+        this.startedAt = startedAt;
+        this.millis = millis;
+        this.accountsChecked = accountsChecked;
+        this.transfersChecked = transfersChecked;
+        this.accountMismatchCount = accountMismatchCount;
+        this.transferMismatchCount = transferMismatchCount;
+        this.accountMismatches = accountMismatches;
+        this.transferMismatches = transferMismatches;
+        this.ranges = ranges;
+    }
+
+    public boolean isConsistent() { return accountMismatchCount == 0 && transferMismatchCount == 0; }
+    public Instant getStartedAt() { return startedAt; }
+    public long getMillis() { return millis; }
+    public long getAccountsChecked() { return accountsChecked; }
+    public long getTransfersChecked() { return transfersChecked; }
+    public long getAccountMismatchCount() { return accountMismatchCount; }
+    public long getTransferMismatchCount() { return transferMismatchCount; }
+    public List<AccountMismatch> getAccountMismatches() { return accountMismatches; }
+    public List<TransferMismatch> getTransferMismatches() { return transferMismatches; }
+    public List<RangeStats> getRanges() { return ranges; }
+}
@@ -0,0 +1,17 @@
+package com.example.ledger_service.dto;
+
+import java.util.List;
+
+public class StatementResponse {
+    private List<LedgerEntryResponse> entries;
+    // Pass as ?cursor= to fetch the next (older) page; null on the last page
+    private Long nextCursor;
+
+    public StatementResponse(List<LedgerEntryResponse> entries, Long nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<LedgerEntryResponse> getEntries() { return entries; }
+    public Long getNextCursor() { return nextCursor; }
+}
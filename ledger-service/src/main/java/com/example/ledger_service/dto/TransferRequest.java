@@ -12,7 +12,7 @@ public class TransferRequest {
     @NotNull
     private Long toAccountId;
     @NotNull @Positive
-    private Integer amount;
+    private Long amount;
 
     public String getTransferId() { return transferId; }
     public void setTransferId(String transferId) { this.transferId = transferId; }
@@ -20,6 +20,6 @@ public class TransferRequest {
     public void setFromAccountId(Long fromAccountId) { this.fromAccountId = fromAccountId; }
     public Long getToAccountId() { return toAccountId; }
     public void setToAccountId(Long toAccountId) { this.toAccountId = toAccountId; }
-    public Integer getAmount() { return amount; }
-    public void setAmount(Integer amount) { this.amount = amount; }
+    public Long getAmount() { return amount; }
+    public void setAmount(Long amount) { this.amount = amount; }
 }
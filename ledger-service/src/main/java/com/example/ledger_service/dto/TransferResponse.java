@@ -6,16 +6,27 @@ public class TransferResponse {
     private String message;
     private Long fromAccountId;
     private Long toAccountId;
-    private Integer amount;
+    private long amount;
+    // Set when the accounts are in different currencies: the amount credited, in the
+    // destination's minor units, and the rate table version it was converted at
+    private Long convertedAmount;
+    private Long fxRateVersion;
 
     public TransferResponse(String transferId, String status, String message,
-                            Long fromAccountId, Long toAccountId, Integer amount) {
+                            Long fromAccountId, Long toAccountId, long amount) {
+        this(transferId, status, message, fromAccountId, toAccountId, amount, null, null);
+    }
+
+    public TransferResponse(String transferId, String status, String message, Long fromAccountId,
+                            Long toAccountId, long amount, Long convertedAmount, Long fxRateVersion) {
         this.transferId = transferId;
         this.status = status;
         this.message = message;
         this.fromAccountId = fromAccountId;
         this.toAccountId = toAccountId;
         this.amount = amount;
+        this.convertedAmount = convertedAmount;
+        this.fxRateVersion = fxRateVersion;
     }
 
     public String getTransferId() { return transferId; }
@@ -23,5 +34,7 @@ public class TransferResponse {
     public String getMessage() { return message; }
     public Long getFromAccountId() { return fromAccountId; }
     public Long getToAccountId() { return toAccountId; }
-    public Integer getAmount() { return amount; }
+    public long getAmount() { return amount; }
+    public Long getConvertedAmount() { return convertedAmount; }
+    public Long getFxRateVersion() { return fxRateVersion; }
 }
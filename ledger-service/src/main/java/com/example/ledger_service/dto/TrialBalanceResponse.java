@@ -0,0 +1,37 @@
+package com.example.ledger_service.dto;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+public class TrialBalanceResponse {
+
+    /** Debit and credit turnover of one UTC day. */
+    public record DayTurnover(LocalDate date, long debits, long credits) {}
+
+    private long totalDebits;
+    private long totalCredits;
+    // Credits minus debits; anything but 0 is a double-entry violation
+    private long imbalance;
+    private long violations;
+    private Instant trackedSince;
+    private List<DayTurnover> days;
+
+    public TrialBalanceResponse(long totalDebits, long totalCredits, long imbalance, long violations,
+                                Instant trackedSince, List<DayTurnover> days) {
+        this.totalDebits = totalDebits;
+        this.totalCredits = totalCredits;
+        this.imbalance = imbalance;
+        this.violations = violations;
+        this.trackedSince = trackedSince;
+        this.days = days;
+    }
+
+    public boolean isBalanced() { return imbalance == 0 && violations == 0; }
+    public long getTotalDebits() { return totalDebits; }
+    public long getTotalCredits() { return totalCredits; }
+    public long getImbalance() { return imbalance; }
+    public long getViolations() { return violations; }
+    public Instant getTrackedSince() { return trackedSince; }
+    public List<DayTurnover> getDays() { return days; }
+}
@@ -0,0 +1,283 @@
+package com.example.ledger_service.engine;
+
+import com.example.ledger_service.dto.TransferRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.AccountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * One shard loop of the {@link ShardedBalanceEngine}. Owns the in-memory balances
+ * of its accounts and is fed through an array-backed ring; only the loop thread
+ * reads or writes {@link #balances}.
+ *
+ * <p>With a {@link LedgerJournal}, a transfer is acknowledged only after its record
+ * is appended, and no intermediate balances are persisted: the database is a
+ * projection of the journal, written by the persister as deltas.
+ */
+class BalanceShard implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(BalanceShard.class);
+
+    private enum Kind { TRANSFER, CREDIT, REFUND, STOP }
+
+    private static final class Command {
+        final Kind kind;
+        final TransferRequest req;
+        final CompletableFuture<TransferResponse> result;
+        final BalanceShard origin;
+        final RuntimeException failure;
+
+        Command(Kind kind, TransferRequest req, CompletableFuture<TransferResponse> result,
+                BalanceShard origin, RuntimeException failure) {
+            this.kind = kind;
+            this.req = req;
+            this.result = result;
+            this.origin = origin;
+            this.failure = failure;
+        }
+    }
+
+    private final int index;
+    private final ShardedBalanceEngine engine;
+    private final AccountRepository accountRepository;
+    private final LedgerPersister persister;
+    private final LedgerJournal journal;
+    private final int maxInFlight;
+    // Admission control: a permit per in-flight transfer sourced on this shard. With every
+    // shard capped like this, the ring (sized for all shards' permits) can never fill up,
+    // so shards handing credits/refunds to each other never block on one another.
+    private final Semaphore inFlight;
+    private final ArrayBlockingQueue<Command> ring;
+    private final Map<Long, long[]> balances = new HashMap<>();
+    private Thread thread;
+
+    BalanceShard(int index, ShardedBalanceEngine engine, AccountRepository accountRepository,
+                 LedgerPersister persister, LedgerJournal journal, int maxInFlight, int ringCapacity) {
+        this.index = index;
+        this.engine = engine;
+        this.accountRepository = accountRepository;
+        this.persister = persister;
+        this.journal = journal;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.ring = new ArrayBlockingQueue<>(ringCapacity);
+    }
+
+    void start() {
+        thread = new Thread(this, "ledger-shard-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        if (thread == null) return;
+        ring.offer(new Command(Kind.STOP, null, null, null, null));
+        try {
+            thread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isIdle() {
+        return inFlight.availablePermits() == maxInFlight;
+    }
+
+    CompletableFuture<TransferResponse> submit(TransferRequest req) {
+        CompletableFuture<TransferResponse> result = new CompletableFuture<>();
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.completeExceptionally(e);
+            return result;
+        }
+        ring.add(new Command(Kind.TRANSFER, req, result, this, null));
+        return result;
+    }
+
+    @Override
+    public void run() {
+        List<Command> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(ring.take());
+                ring.drainTo(batch);
+                for (Command cmd : batch) {
+                    if (cmd.kind == Kind.STOP) {
+                        return;
+                    }
+                    handle(cmd);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void handle(Command cmd) {
+        try {
+            switch (cmd.kind) {
+                case TRANSFER -> transfer(cmd);
+                case CREDIT -> credit(cmd);
+                case REFUND -> refund(cmd);
+                default -> throw new IllegalStateException("Unexpected command " + cmd.kind);
+            }
+        } catch (RuntimeException e) {
+            log.error("Shard {} failed to handle {} for transferId={}", index, cmd.kind, cmd.req.getTransferId(), e);
+            fail(cmd, e);
+        }
+    }
+
+    private void transfer(Command cmd) {
+        TransferRequest req = cmd.req;
+        if (journal != null && !LedgerJournal.fits(req.getTransferId())) {
+            fail(cmd, new ConflictException("transferId is too long for the journal"));
+            return;
+        }
+        long[] from = load(req.getFromAccountId());
+        if (from == null) {
+            fail(cmd, new ConflictException("From account not found"));
+            return;
+        }
+        if (from[0] < req.getAmount()) {
+            fail(cmd, new InsufficientFundsException("Insufficient funds"));
+            return;
+        }
+
+        BalanceShard target = engine.shardFor(req.getToAccountId());
+        if (target != this) {
+            // Step one of two: funds leave the source now and are credited by the owning shard.
+            from[0] -= req.getAmount();
+            persistBalance(req.getFromAccountId(), from[0]);
+            target.ring.add(new Command(Kind.CREDIT, req, cmd.result, cmd.origin, null));
+            return;
+        }
+
+        long[] to = load(req.getToAccountId());
+        if (to == null) {
+            fail(cmd, new ConflictException("To account not found"));
+            return;
+        }
+        if (to[0] > Long.MAX_VALUE - req.getAmount()) {
+            fail(cmd, new ConflictException("Balance overflow"));
+            return;
+        }
+        from[0] -= req.getAmount();
+        to[0] += req.getAmount();
+        persistBalance(req.getFromAccountId(), from[0]);
+        persistBalance(req.getToAccountId(), to[0]);
+        complete(cmd, to);
+    }
+
+    private void credit(Command cmd) {
+        TransferRequest req = cmd.req;
+        long[] to = null;
+        boolean credited = false;
+        try {
+            to = load(req.getToAccountId());
+            if (to == null) {
+                throw new ConflictException("To account not found");
+            }
+            if (to[0] > Long.MAX_VALUE - req.getAmount()) {
+                throw new ConflictException("Balance overflow");
+            }
+            to[0] += req.getAmount();
+            credited = true;
+            persistBalance(req.getToAccountId(), to[0]);
+        } catch (RuntimeException e) {
+            // Step two failed, whatever the cause: return the funds to the source shard, which owns the debit.
+            if (credited) {
+                to[0] -= req.getAmount();
+            }
+            if (!(e instanceof ConflictException)) {
+                log.error("Shard {} failed to credit transferId={}, refunding", index, req.getTransferId(), e);
+            }
+            engine.shardFor(req.getFromAccountId()).ring
+                    .add(new Command(Kind.REFUND, req, cmd.result, cmd.origin, e));
+            return;
+        }
+        complete(cmd, to);
+    }
+
+    private void refund(Command cmd) {
+        long[] from = balances.get(cmd.req.getFromAccountId());
+        from[0] += cmd.req.getAmount();
+        persistBalance(cmd.req.getFromAccountId(), from[0]);
+        fail(cmd, cmd.failure);
+    }
+
+    /** Runs on the shard owning the destination, once both legs are applied in memory. */
+    private void complete(Command cmd, long[] to) {
+        TransferRequest req = cmd.req;
+        LedgerEntry debit = new LedgerEntry(req.getTransferId(), req.getFromAccountId(), req.getAmount(), LedgerEntry.Type.DEBIT);
+        LedgerEntry credit = new LedgerEntry(req.getTransferId(), req.getToAccountId(), req.getAmount(),
+                LedgerEntry.Type.CREDIT, debit.getCreatedAt());
+        if (journal == null) {
+            persister.entries(debit, credit);
+        } else {
+            // Handed over under the journal's lock, so the persister gets every shard's records in
+            // sequence order and the checkpoint it stores never passes a record it has not written.
+            synchronized (journal) {
+                long seq;
+                try {
+                    seq = journal.append(req.getTransferId(), req.getFromAccountId(), req.getToAccountId(),
+                            req.getAmount(), debit.getCreatedAt().toEpochMilli());
+                } catch (RuntimeException e) {
+                    // Not durable, so not applied: undo the credit here and refund the debit on its shard.
+                    log.error("Shard {} could not journal transferId={}", index, req.getTransferId(), e);
+                    to[0] -= req.getAmount();
+                    engine.shardFor(req.getFromAccountId()).ring
+                            .add(new Command(Kind.REFUND, req, cmd.result, cmd.origin, e));
+                    return;
+                }
+                persister.journaled(seq, debit, credit);
+            }
+        }
+        cmd.origin.inFlight.release();
+        cmd.result.complete(new TransferResponse(req.getTransferId(), "SUCCESS", "OK",
+                req.getFromAccountId(), req.getToAccountId(), req.getAmount()));
+    }
+
+    private void fail(Command cmd, RuntimeException failure) {
+        cmd.origin.inFlight.release();
+        cmd.result.completeExceptionally(failure);
+    }
+
+    /** Journaled shards only persist through the journal's projection. */
+    private void persistBalance(Long accountId, long balance) {
+        if (journal == null) {
+            persister.balance(accountId, balance);
+        }
+    }
+
+    /** Balance holder for an owned account, loaded from the database on first touch. */
+    private long[] load(Long accountId) {
+        long[] balance = balances.get(accountId);
+        if (balance == null) {
+            // Split accounts keep their balance in slots this engine does not know; treated as missing
+            balance = accountRepository.findById(accountId)
+                    .filter(a -> !a.isSplit())
+                    .map(a -> new long[]{a.getBalance()})
+                    .orElse(null);
+            if (balance != null) {
+                balances.put(accountId, balance);
+            }
+        }
+        return balance;
+    }
+}
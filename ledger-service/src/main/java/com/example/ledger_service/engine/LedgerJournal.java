@@ -0,0 +1,233 @@
+package com.example.ledger_service.engine;
+
+import com.example.ledger_service.exception.ConflictException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of applied transfers, written to memory-mapped segment files.
+ *
+ * <p>Every record has the same {@value #RECORD_SIZE}-byte layout, so record {@code n}
+ * of a segment starts at {@code n * RECORD_SIZE} and replay can seek straight to any
+ * sequence number. Segments are pre-sized and zero-filled; a slot whose sequence number
+ * is zero has never been written, and a trailing record whose CRC does not match was
+ * torn by a crash and is overwritten on the next append. A segment file is named after
+ * the sequence number of its first record.
+ *
+ * <pre>
+ *   0  long   seq
+ *   8  long   fromAccountId
+ *  16  long   toAccountId
+ *  24  long   amount
+ *  32  long   createdAt (epoch millis)
+ *  40  short  transferId length
+ *  42  byte[] transferId, UTF-8, zero-padded to 82 bytes
+ * 124  int    CRC32 of bytes 0..123
+ * </pre>
+ */
+public class LedgerJournal implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(LedgerJournal.class);
+
+    static final int RECORD_SIZE = 128;
+    static final int MAX_TRANSFER_ID_BYTES = 82;
+    private static final int ID_OFFSET = 42;
+    private static final int CRC_OFFSET = 124;
+    private static final String SUFFIX = ".journal";
+
+    public record JournalRecord(long seq, long fromAccountId, long toAccountId, long amount,
+                                long createdAt, String transferId) {}
+
+    private final Path directory;
+    private final long segmentSize;
+    private final boolean forceOnAppend;
+    private final byte[] scratch = new byte[RECORD_SIZE];
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long nextSeq = 1;
+
+    public LedgerJournal(Path directory, long segmentSize, boolean forceOnAppend) {
+        if (segmentSize < RECORD_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("ledger.journal.segment-size must be between 128B and 2GB");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        this.forceOnAppend = forceOnAppend;
+    }
+
+    /** Maps the newest segment and positions after its last intact record. */
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Long> segments = segments();
+        if (segments.isEmpty()) {
+            roll(1);
+            return;
+        }
+        long first = segments.get(segments.size() - 1);
+        map(first);
+        int written = writtenSlots(segment);
+        segment.position(written * RECORD_SIZE);
+        nextSeq = first + written;
+        log.info("Journal opened at {} with {} segments, last seq {}", directory, segments.size(), nextSeq - 1);
+    }
+
+    /** Whether {@code transferId} fits the record's fixed-size id field. */
+    static boolean fits(String transferId) {
+        return transferId.getBytes(StandardCharsets.UTF_8).length <= MAX_TRANSFER_ID_BYTES;
+    }
+
+    /** Sequence number of the last record appended, or 0 for an empty journal. */
+    public synchronized long lastSeq() {
+        return nextSeq - 1;
+    }
+
+    /**
+     * Appends one transfer and returns its sequence number. The record is in the page
+     * cache when this returns, and on disk as well with {@code force-on-append}.
+     */
+    public synchronized long append(String transferId, long fromAccountId, long toAccountId,
+                                    long amount, long createdAt) {
+        byte[] id = transferId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_TRANSFER_ID_BYTES) {
+            throw new ConflictException("transferId is longer than " + MAX_TRANSFER_ID_BYTES + " bytes");
+        }
+        try {
+            if (segment.remaining() < RECORD_SIZE) {
+                roll(nextSeq);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start journal segment " + nextSeq, e);
+        }
+        long seq = nextSeq++;
+        ByteBuffer record = ByteBuffer.wrap(scratch);
+        record.putLong(seq).putLong(fromAccountId).putLong(toAccountId).putLong(amount).putLong(createdAt)
+                .putShort((short) id.length).put(id);
+        Arrays.fill(scratch, ID_OFFSET + id.length, CRC_OFFSET, (byte) 0);
+        crc.reset();
+        crc.update(scratch, 0, CRC_OFFSET);
+        record.putInt(CRC_OFFSET, (int) crc.getValue());
+        int offset = segment.position();
+        segment.put(scratch);
+        if (forceOnAppend) {
+            segment.force(offset, RECORD_SIZE);
+        }
+        return seq;
+    }
+
+    /**
+     * Feeds every record after {@code afterSeq} to {@code consumer} in sequence order,
+     * skipping whole segments and seeking within the first one. Returns the number replayed.
+     */
+    public long replay(long afterSeq, Consumer<JournalRecord> consumer) throws IOException {
+        List<Long> segments = segments();
+        long replayed = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            long first = segments.get(i);
+            if (i + 1 < segments.size() && segments.get(i + 1) <= afterSeq + 1) {
+                continue;
+            }
+            try (FileChannel ch = FileChannel.open(file(first), StandardOpenOption.READ)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                int slots = writtenSlots(buf);
+                for (int slot = (int) Math.max(0, afterSeq + 1 - first); slot < slots; slot++) {
+                    consumer.accept(read(buf, slot));
+                    replayed++;
+                }
+            }
+        }
+        return replayed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void roll(long firstSeq) throws IOException {
+        if (channel != null) {
+            segment.force();
+            channel.close();
+        }
+        map(firstSeq);
+        nextSeq = firstSeq;
+    }
+
+    private void map(long firstSeq) throws IOException {
+        channel = FileChannel.open(file(firstSeq),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    /**
+     * Number of intact records at the start of {@code buf}. Written slots are contiguous,
+     * so the first empty slot is found by binary search; a torn record before it is dropped.
+     */
+    private int writtenSlots(ByteBuffer buf) {
+        int lo = 0;
+        int hi = buf.capacity() / RECORD_SIZE;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (buf.getLong(mid * RECORD_SIZE) != 0) lo = mid + 1;
+            else hi = mid;
+        }
+        if (lo > 0 && !intact(buf, lo - 1)) {
+            log.warn("Dropping torn journal record at slot {}", lo - 1);
+            lo--;
+        }
+        return lo;
+    }
+
+    private boolean intact(ByteBuffer buf, int slot) {
+        byte[] bytes = new byte[RECORD_SIZE];
+        buf.get(slot * RECORD_SIZE, bytes);
+        CRC32 check = new CRC32();
+        check.update(bytes, 0, CRC_OFFSET);
+        return ByteBuffer.wrap(bytes).getInt(CRC_OFFSET) == (int) check.getValue();
+    }
+
+    private static JournalRecord read(ByteBuffer buf, int slot) {
+        int base = slot * RECORD_SIZE;
+        byte[] id = new byte[buf.getShort(base + 40)];
+        buf.get(base + ID_OFFSET, id);
+        return new JournalRecord(buf.getLong(base), buf.getLong(base + 8), buf.getLong(base + 16),
+                buf.getLong(base + 24), buf.getLong(base + 32), new String(id, StandardCharsets.UTF_8));
+    }
+
+    private List<Long> segments() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Long> firstSeqs = new ArrayList<>();
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX))
+                    .forEach(name -> firstSeqs.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length()))));
+            firstSeqs.sort(null);
+            return firstSeqs;
+        }
+    }
+
+    private Path file(long firstSeq) {
+        return directory.resolve(String.format("%020d%s", firstSeq, SUFFIX));
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.ledger_service.engine;
+
+import com.example.ledger_service.entity.JournalCheckpoint;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.JournalCheckpointRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountCache;
+import com.example.ledger_service.service.TrialBalance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the shard loops' output to the database on a single thread, in the order
+ * it was produced. Each drained batch becomes one transaction; consecutive balance
+ * writes to the same account inside a batch collapse to the latest value.
+ *
+ * <p>With a journal, shards hand over journaled transfers instead of balances. Those
+ * are projected as balance deltas, summed per account, and the batch's highest journal
+ * sequence number is stored as the checkpoint in the same transaction. Shards hand records
+ * over in sequence order, under the journal's lock, so every record up to the checkpoint
+ * is in the database.
+ */
+class LedgerPersister implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(LedgerPersister.class);
+
+    private record Write(Long accountId, long balance, LedgerEntry debit, LedgerEntry credit, long seq) {}
+
+    private static final Write STOP = new Write(null, 0, null, null, 0);
+
+    private final AccountRepository accountRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final AccountCache accountCache;
+    private final TrialBalance trialBalance;
+    private final JournalCheckpointRepository checkpointRepository;
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final BlockingQueue<Write> queue;
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    // Debit legs handed over and not yet through a write, for oldestUnwritten()
+    private final Set<LedgerEntry> unwritten = ConcurrentHashMap.newKeySet();
+    private boolean projectionStalled;
+    private Thread thread;
+
+    LedgerPersister(AccountRepository accountRepository, LedgerEntryRepository ledgerEntryRepository,
+                    AccountCache accountCache, TrialBalance trialBalance,
+                    JournalCheckpointRepository checkpointRepository,
+                    TransactionTemplate tx, int batchSize, int capacity) {
+        this.accountRepository = accountRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.accountCache = accountCache;
+        this.trialBalance = trialBalance;
+        this.checkpointRepository = checkpointRepository;
+        this.tx = tx;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    void start() {
+        thread = new Thread(this, "ledger-persister");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        if (thread == null) return;
+        put(STOP);
+        try {
+            thread.join(30_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isDrained() {
+        return written.get() == enqueued.get();
+    }
+
+    void balance(Long accountId, long balance) {
+        enqueued.incrementAndGet();
+        put(new Write(accountId, balance, null, null, 0));
+    }
+
+    void entries(LedgerEntry debit, LedgerEntry credit) {
+        enqueued.incrementAndGet();
+        unwritten.add(debit);
+        put(new Write(null, 0, debit, credit, 0));
+    }
+
+    /** A transfer already in the journal under {@code seq}; its balance changes are applied as deltas. */
+    void journaled(long seq, LedgerEntry debit, LedgerEntry credit) {
+        enqueued.incrementAndGet();
+        unwritten.add(debit);
+        put(new Write(null, 0, debit, credit, seq));
+    }
+
+    /** {@code createdAt} of the oldest entry handed over and not yet written, or null if there is none. */
+    Instant oldestUnwritten() {
+        Instant oldest = null;
+        for (LedgerEntry debit : unwritten) {
+            if (oldest == null || debit.getCreatedAt().isBefore(oldest)) {
+                oldest = debit.getCreatedAt();
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Projects every journal record after the stored checkpoint, synchronously and in
+     * batches. Called before the persister thread and the shards start, so the shards
+     * load balances that already include the whole journal.
+     */
+    long recover(LedgerJournal journal) throws IOException {
+        long checkpoint = checkpointRepository.findById(JournalCheckpoint.ID)
+                .map(JournalCheckpoint::getLastSeq)
+                .orElse(0L);
+        if (checkpoint > journal.lastSeq()) {
+            throw new IllegalStateException("Journal ends at seq " + journal.lastSeq()
+                    + " but the database has projected up to seq " + checkpoint);
+        }
+        List<Write> batch = new ArrayList<>(batchSize);
+        long replayed = journal.replay(checkpoint, r -> {
+            Instant createdAt = Instant.ofEpochMilli(r.createdAt());
+            batch.add(new Write(null, 0,
+                    new LedgerEntry(r.transferId(), r.fromAccountId(), r.amount(), LedgerEntry.Type.DEBIT, createdAt),
+                    new LedgerEntry(r.transferId(), r.toAccountId(), r.amount(), LedgerEntry.Type.CREDIT, createdAt),
+                    r.seq()));
+            if (batch.size() == batchSize) {
+                write(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+        return replayed;
+    }
+
+    private void put(Write write) {
+        try {
+            // Blocks the producing shard when the database falls behind.
+            queue.put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing ledger write", e);
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                boolean stop = batch.remove(STOP);
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+                if (stop) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Write> batch) {
+        if (!projectionStalled) {
+            try {
+                write(batch);
+            } catch (RuntimeException e) {
+                // In-memory balances stay authoritative; surface loudly so operators can reconcile.
+                log.error("Failed to persist {} ledger writes", batch.size(), e);
+                if (batch.get(batch.size() - 1).seq() > 0) {
+                    // Moving the checkpoint past the lost batch would skip it on replay, so stop
+                    // projecting; everything after the checkpoint is replayed on the next start.
+                    projectionStalled = true;
+                    log.error("Journal projection stopped at the stored checkpoint; restart to replay");
+                }
+            }
+        }
+        // Written or given up on: a lost journaled batch is replayed on the next start
+        for (Write w : batch) {
+            if (w.debit() != null) {
+                unwritten.remove(w.debit());
+            }
+        }
+        written.addAndGet(batch.size());
+    }
+
+    private void write(List<Write> batch) {
+        Map<Long, Long> balances = new LinkedHashMap<>();
+        Map<Long, Long> deltas = new LinkedHashMap<>();
+        List<LedgerEntry> entries = new ArrayList<>();
+        long lastSeq = 0;
+        for (Write w : batch) {
+            if (w.accountId() != null) {
+                balances.put(w.accountId(), w.balance());
+                continue;
+            }
+            entries.add(w.debit());
+            entries.add(w.credit());
+            if (w.seq() > 0) {
+                deltas.merge(w.debit().getAccountId(), -w.debit().getAmount(), Math::addExact);
+                deltas.merge(w.credit().getAccountId(), w.credit().getAmount(), Math::addExact);
+                lastSeq = w.seq();
+            }
+        }
+        long checkpoint = lastSeq;
+        tx.executeWithoutResult(status -> {
+            balances.forEach(accountRepository::updateBalance);
+            deltas.forEach((accountId, delta) -> {
+                // A split or missing account, or a tripped overflow guard, would leave the entries
+                // without their balance change: fail the batch instead
+                if (accountRepository.credit(accountId, delta) != 1) {
+                    throw new IllegalStateException("Account " + accountId + " cannot take journaled delta " + delta);
+                }
+            });
+            ledgerEntryRepository.saveAll(entries);
+            if (checkpoint > 0) {
+                checkpointRepository.save(new JournalCheckpoint(checkpoint));
+            }
+            Set<Long> changed = new HashSet<>(balances.keySet());
+            changed.addAll(deltas.keySet());
+            accountCache.evictAfterCommit(changed);
+            trialBalance.recordAfterCommit(entries);
+        });
+    }
+}
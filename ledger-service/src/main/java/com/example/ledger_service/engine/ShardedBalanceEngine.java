@@ -0,0 +1,240 @@
+package com.example.ledger_service.engine;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.TransferRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.JournalCheckpointRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountCache;
+import com.example.ledger_service.service.TrialBalance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-writer balance engine. Accounts are partitioned across N shard loops
+ * ({@code accountId % N}); each loop is the only thread that ever touches the
+ * balances it owns, so transfers are applied in memory without locks or
+ * optimistic-version conflicts. Balance changes and ledger entries are handed
+ * to a {@link LedgerPersister} which writes them to the database in order.
+ *
+ * <p>Cross-shard transfers run as two deterministic steps: the source shard
+ * checks funds and debits, then hands a credit to the destination shard. If the
+ * credit cannot be applied, for whatever reason, the destination sends a refund
+ * back to the source shard, so a balance never goes negative and money is never
+ * created or lost. Ledger entries are only emitted once both legs succeeded.
+ *
+ * <p>Callers are acknowledged once the transfer is applied in memory; the
+ * database catches up asynchronously (see {@link #awaitIdle(Duration)}).
+ *
+ * <p>Given a {@link LedgerJournal}, acknowledgement also waits for the transfer's
+ * journal record, and the database tables become a projection of the journal.
+ * {@link #start()} then replays the journal after the projection's checkpoint
+ * before any shard loads a balance.
+ *
+ * <p>Entries reach {@code ledger_entries} only when the persister gets to them, so the
+ * database cannot tell a duplicate transferId in time. The engine itself claims every
+ * transferId it is given, while in flight and for the last {@code dedupWindow} applied
+ * transfers: a duplicate waits for and returns the original outcome, a transferId reused
+ * for a different transfer is refused.
+ */
+public class ShardedBalanceEngine {
+    private static final Logger log = LoggerFactory.getLogger(ShardedBalanceEngine.class);
+
+    /** The request that claimed a transferId, and its outcome. */
+    private record Claim(TransferRequest req, CompletableFuture<TransferResponse> result) {}
+
+    private final BalanceShard[] shards;
+    private final LedgerPersister persister;
+    private final LedgerJournal journal;
+    private final int dedupWindow;
+    // Claimed transferIds; the queue holds the applied ones, oldest first, to be forgotten
+    private final ConcurrentHashMap<String, Claim> claims = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> applied = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger appliedCount = new AtomicInteger();
+
+    public ShardedBalanceEngine(LedgerProperties.Sharded config,
+                                AccountRepository accountRepository,
+                                LedgerEntryRepository ledgerEntryRepository,
+                                AccountCache accountCache,
+                                TrialBalance trialBalance,
+                                PlatformTransactionManager transactionManager) {
+        this(config, accountRepository, ledgerEntryRepository, accountCache, trialBalance, transactionManager,
+                null, null);
+    }
+
+    public ShardedBalanceEngine(LedgerProperties.Sharded config,
+                                AccountRepository accountRepository,
+                                LedgerEntryRepository ledgerEntryRepository,
+                                AccountCache accountCache,
+                                TrialBalance trialBalance,
+                                PlatformTransactionManager transactionManager,
+                                LedgerJournal journal,
+                                JournalCheckpointRepository checkpointRepository) {
+        if (config.getShards() < 1) {
+            throw new IllegalArgumentException("ledger.sharded.shards must be >= 1");
+        }
+        int backlog = config.getRingSize() * config.getShards() * 2;
+        if (config.getDedupWindow() < backlog) {
+            throw new IllegalArgumentException("ledger.sharded.dedup-window must be >= " + backlog
+                    + " (ring-size * shards * 2), the persister's backlog");
+        }
+        this.journal = journal;
+        this.dedupWindow = config.getDedupWindow();
+        this.persister = new LedgerPersister(accountRepository, ledgerEntryRepository, accountCache, trialBalance,
+                checkpointRepository, new TransactionTemplate(transactionManager), config.getPersistBatchSize(),
+                backlog);
+        this.shards = new BalanceShard[config.getShards()];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new BalanceShard(i, this, accountRepository, persister, journal,
+                    config.getRingSize(), config.getRingSize() * config.getShards());
+        }
+    }
+
+    public void start() {
+        if (journal != null) {
+            recover();
+        }
+        persister.start();
+        for (BalanceShard shard : shards) {
+            shard.start();
+        }
+        log.info("Sharded balance engine started with {} shards", shards.length);
+    }
+
+    public void shutdown() {
+        for (BalanceShard shard : shards) {
+            shard.stop();
+        }
+        persister.stop();
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                log.error("Failed to close ledger journal", e);
+            }
+        }
+        log.info("Sharded balance engine stopped");
+    }
+
+    /**
+     * Routes the transfer to the shard owning the source account.
+     * Blocks when that shard already has a full ring of in-flight transfers.
+     * A transferId already claimed gets the original outcome, see the class comment.
+     */
+    public CompletableFuture<TransferResponse> submit(TransferRequest req) {
+        Claim claim = new Claim(req, new CompletableFuture<>());
+        Claim earlier = claims.putIfAbsent(req.getTransferId(), claim);
+        if (earlier != null) {
+            return replay(earlier, req);
+        }
+        shardFor(req.getFromAccountId()).submit(req).whenComplete((res, failure) -> {
+            // Settled before the caller hears back, so a retry after a failure is applied afresh
+            settle(claim, failure == null);
+            if (failure == null) {
+                claim.result().complete(res);
+            } else {
+                claim.result().completeExceptionally(failure);
+            }
+        });
+        return claim.result();
+    }
+
+    /** Submits and waits, unwrapping the business exception a shard failed the transfer with. */
+    public TransferResponse apply(TransferRequest req) {
+        try {
+            return submit(req).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * {@code createdAt} of the oldest entry the persister has not written yet, or null when it
+     * is caught up. Entries can wait in its queue for longer than a database transaction lasts.
+     */
+    public Instant oldestUnwritten() {
+        return persister.oldestUnwritten();
+    }
+
+    /**
+     * Waits until no transfer is in flight and every write has reached the database.
+     * Returns false on timeout.
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            boolean shardsIdle = true;
+            for (BalanceShard shard : shards) {
+                shardsIdle &= shard.isIdle();
+            }
+            if (shardsIdle && persister.isDrained()) {
+                return true;
+            }
+            Thread.sleep(5);
+        }
+        return false;
+    }
+
+    private void recover() {
+        long start = System.nanoTime();
+        long replayed;
+        try {
+            journal.open();
+            replayed = persister.recover(journal);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not replay ledger journal", e);
+        }
+        log.info("Replayed {} journal records up to seq {} in {} ms", replayed, journal.lastSeq(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static CompletableFuture<TransferResponse> replay(Claim earlier, TransferRequest req) {
+        TransferRequest original = earlier.req();
+        if (!original.getFromAccountId().equals(req.getFromAccountId())
+                || !original.getToAccountId().equals(req.getToAccountId())
+                || original.getAmount() != req.getAmount()) {
+            return CompletableFuture.failedFuture(new ConflictException(
+                    "transferId " + req.getTransferId() + " was already used for a different transfer"));
+        }
+        log.info("Idempotent replay for transferId={}", req.getTransferId());
+        return earlier.result().copy();
+    }
+
+    /** A failed transfer releases its transferId; an applied one keeps it until it leaves the window. */
+    private void settle(Claim claim, boolean ok) {
+        String transferId = claim.req().getTransferId();
+        if (!ok) {
+            claims.remove(transferId, claim);
+            return;
+        }
+        applied.add(transferId);
+        if (appliedCount.incrementAndGet() > dedupWindow) {
+            String oldest = applied.poll();
+            appliedCount.decrementAndGet();
+            // Long persisted by now, and answered from the database from here on
+            claims.remove(oldest);
+        }
+    }
+
+    BalanceShard shardFor(Long accountId) {
+        return shards[(int) Math.floorMod(accountId, (long) shards.length)];
+    }
+}
@@ -7,12 +7,18 @@ import java.time.Instant;
 @Entity
 @Table(name = "accounts")
 public class Account {
+    // Pooled sequence rather than IDENTITY so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_seq")
+    @SequenceGenerator(name = "accounts_seq", sequenceName = "accounts_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
-    private Integer balance;
+    private long balance;
+
+    // Opening balance; the baseline that ledger entries are replayed on top of
+    @Column(nullable = false, updatable = false)
+    private long initialBalance;
 
     @Version
     private Long version;
@@ -23,19 +29,40 @@ public class Account {
     @Column(length = 120)
     private String name;
 
+    // ISO 4217 code; every amount on the account is in this currency's minor units
+    @Column(nullable = false, updatable = false, length = 3)
+    private String currency;
+
+    // Sum of the account's authorized holds: part of the balance, but not spendable by transfers
+    @Column(nullable = false)
+    private long held;
+
+    // Number of account_slots rows holding the balance; 0 when it lives in this row
+    @Column(nullable = false)
+    private Integer slots = 0;
+
     public Account() {}
 
-    public Account(Integer balance, String name) {
+    public Account(long balance, String name, String currency) {
         this.balance = balance;
+        this.initialBalance = balance;
         this.name = name;
+        this.currency = currency;
     }
 
     public Long getId() { return id; }
-    public Integer getBalance() { return balance; }
-    public void setBalance(Integer balance) { this.balance = balance; }
+    public long getBalance() { return balance; }
+    public void setBalance(long balance) { this.balance = balance; }
+    public long getInitialBalance() { return initialBalance; }
     public Long getVersion() { return version; }
     public void setVersion(Long version) { this.version = version; }
     public Instant getCreatedAt() { return createdAt; }
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
+    public String getCurrency() { return currency; }
+    public long getHeld() { return held; }
+    public void setHeld(long held) { this.held = held; }
+    public Integer getSlots() { return slots; }
+    public void setSlots(Integer slots) { this.slots = slots; }
+    public boolean isSplit() { return slots > 0; }
 }
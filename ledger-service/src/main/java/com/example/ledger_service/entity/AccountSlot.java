@@ -0,0 +1,47 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * One share of a split account's balance. The account's balance is the sum of its slots,
+ * so concurrent transfers into the account update different rows instead of queueing on
+ * one. Slots are only ever changed through conditional {@code UPDATE}s and never loaded as
+ * entities on the transfer path.
+ */
+@Entity
+@Table(name = "account_slots", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_account_slot", columnNames = {"accountId", "slot"})
+})
+public class AccountSlot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_slots_seq")
+    @SequenceGenerator(name = "account_slots_seq", sequenceName = "account_slots_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, updatable = false)
+    private Long accountId;
+
+    @Column(nullable = false, updatable = false)
+    private Integer slot;
+
+    @Column(nullable = false)
+    private long balance;
+
+    // Bumped by every update; summed into the account's version so ETags change with the balance
+    @Column(nullable = false)
+    private Long version = 0L;
+
+    public AccountSlot() {}
+
+    public AccountSlot(Long accountId, Integer slot, long balance) {
+        this.accountId = accountId;
+        this.slot = slot;
+        this.balance = balance;
+    }
+
+    public Long getId() { return id; }
+    public Long getAccountId() { return accountId; }
+    public Integer getSlot() { return slot; }
+    public long getBalance() { return balance; }
+    public Long getVersion() { return version; }
+}
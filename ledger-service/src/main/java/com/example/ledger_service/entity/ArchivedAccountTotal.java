@@ -0,0 +1,35 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Net amount and count of an account's entries that were moved to the archive, kept so
+ * balance checks can still add up the account's full history without reading the archive.
+ */
+@Entity
+@Table(name = "archived_account_totals")
+public class ArchivedAccountTotal {
+    @Id
+    private Long accountId;
+
+    @Column(nullable = false)
+    private Long net = 0L;
+
+    @Column(nullable = false)
+    private Long entries = 0L;
+
+    public ArchivedAccountTotal() {}
+
+    public ArchivedAccountTotal(Long accountId) {
+        this.accountId = accountId;
+    }
+
+    public void add(long amount, long count) {
+        this.net += amount;
+        this.entries += count;
+    }
+
+    public Long getAccountId() { return accountId; }
+    public Long getNet() { return net; }
+    public Long getEntries() { return entries; }
+}
@@ -0,0 +1,30 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * One transferId whose entries were moved to the archive, and the segment that holds them.
+ * Written in the archive run's transaction, so a transferId is always findable in either
+ * {@code ledger_entries} or here, and a replay never applies an archived transfer twice.
+ */
+@Entity
+@Table(name = "archived_transfers")
+public class ArchivedTransfer {
+    @Id
+    @Column(length = 64)
+    private String transferId;
+
+    // The segment's lowest entry id, which also names its file
+    @Column(nullable = false, updatable = false)
+    private Long segmentId;
+
+    // Segments do not store it; kept here so a converted transfer still replays as one
+    @Column(updatable = false)
+    private Long fxRateVersion;
+
+    public ArchivedTransfer() {}
+
+    public String getTransferId() { return transferId; }
+    public Long getSegmentId() { return segmentId; }
+    public Long getFxRateVersion() { return fxRateVersion; }
+}
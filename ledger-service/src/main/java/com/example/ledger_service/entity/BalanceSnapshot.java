@@ -0,0 +1,50 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * An account's balance counting every ledger entry created at or before {@code asOf} whose
+ * id is at most {@code throughEntryId}. Written periodically for accounts that moved, so an
+ * as-of query only replays the entries since the nearest snapshot. The id bound is what the
+ * run actually saw: an entry written later with an older {@code createdAt} (a journal replay,
+ * a persister that fell behind) gets a higher id and is counted on top of the snapshot.
+ */
+@Entity
+@Table(name = "balance_snapshots", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_snapshot_account_asof", columnNames = {"accountId", "asOf"})
+})
+public class BalanceSnapshot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_snapshots_seq")
+    @SequenceGenerator(name = "balance_snapshots_seq", sequenceName = "balance_snapshots_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, updatable = false)
+    private Long accountId;
+
+    @Column(nullable = false, updatable = false)
+    private Instant asOf;
+
+    @Column(nullable = false, updatable = false)
+    private Long throughEntryId;
+
+    @Column(nullable = false, updatable = false)
+    private Long balance;
+
+    public BalanceSnapshot() {}
+
+    public BalanceSnapshot(Long accountId, Instant asOf, Long throughEntryId, Long balance) {
+        this.accountId = accountId;
+        this.asOf = asOf;
+        this.throughEntryId = throughEntryId;
+        this.balance = balance;
+    }
+
+    public Long getId() { return id; }
+    public Long getAccountId() { return accountId; }
+    public Instant getAsOf() { return asOf; }
+    public Long getThroughEntryId() { return throughEntryId; }
+    public Long getBalance() { return balance; }
+}
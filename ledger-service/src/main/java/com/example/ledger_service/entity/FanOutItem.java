@@ -0,0 +1,56 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * One destination of a {@link FanOutRun}. Written once when the run is accepted; only a
+ * failed item is updated again, with the reason its amount went back to the source.
+ */
+@Entity
+@Table(name = "ledger_fan_out_items", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_fan_out_item", columnNames = {"runId", "idx"})
+})
+public class FanOutItem {
+    // Pooled sequence rather than IDENTITY so Hibernate can batch inserts
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_fan_out_items_seq")
+    @SequenceGenerator(name = "ledger_fan_out_items_seq", sequenceName = "ledger_fan_out_items_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 64, updatable = false)
+    private String runId;
+
+    // Position in the request; the item's transfer is "<runId>-<idx>"
+    @Column(nullable = false, updatable = false)
+    private Integer idx;
+
+    @Column(nullable = false, updatable = false)
+    private Long accountId;
+
+    @Column(nullable = false, updatable = false)
+    private long amount;
+
+    // Set when the amount was refunded to the source instead of credited
+    @Column(length = 255)
+    private String message;
+
+    public FanOutItem() {}
+
+    public FanOutItem(String runId, Integer idx, Long accountId, long amount) {
+        this.runId = runId;
+        this.idx = idx;
+        this.accountId = accountId;
+        this.amount = amount;
+    }
+
+    public Long getId() { return id; }
+    public String getRunId() { return runId; }
+    public Integer getIdx() { return idx; }
+    public Long getAccountId() { return accountId; }
+    public long getAmount() { return amount; }
+    public String getMessage() { return message; }
+
+    public void fail(String message) {
+        this.message = message;
+    }
+}
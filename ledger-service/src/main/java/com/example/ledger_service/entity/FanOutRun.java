@@ -0,0 +1,87 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * One source account paying many destinations. The source is debited once, into a clearing
+ * account of the run, when the run is accepted; destinations are then credited from the
+ * clearing account in chunks, each committed together with the advance of {@code nextItem},
+ * so a run interrupted midway resumes at the first item not yet credited.
+ */
+@Entity
+@Table(name = "ledger_fan_out_runs", indexes = {
+        @Index(name = "idx_fan_out_run_status", columnList = "status")
+})
+public class FanOutRun {
+    public enum Status { RUNNING, COMPLETED }
+
+    @Id
+    @Column(length = 64)
+    private String runId;
+
+    @Column(nullable = false, updatable = false)
+    private Long sourceAccountId;
+
+    // Holds the not yet credited part of the total; back at 0 once the run completes
+    @Column(nullable = false, updatable = false)
+    private Long clearingAccountId;
+
+    @Column(nullable = false, updatable = false)
+    private long total;
+
+    @Column(nullable = false, updatable = false)
+    private Integer items;
+
+    // Items below this index are credited (or refunded to the source)
+    @Column(nullable = false)
+    private Integer nextItem = 0;
+
+    @Column(nullable = false)
+    private Integer failed = 0;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.RUNNING;
+
+    // Two nodes resuming the same run cannot both commit the same chunk
+    @Version
+    private Long version;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+
+    private Instant completedAt;
+
+    public FanOutRun() {}
+
+    public FanOutRun(String runId, Long sourceAccountId, Long clearingAccountId, long total, Integer items) {
+        this.runId = runId;
+        this.sourceAccountId = sourceAccountId;
+        this.clearingAccountId = clearingAccountId;
+        this.total = total;
+        this.items = items;
+    }
+
+    public String getRunId() { return runId; }
+    public Long getSourceAccountId() { return sourceAccountId; }
+    public Long getClearingAccountId() { return clearingAccountId; }
+    public long getTotal() { return total; }
+    public Integer getItems() { return items; }
+    public Integer getNextItem() { return nextItem; }
+    public Integer getFailed() { return failed; }
+    public Status getStatus() { return status; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getCompletedAt() { return completedAt; }
+
+    /** Records a committed chunk of {@code processed} items, {@code failed} of them refunded. */
+    public void advance(int processed, int failed) {
+        this.nextItem += processed;
+        this.failed += failed;
+        if (nextItem >= items) {
+            this.status = Status.COMPLETED;
+            this.completedAt = Instant.now();
+        }
+    }
+}
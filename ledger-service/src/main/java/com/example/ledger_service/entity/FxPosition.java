@@ -0,0 +1,30 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * The account holding the ledger's position in one currency. A cross-currency transfer pays
+ * into the position of the source's currency and out of the position of the destination's,
+ * so each currency's entries balance on their own; a negative position is what the ledger
+ * owes in that currency.
+ */
+@Entity
+@Table(name = "fx_positions")
+public class FxPosition {
+    @Id
+    @Column(length = 3)
+    private String currency;
+
+    @Column(nullable = false, updatable = false)
+    private Long accountId;
+
+    public FxPosition() {}
+
+    public FxPosition(String currency, Long accountId) {
+        this.currency = currency;
+        this.accountId = accountId;
+    }
+
+    public String getCurrency() { return currency; }
+    public Long getAccountId() { return accountId; }
+}
@@ -0,0 +1,51 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One rate of a published FX rate table version. A version's rows are written together, once,
+ * and never changed, so the rates behind any entry's {@link LedgerEntry#getFxRateVersion()}
+ * stay on record.
+ */
+@Entity
+@Table(name = "fx_rates", uniqueConstraints = {
+        // Two nodes publishing at once cannot both claim a version
+        @UniqueConstraint(name = "uk_fx_rate_version_currency", columnNames = {"version", "currency"})
+})
+public class FxRate {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "fx_rates_seq")
+    @SequenceGenerator(name = "fx_rates_seq", sequenceName = "fx_rates_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, updatable = false)
+    private Long version;
+
+    @Column(nullable = false, updatable = false, length = 3)
+    private String currency;
+
+    // Units of the currency per unit of the base currency
+    @Column(nullable = false, updatable = false, precision = 30, scale = 12)
+    private BigDecimal rate;
+
+    @Column(nullable = false, updatable = false)
+    private Instant publishedAt;
+
+    public FxRate() {}
+
+    public FxRate(Long version, String currency, BigDecimal rate, Instant publishedAt) {
+        this.version = version;
+        this.currency = currency;
+        this.rate = rate;
+        this.publishedAt = publishedAt;
+    }
+
+    public Long getId() { return id; }
+    public Long getVersion() { return version; }
+    public String getCurrency() { return currency; }
+    public BigDecimal getRate() { return rate; }
+    public Instant getPublishedAt() { return publishedAt; }
+}
@@ -0,0 +1,96 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * Funds reserved on an account. While a hold is {@code AUTHORIZED} its amount is counted in
+ * the account's {@link Account#getHeld() held} total, which transfers cannot spend; no money
+ * moves until it is captured. Voiding or expiry releases the amount again.
+ */
+@Entity
+@Table(name = "ledger_holds", indexes = {
+        // The expiry sweep seeks open holds by deadline
+        @Index(name = "idx_hold_status_expires", columnList = "status, expiresAt")
+})
+public class Hold implements Persistable<String> {
+    public enum Status { AUTHORIZED, CAPTURED, VOIDED, EXPIRED }
+
+    @Id
+    @Column(length = 64)
+    private String holdId;
+
+    @Column(nullable = false, updatable = false)
+    private Long accountId;
+
+    @Column(nullable = false, updatable = false)
+    private long amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.AUTHORIZED;
+
+    @Column(nullable = false, updatable = false)
+    private Instant expiresAt;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+
+    private Instant completedAt;
+
+    // Set on capture; the captured amount may be less than the hold, the rest is released
+    private Long capturedTo;
+    private Long capturedAmount;
+
+    // Saved with a plain INSERT rather than a merge, so authorizing reads nothing and a
+    // duplicate holdId fails on the primary key instead of overwriting the existing hold
+    @Transient
+    private boolean isNew = true;
+
+    public Hold() {}
+
+    public Hold(String holdId, Long accountId, long amount, Instant expiresAt) {
+        this.holdId = holdId;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.expiresAt = expiresAt;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public String getId() { return holdId; }
+    @Override
+    public boolean isNew() { return isNew; }
+
+    public String getHoldId() { return holdId; }
+    public Long getAccountId() { return accountId; }
+    public long getAmount() { return amount; }
+    public Status getStatus() { return status; }
+    public Instant getExpiresAt() { return expiresAt; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getCompletedAt() { return completedAt; }
+    public Long getCapturedTo() { return capturedTo; }
+    public Long getCapturedAmount() { return capturedAmount; }
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+
+    public void capture(Long to, long amount, Instant now) {
+        this.capturedTo = to;
+        this.capturedAmount = amount;
+        close(Status.CAPTURED, now);
+    }
+
+    public void close(Status status, Instant now) {
+        this.status = status;
+        this.completedAt = now;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Sequence number of the last journal record projected into {@code accounts} and
+ * {@code ledger_entries}. Updated in the same transaction as the projection, so on
+ * restart exactly the records after it are replayed. A single row with id {@link #ID}.
+ */
+@Entity
+@Table(name = "journal_checkpoint")
+public class JournalCheckpoint {
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private Long lastSeq;
+
+    public JournalCheckpoint() {}
+
+    public JournalCheckpoint(Long lastSeq) {
+        this.id = ID;
+        this.lastSeq = lastSeq;
+    }
+
+    public Integer getId() { return id; }
+    public Long getLastSeq() { return lastSeq; }
+}
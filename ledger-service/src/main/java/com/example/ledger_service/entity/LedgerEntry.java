@@ -6,13 +6,24 @@ import java.time.Instant;
 
 @Entity
 @Table(name = "ledger_entries", indexes = {
-        @Index(name = "idx_ledger_transfer", columnList = "transferId")
+        @Index(name = "idx_ledger_transfer", columnList = "transferId"),
+        // Account statements seek on (accountId, id) so every page costs the same
+        @Index(name = "idx_ledger_account_id", columnList = "accountId, id"),
+        // As-of balance replay after a snapshot, and the snapshot job's delta scan
+        @Index(name = "idx_ledger_account_created", columnList = "accountId, createdAt"),
+        @Index(name = "idx_ledger_created", columnList = "createdAt")
+}, uniqueConstraints = {
+        // One debit and one credit per transfer, or one entry per leg of a posting:
+        // a replayed transferId can never post twice
+        @UniqueConstraint(name = "uk_ledger_transfer_type_leg", columnNames = {"transferId", "type", "leg"})
 })
 public class LedgerEntry {
     public enum Type { DEBIT, CREDIT }
 
+    // Pooled sequence rather than IDENTITY so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entries_seq")
+    @SequenceGenerator(name = "ledger_entries_seq", sequenceName = "ledger_entries_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 64)
@@ -21,8 +32,9 @@ public class LedgerEntry {
     @Column(nullable = false)
     private Long accountId;
 
-    @Column(nullable = false, precision = 19, scale = 4)
-    private Integer amount;
+    // Minor units (cents)
+    @Column(nullable = false)
+    private long amount;
 
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 16)
@@ -31,19 +43,45 @@ public class LedgerEntry {
     @Column(nullable = false, updatable = false)
     private Instant createdAt = Instant.now();
 
+    // Position within a multi-leg posting; 0 for both entries of a plain transfer
+    @Column(nullable = false, updatable = false)
+    private Integer leg = 0;
+
+    // Version of the FX rate table a cross-currency transfer was converted at; null otherwise
+    @Column(updatable = false)
+    private Long fxRateVersion;
+
     public LedgerEntry() {}
 
-    public LedgerEntry(String transferId, Long accountId, Integer amount, Type type) {
+    public LedgerEntry(String transferId, Long accountId, long amount, Type type) {
         this.transferId = transferId;
         this.accountId = accountId;
         this.amount = amount;
         this.type = type;
     }
 
+    public LedgerEntry(String transferId, Long accountId, long amount, Type type, int leg) {
+        this(transferId, accountId, amount, type);
+        this.leg = leg;
+    }
+
+    public LedgerEntry(String transferId, Long accountId, long amount, Type type, int leg, long fxRateVersion) {
+        this(transferId, accountId, amount, type, leg);
+        this.fxRateVersion = fxRateVersion;
+    }
+
+    /** For entries rebuilt from the journal, which keep the time they were first applied. */
+    public LedgerEntry(String transferId, Long accountId, long amount, Type type, Instant createdAt) {
+        this(transferId, accountId, amount, type);
+        this.createdAt = createdAt;
+    }
+
     public Long getId() { return id; }
     public String getTransferId() { return transferId; }
     public Long getAccountId() { return accountId; }
-    public Integer getAmount() { return amount; }
+    public long getAmount() { return amount; }
     public Type getType() { return type; }
     public Instant getCreatedAt() { return createdAt; }
+    public Integer getLeg() { return leg; }
+    public Long getFxRateVersion() { return fxRateVersion; }
 }
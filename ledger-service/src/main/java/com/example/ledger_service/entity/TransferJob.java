@@ -0,0 +1,83 @@
+package com.example.ledger_service.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * A transfer accepted for asynchronous processing. Written before the caller is
+ * acknowledged so that accepted work survives a restart.
+ */
+@Entity
+@Table(name = "ledger_transfer_jobs", indexes = {
+        @Index(name = "idx_transfer_job_status", columnList = "status")
+})
+public class TransferJob implements Persistable<String> {
+    public enum Status { ACCEPTED, SUCCESS, FAILED }
+
+    @Id
+    @Column(length = 64)
+    private String transferId;
+
+    @Column(nullable = false, updatable = false)
+    private Long fromAccountId;
+
+    @Column(nullable = false, updatable = false)
+    private Long toAccountId;
+
+    @Column(nullable = false, updatable = false)
+    private long amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.ACCEPTED;
+
+    @Column(length = 255)
+    private String message;
+
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+
+    private Instant completedAt;
+
+    // Saved with a plain INSERT rather than a merge, so a concurrent accept of the same
+    // transferId fails on the primary key instead of overwriting the job
+    @Transient
+    private boolean isNew = true;
+
+    public TransferJob() {}
+
+    public TransferJob(String transferId, Long fromAccountId, Long toAccountId, long amount) {
+        this.transferId = transferId;
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public String getId() { return transferId; }
+    @Override
+    public boolean isNew() { return isNew; }
+
+    public String getTransferId() { return transferId; }
+    public Long getFromAccountId() { return fromAccountId; }
+    public Long getToAccountId() { return toAccountId; }
+    public long getAmount() { return amount; }
+    public Status getStatus() { return status; }
+    public String getMessage() { return message; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getCompletedAt() { return completedAt; }
+
+    public void complete(Status status, String message) {
+        this.status = status;
+        this.message = message;
+        this.completedAt = Instant.now();
+    }
+}
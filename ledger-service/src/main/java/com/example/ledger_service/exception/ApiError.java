@@ -3,7 +3,7 @@ package com.example.ledger_service.exception;
 import java.time.Instant;
 
 public class ApiError {
-    public enum Code { NOT_FOUND, VALIDATION, CONFLICT, INSUFFICIENT_FUNDS, SERVER_ERROR }
+    public enum Code { NOT_FOUND, VALIDATION, CONFLICT, INSUFFICIENT_FUNDS, OVERLOADED, SERVER_ERROR }
     private final Instant timestamp = Instant.now();
     private final Code code;
     private final String message;
@@ -26,6 +26,12 @@ public class GlobalExceptionHandler {
                 .body(new ApiError(ApiError.Code.INSUFFICIENT_FUNDS, ex.getMessage()));
     }
 
+    @ExceptionHandler(OverloadedException.class)
+    public ResponseEntity<ApiError> overloaded(OverloadedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new ApiError(ApiError.Code.OVERLOADED, ex.getMessage()));
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiError> validation(MethodArgumentNotValidException ex) {
         String msg = ex.getBindingResult().getFieldErrors().stream()
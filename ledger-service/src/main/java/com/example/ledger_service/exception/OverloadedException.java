@@ -0,0 +1,5 @@
+package com.example.ledger_service.exception;
+
+public class OverloadedException extends RuntimeException {
+    public OverloadedException(String msg) { super(msg); }
+}
@@ -1,8 +1,90 @@
 package com.example.ledger_service.repository;
 
 import com.example.ledger_service.entity.Account;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface AccountRepository extends CrudRepository<Account, Long> {
 
+    /**
+     * Loads and row-locks the given accounts ({@code SELECT ... FOR UPDATE}) in one query.
+     * Rows are locked in ascending id order so two transfers over the same pair of
+     * accounts always queue up instead of deadlocking.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "5000"))
+    @Query("select a from Account a where a.id in :ids order by a.id")
+    List<Account> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Version-only projection for conditional GETs; reads the version column instead of the
+     * entity. A split account's slot versions are added in, so it changes with every transfer.
+     */
+    @Query("select a.version + coalesce((select sum(s.version) from AccountSlot s where s.accountId = a.id), 0) " +
+            "from Account a where a.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("select a.slots from Account a where a.id = :id")
+    Optional<Integer> findSlotsById(@Param("id") Long id);
+
+    @Query("select a.currency from Account a where a.id = :id")
+    Optional<String> findCurrencyById(@Param("id") Long id);
+
+    /** Those of {@code ids} that exist and are in the same currency as account {@code like}. */
+    @Query("select a.id from Account a where a.id in :ids " +
+            "and a.currency = (select l.currency from Account l where l.id = :like)")
+    List<Long> findExistingIdsInCurrencyOf(@Param("ids") Collection<Long> ids, @Param("like") Long like);
+
+    @Query("select a.id, a.slots from Account a where a.slots > 0")
+    List<Object[]> findSlotCounts();
+
+    @Modifying
+    @Query("update Account a set a.balance = :balance, a.version = a.version + 1 where a.id = :id")
+    int updateBalance(@Param("id") Long id, @Param("balance") long balance);
+
+    /**
+     * Debits only if the available balance (balance minus holds) covers the amount; returns 0
+     * when it does not (or the account is missing or split, its balance then being in
+     * {@link AccountSlotRepository its slots}).
+     */
+    @Modifying
+    @Query("update Account a set a.balance = a.balance - :amount, a.version = a.version + 1 " +
+            "where a.id = :id and a.balance - a.held >= :amount and a.slots = 0")
+    int debitIfSufficient(@Param("id") Long id, @Param("amount") long amount);
+
+    /** Reserves the amount if the available balance covers it; returns 0 when not, or when the account is missing or split. */
+    @Modifying
+    @Query("update Account a set a.held = a.held + :amount, a.version = a.version + 1 " +
+            "where a.id = :id and a.balance - a.held >= :amount and a.slots = 0")
+    int hold(@Param("id") Long id, @Param("amount") long amount);
+
+    @Modifying
+    @Query("update Account a set a.held = a.held - :amount, a.version = a.version + 1 where a.id = :id")
+    int release(@Param("id") Long id, @Param("amount") long amount);
+
+    /**
+     * Captures a hold: releases all of {@code held} and debits {@code amount} (at most {@code held})
+     * in one update. Never short of funds, since the hold already reserved them.
+     */
+    @Modifying
+    @Query("update Account a set a.held = a.held - :held, a.balance = a.balance - :amount, a.version = a.version + 1 " +
+            "where a.id = :id and a.held >= :held")
+    int captureHeld(@Param("id") Long id, @Param("held") long held, @Param("amount") long amount);
+
+    /** Returns 0 when the account is missing or split, or when its balance would overflow. */
+    @Modifying
+    @Query("update Account a set a.balance = a.balance + :amount, a.version = a.version + 1 " +
+            "where a.id = :id and a.slots = 0 " +
+            "and :amount <= 9223372036854775807L - case when a.balance > 0 then a.balance else 0 end")
+    int credit(@Param("id") Long id, @Param("amount") long amount);
 }
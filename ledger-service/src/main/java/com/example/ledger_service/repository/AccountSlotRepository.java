@@ -0,0 +1,49 @@
+package com.example.ledger_service.repository;
+
+import com.example.ledger_service.entity.AccountSlot;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AccountSlotRepository extends CrudRepository<AccountSlot, Long> {
+
+    /** Sum of a split account's slots; {@code version} changes whenever any slot does. */
+    interface Totals {
+        Long getAccountId();
+        Long getBalance();
+        Long getVersion();
+    }
+
+    @Query("select s.accountId as accountId, sum(s.balance) as balance, sum(s.version) as version " +
+            "from AccountSlot s where s.accountId in :ids group by s.accountId")
+    List<Totals> findTotals(@Param("ids") Collection<Long> ids);
+
+    /** Returns 0 when the slot's balance would overflow. */
+    @Modifying
+    @Query("update AccountSlot s set s.balance = s.balance + :amount, s.version = s.version + 1 " +
+            "where s.accountId = :accountId and s.slot = :slot and :amount <= 9223372036854775807L - s.balance")
+    int credit(@Param("accountId") Long accountId, @Param("slot") int slot, @Param("amount") long amount);
+
+    /** Debits the slot only if it covers the amount on its own; returns 0 when it does not. */
+    @Modifying
+    @Query("update AccountSlot s set s.balance = s.balance - :amount, s.version = s.version + 1 " +
+            "where s.accountId = :accountId and s.slot = :slot and s.balance >= :amount")
+    int debitIfSufficient(@Param("accountId") Long accountId, @Param("slot") int slot, @Param("amount") long amount);
+
+    /**
+     * Row-locks all of the account's slots in slot order and returns their balances. Scalar
+     * rather than entities, so nothing stale is left in the persistence context afterwards.
+     */
+    @Query(value = "select balance from account_slots where account_id = :accountId order by slot for update",
+            nativeQuery = true)
+    List<Long> lockBalances(@Param("accountId") Long accountId);
+
+    @Modifying
+    @Query("update AccountSlot s set s.balance = :balance, s.version = s.version + 1 " +
+            "where s.accountId = :accountId and s.slot = :slot")
+    int updateBalance(@Param("accountId") Long accountId, @Param("slot") int slot, @Param("balance") long balance);
+}
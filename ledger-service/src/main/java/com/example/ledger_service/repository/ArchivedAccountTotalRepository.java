@@ -0,0 +1,7 @@
+package com.example.ledger_service.repository;
+
+import com.example.ledger_service.entity.ArchivedAccountTotal;
+import org.springframework.data.repository.CrudRepository;
+
+public interface ArchivedAccountTotalRepository extends CrudRepository<ArchivedAccountTotal, Long> {
+}
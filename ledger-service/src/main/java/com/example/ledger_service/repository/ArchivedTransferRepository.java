@@ -0,0 +1,14 @@
+package com.example.ledger_service.repository;
+
+import com.example.ledger_service.entity.ArchivedTransfer;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.stream.Stream;
+
+public interface ArchivedTransferRepository extends CrudRepository<ArchivedTransfer, String> {
+
+    /** Must be consumed inside a transaction and closed. */
+    @Query("select t.transferId from ArchivedTransfer t")
+    Stream<String> streamTransferIds();
+}
@@ -0,0 +1,24 @@
+package com.example.ledger_service.repository;
+
+import com.example.ledger_service.entity.BalanceSnapshot;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BalanceSnapshotRepository extends CrudRepository<BalanceSnapshot, Long> {
+
+    /** Nearest snapshot at or before {@code asOf}; served by {@code uk_snapshot_account_asof}. */
+    Optional<BalanceSnapshot> findFirstByAccountIdAndAsOfLessThanEqualOrderByAsOfDesc(Long accountId, Instant asOf);
+
+    /** A snapshot of the last run, carrying its watermark; empty before the first run. */
+    Optional<BalanceSnapshot> findFirstByOrderByAsOfDesc();
+
+    @Query("select s from BalanceSnapshot s where s.accountId in :ids and s.asOf = " +
+            "(select max(s2.asOf) from BalanceSnapshot s2 where s2.accountId = s.accountId)")
+    List<BalanceSnapshot> findLatestFor(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,17 @@
+package com.example.ledger_service.repository;
+
+import com.example.ledger_service.entity.FanOutItem;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface FanOutItemRepository extends CrudRepository<FanOutItem, Long> {
+
+    /** Items {@code [from, to)} of a run, in order; a range seek on {@code uk_fan_out_item}. */
+    @Query("select i from FanOutItem i where i.runId = :runId and i.idx >= :from and i.idx < :to order by i.idx")
+    List<FanOutItem> findChunk(@Param("runId") String runId, @Param("from") int from, @Param("to") int to);
+
+    List<FanOutItem> findByRunIdOrderByIdx(String runId);
+}
@@ -0,0 +1,11 @@
+package com.example.ledger_service.repository;
+
+import com.example.ledger_service.entity.FanOutRun;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.List;
+
+public interface FanOutRunRepository extends CrudRepository<FanOutRun, String> {
+
+    List<FanOutRun> findByStatus(FanOutRun.Status status);
+}
@@ -0,0 +1,7 @@
+package com.example.ledger_service.repository;
+
+import com.example.ledger_service.entity.FxPosition;
+import org.springframework.data.repository.CrudRepository;
+
+public interface FxPositionRepository extends CrudRepository<FxPosition, String> {
+}
@@ -0,0 +1,16 @@
+package com.example.ledger_service.repository;
+
+import com.example.ledger_service.entity.FxRate;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface FxRateRepository extends CrudRepository<FxRate, Long> {
+
+    @Query("select max(r.version) from FxRate r")
+    Optional<Long> findLatestVersion();
+
+    List<FxRate> findByVersion(Long version);
+}
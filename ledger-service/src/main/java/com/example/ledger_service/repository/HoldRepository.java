@@ -0,0 +1,31 @@
+package com.example.ledger_service.repository;
+
+import com.example.ledger_service.entity.Hold;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface HoldRepository extends CrudRepository<Hold, String> {
+
+    /**
+     * Loads and row-locks holds, in holdId order, so capture, void and the expiry sweep
+     * settle each hold exactly once.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "5000"))
+    @Query("select h from Hold h where h.holdId in :ids order by h.holdId")
+    List<Hold> findAllByIdForUpdate(@Param("ids") Collection<String> ids);
+
+    /** Holds in {@code status} whose deadline has passed, oldest first; a seek on {@code idx_hold_status_expires}. */
+    @Query("select h.holdId from Hold h where h.status = :status and h.expiresAt <= :now order by h.expiresAt")
+    List<String> findExpiredIds(@Param("status") Hold.Status status, @Param("now") Instant now, Limit limit);
+}
@@ -1,11 +1,78 @@
 package com.example.ledger_service.repository;
 
 import com.example.ledger_service.entity.LedgerEntry;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface LedgerEntryRepository extends CrudRepository<LedgerEntry, Long> {
 
     List<LedgerEntry> findByTransferId(String transferId);
+
+    boolean existsByTransferId(String transferId);
+
+    /** A prefix match, so still an index range scan on {@code idx_ledger_transfer}. */
+    boolean existsByTransferIdStartingWith(String prefix);
+
+    /**
+     * One statement page, newest first: entries of the account with {@code id < before},
+     * created in {@code [from, to)}. Keyset rather than offset, so it is an index seek on
+     * {@code idx_ledger_account_id} however deep the page.
+     */
+    @Query("select e from LedgerEntry e where e.accountId = :accountId and e.id < :before " +
+            "and e.createdAt >= :from and e.createdAt < :to order by e.id desc")
+    List<LedgerEntry> findStatementPage(@Param("accountId") Long accountId,
+                                        @Param("before") Long before,
+                                        @Param("from") Instant from,
+                                        @Param("to") Instant to,
+                                        Limit limit);
+
+    /**
+     * Net movement (credits minus debits) of one account over entries created at or before
+     * {@code upTo} that a snapshot watermarked {@code (after, afterId)} does not count.
+     */
+    @Query("select coalesce(sum(case when e.type = com.example.ledger_service.entity.LedgerEntry.Type.CREDIT " +
+            "then e.amount else -e.amount end), 0) from LedgerEntry e " +
+            "where e.accountId = :accountId and e.createdAt <= :upTo and (e.createdAt > :after or e.id > :afterId)")
+    long netSince(@Param("accountId") Long accountId, @Param("after") Instant after, @Param("afterId") long afterId,
+                  @Param("upTo") Instant upTo);
+
+    /**
+     * Net movement per account over entries within the watermark {@code (upTo, upToId)} but not
+     * within {@code (after, afterId)}, for accounts that moved at all.
+     */
+    @Query("select e.accountId as accountId, sum(case when e.type = com.example.ledger_service.entity.LedgerEntry.Type.CREDIT " +
+            "then e.amount else -e.amount end) as net from LedgerEntry e " +
+            "where e.createdAt <= :upTo and e.id <= :upToId and (e.createdAt > :after or e.id > :afterId) " +
+            "group by e.accountId")
+    List<AccountNet> netByAccountSince(@Param("after") Instant after, @Param("afterId") long afterId,
+                                       @Param("upTo") Instant upTo, @Param("upToId") long upToId);
+
+    /** Highest entry id written so far, 0 when there are none. */
+    @Query("select coalesce(max(e.id), 0) from LedgerEntry e")
+    long findMaxId();
+
+    /** Total amount per entry type over entries created at or after {@code since}. */
+    @Query("select e.type as type, sum(e.amount) as total from LedgerEntry e " +
+            "where e.createdAt >= :since group by e.type")
+    List<TypeTotal> totalsByTypeSince(@Param("since") Instant since);
+
+    interface TypeTotal {
+        LedgerEntry.Type getType();
+        Long getTotal();
+    }
+
+    interface AccountNet {
+        Long getAccountId();
+        Long getNet();
+    }
+
+    /** Must be consumed inside a transaction and closed. */
+    @Query("select distinct e.transferId from LedgerEntry e")
+    Stream<String> streamTransferIds();
 }
@@ -0,0 +1,11 @@
+package com.example.ledger_service.repository;
+
+import com.example.ledger_service.entity.TransferJob;
+import org.springframework.data.repository.CrudRepository;
+
+import java.util.List;
+
+public interface TransferJobRepository extends CrudRepository<TransferJob, String> {
+
+    List<TransferJob> findByStatus(TransferJob.Status status);
+}
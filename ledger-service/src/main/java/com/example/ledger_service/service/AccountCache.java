@@ -0,0 +1,100 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.AccountResponse;
+import com.example.ledger_service.entity.Account;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * In-process cache of {@link AccountResponse} snapshots keyed by account id. Writers refresh
+ * or evict entries only after their transaction commits, and a snapshot never replaces one
+ * with a higher {@link Account#getVersion() version}, so a reader on this node never sees a
+ * balance older than the last committed transfer. Loads run inside the cache's per-key
+ * compute, so an eviction racing a load waits for it and then removes what it read.
+ */
+@Component
+public class AccountCache {
+
+    private final Cache<Long, AccountResponse> cache;
+
+    public AccountCache(LedgerProperties properties, MeterRegistry meterRegistry) {
+        LedgerProperties.AccountCache config = properties.getAccountCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .expireAfterWrite(config.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size, tagged cache=ledger.accounts
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "ledger.accounts");
+    }
+
+    public AccountResponse get(Long id, Function<Long, AccountResponse> loader) {
+        return cache.get(id, loader);
+    }
+
+    /** Returns the cached snapshot without loading, or null. */
+    public AccountResponse getIfPresent(Long id) {
+        return cache.getIfPresent(id);
+    }
+
+    /** Stores {@code snapshot} unless a newer version of the account is already cached. */
+    public void put(AccountResponse snapshot) {
+        cache.asMap().compute(snapshot.getId(), (id, cached) ->
+                cached == null || cached.getVersion() < snapshot.getVersion() ? snapshot : cached);
+    }
+
+    public void evict(Long id) {
+        cache.invalidate(id);
+    }
+
+    /**
+     * Refreshes the cache from {@code accounts} once the current transaction commits; their
+     * versions have been bumped by then. Split accounts are evicted instead, since their
+     * balance is in slots the entity does not carry. Does nothing if the transaction rolls back.
+     */
+    public void putAfterCommit(Collection<Account> accounts) {
+        List<Account> changed = List.copyOf(accounts);
+        afterCommit(() -> changed.forEach(a -> {
+            if (a.isSplit()) {
+                evict(a.getId());
+            } else {
+                put(snapshot(a));
+            }
+        }));
+    }
+
+    /** Evicts {@code ids} once the current transaction commits, for writes that bypass the entities. */
+    public void evictAfterCommit(Collection<Long> ids) {
+        List<Long> changed = new ArrayList<>(ids);
+        afterCommit(() -> cache.invalidateAll(changed));
+    }
+
+    static AccountResponse snapshot(Account acc) {
+        return new AccountResponse(acc.getId(), acc.getBalance(), acc.getHeld(), acc.getVersion(), acc.getCreatedAt(),
+                acc.getName(), acc.getCurrency());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
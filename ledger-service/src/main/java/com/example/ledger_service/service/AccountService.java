@@ -1,41 +1,151 @@
 package com.example.ledger_service.service;
 
 import com.example.ledger_service.dto.AccountResponse;
+import com.example.ledger_service.dto.AccountsResponse;
 import com.example.ledger_service.dto.CreateAccount;
 import com.example.ledger_service.entity.Account;
 import com.example.ledger_service.exception.NotFoundException;
 import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.AccountSlotRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
 @Service
 public class AccountService {
+    /** Ids resolved per query by the multi-get; bounds both the IN list and memory when streaming. */
+    public static final int MULTI_GET_CHUNK = 1000;
 
     private final AccountRepository accountRepository;
+    private final AccountSlotRepository slotRepository;
+    private final AccountCache accountCache;
+    private final SplitBalances splitBalances;
+    private final FxRates fxRates;
     private static final Logger log = LoggerFactory.getLogger(AccountService.class);
 
-    public AccountService(AccountRepository accountRepository) {
+    public AccountService(AccountRepository accountRepository, AccountSlotRepository slotRepository,
+                          AccountCache accountCache, SplitBalances splitBalances, FxRates fxRates) {
         this.accountRepository = accountRepository;
+        this.slotRepository = slotRepository;
+        this.accountCache = accountCache;
+        this.splitBalances = splitBalances;
+        this.fxRates = fxRates;
     }
 
     @Transactional
     public AccountResponse create(CreateAccount req) {
-        int initial = req.getInitialBalance() == null ? 0 : req.getInitialBalance();
+        long initial = req.getInitialBalance() == null ? 0 : req.getInitialBalance();
         if (initial < 0) {
             log.error("Attempt to create account with negative initial balance: {}", initial);
             throw new IllegalArgumentException("Initial balance must be >= 0");
         }
-        Account acc = new Account(initial, req.getName());
+        Account acc = new Account(initial, req.getName(), fxRates.accountCurrency(req.getCurrency()));
         acc = accountRepository.save(acc);
-        return new AccountResponse(acc.getId(), acc.getBalance(), acc.getVersion(), acc.getCreatedAt(), acc.getName());
+        return AccountCache.snapshot(acc);
     }
 
-    @Transactional(readOnly = true)
+    /** Served from {@link AccountCache}; a miss loads the account outside any caller transaction. */
     public AccountResponse get(Long id) {
-        Account acc = accountRepository.findById(id)
+        return accountCache.get(id, key -> snapshots(List.of(accountRepository.findById(key)
+                .orElseThrow(() -> new NotFoundException("Account " + key + " not found")))).get(0));
+    }
+
+    /**
+     * Spreads the account's balance over {@code slots} sub-rows so concurrent transfers into it
+     * stop contending on one row. It reads back as one account with the summed balance.
+     */
+    @Transactional
+    public AccountResponse split(Long id, int slots) {
+        Account acc = accountRepository.findAllByIdForUpdate(List.of(id)).stream().findFirst()
                 .orElseThrow(() -> new NotFoundException("Account " + id + " not found"));
-        return new AccountResponse(acc.getId(), acc.getBalance(), acc.getVersion(), acc.getCreatedAt(), acc.getName());
+        splitBalances.split(acc, slots);
+        accountCache.evictAfterCommit(List.of(id));
+        log.info("Account {} split into {} balance slots", id, slots);
+        return snapshots(List.of(acc)).get(0);
+    }
+
+    /** Current version of the account, from the cache or a version-only query. */
+    public Long version(Long id) {
+        AccountResponse cached = accountCache.getIfPresent(id);
+        if (cached != null) {
+            return cached.getVersion();
+        }
+        return accountRepository.findVersionById(id)
+                .orElseThrow(() -> new NotFoundException("Account " + id + " not found"));
+    }
+
+    public AccountsResponse getAll(Collection<Long> ids) {
+        List<AccountResponse> found = new ArrayList<>(ids.size());
+        List<Long> missing = new ArrayList<>();
+        forEachAccount(ids, found::add, missing::add);
+        return new AccountsResponse(found, missing);
+    }
+
+    /**
+     * Resolves {@code ids} in request order with duplicates dropped, {@link #MULTI_GET_CHUNK}
+     * at a time: cached snapshots first, then one {@code findAllById} for the rest of the chunk.
+     * Bulk-loaded accounts are not put into the cache, since such a read cannot be ordered
+     * against a concurrent post-commit eviction.
+     */
+    public void forEachAccount(Collection<Long> ids, Consumer<AccountResponse> found, Consumer<Long> missing) {
+        List<Long> unique = new ArrayList<>(new LinkedHashSet<>(ids));
+        for (int start = 0; start < unique.size(); start += MULTI_GET_CHUNK) {
+            List<Long> chunk = unique.subList(start, Math.min(start + MULTI_GET_CHUNK, unique.size()));
+            Map<Long, AccountResponse> resolved = new HashMap<>();
+            List<Long> toLoad = new ArrayList<>();
+            for (Long id : chunk) {
+                AccountResponse cached = accountCache.getIfPresent(id);
+                if (cached != null) {
+                    resolved.put(id, cached);
+                } else {
+                    toLoad.add(id);
+                }
+            }
+            if (!toLoad.isEmpty()) {
+                List<Account> loaded = new ArrayList<>(toLoad.size());
+                accountRepository.findAllById(toLoad).forEach(loaded::add);
+                snapshots(loaded).forEach(a -> resolved.put(a.getId(), a));
+            }
+            for (Long id : chunk) {
+                AccountResponse acc = resolved.get(id);
+                if (acc != null) {
+                    found.accept(acc);
+                } else {
+                    missing.accept(id);
+                }
+            }
+        }
+    }
+
+    /** Snapshots of {@code accounts}, with the slot totals of split ones added in one query. */
+    private List<AccountResponse> snapshots(List<Account> accounts) {
+        List<Long> split = new ArrayList<>();
+        for (Account a : accounts) {
+            if (a.isSplit()) {
+                split.add(a.getId());
+            }
+        }
+        Map<Long, AccountSlotRepository.Totals> totals = new HashMap<>();
+        if (!split.isEmpty()) {
+            slotRepository.findTotals(split).forEach(t -> totals.put(t.getAccountId(), t));
+        }
+        List<AccountResponse> snapshots = new ArrayList<>(accounts.size());
+        for (Account a : accounts) {
+            AccountSlotRepository.Totals t = totals.get(a.getId());
+            snapshots.add(t == null
+                    ? AccountCache.snapshot(a)
+                    : new AccountResponse(a.getId(), Math.addExact(a.getBalance(), t.getBalance()), a.getHeld(),
+                            a.getVersion() + t.getVersion(), a.getCreatedAt(), a.getName(), a.getCurrency()));
+        }
+        return snapshots;
     }
 }
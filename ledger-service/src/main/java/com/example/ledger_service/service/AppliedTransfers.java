@@ -0,0 +1,139 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.dto.PostingRequest;
+import com.example.ledger_service.dto.PostingResponse;
+import com.example.ledger_service.dto.TransferRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Looks up what was already applied under a transferId, in {@code ledger_entries} or, once the
+ * entries have been moved there, the {@link LedgerArchive}, and reads the outcome back for
+ * idempotent replays. The {@link TransferIdFilter} answers the common "never seen" case
+ * without touching the database.
+ */
+@Component
+public class AppliedTransfers {
+    private static final Logger log = LoggerFactory.getLogger(AppliedTransfers.class);
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final LedgerArchive archive;
+    private final TransferIdFilter transferIdFilter;
+
+    public AppliedTransfers(LedgerEntryRepository ledgerEntryRepository,
+                            LedgerArchive archive,
+                            TransferIdFilter transferIdFilter) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.archive = archive;
+        this.transferIdFilter = transferIdFilter;
+    }
+
+    /** The entries written under a transferId, from {@code ledger_entries} or the archive; empty if it was never applied. */
+    public List<LedgerEntry> entries(String transferId) {
+        List<LedgerEntry> entries = ledgerEntryRepository.findByTransferId(transferId);
+        return entries.isEmpty() ? archive.findByTransferId(transferId) : entries;
+    }
+
+    /**
+     * Returns the original outcome if this transferId was already applied, or null; a
+     * {@link ConflictException} if it was applied as a different transfer.
+     */
+    TransferResponse find(TransferRequest req) {
+        if (!transferIdFilter.mightContain(req.getTransferId())) {
+            return null;
+        }
+        return findStored(req);
+    }
+
+    /** As {@link #find(TransferRequest)}, but always asks the database. */
+    TransferResponse findStored(TransferRequest req) {
+        List<LedgerEntry> entries = entries(req.getTransferId());
+        if (entries.isEmpty()) {
+            return null;
+        }
+        TransferResponse stored = replayOf(req, entries);
+        log.info("Idempotent replay for transferId={}", req.getTransferId());
+        return stored;
+    }
+
+    /** As {@link #find(TransferRequest)}; the stored entries must match the legs in any order. */
+    PostingResponse find(PostingRequest req) {
+        if (!transferIdFilter.mightContain(req.getTransferId())) {
+            return null;
+        }
+        return findStored(req);
+    }
+
+    PostingResponse findStored(PostingRequest req) {
+        List<LedgerEntry> entries = entries(req.getTransferId());
+        if (entries.isEmpty()) {
+            return null;
+        }
+        List<PostingRequest.Leg> stored = new ArrayList<>(entries.size());
+        entries.forEach(e -> stored.add(new PostingRequest.Leg(e.getAccountId(), e.getType(), e.getAmount())));
+        Comparator<PostingRequest.Leg> order = Comparator.comparing(PostingRequest.Leg::type)
+                .thenComparing(PostingRequest.Leg::accountId)
+                .thenComparing(PostingRequest.Leg::amount);
+        List<PostingRequest.Leg> requested = new ArrayList<>(req.getLegs());
+        stored.sort(order);
+        requested.sort(order);
+        if (!stored.equals(requested)) {
+            throw new ConflictException("transferId " + req.getTransferId() + " was already used for a different transfer");
+        }
+        log.info("Idempotent replay for transferId={}", req.getTransferId());
+        return new PostingResponse(req.getTransferId(), "SUCCESS", "OK", req.getLegs());
+    }
+
+    /**
+     * The outcome of {@code req} read back from the entries already stored under its transferId,
+     * or a {@link ConflictException} if they record a different transfer.
+     */
+    static TransferResponse replayOf(TransferRequest req, List<LedgerEntry> entries) {
+        TransferResponse stored = fromEntries(req.getTransferId(), entries);
+        // A converted transfer is four entries; any other count beyond two means the id
+        // belongs to a multi-leg posting
+        boolean converted = entries.size() == 4 && stored.getFxRateVersion() != null;
+        if ((entries.size() != 2 && !converted)
+                || !sameTransfer(req, stored.getFromAccountId(), stored.getToAccountId(), stored.getAmount())) {
+            throw reused(req);
+        }
+        return stored;
+    }
+
+    /**
+     * Reads an applied transfer back from its entries: from the first leg's debit to the last
+     * leg's credit, for the amount debited; when it was converted, also the amount credited
+     * and the rate table version.
+     */
+    static TransferResponse fromEntries(String transferId, List<LedgerEntry> entries) {
+        LedgerEntry debit = null;
+        LedgerEntry credit = null;
+        for (LedgerEntry e : entries) {
+            if (e.getType() == LedgerEntry.Type.DEBIT) {
+                if (debit == null || e.getLeg() < debit.getLeg()) debit = e;
+            } else if (credit == null || e.getLeg() > credit.getLeg()) {
+                credit = e;
+            }
+        }
+        Long version = debit.getFxRateVersion();
+        return new TransferResponse(transferId, "SUCCESS", "OK", debit.getAccountId(), credit.getAccountId(),
+                debit.getAmount(), version == null ? null : credit.getAmount(), version);
+    }
+
+    static boolean sameTransfer(TransferRequest req, Long from, Long to, long amount) {
+        return req.getFromAccountId().equals(from) && req.getToAccountId().equals(to) && req.getAmount() == amount;
+    }
+
+    static ConflictException reused(TransferRequest req) {
+        return new ConflictException("transferId " + req.getTransferId() + " was already used for a different transfer");
+    }
+}
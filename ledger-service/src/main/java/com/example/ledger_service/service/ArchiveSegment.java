@@ -0,0 +1,267 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.dto.LedgerEntryResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * File format of one archive segment: a fixed, uncompressed header with the segment's
+ * min/max id, account id and time, followed by a Deflate-compressed body that stores the
+ * entries column by column. Rows are sorted by (accountId, id), so the account column is
+ * a run of small deltas and each account's entries are contiguous. Ids and timestamps are
+ * zigzag varint deltas from the previous row. The type column is one bit per row. Each
+ * transferId is stored once in a dictionary, as 16 raw bytes when it is a canonical UUID.
+ */
+final class ArchiveSegment {
+    private static final int MAGIC = 0x4C474131; // "LGA1"
+    private static final Comparator<LedgerEntryResponse> ORDER =
+            Comparator.comparing(LedgerEntryResponse::getAccountId).thenComparing(LedgerEntryResponse::getId);
+
+    /** Times are epoch microseconds, the precision {@code ledger_entries.created_at} keeps. */
+    record Header(int count, long minId, long maxId, long minAccountId, long maxAccountId,
+                  long minCreatedAt, long maxCreatedAt, long debits, long credits) {
+
+        boolean mayContain(long accountId, long fromMicros, long toMicros) {
+            return accountId >= minAccountId && accountId <= maxAccountId && overlaps(fromMicros, toMicros);
+        }
+
+        boolean overlaps(long fromMicros, long toMicros) {
+            return maxCreatedAt >= fromMicros && minCreatedAt < toMicros;
+        }
+    }
+
+    private ArchiveSegment() {}
+
+    /** Writes {@code rows} to {@code file} through a temporary file, so a reader never sees half a segment. */
+    static Header write(Path file, List<LedgerEntryResponse> rows) throws IOException {
+        List<LedgerEntryResponse> sorted = new ArrayList<>(rows);
+        sorted.sort(ORDER);
+        Header header = header(sorted);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                writeHeader(out, header);
+                Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+                try {
+                    DeflaterOutputStream body = new DeflaterOutputStream(out, deflater, 64 * 1024);
+                    writeBody(new DataOutputStream(body), sorted);
+                    body.finish();
+                } finally {
+                    deflater.end();
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return header;
+    }
+
+    static Header readHeader(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return readHeader(in);
+        }
+    }
+
+    /** Every entry of the segment, sorted by (accountId, id). */
+    static List<LedgerEntryResponse> read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            Header header = readHeader(in);
+            return readBody(new DataInputStream(new BufferedInputStream(new InflaterInputStream(in), 64 * 1024)),
+                    header.count());
+        }
+    }
+
+    private static Header header(List<LedgerEntryResponse> rows) {
+        long minId = Long.MAX_VALUE, maxId = Long.MIN_VALUE;
+        long minAt = Long.MAX_VALUE, maxAt = Long.MIN_VALUE;
+        long debits = 0, credits = 0;
+        for (LedgerEntryResponse e : rows) {
+            minId = Math.min(minId, e.getId());
+            maxId = Math.max(maxId, e.getId());
+            long at = micros(e.getCreatedAt());
+            minAt = Math.min(minAt, at);
+            maxAt = Math.max(maxAt, at);
+            if (e.getType() == LedgerEntry.Type.DEBIT) debits += e.getAmount();
+            else credits += e.getAmount();
+        }
+        return new Header(rows.size(), minId, maxId, rows.get(0).getAccountId(),
+                rows.get(rows.size() - 1).getAccountId(), minAt, maxAt, debits, credits);
+    }
+
+    private static void writeHeader(DataOutputStream out, Header h) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(h.count());
+        for (long v : new long[]{h.minId(), h.maxId(), h.minAccountId(), h.maxAccountId(),
+                h.minCreatedAt(), h.maxCreatedAt(), h.debits(), h.credits()}) {
+            out.writeLong(v);
+        }
+    }
+
+    private static Header readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a ledger archive segment");
+        }
+        return new Header(in.readInt(), in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    private static void writeBody(DataOutputStream out, List<LedgerEntryResponse> rows) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> words = new ArrayList<>();
+        for (LedgerEntryResponse e : rows) {
+            if (dictionary.putIfAbsent(e.getTransferId(), words.size()) == null) {
+                words.add(e.getTransferId());
+            }
+        }
+        writeVarint(out, words.size());
+        for (String word : words) {
+            UUID uuid = asUuid(word);
+            if (uuid != null) {
+                out.writeByte(0);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            } else {
+                byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+                out.writeByte(1);
+                writeVarint(out, bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        long prev = 0;
+        for (LedgerEntryResponse e : rows) {
+            writeVarint(out, e.getAccountId() - prev);
+            prev = e.getAccountId();
+        }
+        prev = 0;
+        for (LedgerEntryResponse e : rows) {
+            writeVarint(out, zigzag(e.getId() - prev));
+            prev = e.getId();
+        }
+        prev = 0;
+        for (LedgerEntryResponse e : rows) {
+            long at = micros(e.getCreatedAt());
+            writeVarint(out, zigzag(at - prev));
+            prev = at;
+        }
+        for (LedgerEntryResponse e : rows) {
+            writeVarint(out, zigzag(e.getAmount()));
+        }
+        int bits = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).getType() == LedgerEntry.Type.CREDIT) bits |= 1 << (i & 7);
+            if ((i & 7) == 7 || i == rows.size() - 1) {
+                out.writeByte(bits);
+                bits = 0;
+            }
+        }
+        for (LedgerEntryResponse e : rows) {
+            writeVarint(out, dictionary.get(e.getTransferId()));
+        }
+        out.flush();
+    }
+
+    private static List<LedgerEntryResponse> readBody(DataInputStream in, int count) throws IOException {
+        String[] words = new String[(int) readVarint(in)];
+        for (int i = 0; i < words.length; i++) {
+            if (in.readByte() == 0) {
+                words[i] = new UUID(in.readLong(), in.readLong()).toString();
+            } else {
+                byte[] bytes = new byte[(int) readVarint(in)];
+                in.readFully(bytes);
+                words[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        long[] accounts = new long[count];
+        long[] ids = new long[count];
+        long[] times = new long[count];
+        long[] amounts = new long[count];
+        long prev = 0;
+        for (int i = 0; i < count; i++) accounts[i] = prev += readVarint(in);
+        prev = 0;
+        for (int i = 0; i < count; i++) ids[i] = prev += unzigzag(readVarint(in));
+        prev = 0;
+        for (int i = 0; i < count; i++) times[i] = prev += unzigzag(readVarint(in));
+        for (int i = 0; i < count; i++) amounts[i] = unzigzag(readVarint(in));
+        byte[] types = new byte[(count + 7) / 8];
+        in.readFully(types);
+
+        List<LedgerEntryResponse> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LedgerEntry.Type type = (types[i >> 3] & (1 << (i & 7))) != 0 ? LedgerEntry.Type.CREDIT : LedgerEntry.Type.DEBIT;
+            rows.add(new LedgerEntryResponse(ids[i], words[(int) readVarint(in)], accounts[i], amounts[i], type,
+                    Instant.ofEpochSecond(Math.floorDiv(times[i], 1_000_000L), Math.floorMod(times[i], 1_000_000L) * 1_000L)));
+        }
+        return rows;
+    }
+
+    static long micros(Instant at) {
+        return Math.addExact(Math.multiplyExact(at.getEpochSecond(), 1_000_000L), at.getNano() / 1_000);
+    }
+
+    private static UUID asUuid(String s) {
+        if (s.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(s);
+            return uuid.toString().equals(s) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarint(OutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated archive segment");
+            }
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Malformed varint in archive segment");
+    }
+}
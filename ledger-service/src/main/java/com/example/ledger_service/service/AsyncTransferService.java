@@ -0,0 +1,194 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.TransferRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.entity.TransferJob;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.NotFoundException;
+import com.example.ledger_service.exception.OverloadedException;
+import com.example.ledger_service.repository.TransferJobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts transfers for background application. A transfer is acknowledged once its
+ * {@link TransferJob} row is committed; a bounded executor then applies it through
+ * {@link LedgerService#doApplyTransfer}. When the executor is saturated new transfers
+ * are refused up front instead of queueing without bound.
+ */
+@Service
+public class AsyncTransferService {
+    private static final Logger log = LoggerFactory.getLogger(AsyncTransferService.class);
+
+    private final LedgerService ledgerService;
+    private final AppliedTransfers appliedTransfers;
+    private final TransferJobRepository jobRepository;
+    private final ThreadPoolExecutor executor;
+    // One permit per running or queued job, so submit() can never be rejected after the job row is written.
+    private final Semaphore capacity;
+    private final Counter rejected;
+    private final Timer latency;
+
+    public AsyncTransferService(LedgerService ledgerService,
+                                AppliedTransfers appliedTransfers,
+                                TransferJobRepository jobRepository,
+                                LedgerProperties properties,
+                                MeterRegistry meterRegistry) {
+        this.ledgerService = ledgerService;
+        this.appliedTransfers = appliedTransfers;
+        this.jobRepository = jobRepository;
+        LedgerProperties.Async config = properties.getAsync();
+        this.executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("ledger-async-"));
+        this.capacity = new Semaphore(config.getThreads() + config.getQueueCapacity());
+        Gauge.builder("ledger.async.queue.depth", executor, e -> e.getQueue().size())
+                .description("Accepted transfers waiting for a worker")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("ledger.async.rejected")
+                .description("Transfers refused because the async queue was full")
+                .register(meterRegistry);
+        this.latency = Timer.builder("ledger.async.latency")
+                .description("Time from acceptance to outcome for async transfers")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Durably queues the transfer and returns an ACCEPTED handle. A transferId that is
+     * already known is not queued again; its current status is returned instead, or a
+     * {@link ConflictException} if it was used for a different transfer.
+     */
+    public TransferResponse accept(TransferRequest req) {
+        LedgerService.validate(req);
+        TransferResponse known = known(req);
+        if (known != null) {
+            return known;
+        }
+        if (!capacity.tryAcquire()) {
+            rejected.increment();
+            throw new OverloadedException("Transfer queue is full, please retry later");
+        }
+        TransferJob job;
+        try {
+            job = jobRepository.save(new TransferJob(req.getTransferId(), req.getFromAccountId(),
+                    req.getToAccountId(), req.getAmount()));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent accept of the same transferId won the primary key
+            capacity.release();
+            known = known(req);
+            if (known != null) {
+                return known;
+            }
+            throw e;
+        } catch (RuntimeException e) {
+            capacity.release();
+            throw e;
+        }
+        // Snapshot before handing the job to a worker, which completes it in place
+        TransferResponse accepted = toResponse(job);
+        executor.execute(() -> process(job));
+        log.debug("Transfer accepted: {}", req.getTransferId());
+        return accepted;
+    }
+
+    /**
+     * Reports the outcome of a transfer. Applied transfers are answered from their ledger
+     * entries (via {@code idx_ledger_transfer}, or the archive once they have been moved);
+     * pending and failed ones from their job.
+     */
+    public TransferResponse status(String transferId) {
+        List<LedgerEntry> entries = appliedTransfers.entries(transferId);
+        if (!entries.isEmpty()) {
+            return AppliedTransfers.fromEntries(transferId, entries);
+        }
+        return jobRepository.findById(transferId)
+                .map(AsyncTransferService::toResponse)
+                .orElseThrow(() -> new NotFoundException("Transfer " + transferId + " not found"));
+    }
+
+    /** The status of {@code req}'s transferId if it is already known, checked to be the same transfer; otherwise null. */
+    private TransferResponse known(TransferRequest req) {
+        String transferId = req.getTransferId();
+        List<LedgerEntry> entries = appliedTransfers.entries(transferId);
+        if (!entries.isEmpty()) {
+            return AppliedTransfers.replayOf(req, entries);
+        }
+        TransferJob job = jobRepository.findById(transferId).orElse(null);
+        if (job == null) {
+            return null;
+        }
+        if (!AppliedTransfers.sameTransfer(req, job.getFromAccountId(), job.getToAccountId(), job.getAmount())) {
+            throw AppliedTransfers.reused(req);
+        }
+        return toResponse(job);
+    }
+
+    /** Re-queues jobs that were accepted but not finished before the last shutdown. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        List<TransferJob> pending = jobRepository.findByStatus(TransferJob.Status.ACCEPTED);
+        if (!pending.isEmpty()) {
+            log.info("Resuming {} accepted transfers", pending.size());
+        }
+        for (TransferJob job : pending) {
+            capacity.acquireUninterruptibly();
+            executor.execute(() -> process(job));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void process(TransferJob job) {
+        try {
+            if (!appliedTransfers.entries(job.getTransferId()).isEmpty()) {
+                // Applied before a restart, but the job row was never completed
+                job.complete(TransferJob.Status.SUCCESS, "OK");
+            } else {
+                TransferRequest req = new TransferRequest();
+                req.setTransferId(job.getTransferId());
+                req.setFromAccountId(job.getFromAccountId());
+                req.setToAccountId(job.getToAccountId());
+                req.setAmount(job.getAmount());
+                TransferResponse res = ledgerService.doApplyTransfer(req);
+                job.complete(TransferJob.Status.SUCCESS, res.getMessage());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Async transfer {} failed: {}", job.getTransferId(), e.getMessage());
+            job.complete(TransferJob.Status.FAILED, e.getMessage());
+        } finally {
+            capacity.release();
+        }
+        try {
+            jobRepository.save(job);
+        } catch (RuntimeException e) {
+            log.error("Could not record outcome of async transfer {}", job.getTransferId(), e);
+        }
+        latency.record(job.getCompletedAt().toEpochMilli() - job.getCreatedAt().toEpochMilli(), TimeUnit.MILLISECONDS);
+    }
+
+    private static TransferResponse toResponse(TransferJob job) {
+        return new TransferResponse(job.getTransferId(), job.getStatus().name(), job.getMessage(),
+                job.getFromAccountId(), job.getToAccountId(), job.getAmount());
+    }
+}
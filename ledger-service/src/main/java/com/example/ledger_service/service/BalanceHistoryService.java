@@ -0,0 +1,190 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.BalanceResponse;
+import com.example.ledger_service.engine.ShardedBalanceEngine;
+import com.example.ledger_service.entity.Account;
+import com.example.ledger_service.entity.BalanceSnapshot;
+import com.example.ledger_service.exception.NotFoundException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.BalanceSnapshotRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers "what was the balance at time T" from the nearest {@link BalanceSnapshot} plus the
+ * entries it does not count, and writes those snapshots in the background. Each run snapshots
+ * only the accounts that moved since the previous run, so an as-of query replays at most one
+ * interval's worth of an account's entries however old the account is.
+ * <p>
+ * A run counts only what has committed, so every entry created at or before its {@code asOf}
+ * must commit within {@code ledger.snapshots.lag}; one that commits later with a lower id is
+ * never counted. Ids come from a pooled sequence when an entry is persisted, not when it
+ * commits, so they do not follow commit order either. The run also records the highest id it
+ * saw, which covers entries persisted after the run from a freshly fetched id block, such as a
+ * journal replay on startup. The sharded persister can hold entries for longer than the lag,
+ * so a run never snapshots past its oldest unwritten entry.
+ */
+@Service
+public class BalanceHistoryService {
+    private static final Logger log = LoggerFactory.getLogger(BalanceHistoryService.class);
+    private static final int CHUNK = 1000;
+
+    private final AccountRepository accountRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceSnapshotRepository snapshotRepository;
+    private final LedgerArchive archive;
+    private final TransactionTemplate tx;
+    private final TransactionTemplate readOnly;
+    private final LedgerProperties.Snapshots config;
+    private final ShardedBalanceEngine engine;
+    private final Timer runTimer;
+    private ScheduledExecutorService scheduler;
+
+    public BalanceHistoryService(AccountRepository accountRepository,
+                                 LedgerEntryRepository ledgerEntryRepository,
+                                 BalanceSnapshotRepository snapshotRepository,
+                                 LedgerArchive archive,
+                                 PlatformTransactionManager transactionManager,
+                                 LedgerProperties properties,
+                                 MeterRegistry meterRegistry,
+                                 ObjectProvider<ShardedBalanceEngine> engine) {
+        this.accountRepository = accountRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.archive = archive;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.config = properties.getSnapshots();
+        this.engine = engine.getIfAvailable();
+        this.runTimer = Timer.builder("ledger.snapshots.run")
+                .description("Time to write one round of balance snapshots")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long interval = config.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ledger-snapshots-"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                takeSnapshots(Instant.now().minus(config.getLag()));
+            } catch (RuntimeException e) {
+                // Keep the schedule alive; the next run covers this window too
+                log.error("Balance snapshot run failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Balance of the account counting every entry created at or before {@code asOf}
+     * (now when null).
+     */
+    public BalanceResponse balanceAt(Long accountId, Instant asOf) {
+        Instant at = asOf == null ? Instant.now() : asOf;
+        return readOnly.execute(status -> {
+            Optional<BalanceSnapshot> snapshot =
+                    snapshotRepository.findFirstByAccountIdAndAsOfLessThanEqualOrderByAsOfDesc(accountId, at);
+            long base;
+            Instant after;
+            long afterId;
+            if (snapshot.isPresent()) {
+                base = snapshot.get().getBalance();
+                after = snapshot.get().getAsOf();
+                afterId = snapshot.get().getThroughEntryId();
+            } else {
+                Account acc = accountRepository.findById(accountId)
+                        .orElseThrow(() -> new NotFoundException("Account " + accountId + " not found"));
+                if (at.isBefore(acc.getCreatedAt())) {
+                    throw new NotFoundException("Account " + accountId + " did not exist at " + at);
+                }
+                base = acc.getInitialBalance();
+                after = Instant.EPOCH;
+                afterId = 0;
+            }
+            long net = ledgerEntryRepository.netSince(accountId, after, afterId, at)
+                    + archive.netSince(accountId, after, afterId, at);
+            return new BalanceResponse(accountId, at, base + net);
+        });
+    }
+
+    /**
+     * Snapshots, as of {@code asOf} or just before the sharded persister's oldest unwritten
+     * entry if that is earlier, every account with entries since the previous run.
+     * Returns the number of snapshots written.
+     */
+    public int takeSnapshots(Instant requested) {
+        Instant pending = engine == null ? null : engine.oldestUnwritten();
+        // Stored to the microsecond, so one microsecond earlier leaves the pending entry out
+        Instant asOf = pending != null && !pending.isAfter(requested)
+                ? pending.truncatedTo(ChronoUnit.MICROS).minus(1, ChronoUnit.MICROS)
+                : requested;
+        return runTimer.record(() -> tx.execute(status -> {
+            Optional<BalanceSnapshot> previous = snapshotRepository.findFirstByOrderByAsOfDesc();
+            Instant after = previous.map(BalanceSnapshot::getAsOf).orElse(Instant.EPOCH);
+            long afterId = previous.map(BalanceSnapshot::getThroughEntryId).orElse(0L);
+            if (previous.isPresent() && !asOf.isAfter(after)) {
+                return 0;
+            }
+            long throughId = Math.max(afterId, ledgerEntryRepository.findMaxId());
+            List<LedgerEntryRepository.AccountNet> moved =
+                    ledgerEntryRepository.netByAccountSince(after, afterId, asOf, throughId);
+            for (int start = 0; start < moved.size(); start += CHUNK) {
+                snapshotChunk(moved.subList(start, Math.min(start + CHUNK, moved.size())), asOf, throughId);
+            }
+            log.info("Wrote {} balance snapshots as of {}", moved.size(), asOf);
+            return moved.size();
+        }));
+    }
+
+    private void snapshotChunk(List<LedgerEntryRepository.AccountNet> moved, Instant asOf, long throughId) {
+        List<Long> ids = moved.stream().map(LedgerEntryRepository.AccountNet::getAccountId).toList();
+        Map<Long, Long> base = new HashMap<>();
+        for (BalanceSnapshot s : snapshotRepository.findLatestFor(ids)) {
+            base.put(s.getAccountId(), s.getBalance());
+        }
+        // An account without a snapshot had no entries before this window: start from its opening balance
+        List<Long> first = ids.stream().filter(id -> !base.containsKey(id)).toList();
+        if (!first.isEmpty()) {
+            accountRepository.findAllById(first).forEach(a -> base.put(a.getId(), a.getInitialBalance()));
+        }
+        List<BalanceSnapshot> snapshots = new ArrayList<>(moved.size());
+        for (LedgerEntryRepository.AccountNet m : moved) {
+            snapshots.add(new BalanceSnapshot(m.getAccountId(), asOf, throughId,
+                    base.getOrDefault(m.getAccountId(), 0L) + m.getNet()));
+        }
+        snapshotRepository.saveAll(snapshots);
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.BatchTransferRequest;
+import com.example.ledger_service.dto.BatchTransferResponse;
+import com.example.ledger_service.dto.TransferRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.engine.ShardedBalanceEngine;
+import com.example.ledger_service.entity.Account;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Applies many transfers together: batches from the API, plain, all-or-nothing or netted, and
+ * the groups {@link GroupCommitter} coalesces from concurrent single transfers. Each shares one
+ * transaction and loads every touched account once; items keep the idempotency and funds rules
+ * of {@link LedgerService#doApplyTransfer}. With the sharded engine a batch is handed to the
+ * shard loops item by item instead.
+ */
+@Service
+public class BatchTransferService {
+    private static final Logger log = LoggerFactory.getLogger(BatchTransferService.class);
+
+    private final LedgerWriter writer;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final AppliedTransfers appliedTransfers;
+    private final TransferIdFilter transferIdFilter;
+    private final AccountCache accountCache;
+    private final TrialBalance trialBalance;
+    private final HotAccounts hotAccounts;
+    private final SplitBalances splitBalances;
+    private final FxRates fxRates;
+    // Present only when ledger.engine=sharded
+    private final ShardedBalanceEngine engine;
+
+    public BatchTransferService(LedgerWriter writer,
+                                LedgerEntryRepository ledgerEntryRepository,
+                                AppliedTransfers appliedTransfers,
+                                TransferIdFilter transferIdFilter,
+                                AccountCache accountCache,
+                                TrialBalance trialBalance,
+                                HotAccounts hotAccounts,
+                                SplitBalances splitBalances,
+                                FxRates fxRates,
+                                ObjectProvider<ShardedBalanceEngine> engine) {
+        this.writer = writer;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.appliedTransfers = appliedTransfers;
+        this.transferIdFilter = transferIdFilter;
+        this.accountCache = accountCache;
+        this.trialBalance = trialBalance;
+        this.hotAccounts = hotAccounts;
+        this.splitBalances = splitBalances;
+        this.fxRates = fxRates;
+        this.engine = engine.getIfAvailable();
+    }
+
+    /**
+     * Applies many transfers in one transaction: every touched account is loaded once (locked
+     * in id order unless the strategy is optimistic), balances move in memory in request order,
+     * and the account updates and ledger entries are flushed through JDBC batching at commit.
+     * A failing item is reported in its result and leaves balances untouched; with
+     * {@code allOrNothing} it rolls back the whole batch instead. With {@code netting} see
+     * {@link #applyNetted}.
+     */
+    public BatchTransferResponse applyBatch(BatchTransferRequest batch) {
+        List<TransferRequest> reqs = batch.getTransfers();
+        reqs.forEach(req -> hotAccounts.recordRequest(req.getFromAccountId(), req.getToAccountId()));
+        if (engine != null) {
+            if (batch.isAllOrNothing() || batch.isNetting()) {
+                throw new ConflictException("All-or-nothing and netted batches are not supported by the sharded engine");
+            }
+            return applyBatchSharded(reqs);
+        }
+        if (batch.isNetting()) {
+            return writer.inTransaction("netted batch of " + reqs.size(), () -> LedgerWriter.accountIds(reqs), status -> applyNetted(reqs, status));
+        }
+        return writer.inTransaction("batch of " + reqs.size(), () -> LedgerWriter.accountIds(reqs), status -> {
+            List<RuntimeException> failures = applyAll(reqs, batch.isAllOrNothing());
+            int last = failures.size() - 1;
+            if (batch.isAllOrNothing() && failures.get(last) != null) {
+                status.setRollbackOnly();
+                return new BatchTransferResponse(rolledBack(reqs, last, failures.get(last).getMessage()));
+            }
+            List<TransferResponse> results = new ArrayList<>(reqs.size());
+            for (int i = 0; i < reqs.size(); i++) {
+                RuntimeException failure = failures.get(i);
+                results.add(failure == null ? LedgerService.succeeded(reqs.get(i)) : failed(reqs.get(i), failure.getMessage()));
+            }
+            return new BatchTransferResponse(results);
+        });
+    }
+
+    /**
+     * Group-commit stage entry point: applies concurrently submitted transfers in one
+     * transaction. Returns one entry per request, {@code null} when it was applied.
+     */
+    List<RuntimeException> applyGroup(List<TransferRequest> reqs) {
+        return writer.inTransaction("group of " + reqs.size(), () -> LedgerWriter.accountIds(reqs), status -> applyAll(reqs, false));
+    }
+
+    /**
+     * Moves balances for {@code reqs} in memory, in order, against accounts loaded once, and
+     * queues their ledger entries. Must run inside a transaction. Returns the failure of each
+     * item ({@code null} when applied); with {@code stopOnFailure} it returns right after the
+     * first failure without writing entries. Split accounts are checked against their slot
+     * totals as items go, and their slots move once each by the net, in ascending id order
+     * after the row locks, as {@link LedgerWriter#post} does. Should a concurrent debit have
+     * drained the slots by then, the whole transaction fails with a {@link ConflictException}.
+     */
+    private List<RuntimeException> applyAll(List<TransferRequest> reqs, boolean stopOnFailure) {
+        Map<Long, Account> accounts = writer.lockWait().record(() -> writer.load(LedgerWriter.accountIds(reqs)));
+        List<RuntimeException> failures = new ArrayList<>(reqs.size());
+        List<LedgerEntry> entries = new ArrayList<>(reqs.size() * 2);
+        Map<String, TransferRequest> applied = new HashMap<>();
+        // Running balance and net move of each split account, applied to its slots after the loop
+        Map<Long, Long> splitBalance = splitBalances.totals(accounts.values().stream()
+                .filter(Account::isSplit).map(Account::getId).toList());
+        Map<Long, Long> splitDeltas = new TreeMap<>();
+        for (TransferRequest req : reqs) {
+            try {
+                LedgerService.validate(req);
+                TransferRequest earlier = applied.get(req.getTransferId());
+                if (earlier != null) {
+                    // Same transfer twice in one batch/group: the second is a replay of the first
+                    if (!AppliedTransfers.sameTransfer(earlier, req.getFromAccountId(), req.getToAccountId(), req.getAmount())) {
+                        throw AppliedTransfers.reused(req);
+                    }
+                    failures.add(null);
+                    continue;
+                }
+                if (appliedTransfers.find(req) != null) {
+                    failures.add(null);
+                    continue;
+                }
+                Account from = accounts.get(req.getFromAccountId());
+                Account to = accounts.get(req.getToAccountId());
+                if (from == null) {
+                    throw new ConflictException("From account not found");
+                }
+                if (to == null) {
+                    throw new ConflictException("To account not found");
+                }
+                if (!from.getCurrency().equals(to.getCurrency())) {
+                    throw new ConflictException("Cross-currency transfers cannot be batched");
+                }
+                long amount = req.getAmount();
+                // Checked before anything moves: a failure must change nothing
+                if (to.isSplit()) {
+                    LedgerWriter.plus(splitBalance.getOrDefault(to.getId(), 0L), amount);
+                } else {
+                    LedgerWriter.checkCredit(to, amount);
+                }
+                if (from.isSplit()) {
+                    long available = splitBalance.getOrDefault(from.getId(), 0L);
+                    if (available < amount) {
+                        throw new InsufficientFundsException("Insufficient funds");
+                    }
+                    splitBalance.put(from.getId(), available - amount);
+                    splitDeltas.merge(from.getId(), -amount, LedgerWriter::plus);
+                } else {
+                    writer.debit(from, amount);
+                }
+                if (to.isSplit()) {
+                    splitBalance.merge(to.getId(), amount, LedgerWriter::plus);
+                    splitDeltas.merge(to.getId(), amount, LedgerWriter::plus);
+                } else {
+                    writer.credit(to, amount);
+                }
+                entries.add(new LedgerEntry(req.getTransferId(), from.getId(), amount, LedgerEntry.Type.DEBIT));
+                entries.add(new LedgerEntry(req.getTransferId(), to.getId(), amount, LedgerEntry.Type.CREDIT));
+                applied.put(req.getTransferId(), req);
+                failures.add(null);
+            } catch (ConflictException | InsufficientFundsException e) {
+                failures.add(e);
+                if (stopOnFailure) {
+                    return failures;
+                }
+            }
+        }
+        splitDeltas.forEach((id, delta) -> {
+            Account acc = accounts.get(id);
+            try {
+                if (delta < 0) {
+                    writer.debit(acc, -delta);
+                } else if (delta > 0) {
+                    writer.credit(acc, delta);
+                }
+            } catch (InsufficientFundsException e) {
+                throw new ConflictException("Account " + id + " was debited concurrently, please retry");
+            }
+        });
+        ledgerEntryRepository.saveAll(entries);
+        accountCache.putAfterCommit(accounts.values());
+        trialBalance.recordAfterCommit(entries);
+        applied.keySet().forEach(transferIdFilter::add);
+        log.debug("{} transfers applied in one transaction", reqs.size());
+        return failures;
+    }
+
+    /**
+     * Netting mode: sums each account's credits minus debits over the whole batch and moves
+     * every touched account once, by that net, so the balance updates grow with the number of
+     * distinct accounts rather than transfers. Funds are checked on the net alone: an account
+     * may pay out within the batch what it only receives later in the batch. Every transfer
+     * still gets its own pair of ledger entries. Any failure rolls back the whole batch, and
+     * is reported on the first item that touched (for funds, debited) the failing account.
+     */
+    private BatchTransferResponse applyNetted(List<TransferRequest> reqs, TransactionStatus status) {
+        // Ascending id order, so accounts are updated (and with the atomic strategy, locked) in id order
+        Map<Long, Long> deltas = new TreeMap<>();
+        Map<Long, Integer> firstUse = new HashMap<>();
+        Map<Long, Integer> firstDebit = new HashMap<>();
+        List<LedgerEntry> entries = new ArrayList<>(reqs.size() * 2);
+        Map<String, TransferRequest> applied = new HashMap<>();
+        for (int i = 0; i < reqs.size(); i++) {
+            TransferRequest req = reqs.get(i);
+            try {
+                LedgerService.validate(req);
+                TransferRequest earlier = applied.get(req.getTransferId());
+                if (earlier != null) {
+                    if (!AppliedTransfers.sameTransfer(earlier, req.getFromAccountId(), req.getToAccountId(), req.getAmount())) {
+                        throw AppliedTransfers.reused(req);
+                    }
+                    continue;
+                }
+                if (appliedTransfers.find(req) != null) {
+                    continue;
+                }
+                fxRates.requireOneCurrency(List.of(req.getFromAccountId(), req.getToAccountId()));
+                long amount = req.getAmount();
+                deltas.merge(req.getFromAccountId(), -amount, LedgerWriter::plus);
+                deltas.merge(req.getToAccountId(), amount, LedgerWriter::plus);
+            } catch (ConflictException e) {
+                status.setRollbackOnly();
+                return new BatchTransferResponse(rolledBack(reqs, i, e.getMessage()));
+            }
+            firstUse.putIfAbsent(req.getFromAccountId(), i);
+            firstUse.putIfAbsent(req.getToAccountId(), i);
+            firstDebit.putIfAbsent(req.getFromAccountId(), i);
+            entries.add(new LedgerEntry(req.getTransferId(), req.getFromAccountId(), req.getAmount(), LedgerEntry.Type.DEBIT));
+            entries.add(new LedgerEntry(req.getTransferId(), req.getToAccountId(), req.getAmount(), LedgerEntry.Type.CREDIT));
+            applied.put(req.getTransferId(), req);
+        }
+
+        boolean conditional = writer.strategy() == LedgerProperties.Strategy.ATOMIC;
+        Map<Long, Account> accounts = conditional
+                ? Map.of()
+                : writer.lockWait().record(() -> writer.load(LedgerWriter.accountIds(reqs)));
+        for (Map.Entry<Long, Long> d : deltas.entrySet()) {
+            Long id = d.getKey();
+            long delta = d.getValue();
+            try {
+                writer.move(id, delta, accounts, conditional);
+            } catch (ConflictException e) {
+                status.setRollbackOnly();
+                return new BatchTransferResponse(rolledBack(reqs, firstUse.get(id), e.getMessage()));
+            } catch (InsufficientFundsException e) {
+                status.setRollbackOnly();
+                return new BatchTransferResponse(rolledBack(reqs, firstDebit.get(id),
+                        "Insufficient funds: account " + id + " nets " + delta + " over the batch"));
+            }
+        }
+
+        ledgerEntryRepository.saveAll(entries);
+        if (conditional) {
+            accountCache.evictAfterCommit(deltas.keySet());
+        } else {
+            accountCache.putAfterCommit(accounts.values());
+        }
+        trialBalance.recordAfterCommit(entries);
+        applied.keySet().forEach(transferIdFilter::add);
+        log.debug("{} transfers netted into {} balance updates", reqs.size(), deltas.size());
+        List<TransferResponse> results = new ArrayList<>(reqs.size());
+        reqs.forEach(req -> results.add(LedgerService.succeeded(req)));
+        return new BatchTransferResponse(results);
+    }
+
+    private BatchTransferResponse applyBatchSharded(List<TransferRequest> reqs) {
+        List<CompletableFuture<TransferResponse>> pending = new ArrayList<>(reqs.size());
+        for (TransferRequest req : reqs) {
+            try {
+                LedgerService.validate(req);
+                fxRates.requireOneCurrency(List.of(req.getFromAccountId(), req.getToAccountId()));
+                pending.add(engine.submit(req));
+            } catch (ConflictException e) {
+                pending.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        List<TransferResponse> results = new ArrayList<>(reqs.size());
+        for (int i = 0; i < reqs.size(); i++) {
+            TransferRequest req = reqs.get(i);
+            TransferResponse res = pending.get(i)
+                    .exceptionally(e -> failed(req, (e instanceof CompletionException ? e.getCause() : e).getMessage()))
+                    .join();
+            if ("SUCCESS".equals(res.getStatus())) {
+                transferIdFilter.add(req.getTransferId());
+            }
+            results.add(res);
+        }
+        return new BatchTransferResponse(results);
+    }
+
+    private static TransferResponse failed(TransferRequest req, String message) {
+        return new TransferResponse(req.getTransferId(), "FAILED", message,
+                req.getFromAccountId(), req.getToAccountId(), req.getAmount());
+    }
+
+    private static List<TransferResponse> rolledBack(List<TransferRequest> reqs, int failedAt, String reason) {
+        List<TransferResponse> results = new ArrayList<>(reqs.size());
+        for (int i = 0; i < reqs.size(); i++) {
+            results.add(failed(reqs.get(i), i == failedAt ? reason : "Rolled back: batch is all-or-nothing"));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.LedgerEntryResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Dumps {@code ledger_entries} straight from a forward-only, read-only JDBC cursor to an
+ * output stream, merging in the {@link LedgerArchive}'s entries by id. Rows are written as
+ * they are fetched and never collected, so memory stays constant however many rows match;
+ * the fetch size bounds what the driver buffers, and the archive decodes a segment at a time.
+ */
+@Service
+public class ExportService {
+    public enum Format {
+        NDJSON, CSV;
+
+        /** The format called {@code name}, in any case. */
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.name().equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new ConflictException("Unknown export format " + name + "; use ndjson or csv");
+        }
+    }
+
+    private static final String COLUMNS = "id, transfer_id, account_id, amount, type, created_at";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate readOnly;
+    private final ObjectMapper objectMapper;
+    private final LedgerArchive archive;
+
+    public ExportService(DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         LedgerProperties properties,
+                         ObjectMapper objectMapper,
+                         LedgerArchive archive) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(properties.getExport().getFetchSize());
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.archive = archive;
+    }
+
+    /**
+     * Writes every entry matching the optional filters, in id order. {@code from} is
+     * inclusive and {@code to} exclusive. Does not close {@code out}.
+     */
+    public void export(Format format, Long accountId, Instant from, Instant to, OutputStream out) throws IOException {
+        StringBuilder sql = new StringBuilder("select " + COLUMNS + " from ledger_entries where 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (accountId != null) {
+            sql.append(" and account_id = ?");
+            params.add(accountId);
+        }
+        if (from != null) {
+            sql.append(" and created_at >= ?");
+            params.add(from.atOffset(ZoneOffset.UTC));
+        }
+        if (to != null) {
+            sql.append(" and created_at < ?");
+            params.add(to.atOffset(ZoneOffset.UTC));
+        }
+        sql.append(" order by id");
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        RowWriter rows = format == Format.CSV ? new CsvWriter(writer) : new NdjsonWriter(writer);
+        Iterator<LedgerEntryResponse> cold = archive.scan(accountId, from, to);
+        LedgerEntryResponse[] nextCold = {cold.hasNext() ? cold.next() : null};
+        try {
+            // Some drivers (e.g. PostgreSQL) only honour the fetch size inside a transaction
+            readOnly.executeWithoutResult(status -> jdbc.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql.toString(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                for (int i = 0; i < params.size(); i++) {
+                    ps.setObject(i + 1, params.get(i));
+                }
+                return ps;
+            }, rs -> {
+                try {
+                    long id = rs.getLong(1);
+                    // Archived entries below this one go first, so the output stays in id order
+                    while (nextCold[0] != null && nextCold[0].getId() < id) {
+                        rows.write(nextCold[0]);
+                        nextCold[0] = cold.hasNext() ? cold.next() : null;
+                    }
+                    rows.write(new LedgerEntryResponse(id, rs.getString(2), rs.getLong(3), rs.getLong(4),
+                            LedgerEntry.Type.valueOf(rs.getString(5)), rs.getObject(6, OffsetDateTime.class).toInstant()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+            while (nextCold[0] != null) {
+                rows.write(nextCold[0]);
+                nextCold[0] = cold.hasNext() ? cold.next() : null;
+            }
+        } catch (UncheckedIOException e) {
+            // Typically the client went away; stop reading and let the caller see why
+            throw e.getCause();
+        }
+        rows.finish();
+        writer.flush();
+    }
+
+    private interface RowWriter {
+        void write(LedgerEntryResponse e) throws IOException;
+
+        default void finish() throws IOException {}
+    }
+
+    private static final class CsvWriter implements RowWriter {
+        private final Writer out;
+
+        CsvWriter(Writer out) throws IOException {
+            this.out = out;
+            out.write(COLUMNS.replace(" ", "") + "\n");
+        }
+
+        @Override
+        public void write(LedgerEntryResponse e) throws IOException {
+            out.write(Long.toString(e.getId()));
+            out.write(',');
+            out.write(escape(e.getTransferId()));
+            out.write(',');
+            out.write(Long.toString(e.getAccountId()));
+            out.write(',');
+            out.write(Long.toString(e.getAmount()));
+            out.write(',');
+            out.write(e.getType().name());
+            out.write(',');
+            out.write(e.getCreatedAt().toString());
+            out.write('\n');
+        }
+
+        // RFC 4180: quote fields containing separators or quotes, doubling embedded quotes
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private final class NdjsonWriter implements RowWriter {
+        private final JsonGenerator json;
+        private boolean empty = true;
+
+        NdjsonWriter(Writer out) throws IOException {
+            this.json = objectMapper.getFactory().createGenerator(out);
+            json.setRootValueSeparator(new SerializedString("\n"));
+        }
+
+        @Override
+        public void write(LedgerEntryResponse e) throws IOException {
+            json.writeStartObject();
+            json.writeNumberField("id", e.getId());
+            json.writeStringField("transferId", e.getTransferId());
+            json.writeNumberField("accountId", e.getAccountId());
+            json.writeNumberField("amount", e.getAmount());
+            json.writeStringField("type", e.getType().name());
+            json.writeStringField("createdAt", e.getCreatedAt().toString());
+            json.writeEndObject();
+            empty = false;
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (!empty) {
+                // Terminate the last record too, as NDJSON consumers expect
+                json.writeRaw('\n');
+            }
+            json.flush();
+        }
+    }
+}
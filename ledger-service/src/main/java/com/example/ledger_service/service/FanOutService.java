@@ -0,0 +1,305 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.FanOutRequest;
+import com.example.ledger_service.dto.FanOutResponse;
+import com.example.ledger_service.entity.Account;
+import com.example.ledger_service.entity.FanOutItem;
+import com.example.ledger_service.entity.FanOutRun;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.NotFoundException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.FanOutItemRepository;
+import com.example.ledger_service.repository.FanOutRunRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payroll-style fan-out: one source paying many destinations. Accepting a run debits the
+ * source once, for the total, into a clearing account created for the run, and stores the
+ * items. Background workers then credit the destinations from the clearing account a chunk
+ * at a time: each chunk is one transaction that moves every touched account once, batch-inserts
+ * a debit/credit pair per item (transfer {@code <runId>-<index>}) and advances the run's cursor.
+ * A destination that does not exist, or is in another currency than the source, gets its
+ * amount refunded to the source instead. Every commit balances, so reconciliation and the
+ * trial balance hold mid-run, and a run cut short by a restart resumes at its cursor without
+ * crediting anyone twice.
+ */
+@Service
+public class FanOutService {
+    private static final Logger log = LoggerFactory.getLogger(FanOutService.class);
+    // Consecutive failed attempts at one chunk before the run is left for the next start or replay
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final LedgerService ledgerService;
+    private final AccountRepository accountRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final FanOutRunRepository runRepository;
+    private final FanOutItemRepository itemRepository;
+    private final TransferIdFilter transferIdFilter;
+    private final TransactionTemplate tx;
+    private final LedgerProperties properties;
+    private final ExecutorService executor;
+    // Runs a worker on this node is busy with, so no run is picked up twice
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+    private final Timer chunks;
+    private volatile boolean stopping;
+
+    public FanOutService(LedgerService ledgerService,
+                         AccountRepository accountRepository,
+                         LedgerEntryRepository ledgerEntryRepository,
+                         FanOutRunRepository runRepository,
+                         FanOutItemRepository itemRepository,
+                         TransferIdFilter transferIdFilter,
+                         PlatformTransactionManager transactionManager,
+                         LedgerProperties properties,
+                         MeterRegistry meterRegistry) {
+        this.ledgerService = ledgerService;
+        this.accountRepository = accountRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.runRepository = runRepository;
+        this.itemRepository = itemRepository;
+        this.transferIdFilter = transferIdFilter;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        this.executor = Executors.newFixedThreadPool(properties.getFanOut().getThreads(),
+                new CustomizableThreadFactory("ledger-fan-out-"));
+        this.chunks = Timer.builder("ledger.fanout.chunk")
+                .description("Time to credit one chunk of fan-out items")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Funds the run and queues it. A runId that is already known is not funded again: if it
+     * names the same source, item count and total its current status is returned (and a run
+     * that stopped early is queued again), otherwise it is a {@link ConflictException}.
+     */
+    public FanOutResponse start(FanOutRequest req) {
+        if (properties.getEngine() != LedgerProperties.Engine.JPA) {
+            throw new ConflictException("Fan-outs are not supported by the sharded engine");
+        }
+        long total = validate(req);
+        FanOutResponse replay = findStarted(req, total);
+        if (replay != null) {
+            return replay;
+        }
+        String runId = req.getRunId();
+        if (ledgerEntryRepository.existsByTransferId(runId) || ledgerEntryRepository.existsByTransferIdStartingWith(runId + "-")) {
+            throw new ConflictException("runId " + runId + " clashes with transferIds already in the ledger");
+        }
+        try {
+            tx.executeWithoutResult(status -> fund(req, total));
+        } catch (OptimisticLockingFailureException | PessimisticLockingFailureException e) {
+            throw new ConflictException("Account is being updated concurrently, please retry");
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request with the same runId funded it first
+            replay = findStarted(req, total);
+            if (replay != null) {
+                return replay;
+            }
+            throw e;
+        }
+        transferIdFilter.add(runId);
+        log.info("Fan-out {} accepted: {} items, total {}", runId, req.getItems().size(), total);
+        submit(runId);
+        return status(runId);
+    }
+
+    /** Progress of a run and the outcome of each of its items so far. */
+    public FanOutResponse status(String runId) {
+        FanOutRun run = runRepository.findById(runId)
+                .orElseThrow(() -> new NotFoundException("Fan-out " + runId + " not found"));
+        List<FanOutItem> items = itemRepository.findByRunIdOrderByIdx(runId);
+        List<FanOutResponse.Result> results = new ArrayList<>(items.size());
+        for (FanOutItem item : items) {
+            String status = item.getIdx() >= run.getNextItem() ? "PENDING"
+                    : item.getMessage() == null ? "SUCCESS" : "FAILED";
+            results.add(new FanOutResponse.Result(item.getIdx(), transferId(runId, item.getIdx()),
+                    item.getAccountId(), item.getAmount(), status, item.getMessage()));
+        }
+        return new FanOutResponse(runId, run.getStatus().name(), run.getSourceAccountId(), run.getClearingAccountId(),
+                run.getTotal(), run.getNextItem(), run.getFailed(), results);
+    }
+
+    /** Picks up runs that were still crediting destinations when the last process stopped. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        List<FanOutRun> running = runRepository.findByStatus(FanOutRun.Status.RUNNING);
+        if (!running.isEmpty()) {
+            log.info("Resuming {} fan-out runs", running.size());
+        }
+        running.forEach(run -> submit(run.getRunId()));
+    }
+
+    /** Stops workers between chunks; unfinished runs stay RUNNING and resume on the next start. */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopping = true;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /** Checks the items and returns their total. */
+    private static long validate(FanOutRequest req) {
+        long total = 0;
+        for (FanOutRequest.Item item : req.getItems()) {
+            if (item.amount() <= 0) {
+                throw new ConflictException("amount must be > 0");
+            }
+            if (item.accountId().equals(req.getSourceAccountId())) {
+                throw new ConflictException("Destination " + item.accountId() + " is the source account");
+            }
+            try {
+                total = Math.addExact(total, item.amount());
+            } catch (ArithmeticException e) {
+                throw new ConflictException("Fan-out total is too large");
+            }
+        }
+        return total;
+    }
+
+    private FanOutResponse findStarted(FanOutRequest req, long total) {
+        FanOutRun run = runRepository.findById(req.getRunId()).orElse(null);
+        if (run == null) {
+            return null;
+        }
+        if (!run.getSourceAccountId().equals(req.getSourceAccountId()) || run.getItems() != req.getItems().size()
+                || run.getTotal() != total) {
+            throw new ConflictException("runId " + req.getRunId() + " was already used for a different fan-out");
+        }
+        if (run.getStatus() == FanOutRun.Status.RUNNING) {
+            submit(run.getRunId());
+        }
+        return status(run.getRunId());
+    }
+
+    /** Moves the total from the source into a new clearing account and stores the run. */
+    private void fund(FanOutRequest req, long total) {
+        String runId = req.getRunId();
+        Long source = req.getSourceAccountId();
+        String currency = accountRepository.findCurrencyById(source)
+                .orElseThrow(() -> new ConflictException("Account " + source + " not found"));
+        Account clearing = accountRepository.save(new Account(0, "Fan-out " + runId + " clearing", currency));
+        Map<Long, Long> deltas = new TreeMap<>();
+        deltas.put(source, -total);
+        deltas.put(clearing.getId(), total);
+        ledgerService.post(deltas, List.of(
+                new LedgerEntry(runId, source, total, LedgerEntry.Type.DEBIT),
+                new LedgerEntry(runId, clearing.getId(), total, LedgerEntry.Type.CREDIT)));
+        runRepository.save(new FanOutRun(runId, source, clearing.getId(), total, req.getItems().size()));
+        List<FanOutItem> items = new ArrayList<>(req.getItems().size());
+        for (int i = 0; i < req.getItems().size(); i++) {
+            FanOutRequest.Item item = req.getItems().get(i);
+            items.add(new FanOutItem(runId, i, item.accountId(), item.amount()));
+        }
+        itemRepository.saveAll(items);
+    }
+
+    private void submit(String runId) {
+        if (!stopping && active.add(runId)) {
+            executor.execute(() -> process(runId));
+        }
+    }
+
+    private void process(String runId) {
+        try {
+            int attempts = 0;
+            while (!stopping) {
+                try {
+                    if (!chunks.record(() -> applyChunk(runId))) {
+                        log.info("Fan-out {} completed", runId);
+                        return;
+                    }
+                    attempts = 0;
+                } catch (OptimisticLockingFailureException | PessimisticLockingFailureException | ConflictException e) {
+                    if (++attempts == MAX_ATTEMPTS) {
+                        log.warn("Fan-out {} stopped after {} failed attempts at one chunk: {}", runId, attempts, e.getMessage());
+                        return;
+                    }
+                    Thread.sleep(50L * attempts);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Fan-out {} stopped", runId, e);
+        } finally {
+            active.remove(runId);
+        }
+    }
+
+    /**
+     * Credits the next chunk of items from the clearing account, in one transaction with the
+     * advance of the run's cursor. Returns false once the run is complete.
+     */
+    private boolean applyChunk(String runId) {
+        List<String> applied = new ArrayList<>();
+        Boolean more = tx.execute(status -> {
+            FanOutRun run = runRepository.findById(runId).orElseThrow();
+            if (run.getStatus() == FanOutRun.Status.COMPLETED) {
+                return false;
+            }
+            int from = run.getNextItem();
+            List<FanOutItem> items = itemRepository.findChunk(runId, from, from + properties.getFanOut().getChunkSize());
+            Set<Long> destinations = new HashSet<>();
+            items.forEach(item -> destinations.add(item.getAccountId()));
+            Long clearing = run.getClearingAccountId();
+            // The clearing account is in the source's currency; nothing in a fan-out converts
+            Set<Long> existing = new HashSet<>(accountRepository.findExistingIdsInCurrencyOf(destinations, clearing));
+
+            Map<Long, Long> deltas = new TreeMap<>();
+            List<LedgerEntry> entries = new ArrayList<>(items.size() * 2);
+            int failed = 0;
+            for (FanOutItem item : items) {
+                Long to = item.getAccountId();
+                if (!existing.contains(to)) {
+                    item.fail("Account " + to + " not found or not in the source's currency; refunded to the source");
+                    to = run.getSourceAccountId();
+                    failed++;
+                }
+                String transferId = transferId(runId, item.getIdx());
+                deltas.merge(clearing, -item.getAmount(), Long::sum);
+                deltas.merge(to, item.getAmount(), Long::sum);
+                entries.add(new LedgerEntry(transferId, clearing, item.getAmount(), LedgerEntry.Type.DEBIT));
+                entries.add(new LedgerEntry(transferId, to, item.getAmount(), LedgerEntry.Type.CREDIT));
+                applied.add(transferId);
+            }
+            ledgerService.post(deltas, entries);
+            run.advance(items.size(), failed);
+            runRepository.save(run);
+            log.debug("Fan-out {}: items {} to {} credited, {} refunded", runId, from, from + items.size(), failed);
+            return run.getStatus() == FanOutRun.Status.RUNNING;
+        });
+        applied.forEach(transferIdFilter::add);
+        return Boolean.TRUE.equals(more);
+    }
+
+    private static String transferId(String runId, int idx) {
+        return runId + "-" + idx;
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.FxRatesResponse;
+import com.example.ledger_service.entity.Account;
+import com.example.ledger_service.entity.FxPosition;
+import com.example.ledger_service.entity.FxRate;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.NotFoundException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.FxPositionRepository;
+import com.example.ledger_service.repository.FxRateRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FX rate table for cross-currency transfers. The table is an immutable snapshot behind one
+ * volatile field: publishing builds a complete new version and swaps it in once it is stored,
+ * so a transfer gets its rates, their version and the FX position accounts from a single read,
+ * never takes a lock, and never sees half of a publish. Every version is kept in
+ * {@code fx_rates}, so the {@code fxRateVersion} on an entry always resolves to the rates it
+ * was converted at. Rates are units of a currency per unit of the base currency; other nodes
+ * pick up a new version within {@code ledger.fx.refresh-interval}.
+ */
+@Service
+public class FxRates {
+    private static final Logger log = LoggerFactory.getLogger(FxRates.class);
+
+    /** Decimal places a rate may have; the column's scale. */
+    private static final int RATE_SCALE = 12;
+
+    private record Table(long version, Map<String, BigDecimal> rates, Map<String, Long> positions, Instant publishedAt) {
+        Table {
+            rates = Map.copyOf(rates);
+            positions = Map.copyOf(positions);
+        }
+    }
+
+    /** A cross-currency transfer priced against one table version. */
+    public record Quote(long amount, long converted, long version, Long fromPosition, Long toPosition) {}
+
+    private final AccountRepository accountRepository;
+    private final FxRateRepository rateRepository;
+    private final FxPositionRepository positionRepository;
+    private final TransactionTemplate tx;
+    private final LedgerProperties.Fx config;
+    // An account's currency never changes, so entries never go stale
+    private final Cache<Long, String> currencies;
+    // Replaced whole, never modified; null while FX is disabled
+    private volatile Table current;
+    private ScheduledExecutorService scheduler;
+
+    public FxRates(AccountRepository accountRepository,
+                   FxRateRepository rateRepository,
+                   FxPositionRepository positionRepository,
+                   PlatformTransactionManager transactionManager,
+                   LedgerProperties properties) {
+        this.accountRepository = accountRepository;
+        this.rateRepository = rateRepository;
+        this.positionRepository = positionRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.config = properties.getFx();
+        this.currencies = Caffeine.newBuilder()
+                .maximumSize(properties.getAccountCache().getMaximumSize())
+                .build();
+    }
+
+    @PostConstruct
+    void start() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (!refresh()) {
+            publishVersion(config.getRates());
+        }
+        long interval = config.getRefreshInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ledger-fx-"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (RuntimeException e) {
+                // Keep the schedule alive; transfers go on converting at the current version
+                log.error("FX rate refresh failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return current != null;
+    }
+
+    public FxRatesResponse current() {
+        return toResponse(requireTable());
+    }
+
+    /** A published version, read back from {@code fx_rates}. */
+    public FxRatesResponse version(long version) {
+        requireTable();
+        return toResponse(load(version));
+    }
+
+    /**
+     * Publishes a new version: {@code rates} over the latest ones, so a currency once quoted
+     * always keeps a rate. A currency quoted for the first time gets its FX position account.
+     * Publishers on one node take turns; across nodes the version's unique key lets one win.
+     */
+    public FxRatesResponse publish(Map<String, BigDecimal> rates) {
+        requireTable();
+        return toResponse(publishVersion(rates));
+    }
+
+    /**
+     * Prices moving {@code amount} from one account to the other, or returns null when FX is
+     * disabled, either account does not exist, or both are in the same currency.
+     */
+    public Quote quote(Long fromAccountId, Long toAccountId, long amount) {
+        // The one read of the table: rates, version and positions all come from the same publish
+        Table table = current;
+        if (table == null) {
+            return null;
+        }
+        String from = currencyOf(fromAccountId);
+        String to = currencyOf(toAccountId);
+        if (from == null || to == null || from.equals(to)) {
+            return null;
+        }
+        long converted = convert(table, amount, from, to);
+        if (converted == 0) {
+            throw new ConflictException("Amount " + amount + " " + from + " converts to nothing in " + to);
+        }
+        return new Quote(amount, converted, table.version(), table.positions().get(from), table.positions().get(to));
+    }
+
+    /** Refuses moves between accounts in different currencies, for flows that do not convert. */
+    public void requireOneCurrency(Collection<Long> accountIds) {
+        if (current == null) {
+            return;
+        }
+        Long first = null;
+        String currency = null;
+        for (Long id : accountIds) {
+            String c = currencyOf(id);
+            if (c == null) {
+                // Missing accounts fail where they are moved
+                continue;
+            }
+            if (currency == null) {
+                first = id;
+                currency = c;
+            } else if (!c.equals(currency)) {
+                throw new ConflictException("Accounts " + first + " (" + currency + ") and " + id + " (" + c
+                        + ") are in different currencies; only single transfers convert");
+            }
+        }
+    }
+
+    /** The account's currency, or null if it does not exist. */
+    public String currencyOf(Long accountId) {
+        return currencies.get(accountId, id -> accountRepository.findCurrencyById(id).orElse(null));
+    }
+
+    /** The currency to open an account in: the base currency unless another one with a rate is asked for. */
+    public String accountCurrency(String requested) {
+        String base = config.getBaseCurrency();
+        if (requested == null || requested.equals(base)) {
+            return base;
+        }
+        Table table = current;
+        if (table == null) {
+            throw new ConflictException("Accounts are opened in " + base + " unless ledger.fx.enabled=true");
+        }
+        if (!table.rates().containsKey(requested)) {
+            throw new ConflictException("No FX rate for " + requested);
+        }
+        return requested;
+    }
+
+    /** {@code amount} minor units of {@code from} in minor units of {@code to}, rounded half-even. */
+    private static long convert(Table table, long amount, String from, String to) {
+        BigDecimal converted = BigDecimal.valueOf(amount, digits(from))
+                .multiply(rate(table, to))
+                .divide(rate(table, from), digits(to), RoundingMode.HALF_EVEN);
+        try {
+            return converted.unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new ConflictException("Converted amount is too large");
+        }
+    }
+
+    private static BigDecimal rate(Table table, String currency) {
+        BigDecimal rate = table.rates().get(currency);
+        if (rate == null) {
+            throw new ConflictException("No FX rate for " + currency);
+        }
+        return rate;
+    }
+
+    /** Minor units per major unit, as a power of ten: 2 for USD, 0 for JPY. */
+    private static int digits(String currency) {
+        return Math.max(0, Currency.getInstance(currency).getDefaultFractionDigits());
+    }
+
+    /** Loads the latest stored version if it is newer than the current one; false if none is stored. */
+    private synchronized boolean refresh() {
+        Long latest = rateRepository.findLatestVersion().orElse(null);
+        if (latest == null) {
+            return false;
+        }
+        Table table = current;
+        if (table == null || table.version() < latest) {
+            current = load(latest);
+            log.info("FX rate table version {} loaded", latest);
+        }
+        return true;
+    }
+
+    private synchronized Table publishVersion(Map<String, BigDecimal> rates) {
+        // Merge over the latest version, which may have come from another node
+        refresh();
+        Table previous = current;
+        String base = config.getBaseCurrency();
+        Map<String, BigDecimal> merged = new TreeMap<>(previous == null ? Map.of(base, BigDecimal.ONE) : previous.rates());
+        rates.forEach((currency, rate) -> merged.put(checkCurrency(currency), checkRate(currency, rate)));
+        if (merged.get(base).compareTo(BigDecimal.ONE) != 0) {
+            throw new ConflictException("The base currency " + base + " is quoted at 1");
+        }
+
+        Table next = tx.execute(status -> {
+            long version = previous == null ? 1 : previous.version() + 1;
+            Instant now = Instant.now();
+            List<FxRate> rows = new ArrayList<>(merged.size());
+            merged.forEach((currency, rate) -> rows.add(new FxRate(version, currency, rate, now)));
+            rateRepository.saveAll(rows);
+            Map<String, Long> positions = new HashMap<>(previous == null ? Map.of() : previous.positions());
+            for (String currency : merged.keySet()) {
+                if (!positions.containsKey(currency)) {
+                    Account position = accountRepository.save(new Account(0, "FX position " + currency, currency));
+                    positionRepository.save(new FxPosition(currency, position.getId()));
+                    positions.put(currency, position.getId());
+                }
+            }
+            return new Table(version, merged, positions, now);
+        });
+        // Swapped only once stored: a version in use is always on record
+        current = next;
+        log.info("FX rate table version {} published: {}", next.version(), next.rates());
+        return next;
+    }
+
+    private Table load(long version) {
+        List<FxRate> rows = rateRepository.findByVersion(version);
+        if (rows.isEmpty()) {
+            throw new NotFoundException("FX rate table version " + version + " not found");
+        }
+        Map<String, BigDecimal> rates = new HashMap<>();
+        rows.forEach(r -> rates.put(r.getCurrency(), plain(r.getRate())));
+        Map<String, Long> positions = new HashMap<>();
+        positionRepository.findAll().forEach(p -> positions.put(p.getCurrency(), p.getAccountId()));
+        return new Table(version, rates, positions, rows.get(0).getPublishedAt());
+    }
+
+    private Table requireTable() {
+        Table table = current;
+        if (table == null) {
+            throw new ConflictException("FX rates are disabled (ledger.fx.enabled=false)");
+        }
+        return table;
+    }
+
+    private static String checkCurrency(String currency) {
+        try {
+            Currency.getInstance(currency);
+            return currency;
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new ConflictException("Unknown currency " + currency);
+        }
+    }
+
+    private static BigDecimal checkRate(String currency, BigDecimal rate) {
+        if (rate == null || rate.signum() <= 0) {
+            throw new ConflictException("Rate for " + currency + " must be > 0");
+        }
+        if (rate.scale() > RATE_SCALE) {
+            throw new ConflictException("Rate for " + currency + " has more than " + RATE_SCALE + " decimal places");
+        }
+        return plain(rate);
+    }
+
+    /** The same rate whether it was just published or read back at the column's scale: 0.9, not 0.900000000000. */
+    private static BigDecimal plain(BigDecimal rate) {
+        BigDecimal stripped = rate.stripTrailingZeros();
+        return stripped.scale() < 0 ? stripped.setScale(0) : stripped;
+    }
+
+    private FxRatesResponse toResponse(Table table) {
+        return new FxRatesResponse(table.version(), config.getBaseCurrency(), new TreeMap<>(table.rates()),
+                new TreeMap<>(table.positions()), table.publishedAt());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.dto.TransferRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Applies transfers between accounts in different currencies, at the rates of a
+ * {@link FxRates.Quote}, for {@link LedgerService#doApplyTransfer}: each conversion runs in a
+ * transaction of its own, with group commit on or not.
+ */
+@Service
+public class FxTransferService {
+    private static final Logger log = LoggerFactory.getLogger(FxTransferService.class);
+
+    private final LedgerWriter writer;
+
+    public FxTransferService(LedgerWriter writer) {
+        this.writer = writer;
+    }
+
+    TransferResponse apply(TransferRequest req, FxRates.Quote quote) {
+        return writer.inTransaction(req.getTransferId(), () -> accountIds(req, quote), status -> applyConverted(req, quote));
+    }
+
+    /**
+     * Cross-currency transfer at the rates of {@code quote}, as four entries under the
+     * transferId: the source pays the FX position of its currency, and the position of the
+     * destination's currency pays the destination, so debits equal credits within each
+     * currency. Only the source is funds-checked; a position may go negative. Every entry
+     * records the rate table version it was converted at. Every conversion moves the same two
+     * position rows, so whatever the strategy all four accounts move with conditional updates
+     * in id order: concurrent conversions queue on the position rows' locks instead of failing
+     * on a stale version, and take them in the order {@link LedgerWriter#find} locks rows.
+     */
+    private TransferResponse applyConverted(TransferRequest req, FxRates.Quote quote) {
+        String transferId = req.getTransferId();
+        Long fromId = req.getFromAccountId();
+        Long toId = req.getToAccountId();
+        long amount = quote.amount();
+        long converted = quote.converted();
+        long version = quote.version();
+        Map<Long, Long> deltas = new TreeMap<>();
+        deltas.merge(fromId, -amount, LedgerWriter::plus);
+        deltas.merge(quote.fromPosition(), amount, LedgerWriter::plus);
+        deltas.merge(quote.toPosition(), -converted, LedgerWriter::plus);
+        deltas.merge(toId, converted, LedgerWriter::plus);
+        writer.post(deltas, List.of(
+                new LedgerEntry(transferId, fromId, amount, LedgerEntry.Type.DEBIT, 0, version),
+                new LedgerEntry(transferId, quote.fromPosition(), amount, LedgerEntry.Type.CREDIT, 1, version),
+                new LedgerEntry(transferId, quote.toPosition(), converted, LedgerEntry.Type.DEBIT, 2, version),
+                new LedgerEntry(transferId, toId, converted, LedgerEntry.Type.CREDIT, 3, version)), Set.of(fromId), true);
+        log.debug("Transfer applied: {} ({} converted to {} at FX version {})", transferId, amount, converted, version);
+        return new TransferResponse(transferId, "SUCCESS", "OK", fromId, toId, amount, converted, version);
+    }
+
+    /** Every account a conversion moves, its FX positions included, in id order. */
+    private static Set<Long> accountIds(TransferRequest req, FxRates.Quote quote) {
+        Set<Long> ids = LedgerWriter.accountIds(List.of(req));
+        ids.add(quote.fromPosition());
+        ids.add(quote.toPosition());
+        return ids;
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.TransferRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.exception.OverloadedException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrently arriving transfers into shared database transactions so that
+ * one commit (and one fsync) is paid per group instead of per transfer. A single thread
+ * opens a group with the first waiting transfer, keeps collecting until the window closes
+ * or the group is full, applies it, then completes every caller with its own outcome.
+ * When the shared transaction itself fails, each member is retried in a transaction of its
+ * own, so one transfer's failure never becomes another's.
+ */
+class GroupCommitter implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitter.class);
+
+    private record Pending(TransferRequest req, CompletableFuture<TransferResponse> result, long enqueuedAt) {}
+
+    private static final Pending STOP = new Pending(null, null, 0);
+
+    private final Function<List<TransferRequest>, List<RuntimeException>> applier;
+    private final long windowNanos;
+    private final int maxSize;
+    private final BlockingQueue<Pending> queue;
+    private final DistributionSummary groupSize;
+    private final Timer groupWait;
+    private final Timer groupCommit;
+    private volatile boolean stopped;
+    private Thread thread;
+
+    GroupCommitter(LedgerProperties.GroupCommit config,
+                   Function<List<TransferRequest>, List<RuntimeException>> applier,
+                   MeterRegistry meterRegistry) {
+        this.applier = applier;
+        this.windowNanos = config.getWindow().toNanos();
+        this.maxSize = config.getMaxSize();
+        this.queue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.groupSize = DistributionSummary.builder("ledger.groupcommit.size")
+                .description("Transfers applied per group-commit transaction")
+                .register(meterRegistry);
+        this.groupWait = Timer.builder("ledger.groupcommit.wait")
+                .description("Time a transfer waited for its group to start")
+                .register(meterRegistry);
+        this.groupCommit = Timer.builder("ledger.groupcommit.commit")
+                .description("Time to apply and commit one group")
+                .register(meterRegistry);
+    }
+
+    void start() {
+        thread = new Thread(this, "ledger-group-commit");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        if (thread == null) return;
+        stopped = true;
+        queue.offer(STOP);
+        try {
+            thread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failQueued();
+    }
+
+    /** Queues the transfer for the next group and waits for its individual outcome. */
+    TransferResponse apply(TransferRequest req) {
+        if (stopped) {
+            throw stopping();
+        }
+        CompletableFuture<TransferResponse> result = new CompletableFuture<>();
+        try {
+            queue.put(new Pending(req, result, System.nanoTime()));
+            if (stopped) {
+                // Raced with stop(): the thread may already be gone, so nobody else would answer
+                failQueued();
+            }
+            return result.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void run() {
+        List<Pending> group = new ArrayList<>(maxSize);
+        while (true) {
+            try {
+                Pending first = queue.take();
+                if (first == STOP) {
+                    return;
+                }
+                group.add(first);
+                boolean stop = collect(group, System.nanoTime() + windowNanos);
+                commit(group);
+                if (stop) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    /** Fills the group until it is full or the window closes; returns true if STOP was seen. */
+    private boolean collect(List<Pending> group, long deadline) throws InterruptedException {
+        while (group.size() < maxSize) {
+            long remaining = deadline - System.nanoTime();
+            Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                return false;
+            }
+            if (next == STOP) {
+                return true;
+            }
+            group.add(next);
+        }
+        return false;
+    }
+
+    /** Fails whatever is still queued; STOP is put back for the thread if it has not taken it yet. */
+    private void failQueued() {
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (Pending p : left) {
+            if (p == STOP) {
+                queue.offer(STOP);
+            } else {
+                p.result().completeExceptionally(stopping());
+            }
+        }
+    }
+
+    private static OverloadedException stopping() {
+        return new OverloadedException("Ledger is shutting down, please retry");
+    }
+
+    private void commit(List<Pending> group) {
+        long start = System.nanoTime();
+        List<TransferRequest> reqs = new ArrayList<>(group.size());
+        for (Pending p : group) {
+            groupWait.record(start - p.enqueuedAt(), TimeUnit.NANOSECONDS);
+            reqs.add(p.req());
+        }
+        groupSize.record(group.size());
+
+        List<RuntimeException> failures;
+        try {
+            failures = applier.apply(reqs);
+        } catch (RuntimeException e) {
+            if (group.size() == 1) {
+                group.get(0).result().completeExceptionally(e);
+                return;
+            }
+            // The shared transaction itself failed (a duplicate at flush, a conflict with a writer
+            // outside the group): nobody was applied, and the cause may be any one member.
+            log.warn("Group of {} transfers failed, retrying each on its own: {}", group.size(), e.getMessage());
+            for (Pending p : group) {
+                commitAlone(p);
+            }
+            return;
+        } finally {
+            groupCommit.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        for (int i = 0; i < group.size(); i++) {
+            complete(group.get(i), failures.get(i));
+        }
+    }
+
+    private void commitAlone(Pending p) {
+        try {
+            complete(p, applier.apply(List.of(p.req())).get(0));
+        } catch (RuntimeException e) {
+            p.result().completeExceptionally(e);
+        }
+    }
+
+    private static void complete(Pending p, RuntimeException failure) {
+        if (failure == null) {
+            TransferRequest req = p.req();
+            p.result().complete(new TransferResponse(req.getTransferId(), "SUCCESS", "OK",
+                    req.getFromAccountId(), req.getToAccountId(), req.getAmount()));
+        } else {
+            p.result().completeExceptionally(failure);
+        }
+    }
+}
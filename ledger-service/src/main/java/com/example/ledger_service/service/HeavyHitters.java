@@ -0,0 +1,152 @@
+package com.example.ledger_service.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Approximate per-key counts over a sliding window, plus the top K keys. Counts live in a
+ * Count-Min sketch: {@code depth} rows of {@code width} counters, each row indexed by its own
+ * hash, the estimate being the smallest of a key's counters. An estimate can overcount
+ * because of collisions but never undercounts. Memory stays fixed however many keys are seen.
+ *
+ * <p>The window has two generations of sketches, and the older one is dropped every
+ * {@code windowMillis}. Adding a key costs {@code depth} atomic increments and reads. Keys
+ * already in the top K refresh their count without locking. A lock is taken only when
+ * another key's estimate beats the smallest count in the top K.
+ */
+final class HeavyHitters {
+
+    record Hit(long key, long count) {}
+
+    private static final class Sketch {
+        final AtomicLongArray counters;
+        final int width;
+        final int depth;
+
+        Sketch(int depth, int width) {
+            this.counters = new AtomicLongArray(depth * width);
+            this.width = width;
+            this.depth = depth;
+        }
+
+        /** Increments the key's counters and returns its new estimate. */
+        long increment(long key) {
+            long min = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                min = Math.min(min, counters.incrementAndGet(row * width + index(key, row)));
+            }
+            return min;
+        }
+
+        long estimate(long key) {
+            long min = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                min = Math.min(min, counters.get(row * width + index(key, row)));
+            }
+            return min;
+        }
+
+        private int index(long key, int row) {
+            return (int) (mix(key + row * 0x9E3779B97F4A7C15L) & (width - 1));
+        }
+    }
+
+    private final int depth;
+    private final int width;
+    private final int k;
+    private final long windowMillis;
+    private final Consumer<HeavyHitters> onRotate;
+    // The top K with their estimate when last seen; membership changes only under the lock
+    private final Map<Long, Long> top = new ConcurrentHashMap<>();
+    private volatile Sketch current;
+    private volatile Sketch previous;
+    private volatile long windowStart;
+    private volatile long threshold;
+
+    HeavyHitters(int depth, int width, int k, long windowMillis, Consumer<HeavyHitters> onRotate) {
+        this.depth = Math.max(1, depth);
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.k = Math.max(1, k);
+        this.windowMillis = windowMillis;
+        this.onRotate = onRotate;
+        this.current = new Sketch(this.depth, this.width);
+        this.previous = new Sketch(this.depth, this.width);
+        this.windowStart = System.currentTimeMillis();
+    }
+
+    void add(long key) {
+        long now = System.currentTimeMillis();
+        if (now - windowStart >= windowMillis) {
+            rotate(now);
+        }
+        long estimate = current.increment(key) + previous.estimate(key);
+        if (top.computeIfPresent(key, (id, count) -> Math.max(count, estimate)) == null && estimate > threshold) {
+            offer(key, estimate);
+        }
+    }
+
+    long estimate(long key) {
+        return current.estimate(key) + previous.estimate(key);
+    }
+
+    /** Start of the older generation, i.e. of the span the estimates cover. */
+    long since() {
+        return windowStart - windowMillis;
+    }
+
+    /** The top K keys by current estimate, heaviest first. */
+    List<Hit> top() {
+        List<Hit> hits = new ArrayList<>(k);
+        for (Long key : top.keySet()) {
+            hits.add(new Hit(key, estimate(key)));
+        }
+        hits.sort((a, b) -> Long.compare(b.count(), a.count()));
+        return hits;
+    }
+
+    private synchronized void offer(long key, long estimate) {
+        top.put(key, estimate);
+        if (top.size() > k) {
+            top.remove(minKey());
+        }
+        threshold = top.size() < k ? 0 : top.get(minKey());
+    }
+
+    private synchronized void rotate(long now) {
+        if (now - windowStart < windowMillis) {
+            return;
+        }
+        previous = current;
+        current = new Sketch(depth, width);
+        windowStart = now;
+        // Candidates carry over with what the surviving generation still counts for them
+        top.replaceAll((key, count) -> previous.estimate(key));
+        top.values().removeIf(count -> count == 0);
+        threshold = top.size() < k ? 0 : top.get(minKey());
+        onRotate.accept(this);
+    }
+
+    private Long minKey() {
+        Long min = null;
+        for (Map.Entry<Long, Long> e : top.entrySet()) {
+            if (min == null || e.getValue() < top.get(min)) {
+                min = e.getKey();
+            }
+        }
+        return min;
+    }
+
+    /** MurmurHash3 finalizer. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
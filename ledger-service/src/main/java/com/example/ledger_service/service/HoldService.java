@@ -0,0 +1,325 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.CaptureRequest;
+import com.example.ledger_service.dto.HoldRequest;
+import com.example.ledger_service.dto.HoldResponse;
+import com.example.ledger_service.entity.Hold;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.exception.NotFoundException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.HoldRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authorize / capture / void holds for card-style flows. Each account keeps the sum of its
+ * open holds in {@code held}, maintained by the same conditional updates that open and
+ * settle holds, so the available balance ({@code balance - held}) is one column away on every
+ * debit path and no open hold is ever scanned. Authorizing is one conditional {@code UPDATE}
+ * plus one insert; capturing releases the hold and debits in one update, then credits the
+ * destination as a transfer whose transferId is the holdId. Expired holds are released by a
+ * background sweep.
+ */
+@Service
+public class HoldService {
+    private static final Logger log = LoggerFactory.getLogger(HoldService.class);
+
+    private final AccountRepository accountRepository;
+    private final HoldRepository holdRepository;
+    private final LedgerService ledgerService;
+    private final AppliedTransfers appliedTransfers;
+    private final AccountCache accountCache;
+    private final TransferIdFilter transferIdFilter;
+    private final FxRates fxRates;
+    private final TransactionTemplate tx;
+    private final LedgerProperties properties;
+    private final Map<Hold.Status, Counter> outcomes = new EnumMap<>(Hold.Status.class);
+    private ScheduledExecutorService scheduler;
+
+    public HoldService(AccountRepository accountRepository,
+                       HoldRepository holdRepository,
+                       LedgerService ledgerService,
+                       AppliedTransfers appliedTransfers,
+                       AccountCache accountCache,
+                       TransferIdFilter transferIdFilter,
+                       FxRates fxRates,
+                       PlatformTransactionManager transactionManager,
+                       LedgerProperties properties,
+                       MeterRegistry meterRegistry) {
+        this.accountRepository = accountRepository;
+        this.holdRepository = holdRepository;
+        this.ledgerService = ledgerService;
+        this.appliedTransfers = appliedTransfers;
+        this.accountCache = accountCache;
+        this.transferIdFilter = transferIdFilter;
+        this.fxRates = fxRates;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.properties = properties;
+        for (Hold.Status s : Hold.Status.values()) {
+            outcomes.put(s, Counter.builder("ledger.holds")
+                    .description("Holds moved into each status")
+                    .tag("status", s.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        long interval = properties.getHolds().getSweepInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ledger-holds-"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                expireHolds(Instant.now());
+            } catch (RuntimeException e) {
+                // Keep the schedule alive; the next sweep finds the same holds
+                log.error("Hold expiry sweep failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Reserves {@code amount} of the account's available balance. A holdId that is already
+     * known is not reserved again: the same hold is returned, or a {@link ConflictException}
+     * if it was used for a different account or amount. Known holdIds are only looked for
+     * once the reservation fails, so a new hold costs one update and one insert.
+     */
+    public HoldResponse authorize(HoldRequest req) {
+        if (properties.getEngine() != LedgerProperties.Engine.JPA) {
+            throw new ConflictException("Holds are not supported by the sharded engine");
+        }
+        Duration ttl = req.getTtl() == null ? properties.getHolds().getDefaultTtl() : req.getTtl();
+        if (ttl.isNegative() || ttl.isZero() || ttl.compareTo(properties.getHolds().getMaxTtl()) > 0) {
+            throw new ConflictException("ttl must be positive and at most " + properties.getHolds().getMaxTtl());
+        }
+        // The capture is written under the holdId, so it must not name an existing transfer
+        if (transferIdFilter.mightContain(req.getHoldId()) && !appliedTransfers.entries(req.getHoldId()).isEmpty()) {
+            HoldResponse replay = findAuthorized(req);
+            if (replay != null) {
+                return replay;
+            }
+            throw new ConflictException("holdId " + req.getHoldId() + " clashes with a transferId already in the ledger");
+        }
+        Long accountId = req.getAccountId();
+        Hold hold;
+        try {
+            hold = inTransaction(status -> {
+                if (accountRepository.hold(accountId, req.getAmount()) == 0) {
+                    // Only the failure path pays for a lookup to tell the causes apart
+                    int slots = accountRepository.findSlotsById(accountId)
+                            .orElseThrow(() -> new NotFoundException("Account " + accountId + " not found"));
+                    if (slots > 0) {
+                        throw new ConflictException("Holds are not supported on split accounts");
+                    }
+                    throw new InsufficientFundsException("Insufficient available funds");
+                }
+                accountCache.evictAfterCommit(List.of(accountId));
+                return holdRepository.save(new Hold(req.getHoldId(), accountId, req.getAmount(), Instant.now().plus(ttl)));
+            });
+        } catch (DataIntegrityViolationException | InsufficientFundsException e) {
+            // The holdId is taken (its primary key rolled the reservation back), or is a replay of
+            // a hold whose funds are already reserved
+            HoldResponse replay = findAuthorized(req);
+            if (replay != null) {
+                return replay;
+            }
+            throw e;
+        }
+        outcomes.get(Hold.Status.AUTHORIZED).increment();
+        log.debug("Hold authorized: {} ({} on account {})", hold.getHoldId(), hold.getAmount(), accountId);
+        return toResponse(hold);
+    }
+
+    /**
+     * Turns the hold into a transfer of {@code amount} (the whole hold by default) to the
+     * destination and releases the rest. Capturing a captured hold again with the same
+     * destination and amount returns it unchanged.
+     */
+    public HoldResponse capture(String holdId, CaptureRequest req) {
+        Hold captured = inTransaction(status -> {
+            Hold hold = lock(holdId);
+            Long from = hold.getAccountId();
+            Long to = req.getToAccountId();
+            long amount = req.getAmount() == null ? hold.getAmount() : req.getAmount();
+            if (hold.getStatus() == Hold.Status.CAPTURED) {
+                if (!to.equals(hold.getCapturedTo()) || amount != hold.getCapturedAmount()) {
+                    throw new ConflictException("Hold " + holdId + " was already captured differently");
+                }
+                return null;
+            }
+            Instant now = Instant.now();
+            requireOpen(hold, now);
+            if (amount > hold.getAmount()) {
+                throw new ConflictException("Capture of " + amount + " exceeds hold " + holdId + " of " + hold.getAmount());
+            }
+            if (to.equals(from)) {
+                throw new ConflictException("toAccountId must differ from the held account");
+            }
+            fxRates.requireOneCurrency(List.of(from, to));
+            // Both accounts are updated in ascending id order, as transfers do
+            Map<Long, Long> credit = new TreeMap<>(Map.of(to, amount));
+            List<LedgerEntry> entries = List.of(
+                    new LedgerEntry(holdId, from, amount, LedgerEntry.Type.DEBIT),
+                    new LedgerEntry(holdId, to, amount, LedgerEntry.Type.CREDIT));
+            if (from < to) {
+                take(hold, amount);
+                ledgerService.post(credit, entries);
+            } else {
+                ledgerService.post(credit, entries);
+                take(hold, amount);
+            }
+            hold.capture(to, amount, now);
+            return hold;
+        });
+        if (captured == null) {
+            return get(holdId);
+        }
+        transferIdFilter.add(holdId);
+        outcomes.get(Hold.Status.CAPTURED).increment();
+        log.debug("Hold captured: {} ({} to account {})", holdId, captured.getCapturedAmount(), captured.getCapturedTo());
+        return toResponse(captured);
+    }
+
+    /** Releases the hold. Voiding a voided hold again is a no-op. */
+    public HoldResponse voidHold(String holdId) {
+        Hold voided = inTransaction(status -> {
+            Hold hold = lock(holdId);
+            if (hold.getStatus() == Hold.Status.VOIDED) {
+                return null;
+            }
+            if (hold.getStatus() != Hold.Status.AUTHORIZED) {
+                throw new ConflictException("Hold " + holdId + " is " + hold.getStatus().name().toLowerCase());
+            }
+            accountRepository.release(hold.getAccountId(), hold.getAmount());
+            accountCache.evictAfterCommit(List.of(hold.getAccountId()));
+            hold.close(Hold.Status.VOIDED, Instant.now());
+            return hold;
+        });
+        if (voided == null) {
+            return get(holdId);
+        }
+        outcomes.get(Hold.Status.VOIDED).increment();
+        return toResponse(voided);
+    }
+
+    public HoldResponse get(String holdId) {
+        return holdRepository.findById(holdId)
+                .map(HoldService::toResponse)
+                .orElseThrow(() -> new NotFoundException("Hold " + holdId + " not found"));
+    }
+
+    /**
+     * Releases every hold still authorized past its deadline, {@code sweep-batch-size} per
+     * transaction, each account updated once per batch. Returns the number expired.
+     */
+    public int expireHolds(Instant now) {
+        int batch = properties.getHolds().getSweepBatchSize();
+        int expired = 0;
+        while (true) {
+            List<String> ids = holdRepository.findExpiredIds(Hold.Status.AUTHORIZED, now, Limit.of(batch));
+            if (ids.isEmpty()) {
+                break;
+            }
+            expired += inTransaction(status -> {
+                Map<Long, Long> releases = new TreeMap<>();
+                int n = 0;
+                for (Hold hold : holdRepository.findAllByIdForUpdate(ids)) {
+                    // Captured or voided since it was listed
+                    if (hold.getStatus() == Hold.Status.AUTHORIZED && hold.isExpired(now)) {
+                        hold.close(Hold.Status.EXPIRED, now);
+                        releases.merge(hold.getAccountId(), hold.getAmount(), Long::sum);
+                        n++;
+                    }
+                }
+                releases.forEach((id, amount) -> accountRepository.release(id, amount));
+                accountCache.evictAfterCommit(releases.keySet());
+                return n;
+            });
+            if (ids.size() < batch) {
+                break;
+            }
+        }
+        if (expired > 0) {
+            outcomes.get(Hold.Status.EXPIRED).increment(expired);
+            log.info("Released {} expired holds", expired);
+        }
+        return expired;
+    }
+
+    private HoldResponse findAuthorized(HoldRequest req) {
+        Hold hold = holdRepository.findById(req.getHoldId()).orElse(null);
+        if (hold == null) {
+            return null;
+        }
+        if (!hold.getAccountId().equals(req.getAccountId()) || hold.getAmount() != req.getAmount()) {
+            throw new ConflictException("holdId " + req.getHoldId() + " was already used for a different hold");
+        }
+        log.info("Idempotent replay for holdId={}", req.getHoldId());
+        return toResponse(hold);
+    }
+
+    private Hold lock(String holdId) {
+        return holdRepository.findAllByIdForUpdate(List.of(holdId)).stream().findFirst()
+                .orElseThrow(() -> new NotFoundException("Hold " + holdId + " not found"));
+    }
+
+    private static void requireOpen(Hold hold, Instant now) {
+        if (hold.getStatus() != Hold.Status.AUTHORIZED) {
+            throw new ConflictException("Hold " + hold.getHoldId() + " is " + hold.getStatus().name().toLowerCase());
+        }
+        if (hold.isExpired(now)) {
+            throw new ConflictException("Hold " + hold.getHoldId() + " has expired");
+        }
+    }
+
+    /** Releases the whole hold and debits {@code amount} of it from the held account. */
+    private void take(Hold hold, long amount) {
+        if (accountRepository.captureHeld(hold.getAccountId(), hold.getAmount(), amount) != 1) {
+            throw new IllegalStateException("Account " + hold.getAccountId() + " does not hold " + hold.getAmount());
+        }
+        accountCache.evictAfterCommit(List.of(hold.getAccountId()));
+    }
+
+    private <T> T inTransaction(TransactionCallback<T> work) {
+        try {
+            return tx.execute(work);
+        } catch (OptimisticLockingFailureException | PessimisticLockingFailureException e) {
+            throw new ConflictException("Account is being updated concurrently, please retry");
+        }
+    }
+
+    private static HoldResponse toResponse(Hold hold) {
+        return new HoldResponse(hold.getHoldId(), hold.getAccountId(), hold.getAmount(), hold.getStatus().name(),
+                hold.getExpiresAt(), hold.getCapturedTo(), hold.getCapturedAmount());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.HotAccountsResponse;
+import com.example.ledger_service.dto.HotAccountsResponse.HotAccount;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds the accounts that dominate traffic or lose the most concurrency races, using a
+ * {@link HeavyHitters} sketch per kind. Every account a transfer touches counts as one request.
+ * The top accounts are published as {@code ledger.hotaccounts.requests} and
+ * {@code ledger.hotaccounts.conflicts}, tagged by account and refreshed at each window rollover.
+ */
+@Component
+public class HotAccounts {
+
+    private final boolean enabled;
+    private final HeavyHitters requests;
+    private final HeavyHitters conflicts;
+    private final MultiGauge requestGauge;
+    private final MultiGauge conflictGauge;
+
+    public HotAccounts(LedgerProperties properties, MeterRegistry meterRegistry) {
+        LedgerProperties.HotAccounts config = properties.getHotAccounts();
+        this.enabled = config.isEnabled();
+        this.requestGauge = MultiGauge.builder("ledger.hotaccounts.requests")
+                .description("Estimated transfers touching each of the busiest accounts over the window")
+                .register(meterRegistry);
+        this.conflictGauge = MultiGauge.builder("ledger.hotaccounts.conflicts")
+                .description("Estimated concurrency conflicts of the most contended accounts over the window")
+                .register(meterRegistry);
+        long window = config.getWindow().toMillis();
+        this.requests = new HeavyHitters(config.getDepth(), config.getWidth(), config.getTopK(), window,
+                hitters -> publish(hitters, requestGauge));
+        this.conflicts = new HeavyHitters(config.getDepth(), config.getWidth(), config.getTopK(), window,
+                hitters -> publish(hitters, conflictGauge));
+    }
+
+    public void recordRequest(Long fromAccountId, Long toAccountId) {
+        if (enabled) {
+            requests.add(fromAccountId);
+            requests.add(toAccountId);
+        }
+    }
+
+    /** For postings, which may touch any number of accounts. */
+    public void recordRequest(Collection<Long> accountIds) {
+        if (enabled) {
+            accountIds.forEach(requests::add);
+        }
+    }
+
+    public void recordConflicts(Collection<Long> accountIds) {
+        if (enabled) {
+            accountIds.forEach(conflicts::add);
+        }
+    }
+
+    public long requestCount(Long accountId) {
+        return requests.estimate(accountId);
+    }
+
+    public long conflictCount(Long accountId) {
+        return conflicts.estimate(accountId);
+    }
+
+    public HotAccountsResponse snapshot(int limit) {
+        long now = System.currentTimeMillis();
+        return new HotAccountsResponse(Instant.ofEpochMilli(requests.since()),
+                top(requests, limit, now), top(conflicts, limit, now));
+    }
+
+    private static List<HotAccount> top(HeavyHitters hitters, int limit, long now) {
+        double seconds = Math.max(1, now - hitters.since()) / 1000.0;
+        return hitters.top().stream()
+                .limit(limit)
+                .map(h -> new HotAccount(h.key(), h.count(), h.count() / seconds))
+                .toList();
+    }
+
+    private static void publish(HeavyHitters hitters, MultiGauge gauge) {
+        gauge.register(hitters.top().stream()
+                .map(h -> MultiGauge.Row.of(Tags.of("account", Long.toString(h.key())), () -> hitters.estimate(h.key())))
+                .toList(), true);
+    }
+}
@@ -0,0 +1,429 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.LedgerEntryResponse;
+import com.example.ledger_service.entity.ArchivedAccountTotal;
+import com.example.ledger_service.entity.ArchivedTransfer;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.repository.ArchivedAccountTotalRepository;
+import com.example.ledger_service.repository.ArchivedTransferRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Cold storage for {@code ledger_entries}. Entries older than the retention window are moved,
+ * whole transfers at a time, into compressed {@link ArchiveSegment} files; a transfer never
+ * spans two segments. Each segment is written in the same transaction that deletes its rows,
+ * adds them to {@link ArchivedAccountTotal} and records its transferIds in
+ * {@link ArchivedTransfer}, so idempotency checks still find them. Segment headers stay in
+ * memory, so a read only decodes segments whose account, time and id ranges can hold
+ * matching entries.
+ */
+@Service
+public class LedgerArchive {
+    private static final Logger log = LoggerFactory.getLogger(LedgerArchive.class);
+    private static final String SUFFIX = ".segment";
+    private static final Comparator<LedgerEntryResponse> NEWEST_FIRST =
+            Comparator.comparing(LedgerEntryResponse::getId).reversed();
+
+    // Both legs of a transfer share a transfer_id; a transfer with any leg inside the window stays hot.
+    // The first rows pick the transfers, and every entry of those transfers goes in the segment.
+    private static final String COLD_ENTRIES_SQL =
+            "select id, transfer_id, account_id, amount, type, created_at, fx_rate_version from ledger_entries " +
+            "where transfer_id in (select transfer_id from (select transfer_id from ledger_entries " +
+            "where created_at < ? and transfer_id not in (select transfer_id from ledger_entries where created_at >= ?) " +
+            "order by id fetch first ? rows only) cold) " +
+            "order by id";
+
+    private record Segment(Path file, ArchiveSegment.Header header) {}
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ArchivedAccountTotalRepository totalRepository;
+    private final ArchivedTransferRepository transferRepository;
+    private final LedgerProperties.Archive config;
+    private final Path directory;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    // A statement page usually touches one account in one or two segments; keep the last few decoded
+    private final Cache<Path, List<LedgerEntryResponse>> decoded = Caffeine.newBuilder().maximumSize(8).build();
+    private final Counter archived;
+    private ScheduledExecutorService scheduler;
+
+    public LedgerArchive(DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         ArchivedAccountTotalRepository totalRepository,
+                         ArchivedTransferRepository transferRepository,
+                         LedgerProperties properties,
+                         MeterRegistry meterRegistry) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.tx = new TransactionTemplate(transactionManager);
+        this.totalRepository = totalRepository;
+        this.transferRepository = transferRepository;
+        this.config = properties.getArchive();
+        this.directory = Path.of(config.getDirectory());
+        this.archived = Counter.builder("ledger.archive.entries")
+                .description("Ledger entries moved to archive segments")
+                .register(meterRegistry);
+        Gauge.builder("ledger.archive.segments", segments, List::size)
+                .description("Archive segment files")
+                .register(meterRegistry);
+        Gauge.builder("ledger.archive.bytes", this, LedgerArchive::sizeOnDisk)
+                .description("Size of the archive segment files")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /** Loads the segment headers, then schedules archive runs if enabled. */
+    @PostConstruct
+    void start() throws IOException {
+        if (Files.isDirectory(directory)) {
+            load();
+        }
+        if (!config.isEnabled()) {
+            return;
+        }
+        long interval = config.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("ledger-archive-"));
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                archive(Instant.now().minus(config.getRetention()));
+            } catch (RuntimeException e) {
+                // Nothing was deleted for the failed segment; the next run picks its rows up again
+                log.error("Ledger archive run failed", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Moves every transfer whose entries were all created before {@code cutoff} into the
+     * archive, one segment per transaction. Returns the number of entries moved.
+     */
+    public synchronized long archive(Instant cutoff) {
+        long moved = 0;
+        int written;
+        do {
+            written = archiveSegment(cutoff);
+            moved += written;
+        } while (written >= config.getSegmentEntries());
+        if (moved > 0) {
+            log.info("Archived {} ledger entries created before {}", moved, cutoff);
+        }
+        return moved;
+    }
+
+    /**
+     * Archived entries of the account with {@code afterId < id < beforeId}, created in
+     * {@code [from, to)}, newest first and at most {@code limit} of them.
+     */
+    public List<LedgerEntryResponse> entries(Long accountId, long beforeId, long afterId,
+                                             Instant from, Instant to, int limit) {
+        long fromMicros = ArchiveSegment.micros(from);
+        long toMicros = ArchiveSegment.micros(to);
+        List<LedgerEntryResponse> found = new ArrayList<>();
+        for (Segment s : segments) {
+            if (s.header().minId() >= beforeId || s.header().maxId() <= afterId
+                    || !s.header().mayContain(accountId, fromMicros, toMicros)) {
+                continue;
+            }
+            for (LedgerEntryResponse e : accountRows(s, accountId)) {
+                long at = ArchiveSegment.micros(e.getCreatedAt());
+                if (e.getId() < beforeId && e.getId() > afterId && at >= fromMicros && at < toMicros) {
+                    found.add(e);
+                }
+            }
+        }
+        found.sort(NEWEST_FIRST);
+        return found.size() > limit ? found.subList(0, limit) : found;
+    }
+
+    /**
+     * Archived entries, of one account or all when {@code accountId} is null, created in
+     * {@code [from, to)} (unbounded where null), in id order. A segment is decoded only once
+     * the scan reaches its lowest id, so only segments whose id ranges overlap are held at once.
+     */
+    public Iterator<LedgerEntryResponse> scan(Long accountId, Instant from, Instant to) {
+        long fromMicros = from == null ? Long.MIN_VALUE : ArchiveSegment.micros(from);
+        long toMicros = to == null ? Long.MAX_VALUE : ArchiveSegment.micros(to);
+        Deque<Segment> pending = segments.stream()
+                .filter(s -> accountId == null
+                        ? s.header().overlaps(fromMicros, toMicros)
+                        : s.header().mayContain(accountId, fromMicros, toMicros))
+                .sorted(Comparator.comparingLong(s -> s.header().minId()))
+                .collect(Collectors.toCollection(ArrayDeque::new));
+        PriorityQueue<LedgerEntryResponse> next = new PriorityQueue<>(Comparator.comparing(LedgerEntryResponse::getId));
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                fill();
+                return !next.isEmpty();
+            }
+
+            @Override
+            public LedgerEntryResponse next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return next.poll();
+            }
+
+            // Opens every segment that may hold an id below the lowest one queued
+            private void fill() {
+                while (!pending.isEmpty() && (next.isEmpty() || pending.peek().header().minId() < next.peek().getId())) {
+                    Segment s = pending.poll();
+                    for (LedgerEntryResponse e : accountId == null ? rows(s) : accountRows(s, accountId)) {
+                        long at = ArchiveSegment.micros(e.getCreatedAt());
+                        if (at >= fromMicros && at < toMicros) {
+                            next.add(e);
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Net of the account's archived entries created at or before {@code upTo} that a snapshot
+     * watermarked {@code (after, afterId)} does not count.
+     */
+    public long netSince(Long accountId, Instant after, long afterId, Instant upTo) {
+        long afterMicros = ArchiveSegment.micros(after);
+        long upToMicros = ArchiveSegment.micros(upTo);
+        long net = 0;
+        for (Segment s : segments) {
+            // Entries past afterId count however old they are
+            long fromMicros = s.header().maxId() > afterId ? Long.MIN_VALUE : afterMicros + 1;
+            if (!s.header().mayContain(accountId, fromMicros, upToMicros + 1)) {
+                continue;
+            }
+            for (LedgerEntryResponse e : accountRows(s, accountId)) {
+                long at = ArchiveSegment.micros(e.getCreatedAt());
+                if (at <= upToMicros && (at > afterMicros || e.getId() > afterId)) {
+                    net += e.getType() == LedgerEntry.Type.CREDIT ? e.getAmount() : -e.getAmount();
+                }
+            }
+        }
+        return net;
+    }
+
+    /** Whether the transferId was archived. */
+    public boolean contains(String transferId) {
+        return transferRepository.existsById(transferId);
+    }
+
+    /**
+     * The entries of an archived transfer, with their legs numbered in id order as they were
+     * written, or an empty list if the transferId was never archived.
+     */
+    public List<LedgerEntry> findByTransferId(String transferId) {
+        ArchivedTransfer archived = transferRepository.findById(transferId).orElse(null);
+        if (archived == null) {
+            return List.of();
+        }
+        Segment segment = segments.stream()
+                .filter(s -> s.header().minId() == archived.getSegmentId())
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("transferId " + transferId + " is archived in segment "
+                        + archived.getSegmentId() + ", which is not in " + directory));
+        List<LedgerEntryResponse> rows = rows(segment).stream()
+                .filter(e -> e.getTransferId().equals(transferId))
+                .sorted(Comparator.comparing(LedgerEntryResponse::getId))
+                .toList();
+        Long version = archived.getFxRateVersion();
+        List<LedgerEntry> entries = new ArrayList<>(rows.size());
+        for (int leg = 0; leg < rows.size(); leg++) {
+            LedgerEntryResponse e = rows.get(leg);
+            entries.add(version == null
+                    ? new LedgerEntry(transferId, e.getAccountId(), e.getAmount(), e.getType(), leg)
+                    : new LedgerEntry(transferId, e.getAccountId(), e.getAmount(), e.getType(), leg, version));
+        }
+        return entries;
+    }
+
+    public long totalDebits() {
+        return segments.stream().mapToLong(s -> s.header().debits()).sum();
+    }
+
+    public long totalCredits() {
+        return segments.stream().mapToLong(s -> s.header().credits()).sum();
+    }
+
+    public long sizeOnDisk() {
+        long bytes = 0;
+        for (Segment s : segments) {
+            try {
+                bytes += Files.size(s.file());
+            } catch (IOException e) {
+                // Counted as empty; the segment is reported when it is read
+            }
+        }
+        return bytes;
+    }
+
+    private int archiveSegment(Instant cutoff) {
+        Timestamp at = Timestamp.from(cutoff);
+        Integer count = tx.execute(status -> {
+            Map<String, Long> versions = new LinkedHashMap<>();
+            List<LedgerEntryResponse> rows = jdbc.query(COLD_ENTRIES_SQL, (rs, i) -> {
+                versions.putIfAbsent(rs.getString(2), rs.getObject(7, Long.class));
+                return new LedgerEntryResponse(rs.getLong(1), rs.getString(2), rs.getLong(3), rs.getLong(4),
+                        LedgerEntry.Type.valueOf(rs.getString(5)), rs.getTimestamp(6).toInstant());
+            }, at, at, config.getSegmentEntries());
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            long first = rows.get(0).getId();
+            long last = rows.get(rows.size() - 1).getId();
+            Path file = directory.resolve(String.format("%020d-%020d%s", first, last, SUFFIX));
+            ArchiveSegment.Header header;
+            try {
+                Files.createDirectories(directory);
+                header = ArchiveSegment.write(file, rows);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write archive segment " + file, e);
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        segments.add(new Segment(file, header));
+                        archived.increment(rows.size());
+                    } else {
+                        deleteQuietly(file);
+                    }
+                }
+            });
+            jdbc.batchUpdate("delete from ledger_entries where id = ?",
+                    rows.stream().map(e -> new Object[]{e.getId()}).toList());
+            jdbc.batchUpdate("insert into archived_transfers (transfer_id, segment_id, fx_rate_version) values (?, ?, ?)",
+                    versions.entrySet().stream().map(v -> new Object[]{v.getKey(), first, v.getValue()}).toList());
+            addToTotals(rows);
+            return rows.size();
+        });
+        return count == null ? 0 : count;
+    }
+
+    private void addToTotals(List<LedgerEntryResponse> rows) {
+        Map<Long, long[]> byAccount = new HashMap<>();
+        for (LedgerEntryResponse e : rows) {
+            long[] t = byAccount.computeIfAbsent(e.getAccountId(), id -> new long[2]);
+            t[0] += e.getType() == LedgerEntry.Type.CREDIT ? e.getAmount() : -e.getAmount();
+            t[1]++;
+        }
+        Map<Long, ArchivedAccountTotal> totals = new HashMap<>();
+        totalRepository.findAllById(byAccount.keySet()).forEach(t -> totals.put(t.getAccountId(), t));
+        byAccount.forEach((id, t) -> totals.computeIfAbsent(id, ArchivedAccountTotal::new).add(t[0], t[1]));
+        totalRepository.saveAll(totals.values());
+    }
+
+    /**
+     * Reads every segment header. A segment is written before its transaction commits, so if
+     * the newest one's first row is still in the hot table the process died before the commit
+     * and the file is discarded.
+     */
+    private void load() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        List<Segment> loaded = new ArrayList<>();
+        for (Path file : files) {
+            loaded.add(new Segment(file, ArchiveSegment.readHeader(file)));
+        }
+        if (!loaded.isEmpty()) {
+            Segment newest = loaded.get(loaded.size() - 1);
+            Integer hot = jdbc.queryForObject("select count(*) from ledger_entries where id = ?",
+                    Integer.class, newest.header().minId());
+            if (hot != null && hot > 0) {
+                log.warn("Discarding archive segment {} from an archive run that did not commit", newest.file());
+                Files.delete(newest.file());
+                loaded.remove(loaded.size() - 1);
+            }
+        }
+        segments.addAll(loaded);
+        log.info("Loaded {} archive segments from {}", segments.size(), directory);
+    }
+
+    /** The account's rows of a segment; rows are sorted by account, so they are one contiguous run. */
+    private List<LedgerEntryResponse> accountRows(Segment s, Long accountId) {
+        List<LedgerEntryResponse> rows = rows(s);
+        int lo = firstIndexOf(rows, accountId);
+        int hi = firstIndexOf(rows, accountId + 1);
+        return rows.subList(lo, hi);
+    }
+
+    /** Every row of a segment, sorted by (accountId, id). */
+    private List<LedgerEntryResponse> rows(Segment s) {
+        return decoded.get(s.file(), file -> {
+            try {
+                return ArchiveSegment.read(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read archive segment " + file, e);
+            }
+        });
+    }
+
+    private static int firstIndexOf(List<LedgerEntryResponse> rows, long accountId) {
+        int lo = 0;
+        int hi = rows.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (rows.get(mid).getAccountId() < accountId) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete uncommitted archive segment {}", file, e);
+        }
+    }
+}
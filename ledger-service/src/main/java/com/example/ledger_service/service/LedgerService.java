@@ -1,18 +1,30 @@
 package com.example.ledger_service.service;
 
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.PostingRequest;
+import com.example.ledger_service.dto.PostingResponse;
 import com.example.ledger_service.dto.TransferRequest;
 import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.engine.ShardedBalanceEngine;
 import com.example.ledger_service.entity.Account;
 import com.example.ledger_service.entity.LedgerEntry;
 import com.example.ledger_service.exception.ConflictException;
-import com.example.ledger_service.exception.InsufficientFundsException;
 import com.example.ledger_service.repository.AccountRepository;
 import com.example.ledger_service.repository.LedgerEntryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 //The Transfer Service is responsible for orchestration and idempotency,
 // while the Ledger Service ensures atomicity of the actual balance changes.
@@ -21,55 +33,283 @@ import org.springframework.transaction.annotation.Transactional;
 public class LedgerService {
     private static final Logger log = LoggerFactory.getLogger(LedgerService.class);
 
+    private final LedgerWriter writer;
     private final AccountRepository accountRepository;
     private final LedgerEntryRepository ledgerEntryRepository;
+    // Present only when ledger.engine=sharded
+    private final ShardedBalanceEngine engine;
+    // Present only when ledger.group-commit.enabled=true
+    private final GroupCommitter groupCommitter;
+    private final TransferIdFilter transferIdFilter;
+    private final AccountCache accountCache;
+    private final TrialBalance trialBalance;
+    private final HotAccounts hotAccounts;
+    private final FxRates fxRates;
+    private final AppliedTransfers appliedTransfers;
+    private final FxTransferService fxTransfers;
 
-    public LedgerService(AccountRepository accountRepository,
-                         LedgerEntryRepository ledgerEntryRepository) {
+    public LedgerService(LedgerWriter writer,
+                         AccountRepository accountRepository,
+                         LedgerEntryRepository ledgerEntryRepository,
+                         LedgerProperties properties,
+                         MeterRegistry meterRegistry,
+                         TransferIdFilter transferIdFilter,
+                         AccountCache accountCache,
+                         TrialBalance trialBalance,
+                         HotAccounts hotAccounts,
+                         FxRates fxRates,
+                         AppliedTransfers appliedTransfers,
+                         BatchTransferService batches,
+                         FxTransferService fxTransfers,
+                         ObjectProvider<ShardedBalanceEngine> engine) {
+        this.writer = writer;
         this.accountRepository = accountRepository;
         this.ledgerEntryRepository = ledgerEntryRepository;
+        this.transferIdFilter = transferIdFilter;
+        this.accountCache = accountCache;
+        this.trialBalance = trialBalance;
+        this.hotAccounts = hotAccounts;
+        this.fxRates = fxRates;
+        this.appliedTransfers = appliedTransfers;
+        this.fxTransfers = fxTransfers;
+        this.engine = engine.getIfAvailable();
+        this.groupCommitter = properties.getGroupCommit().isEnabled() && this.engine == null
+                ? new GroupCommitter(properties.getGroupCommit(), batches::applyGroup, meterRegistry)
+                : null;
+    }
+
+    @PostConstruct
+    void start() {
+        if (groupCommitter != null) {
+            groupCommitter.start();
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (groupCommitter != null) {
+            groupCommitter.stop();
+        }
     }
 
     /**
-     * Applies a transfer atomically with optimistic locking and idempotency.
-     * Retries a few times on OptimisticLockException.
+     * Applies a transfer atomically in a single transaction, guarding the two balances with
+     * the configured {@link LedgerProperties.Strategy}. A transfer that loses a race is not
+     * retried here; it surfaces as a {@link ConflictException} for the caller to retry.
+     * With the sharded engine enabled the transfer is applied by the owning shard loop instead;
+     * with group commit enabled it shares a transaction with other concurrent transfers.
+     * Between accounts in different currencies it is converted, see {@link FxTransferService}.
+     * A transferId that was already applied is not applied again: the original outcome is
+     * returned, or a {@link ConflictException} if the id was used for a different transfer.
      */
-    @Transactional
-    @Async
     public TransferResponse doApplyTransfer(TransferRequest req) {
+        validate(req);
+        hotAccounts.recordRequest(req.getFromAccountId(), req.getToAccountId());
+        TransferResponse replay = appliedTransfers.find(req);
+        if (replay != null) {
+            return replay;
+        }
+
+        FxRates.Quote quote = fxRates.quote(req.getFromAccountId(), req.getToAccountId(), req.getAmount());
+        TransferResponse res;
+        try {
+            if (quote != null) {
+                if (engine != null) {
+                    throw new ConflictException("Cross-currency transfers are not supported by the sharded engine");
+                }
+                res = fxTransfers.apply(req, quote);
+            } else if (engine != null) {
+                res = engine.apply(req);
+            } else if (groupCommitter != null) {
+                res = groupCommitter.apply(req);
+            } else {
+                res = writer.inTransaction(req.getTransferId(), () -> LedgerWriter.accountIds(List.of(req)), status -> writer.strategy() == LedgerProperties.Strategy.ATOMIC
+                        ? applyAtomic(req)
+                        : applyJpa(req));
+            }
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request with the same transferId won the unique constraint, possibly
+            // on another node, so this node's filter may not know the id yet: ask the database
+            replay = appliedTransfers.findStored(req);
+            if (replay != null) {
+                return replay;
+            }
+            throw e;
+        }
+        transferIdFilter.add(req.getTransferId());
+        return res;
+    }
+
+    /**
+     * Applies a multi-leg posting (splits, fees, marketplace payouts) under one transferId:
+     * every leg succeeds or fails together. Debit and credit legs must add up to the same
+     * total. Each involved account moves once, by its net over the legs, in ascending id order
+     * (and with the pessimistic strategy is locked in that order), and funds are checked on
+     * that net. One entry is written per leg. Replays behave as for {@link #doApplyTransfer}.
+     */
+    public PostingResponse doApplyPosting(PostingRequest req) {
+        Map<Long, Long> deltas = validate(req);
+        hotAccounts.recordRequest(deltas.keySet());
+        if (engine != null) {
+            throw new ConflictException("Postings are not supported by the sharded engine");
+        }
+        fxRates.requireOneCurrency(deltas.keySet());
+        PostingResponse replay = appliedTransfers.find(req);
+        if (replay != null) {
+            return replay;
+        }
+        PostingResponse res;
+        try {
+            res = writer.inTransaction(req.getTransferId(), deltas::keySet, status -> applyPosting(req, deltas));
+        } catch (DataIntegrityViolationException e) {
+            replay = appliedTransfers.findStored(req);
+            if (replay != null) {
+                return replay;
+            }
+            throw e;
+        }
+        transferIdFilter.add(req.getTransferId());
+        return res;
+    }
+
+    private PostingResponse applyPosting(PostingRequest req, Map<Long, Long> deltas) {
+        List<PostingRequest.Leg> legs = req.getLegs();
+        List<LedgerEntry> entries = new ArrayList<>(legs.size());
+        for (int i = 0; i < legs.size(); i++) {
+            PostingRequest.Leg leg = legs.get(i);
+            entries.add(new LedgerEntry(req.getTransferId(), leg.accountId(), leg.amount(), leg.type(), i));
+        }
+        post(deltas, entries);
+        log.debug("Posting applied: {} ({} legs)", req.getTransferId(), legs.size());
+        return new PostingResponse(req.getTransferId(), "SUCCESS", "OK", legs);
+    }
+
+    /**
+     * Moves every account by its net in {@code deltas}, in ascending id order, and writes
+     * {@code entries}, which must balance; see {@link LedgerWriter#post(Map, List)}. Must run
+     * inside a transaction.
+     */
+    void post(Map<Long, Long> deltas, List<LedgerEntry> entries) {
+        writer.post(deltas, entries);
+    }
 
+    /** Checks that the legs balance and returns each account's net, keyed in ascending id order. */
+    static Map<Long, Long> validate(PostingRequest req) {
+        Map<Long, Long> deltas = new TreeMap<>();
+        long debits = 0;
+        long credits = 0;
+        for (PostingRequest.Leg leg : req.getLegs()) {
+            if (leg.amount() <= 0) {
+                throw new ConflictException("amount must be > 0");
+            }
+            long amount = leg.amount();
+            if (leg.type() == LedgerEntry.Type.DEBIT) {
+                debits = LedgerWriter.plus(debits, amount);
+                deltas.merge(leg.accountId(), -amount, LedgerWriter::plus);
+            } else {
+                credits = LedgerWriter.plus(credits, amount);
+                deltas.merge(leg.accountId(), amount, LedgerWriter::plus);
+            }
+        }
+        if (debits == 0 || debits != credits) {
+            throw new ConflictException("Posting legs must balance: debits " + debits + " != credits " + credits);
+        }
+        return deltas;
+    }
+
+    static void validate(TransferRequest req) {
         if (req.getFromAccountId().equals(req.getToAccountId())) {
             throw new ConflictException("fromAccountId and toAccountId must differ");
         }
         if (req.getAmount() <= 0) {
             throw new ConflictException("amount must be > 0");
         }
+    }
 
-        Account from = accountRepository.findById(req.getFromAccountId())
-                .orElseThrow(() -> new ConflictException("From account not found"));
-        Account to = accountRepository.findById(req.getToAccountId())
-                .orElseThrow(() -> new ConflictException("To account not found"));
+    static TransferResponse succeeded(TransferRequest req) {
+        return new TransferResponse(req.getTransferId(), "SUCCESS", "OK",
+                req.getFromAccountId(), req.getToAccountId(), req.getAmount());
+    }
 
-        // Business rule: prevent negative balance
-        if (from.getBalance().compareTo(req.getAmount()) < 0) {
-            throw new InsufficientFundsException("Insufficient funds");
-        }
+    private TransferResponse applyJpa(TransferRequest req) {
+        Account[] accounts = writer.lockWait().record(() -> loadAccounts(req));
+        Account from = accounts[0];
+        Account to = accounts[1];
 
-        from.setBalance(from.getBalance() - req.getAmount());
-        to.setBalance(to.getBalance() + req.getAmount());
+        long amount = req.getAmount();
+        LedgerWriter.checkCredit(to, amount);
+        // Split accounts are updated right away; in id order, like applyAtomic, so opposing
+        // transfers between two split accounts cannot deadlock on each other's slots
+        if (from.getId() < to.getId()) {
+            writer.debit(from, amount);
+            writer.credit(to, amount);
+        } else {
+            writer.credit(to, amount);
+            writer.debit(from, amount);
+        }
 
         accountRepository.save(from);
         accountRepository.save(to);
+        accountCache.putAfterCommit(List.of(from, to));
 
         // Two immutable ledger entries
-        LedgerEntry debit = new LedgerEntry(req.getTransferId(), from.getId(), req.getAmount(), LedgerEntry.Type.DEBIT);
-        LedgerEntry credit = new LedgerEntry(req.getTransferId(), to.getId(), req.getAmount(), LedgerEntry.Type.CREDIT);
+        LedgerEntry debit = new LedgerEntry(req.getTransferId(), from.getId(), amount, LedgerEntry.Type.DEBIT);
+        LedgerEntry credit = new LedgerEntry(req.getTransferId(), to.getId(), amount, LedgerEntry.Type.CREDIT);
         ledgerEntryRepository.save(debit);
         ledgerEntryRepository.save(credit);
+        trialBalance.recordAfterCommit(List.of(debit, credit));
         log.debug("Transfer applied: {}", req.getTransferId());
 
-        return new TransferResponse(req.getTransferId(), "SUCCESS", "OK",
-                req.getFromAccountId(), req.getToAccountId(), req.getAmount());
+        return succeeded(req);
     }
-}
 
+    /**
+     * Read-free path: the funds check happens inside the debit {@code UPDATE} itself, so a
+     * transfer is two conditional updates plus two inserts and can never lose an optimistic
+     * race. Both rows are updated in ascending id order, so opposing transfers cannot deadlock.
+     */
+    private TransferResponse applyAtomic(TransferRequest req) {
+        Long fromId = req.getFromAccountId();
+        Long toId = req.getToAccountId();
+        long amount = req.getAmount();
+        writer.lockWait().record(() -> {
+            if (fromId < toId) {
+                writer.debit(fromId, amount, "From account not found");
+                writer.credit(toId, amount, "To account not found");
+            } else {
+                writer.credit(toId, amount, "To account not found");
+                writer.debit(fromId, amount, "From account not found");
+            }
+        });
+        accountCache.evictAfterCommit(List.of(fromId, toId));
+
+        LedgerEntry debit = ledgerEntryRepository.save(new LedgerEntry(req.getTransferId(), fromId, amount, LedgerEntry.Type.DEBIT));
+        LedgerEntry credit = ledgerEntryRepository.save(new LedgerEntry(req.getTransferId(), toId, amount, LedgerEntry.Type.CREDIT));
+        trialBalance.recordAfterCommit(List.of(debit, credit));
+        log.debug("Transfer applied: {}", req.getTransferId());
+
+        return succeeded(req);
+    }
+
+    /** Returns {from, to}, throwing if either account does not exist. */
+    private Account[] loadAccounts(TransferRequest req) {
+        Account from = null;
+        Account to = null;
+        if (writer.strategy() == LedgerProperties.Strategy.PESSIMISTIC) {
+            for (Account a : writer.find(new TreeSet<>(List.of(req.getFromAccountId(), req.getToAccountId())))) {
+                if (a.getId().equals(req.getFromAccountId())) from = a;
+                else to = a;
+            }
+        } else {
+            from = accountRepository.findById(req.getFromAccountId()).orElse(null);
+            to = from == null ? null : accountRepository.findById(req.getToAccountId()).orElse(null);
+        }
+        if (from == null) {
+            throw new ConflictException("From account not found");
+        }
+        if (to == null) {
+            throw new ConflictException("To account not found");
+        }
+        return new Account[]{from, to};
+    }
+}
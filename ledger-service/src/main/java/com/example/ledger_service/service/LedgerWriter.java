@@ -0,0 +1,296 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.TransferRequest;
+import com.example.ledger_service.entity.Account;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/**
+ * The balance moves every JPA-engine write path shares, under the configured
+ * {@link LedgerProperties.Strategy}: loading (and, unless optimistic, locking) accounts in id
+ * order, moving them in memory or with conditional updates, split accounts through their slots,
+ * and running the work in a transaction whose lost races surface as a {@link ConflictException}.
+ */
+@Component
+class LedgerWriter {
+    private static final Logger log = LoggerFactory.getLogger(LedgerWriter.class);
+
+    private final AccountRepository accountRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransactionTemplate tx;
+    private final LedgerProperties.Strategy strategy;
+    private final AccountCache accountCache;
+    private final TrialBalance trialBalance;
+    private final HotAccounts hotAccounts;
+    private final SplitBalances splitBalances;
+    private final Map<LedgerProperties.Strategy, Counter> conflicts = new EnumMap<>(LedgerProperties.Strategy.class);
+    private final Map<LedgerProperties.Strategy, Timer> lockWaits = new EnumMap<>(LedgerProperties.Strategy.class);
+
+    LedgerWriter(AccountRepository accountRepository,
+                 LedgerEntryRepository ledgerEntryRepository,
+                 PlatformTransactionManager transactionManager,
+                 LedgerProperties properties,
+                 MeterRegistry meterRegistry,
+                 AccountCache accountCache,
+                 TrialBalance trialBalance,
+                 HotAccounts hotAccounts,
+                 SplitBalances splitBalances) {
+        this.accountRepository = accountRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.accountCache = accountCache;
+        this.trialBalance = trialBalance;
+        this.hotAccounts = hotAccounts;
+        this.splitBalances = splitBalances;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.strategy = properties.getTransfer().getStrategy();
+        for (LedgerProperties.Strategy s : LedgerProperties.Strategy.values()) {
+            String tag = s.name().toLowerCase();
+            conflicts.put(s, Counter.builder("ledger.transfer.conflicts")
+                    .description("Transfers rejected because a concurrent transfer held or changed an account")
+                    .tag("strategy", tag)
+                    .register(meterRegistry));
+            lockWaits.put(s, Timer.builder("ledger.transfer.lock.wait")
+                    .description("Time spent loading (and, when pessimistic, locking) both accounts")
+                    .tag("strategy", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    LedgerProperties.Strategy strategy() {
+        return strategy;
+    }
+
+    /** Times loading (and locking) the accounts of a write, per strategy. */
+    Timer lockWait() {
+        return lockWaits.get(strategy);
+    }
+
+    /** Runs {@code work} in a transaction; {@code accounts} is only evaluated if it loses a race. */
+    <T> T inTransaction(String what, Supplier<Set<Long>> accounts, TransactionCallback<T> work) {
+        try {
+            return tx.execute(work);
+        } catch (OptimisticLockingFailureException | PessimisticLockingFailureException e) {
+            conflicts.get(strategy).increment();
+            hotAccounts.recordConflicts(conflicted(e, accounts));
+            log.warn("Transfer {} lost a race on its accounts ({}): {}", what, strategy, e.getMessage());
+            throw new ConflictException("Account is being updated concurrently, please retry");
+        }
+    }
+
+    /** The account whose version check failed when Hibernate names it, otherwise every account involved. */
+    private static Set<Long> conflicted(RuntimeException e, Supplier<Set<Long>> accounts) {
+        if (e instanceof ObjectOptimisticLockingFailureException o && o.getIdentifier() instanceof Long id) {
+            return Set.of(id);
+        }
+        return accounts.get();
+    }
+
+    /** Every account the transfers touch, in id order. */
+    static Set<Long> accountIds(List<TransferRequest> reqs) {
+        Set<Long> ids = new TreeSet<>();
+        for (TransferRequest req : reqs) {
+            ids.add(req.getFromAccountId());
+            ids.add(req.getToAccountId());
+        }
+        return ids;
+    }
+
+    Map<Long, Account> load(Collection<Long> ids) {
+        Map<Long, Account> accounts = new HashMap<>();
+        find(ids).forEach(a -> accounts.put(a.getId(), a));
+        return accounts;
+    }
+
+    /**
+     * Loads the accounts, row-locked in id order unless the strategy is optimistic. Known split
+     * accounts are never locked: their rows are not written, and locking them would queue every
+     * transfer into the account on the one row the split exists to avoid.
+     */
+    List<Account> find(Collection<Long> ids) {
+        List<Account> found = new ArrayList<>(ids.size());
+        if (strategy == LedgerProperties.Strategy.OPTIMISTIC) {
+            accountRepository.findAllById(ids).forEach(found::add);
+            return found;
+        }
+        List<Long> lock = new ArrayList<>(ids.size());
+        List<Long> split = new ArrayList<>();
+        for (Long id : ids) {
+            (splitBalances.knownSlots(id) == null ? lock : split).add(id);
+        }
+        found.addAll(accountRepository.findAllByIdForUpdate(lock));
+        if (!split.isEmpty()) {
+            accountRepository.findAllById(split).forEach(found::add);
+        }
+        return found;
+    }
+
+    /**
+     * Moves every account by its net in {@code deltas}, in the map's order (callers pass a
+     * {@link TreeMap}, so ascending ids), and writes {@code entries}, which must balance. Must
+     * run inside a transaction: a failed move throws, and only the rollback undoes earlier ones.
+     */
+    void post(Map<Long, Long> deltas, List<LedgerEntry> entries) {
+        post(deltas, entries, deltas.keySet(), strategy == LedgerProperties.Strategy.ATOMIC);
+    }
+
+    /**
+     * As {@link #post(Map, List)}, but only the accounts in {@code checked} need the funds for
+     * their net, and with {@code conditional} every account moves with a conditional update
+     * whatever the strategy.
+     */
+    void post(Map<Long, Long> deltas, List<LedgerEntry> entries, Set<Long> checked, boolean conditional) {
+        Map<Long, Account> accounts = conditional
+                ? Map.of()
+                : lockWait().record(() -> load(deltas.keySet()));
+        deltas.forEach((id, delta) -> {
+            if (checked.contains(id)) {
+                move(id, delta, accounts, conditional);
+            } else {
+                adjust(id, delta, accounts, conditional);
+            }
+        });
+        ledgerEntryRepository.saveAll(entries);
+        if (conditional) {
+            accountCache.evictAfterCommit(deltas.keySet());
+        } else {
+            accountCache.putAfterCommit(accounts.values());
+        }
+        trialBalance.recordAfterCommit(entries);
+    }
+
+    /**
+     * Moves one account by a net amount: in memory on the entity loaded into {@code accounts},
+     * or, when {@code conditional}, read-free as one conditional update of the account or of its slots.
+     */
+    void move(Long id, long delta, Map<Long, Account> accounts, boolean conditional) {
+        String missing = "Account " + id + " not found";
+        if (conditional) {
+            if (delta < 0) {
+                debit(id, -delta, missing);
+            } else {
+                // A zero net still has to prove the account exists
+                credit(id, delta, missing);
+            }
+            return;
+        }
+        Account acc = accounts.get(id);
+        if (acc == null) {
+            throw new ConflictException(missing);
+        }
+        if (delta < 0) {
+            debit(acc, -delta);
+        } else if (delta > 0) {
+            credit(acc, delta);
+        }
+    }
+
+    /** As {@link #move}, without a funds check: the account may go negative. */
+    private void adjust(Long id, long delta, Map<Long, Account> accounts, boolean conditional) {
+        String missing = "Account " + id + " not found";
+        if (conditional) {
+            credit(id, delta, missing);
+            return;
+        }
+        Account acc = accounts.get(id);
+        if (acc == null) {
+            throw new ConflictException(missing);
+        }
+        credit(acc, delta);
+    }
+
+    /** Conditional in-place debit; {@code missing} is the message when the account does not exist. */
+    void debit(Long id, long amount, String missing) {
+        Integer slots = splitBalances.knownSlots(id);
+        if (slots == null && accountRepository.debitIfSufficient(id, amount) == 1) {
+            return;
+        }
+        if (slots == null) {
+            // Only the failure path pays for a second lookup to tell the causes apart
+            slots = accountRepository.findSlotsById(id)
+                    .orElseThrow(() -> new ConflictException(missing));
+            if (slots == 0) {
+                throw new InsufficientFundsException("Insufficient funds");
+            }
+        }
+        splitBalances.debit(id, slots, amount);
+    }
+
+    void credit(Long id, long amount, String missing) {
+        Integer slots = splitBalances.knownSlots(id);
+        if (slots == null && accountRepository.credit(id, amount) == 1) {
+            return;
+        }
+        if (slots == null) {
+            slots = accountRepository.findSlotsById(id)
+                    .orElseThrow(() -> new ConflictException(missing));
+            if (slots == 0) {
+                throw new ConflictException("Balance overflow");
+            }
+        }
+        splitBalances.credit(id, slots, amount);
+    }
+
+    /** Debits a loaded account: in memory, or straight to its slots when it is split. */
+    void debit(Account from, long amount) {
+        if (from.isSplit()) {
+            splitBalances.debit(from.getId(), from.getSlots(), amount);
+            return;
+        }
+        // Business rule: prevent negative balance; held funds are not available to transfers
+        if (from.getBalance() - from.getHeld() < amount) {
+            throw new InsufficientFundsException("Insufficient funds");
+        }
+        from.setBalance(from.getBalance() - amount);
+    }
+
+    void credit(Account to, long amount) {
+        if (to.isSplit()) {
+            splitBalances.credit(to.getId(), to.getSlots(), amount);
+        } else {
+            to.setBalance(plus(to.getBalance(), amount));
+        }
+    }
+
+    /** Fails like {@link #credit(Account, long)} would, before any account has moved. */
+    static void checkCredit(Account to, long amount) {
+        if (!to.isSplit()) {
+            plus(to.getBalance(), amount);
+        }
+    }
+
+    /** Overflow-checked sum of minor units: a balance or total that would wrap is refused, never stored. */
+    static long plus(long a, long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            throw new ConflictException("Balance overflow");
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.ReconciliationReport;
+import com.example.ledger_service.dto.ReconciliationReport.AccountMismatch;
+import com.example.ledger_service.dto.ReconciliationReport.RangeStats;
+import com.example.ledger_service.dto.ReconciliationReport.TransferMismatch;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Proves the ledger adds up: every account's balance equals its opening balance plus its
+ * credits minus its debits, and every transfer's debits equal its credits. The id space is
+ * split into ranges that a fork-join pool verifies in parallel. Each range is a single
+ * read-only aggregate statement streamed row by row, so it sees one consistent snapshot
+ * without taking locks and no range holds a transaction open for long.
+ */
+@Service
+public class ReconciliationService {
+    private static final Logger log = LoggerFactory.getLogger(ReconciliationService.class);
+
+    // Stored balance, slots included, next to opening balance plus net entries, hot and archived, for every account in the range
+    private static final String ACCOUNTS_SQL =
+            "select a.id, a.balance + coalesce(s.balance, 0), a.initial_balance, coalesce(n.net, 0) + coalesce(t.net, 0) from accounts a " +
+            "left join (select account_id, sum(case when type = 'CREDIT' then amount else -amount end) as net " +
+            "from ledger_entries where account_id between ? and ? group by account_id) n on n.account_id = a.id " +
+            "left join archived_account_totals t on t.account_id = a.id " +
+            "left join (select account_id, sum(balance) as balance " +
+            "from account_slots where account_id between ? and ? group by account_id) s on s.account_id = a.id " +
+            "where a.id between ? and ?";
+
+    // Each transfer is checked by the range holding its lowest entry id, so none is counted twice
+    private static final String TRANSFERS_SQL =
+            "select e.transfer_id, " +
+            "sum(case when e.type = 'DEBIT' then e.amount else 0 end), " +
+            "sum(case when e.type = 'CREDIT' then e.amount else 0 end) " +
+            "from ledger_entries e " +
+            "where e.transfer_id in (select transfer_id from ledger_entries where id between ? and ?) " +
+            "group by e.transfer_id having min(e.id) between ? and ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate readOnly;
+    private final LedgerProperties.Reconciliation config;
+    private final ForkJoinPool pool;
+    private final Map<String, Timer> rangeTimers;
+
+    public ReconciliationService(DataSource dataSource,
+                                 PlatformTransactionManager transactionManager,
+                                 LedgerProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.config = properties.getReconciliation();
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.jdbc.setFetchSize(properties.getExport().getFetchSize());
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.pool = new ForkJoinPool(config.getParallelism());
+        this.rangeTimers = Map.of(
+                "accounts", rangeTimer("accounts", meterRegistry),
+                "entries", rangeTimer("entries", meterRegistry));
+    }
+
+    private static Timer rangeTimer(String kind, MeterRegistry meterRegistry) {
+        return Timer.builder("ledger.reconciliation.range")
+                .description("Time to verify one id range")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public ReconciliationReport reconcile() {
+        Instant startedAt = Instant.now();
+        long start = System.nanoTime();
+        Run run = new Run(config.getMaxReportedMismatches());
+
+        Long[] accounts = idBounds("accounts");
+        Long[] entries = idBounds("ledger_entries");
+        List<RecursiveAction> tasks = new ArrayList<>(2);
+        if (accounts != null) {
+            tasks.add(new RangeTask(accounts[0], accounts[1], (lo, hi) -> checkAccounts(run, lo, hi)));
+        }
+        if (entries != null) {
+            tasks.add(new RangeTask(entries[0], entries[1], (lo, hi) -> checkTransfers(run, lo, hi)));
+        }
+        tasks.forEach(pool::execute);
+        tasks.forEach(RecursiveAction::join);
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        List<RangeStats> ranges = new ArrayList<>(run.ranges);
+        ranges.sort(Comparator.comparing(RangeStats::kind).thenComparingLong(RangeStats::fromId));
+        ReconciliationReport report = new ReconciliationReport(startedAt, millis,
+                run.accountsChecked.get(), run.transfersChecked.get(),
+                run.accountMismatchCount.get(), run.transferMismatchCount.get(),
+                List.copyOf(run.accountMismatches), List.copyOf(run.transferMismatches), ranges);
+        log.info("Reconciliation checked {} accounts and {} transfers in {} ms across {} ranges: {} account and {} transfer mismatches",
+                report.getAccountsChecked(), report.getTransfersChecked(), millis, ranges.size(),
+                report.getAccountMismatchCount(), report.getTransferMismatchCount());
+        return report;
+    }
+
+    private Long[] idBounds(String table) {
+        return readOnly.execute(status -> jdbc.queryForObject("select min(id), max(id) from " + table,
+                (rs, i) -> rs.getObject(1) == null ? null : new Long[]{rs.getLong(1), rs.getLong(2)}));
+    }
+
+    private void checkAccounts(Run run, long lo, long hi) {
+        AtomicLong rows = new AtomicLong();
+        timed(run, "accounts", lo, hi, rows, () -> query(ACCOUNTS_SQL, new Object[]{lo, hi, lo, hi, lo, hi}, rs -> {
+            rows.incrementAndGet();
+            long balance = rs.getLong(2);
+            long expected = rs.getLong(3) + rs.getLong(4);
+            if (balance != expected) {
+                // Counts are exact; only the listed examples are capped
+                if (run.accountMismatchCount.incrementAndGet() <= run.maxReported) {
+                    run.accountMismatches.add(new AccountMismatch(rs.getLong(1), balance, expected));
+                }
+            }
+        }), run.accountsChecked);
+    }
+
+    private void checkTransfers(Run run, long lo, long hi) {
+        AtomicLong rows = new AtomicLong();
+        timed(run, "entries", lo, hi, rows, () -> query(TRANSFERS_SQL, new Object[]{lo, hi, lo, hi}, rs -> {
+            rows.incrementAndGet();
+            long debits = rs.getLong(2);
+            long credits = rs.getLong(3);
+            if (debits != credits || debits == 0) {
+                if (run.transferMismatchCount.incrementAndGet() <= run.maxReported) {
+                    run.transferMismatches.add(new TransferMismatch(rs.getString(1), debits, credits));
+                }
+            }
+        }), run.transfersChecked);
+    }
+
+    private void timed(Run run, String kind, long lo, long hi, AtomicLong rows, Runnable work, AtomicLong total) {
+        long start = System.nanoTime();
+        work.run();
+        long nanos = System.nanoTime() - start;
+        rangeTimers.get(kind).record(nanos, TimeUnit.NANOSECONDS);
+        total.addAndGet(rows.get());
+        run.ranges.add(new RangeStats(kind, lo, hi, rows.get(), TimeUnit.NANOSECONDS.toMillis(nanos)));
+    }
+
+    private void query(String sql, Object[] args, RowCallbackHandler handler) {
+        readOnly.executeWithoutResult(status -> jdbc.query(sql, handler, args));
+    }
+
+    /** Splits {@code [lo, hi]} in halves until a range fits {@code rangeSize}, then verifies it. */
+    private class RangeTask extends RecursiveAction {
+        private final long lo;
+        private final long hi;
+        private final BiConsumer<Long, Long> check;
+
+        RangeTask(long lo, long hi, BiConsumer<Long, Long> check) {
+            this.lo = lo;
+            this.hi = hi;
+            this.check = check;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo < config.getRangeSize()) {
+                check.accept(lo, hi);
+                return;
+            }
+            long mid = lo + (hi - lo) / 2;
+            invokeAll(new RangeTask(lo, mid, check), new RangeTask(mid + 1, hi, check));
+        }
+    }
+
+    /** Results of one reconciliation, filled concurrently by the range tasks. */
+    private static final class Run {
+        final int maxReported;
+        final AtomicLong accountsChecked = new AtomicLong();
+        final AtomicLong transfersChecked = new AtomicLong();
+        final AtomicLong accountMismatchCount = new AtomicLong();
+        final AtomicLong transferMismatchCount = new AtomicLong();
+        final Queue<AccountMismatch> accountMismatches = new ConcurrentLinkedQueue<>();
+        final Queue<TransferMismatch> transferMismatches = new ConcurrentLinkedQueue<>();
+        final Queue<RangeStats> ranges = new ConcurrentLinkedQueue<>();
+
+        Run(int maxReported) {
+            this.maxReported = maxReported;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.entity.Account;
+import com.example.ledger_service.entity.AccountSlot;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.AccountSlotRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Balance moves for split accounts, whose balance is spread over {@link AccountSlot} rows so
+ * that transfers into a busy account do not all queue on its {@code accounts} row. A credit
+ * lands on a random slot. A debit takes the first slot, from a random start, that covers it
+ * on its own; when none does, all slots are locked in order, the debit is taken from their
+ * total and what is left is spread evenly again. Ledger entries keep the logical account id.
+ *
+ * <p>Splitting is one-way and the slot count never changes afterwards, so the split accounts
+ * seen so far are remembered here to skip row locks and failed row updates. A node that has
+ * not seen a split yet still handles the account correctly, just without those shortcuts.
+ */
+@Component
+public class SplitBalances {
+
+    private final AccountRepository accountRepository;
+    private final AccountSlotRepository slotRepository;
+    private final LedgerProperties properties;
+    private final Counter rebalances;
+    // Slot count of every split account seen by this node
+    private final Map<Long, Integer> known = new ConcurrentHashMap<>();
+
+    public SplitBalances(AccountRepository accountRepository,
+                         AccountSlotRepository slotRepository,
+                         LedgerProperties properties,
+                         MeterRegistry meterRegistry) {
+        this.accountRepository = accountRepository;
+        this.slotRepository = slotRepository;
+        this.properties = properties;
+        this.rebalances = Counter.builder("ledger.split.rebalances")
+                .description("Debits from split accounts that no single slot could cover")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void load() {
+        for (Object[] row : accountRepository.findSlotCounts()) {
+            known.put((Long) row[0], (Integer) row[1]);
+        }
+    }
+
+    /** Slot count if the account is known to be split, otherwise null. */
+    public Integer knownSlots(Long accountId) {
+        return known.get(accountId);
+    }
+
+    /**
+     * Moves the balance of {@code account}, which the caller holds locked, into {@code slots}
+     * new slots. Must run inside a transaction.
+     */
+    void split(Account account, int slots) {
+        if (properties.getEngine() != LedgerProperties.Engine.JPA) {
+            throw new ConflictException("Split accounts are only supported by the jpa engine");
+        }
+        int max = properties.getSplit().getMaxSlots();
+        if (slots < 2 || slots > max) {
+            throw new IllegalArgumentException("slots must be between 2 and " + max);
+        }
+        if (account.isSplit()) {
+            throw new ConflictException("Account " + account.getId() + " is already split");
+        }
+        if (account.getHeld() > 0) {
+            // Holds are counted on the account row, which slot debits never look at
+            throw new ConflictException("Account " + account.getId() + " has open holds");
+        }
+        long balance = account.getBalance();
+        List<AccountSlot> rows = new ArrayList<>(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            rows.add(new AccountSlot(account.getId(), slot, share(balance, slots, slot)));
+        }
+        slotRepository.saveAll(rows);
+        account.setBalance(0);
+        account.setSlots(slots);
+        accountRepository.save(account);
+        Long id = account.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                known.put(id, slots);
+            }
+        });
+    }
+
+    /** Slot totals of split accounts, read without locks; a later move may find them changed. */
+    Map<Long, Long> totals(Collection<Long> accountIds) {
+        Map<Long, Long> totals = new HashMap<>();
+        if (!accountIds.isEmpty()) {
+            slotRepository.findTotals(accountIds).forEach(t -> totals.put(t.getAccountId(), t.getBalance()));
+        }
+        return totals;
+    }
+
+    void credit(Long accountId, int slots, long amount) {
+        if (slotRepository.credit(accountId, ThreadLocalRandom.current().nextInt(slots), amount) == 0) {
+            throw new ConflictException("Balance overflow");
+        }
+    }
+
+    /** Throws {@link InsufficientFundsException}, having changed nothing, if the slots together do not cover it. */
+    void debit(Long accountId, int slots, long amount) {
+        int start = ThreadLocalRandom.current().nextInt(slots);
+        for (int i = 0; i < slots; i++) {
+            if (slotRepository.debitIfSufficient(accountId, (start + i) % slots, amount) == 1) {
+                return;
+            }
+        }
+        List<Long> balances = slotRepository.lockBalances(accountId);
+        long total = 0;
+        for (long b : balances) {
+            total = LedgerWriter.plus(total, b);
+        }
+        if (total < amount) {
+            throw new InsufficientFundsException("Insufficient funds");
+        }
+        long left = total - amount;
+        for (int slot = 0; slot < balances.size(); slot++) {
+            long share = share(left, balances.size(), slot);
+            if (share != balances.get(slot)) {
+                slotRepository.updateBalance(accountId, slot, share);
+            }
+        }
+        rebalances.increment();
+    }
+
+    private static long share(long total, int slots, int slot) {
+        return total / slots + (slot < total % slots ? 1 : 0);
+    }
+}
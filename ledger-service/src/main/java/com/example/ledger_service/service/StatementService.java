@@ -0,0 +1,70 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.dto.LedgerEntryResponse;
+import com.example.ledger_service.dto.StatementResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.NotFoundException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/** Read side of an account's history in {@code ledger_entries} and the {@link LedgerArchive}. */
+@Service
+public class StatementService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+    // Upper bound for an open-ended "to", so the query never has to deal with nulls
+    private static final Instant END_OF_TIME = Instant.parse("9999-12-31T23:59:59Z");
+
+    private final AccountRepository accountRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final LedgerArchive archive;
+
+    public StatementService(AccountRepository accountRepository, LedgerEntryRepository ledgerEntryRepository,
+                            LedgerArchive archive) {
+        this.accountRepository = accountRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.archive = archive;
+    }
+
+    /**
+     * Returns up to {@code limit} entries of the account older than {@code cursor} (an entry
+     * id from a previous page; null for the newest), optionally restricted to {@code [from, to)}.
+     */
+    public StatementResponse entries(Long accountId, Long cursor, Instant from, Instant to, int limit) {
+        int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        long before = cursor == null ? Long.MAX_VALUE : cursor;
+        Instant start = from == null ? Instant.EPOCH : from;
+        Instant end = to == null ? END_OF_TIME : to;
+        // One extra row tells us whether another page exists without a count query
+        List<LedgerEntry> hot = ledgerEntryRepository.findStatementPage(accountId, before, start, end, Limit.of(size + 1));
+        List<LedgerEntryResponse> rows = new ArrayList<>(hot.size());
+        for (LedgerEntry e : hot) {
+            rows.add(toResponse(e));
+        }
+        // Archived entries are older than nearly all hot ones; only those above a full hot page's last row can interleave
+        long floor = hot.size() > size ? hot.get(size).getId() : 0;
+        List<LedgerEntryResponse> cold = archive.entries(accountId, before, floor, start, end, size + 1);
+        if (!cold.isEmpty()) {
+            rows.addAll(cold);
+            rows.sort(Comparator.comparing(LedgerEntryResponse::getId).reversed());
+        }
+        if (rows.isEmpty() && !accountRepository.existsById(accountId)) {
+            throw new NotFoundException("Account " + accountId + " not found");
+        }
+        boolean more = rows.size() > size;
+        List<LedgerEntryResponse> entries = more ? rows.subList(0, size) : rows;
+        return new StatementResponse(entries, more ? entries.get(size - 1).getId() : null);
+    }
+
+    static LedgerEntryResponse toResponse(LedgerEntry e) {
+        return new LedgerEntryResponse(e.getId(), e.getTransferId(), e.getAccountId(), e.getAmount(),
+                e.getType(), e.getCreatedAt());
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.repository.ArchivedTransferRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter over every transferId the ledger has applied. A negative answer is
+ * definitive, so the common "never seen" case needs no database lookup; a positive
+ * answer is confirmed against {@code ledger_entries} and the archive. The unique
+ * constraint on {@code (transferId, type)} remains the backstop for concurrent duplicates.
+ */
+@Component
+public class TransferIdFilter {
+    private static final Logger log = LoggerFactory.getLogger(TransferIdFilter.class);
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashes;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final ArchivedTransferRepository archivedTransferRepository;
+    private final TransactionTemplate tx;
+    private final Counter skipped;
+    private final Counter checked;
+
+    public TransferIdFilter(LedgerProperties properties,
+                            LedgerEntryRepository ledgerEntryRepository,
+                            ArchivedTransferRepository archivedTransferRepository,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry) {
+        LedgerProperties.Idempotency config = properties.getIdempotency();
+        long n = Math.max(1, config.getExpectedTransfers());
+        double p = config.getFalsePositiveRate();
+        // Standard sizing: m = -n ln p / (ln 2)^2, k = m/n ln 2
+        long m = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((m + 63) / 64));
+        this.bitCount = bits.length() * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.archivedTransferRepository = archivedTransferRepository;
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        this.tx = readOnly;
+        this.skipped = Counter.builder("ledger.idempotency.lookups")
+                .description("Duplicate checks, by whether the filter let them skip the database")
+                .tag("result", "skipped")
+                .register(meterRegistry);
+        this.checked = Counter.builder("ledger.idempotency.lookups")
+                .tag("result", "queried")
+                .register(meterRegistry);
+    }
+
+    /** Seeds the filter from the transferIds already in the ledger, archived ones included. */
+    @PostConstruct
+    void load() {
+        AtomicLong loaded = new AtomicLong();
+        tx.executeWithoutResult(status -> {
+            try (Stream<String> hot = ledgerEntryRepository.streamTransferIds();
+                 Stream<String> archived = archivedTransferRepository.streamTransferIds()) {
+                Stream.concat(hot, archived).forEach(id -> {
+                    add(id);
+                    loaded.incrementAndGet();
+                });
+            }
+        });
+        log.info("Transfer id filter: {} bits, {} hashes, {} ids loaded", bitCount, hashes, loaded.get());
+    }
+
+    /** False means the transferId has definitely never been applied. */
+    public boolean mightContain(String transferId) {
+        long h1 = hash(transferId);
+        long h2 = mix(h1);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                skipped.increment();
+                return false;
+            }
+        }
+        checked.increment();
+        return true;
+    }
+
+    public void add(String transferId) {
+        long h1 = hash(transferId);
+        long h2 = mix(h1);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0
+                    && !bits.compareAndSet(word, current, current | mask)) {
+                // retry until our bit is set
+            }
+        }
+    }
+
+    /** 64-bit FNV-1a over the id's chars. */
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** MurmurHash3 finalizer, used to derive the second hash for double hashing. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h | 1;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.ledger_service.service;
+
+import com.example.ledger_service.dto.TrialBalanceResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running trial balance of the entries this node commits: global debit and credit totals
+ * plus per-day turnover, updated in O(1) per entry after each commit instead of by scanning
+ * {@code ledger_entries}. Every committed batch must net to zero on its own, so a batch that
+ * does not is flagged the moment it commits. The totals are seeded once at startup.
+ */
+@Component
+public class TrialBalance {
+    private static final Logger log = LoggerFactory.getLogger(TrialBalance.class);
+    private static final int RETAINED_DAYS = 31;
+
+    private record Turnover(LongAdder debits, LongAdder credits) {
+        Turnover() {
+            this(new LongAdder(), new LongAdder());
+        }
+    }
+
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final LedgerArchive archive;
+    private final TransactionTemplate readOnly;
+    private final LongAdder debits = new LongAdder();
+    private final LongAdder credits = new LongAdder();
+    // Moved only by whole batches, so it never shows a transient half-applied transfer
+    private final AtomicLong imbalance = new AtomicLong();
+    private final ConcurrentNavigableMap<LocalDate, Turnover> days = new ConcurrentSkipListMap<>();
+    private final Counter violations;
+    private volatile Instant trackedSince;
+
+    public TrialBalance(LedgerEntryRepository ledgerEntryRepository,
+                        LedgerArchive archive,
+                        PlatformTransactionManager transactionManager,
+                        MeterRegistry meterRegistry) {
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.archive = archive;
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.violations = Counter.builder("ledger.trialbalance.violations")
+                .description("Committed batches whose debits and credits did not match")
+                .register(meterRegistry);
+        Gauge.builder("ledger.trialbalance.imbalance", imbalance, AtomicLong::get)
+                .description("Running credits minus debits; non-zero means double entry was broken")
+                .register(meterRegistry);
+    }
+
+    /** Seeds the totals (and today's turnover) from the entries already in the ledger, archived ones included. */
+    @PostConstruct
+    void load() {
+        Instant now = Instant.now();
+        LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        debits.add(archive.totalDebits());
+        credits.add(archive.totalCredits());
+        imbalance.addAndGet(archive.totalCredits() - archive.totalDebits());
+        readOnly.executeWithoutResult(status -> {
+            ledgerEntryRepository.totalsByTypeSince(Instant.EPOCH).forEach(t -> {
+                (t.getType() == LedgerEntry.Type.DEBIT ? debits : credits).add(t.getTotal());
+                imbalance.addAndGet(t.getType() == LedgerEntry.Type.DEBIT ? -t.getTotal() : t.getTotal());
+            });
+            Turnover turnover = days.computeIfAbsent(today, d -> new Turnover());
+            ledgerEntryRepository.totalsByTypeSince(today.atStartOfDay(ZoneOffset.UTC).toInstant()).forEach(t ->
+                    (t.getType() == LedgerEntry.Type.DEBIT ? turnover.debits() : turnover.credits()).add(t.getTotal()));
+        });
+        trackedSince = now;
+        if (imbalance.get() != 0) {
+            log.error("Ledger is out of balance at startup: credits - debits = {}", imbalance.get());
+        }
+    }
+
+    /** Adds {@code entries} to the running totals once the current transaction commits. */
+    public void recordAfterCommit(Collection<LedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<LedgerEntry> committed = List.copyOf(entries);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record(committed);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record(committed);
+            }
+        });
+    }
+
+    private void record(List<LedgerEntry> entries) {
+        long batchDebits = 0;
+        long batchCredits = 0;
+        for (LedgerEntry e : entries) {
+            Turnover turnover = day(e.getCreatedAt());
+            if (e.getType() == LedgerEntry.Type.DEBIT) {
+                batchDebits += e.getAmount();
+                turnover.debits().add(e.getAmount());
+            } else {
+                batchCredits += e.getAmount();
+                turnover.credits().add(e.getAmount());
+            }
+        }
+        debits.add(batchDebits);
+        credits.add(batchCredits);
+        if (batchDebits != batchCredits) {
+            imbalance.addAndGet(batchCredits - batchDebits);
+            violations.increment();
+            log.error("Double-entry violation: committed batch debits {} != credits {} (transfers {})",
+                    batchDebits, batchCredits, entries.stream().map(LedgerEntry::getTransferId).distinct().toList());
+        }
+    }
+
+    private Turnover day(Instant at) {
+        LocalDate date = LocalDate.ofInstant(at, ZoneOffset.UTC);
+        Turnover turnover = days.get(date);
+        if (turnover == null) {
+            turnover = days.computeIfAbsent(date, d -> new Turnover());
+            // A new day started: drop the oldest so the map stays bounded
+            days.headMap(date.minusDays(RETAINED_DAYS)).clear();
+        }
+        return turnover;
+    }
+
+    public TrialBalanceResponse snapshot() {
+        List<TrialBalanceResponse.DayTurnover> turnover = new ArrayList<>(days.size());
+        days.descendingMap().forEach((date, t) -> turnover.add(
+                new TrialBalanceResponse.DayTurnover(date, t.debits().sum(), t.credits().sum())));
+        return new TrialBalanceResponse(debits.sum(), credits.sum(), imbalance.get(),
+                (long) violations.count(), trackedSince, turnover);
+    }
+}
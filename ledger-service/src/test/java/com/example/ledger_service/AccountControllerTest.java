@@ -2,16 +2,28 @@ package com.example.ledger_service;
 
 import com.example.ledger_service.controller.AccountController;
 import com.example.ledger_service.dto.AccountResponse;
+import com.example.ledger_service.dto.AccountsResponse;
 import com.example.ledger_service.dto.CreateAccount;
 import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.BalanceHistoryService;
+import com.example.ledger_service.service.StatementService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.*;
 
 class AccountControllerTest {
@@ -22,7 +34,8 @@ class AccountControllerTest {
     @BeforeEach
     void setUp() {
         accountService = mock(AccountService.class);
-        accountController = new AccountController(accountService);
+        accountController = new AccountController(accountService, mock(StatementService.class),
+                mock(BalanceHistoryService.class), new ObjectMapper().findAndRegisterModules());
     }
 
     @Test
@@ -44,10 +57,79 @@ class AccountControllerTest {
         AccountResponse mockResponse = new AccountResponse(1L,100, 2L, Instant.now(), "User1");
         when(accountService.get(id)).thenReturn(mockResponse);
 
-        ResponseEntity<AccountResponse> response = accountController.get(id);
+        ResponseEntity<AccountResponse> response = accountController.get(id, null);
 
         assertEquals(mockResponse, response.getBody());
         assertEquals(200, response.getStatusCodeValue());
+        assertEquals("\"2\"", response.getHeaders().getETag());
         verify(accountService, times(1)).get(id);
+        verify(accountService, never()).version(id);
+    }
+
+    @Test
+    void testGetNotModified() {
+        when(accountService.version(1L)).thenReturn(2L);
+
+        ResponseEntity<AccountResponse> response = accountController.get(1L, "W/\"1\", \"2\"");
+
+        assertEquals(304, response.getStatusCodeValue());
+        assertEquals("\"2\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(accountService, never()).get(1L);
+    }
+
+    @Test
+    void testGetStaleETagReturnsBody() {
+        AccountResponse mockResponse = new AccountResponse(1L, 100, 3L, Instant.now(), "User1");
+        when(accountService.version(1L)).thenReturn(3L);
+        when(accountService.get(1L)).thenReturn(mockResponse);
+
+        ResponseEntity<AccountResponse> response = accountController.get(1L, "\"2\"");
+
+        assertEquals(200, response.getStatusCodeValue());
+        assertEquals("\"3\"", response.getHeaders().getETag());
+        assertEquals(mockResponse, response.getBody());
+    }
+
+    @Test
+    void testGetManyReturnsFoundAndMissing() throws Exception {
+        AccountsResponse mockResponse = new AccountsResponse(
+                List.of(new AccountResponse(1L, 100, 0L, Instant.now(), "User1")), List.of(2L));
+        when(accountService.getAll(List.of(1L, 2L))).thenReturn(mockResponse);
+
+        ResponseEntity<StreamingResponseBody> response = accountController.getMany(List.of(1L, 2L));
+        assertEquals(200, response.getStatusCodeValue());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        JsonNode json = new ObjectMapper().readTree(out.toByteArray());
+        assertEquals(1, json.get("accounts").size());
+        assertEquals(1, json.get("accounts").get(0).get("id").asLong());
+        assertEquals(2, json.get("missing").get(0).asLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetManyStreamsLargeRequests() throws Exception {
+        List<Long> ids = LongStream.rangeClosed(1, AccountService.MULTI_GET_CHUNK + 1).boxed().toList();
+        doAnswer(inv -> {
+            Consumer<AccountResponse> found = inv.getArgument(1);
+            Consumer<Long> missing = inv.getArgument(2);
+            ids.forEach(id -> {
+                if (id % 2 == 0) missing.accept(id);
+                else found.accept(new AccountResponse(id, 10, 0L, Instant.now(), null));
+            });
+            return null;
+        }).when(accountService).forEachAccount(eq(ids), any(Consumer.class), any(Consumer.class));
+
+        ResponseEntity<StreamingResponseBody> response = accountController.getMany(ids);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        JsonNode json = new ObjectMapper().readTree(out.toByteArray());
+        assertEquals(501, json.get("accounts").size());
+        assertEquals(500, json.get("missing").size());
+        assertEquals(1, json.get("accounts").get(0).get("id").asLong());
+        verify(accountService, never()).getAll(any());
     }
 }
@@ -1,14 +1,24 @@
 package com.example.ledger_service;
 
+import com.example.ledger_service.config.LedgerProperties;
 import com.example.ledger_service.dto.AccountResponse;
+import com.example.ledger_service.dto.AccountsResponse;
 import com.example.ledger_service.dto.CreateAccount;
 import com.example.ledger_service.entity.Account;
 import com.example.ledger_service.exception.NotFoundException;
 import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.AccountSlotRepository;
+import com.example.ledger_service.service.AccountCache;
 import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.FxRates;
+import com.example.ledger_service.service.SplitBalances;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
+
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -18,19 +28,24 @@ class AccountServiceTest {
 
     private AccountRepository accountRepository;
     private AccountService accountService;
+    private AccountCache accountCache;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     void setUp() {
         accountRepository = mock(AccountRepository.class);
-        accountService = new AccountService(accountRepository);
+        meterRegistry = new SimpleMeterRegistry();
+        accountCache = new AccountCache(new LedgerProperties(), meterRegistry);
+        accountService = new AccountService(accountRepository, mock(AccountSlotRepository.class), accountCache,
+                mock(SplitBalances.class), mock(FxRates.class));
     }
 
     @Test
     void createAccount_Success() {
         CreateAccount req = new CreateAccount();
-        req.setInitialBalance(100);
+        req.setInitialBalance(100L);
         req.setName("Test Account");
-        Account savedAccount = new Account(100, "Test Account");
+        Account savedAccount = new Account(100, "Test Account", "USD");
 
         savedAccount.setVersion(0L);
         when(accountRepository.save(ArgumentMatchers.any(Account.class))).thenReturn(savedAccount);
@@ -45,7 +60,7 @@ class AccountServiceTest {
     @Test
     void createAccount_NegativeInitialBalance_ThrowsException() {
         CreateAccount req = new CreateAccount();
-        req.setInitialBalance(-50);
+        req.setInitialBalance(-50L);
         req.setName("Invalid Account");
         assertThrows(IllegalArgumentException.class, () -> accountService.create(req));
         verify(accountRepository, never()).save(ArgumentMatchers.any(Account.class));
@@ -53,7 +68,7 @@ class AccountServiceTest {
 
     @Test
     void getAccount_Success() {
-        Account account = new Account(200, "Existing Account");
+        Account account = new Account(200, "Existing Account", "USD");
         account.setVersion(1L);
         when(accountRepository.findById(2L)).thenReturn(Optional.of(account));
         AccountResponse response = accountService.get(2L);
@@ -73,9 +88,9 @@ class AccountServiceTest {
     @Test
     void createAccount_ZeroInitialBalance_Success() {
         CreateAccount req = new CreateAccount();
-        req.setInitialBalance(0);
+        req.setInitialBalance(0L);
         req.setName("Zero Balance Account");
-        Account savedAccount = new Account(0, "Zero Balance Account");
+        Account savedAccount = new Account(0, "Zero Balance Account", "USD");
         savedAccount.setVersion(0L);
         when(accountRepository.save(ArgumentMatchers.any(Account.class))).thenReturn(savedAccount);
         AccountResponse response = accountService.create(req);
@@ -91,7 +106,7 @@ class AccountServiceTest {
         CreateAccount req = new CreateAccount();
         req.setInitialBalance(null);
         req.setName("Null Balance Account");
-        Account savedAccount = new Account(0, "Null Balance Account");
+        Account savedAccount = new Account(0, "Null Balance Account", "USD");
         savedAccount.setVersion(0L);
         when(accountRepository.save(ArgumentMatchers.any(Account.class))).thenReturn(savedAccount);
         AccountResponse response = accountService.create(req);
@@ -100,4 +115,47 @@ class AccountServiceTest {
         assertEquals("Null Balance Account", response.getName());
         verify(accountRepository, times(1)).save(ArgumentMatchers.any(Account.class));
     }
+
+    @Test
+    void getAccount_SecondReadIsServedFromCache() {
+        Account account = new Account(200, "Cached Account", "USD");
+        account.setVersion(1L);
+        when(accountRepository.findById(4L)).thenReturn(Optional.of(account));
+
+        accountService.get(4L);
+        accountService.get(4L);
+
+        verify(accountRepository, times(1)).findById(4L);
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void cacheRejectsSnapshotOlderThanCachedVersion() {
+        Instant now = Instant.now();
+        accountCache.put(new AccountResponse(5L, 50, 3L, now, "a"));
+        accountCache.put(new AccountResponse(5L, 80, 2L, now, "a"));
+
+        assertEquals(50, accountService.get(5L).getBalance());
+        accountCache.put(new AccountResponse(5L, 20, 4L, now, "a"));
+        assertEquals(20, accountService.get(5L).getBalance());
+        verify(accountRepository, never()).findById(5L);
+    }
+
+    @Test
+    void getAll_ResolvesCacheHitsAndLoadsTheRestInOneQuery() {
+        Instant now = Instant.now();
+        accountCache.put(new AccountResponse(1L, 10, 0L, now, "cached"));
+        Account loaded = mock(Account.class);
+        when(loaded.getId()).thenReturn(2L);
+        when(loaded.getBalance()).thenReturn(20L);
+        when(loaded.getVersion()).thenReturn(0L);
+        when(accountRepository.findAllById(List.of(2L, 3L))).thenReturn(List.of(loaded));
+
+        AccountsResponse res = accountService.getAll(List.of(1L, 2L, 3L, 1L));
+
+        assertEquals(List.of(1L, 2L), res.getAccounts().stream().map(AccountResponse::getId).toList());
+        assertEquals(List.of(3L), res.getMissing());
+        verify(accountRepository, times(1)).findAllById(ArgumentMatchers.any());
+        verify(accountRepository, never()).findById(ArgumentMatchers.any());
+    }
 }
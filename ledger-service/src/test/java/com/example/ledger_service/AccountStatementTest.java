@@ -0,0 +1,87 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.dto.LedgerEntryResponse;
+import com.example.ledger_service.dto.StatementResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.NotFoundException;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.StatementService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class AccountStatementTest {
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    StatementService statementService;
+
+    @Test
+    void pagesThroughEntriesNewestFirst() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        for (int i = 1; i <= 5; i++) {
+            ledgerService.doApplyTransfer(transfer(a1.getId(), a2.getId(), i));
+        }
+
+        List<LedgerEntryResponse> all = new ArrayList<>();
+        Long cursor = null;
+        int pages = 0;
+        do {
+            StatementResponse page = statementService.entries(a1.getId(), cursor, null, null, 2);
+            all.addAll(page.getEntries());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(List.of(5L, 4L, 3L, 2L, 1L), all.stream().map(LedgerEntryResponse::getAmount).toList());
+        assertTrue(all.stream().allMatch(e -> e.getType() == LedgerEntry.Type.DEBIT && e.getAccountId().equals(a1.getId())));
+    }
+
+    @Test
+    void filtersByCreatedAt() throws InterruptedException {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        ledgerService.doApplyTransfer(transfer(a1.getId(), a2.getId(), 1));
+        Thread.sleep(5);
+        Instant split = Instant.now();
+        Thread.sleep(5);
+        ledgerService.doApplyTransfer(transfer(a1.getId(), a2.getId(), 2));
+
+        assertEquals(List.of(1L), amounts(statementService.entries(a2.getId(), null, null, split, 50)));
+        assertEquals(List.of(2L), amounts(statementService.entries(a2.getId(), null, split, null, 50)));
+    }
+
+    @Test
+    void unknownAccountIsNotFound() {
+        assertThrows(NotFoundException.class, () -> statementService.entries(999_999L, null, null, null, 50));
+    }
+
+    @Test
+    void accountWithoutEntriesHasEmptyStatement() {
+        var a1 = accountService.create(req(100));
+        StatementResponse page = statementService.entries(a1.getId(), null, null, null, 50);
+        assertTrue(page.getEntries().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    private static List<Long> amounts(StatementResponse page) {
+        return page.getEntries().stream().map(LedgerEntryResponse::getAmount).toList();
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.TransferRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.entity.TransferJob;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.exception.NotFoundException;
+import com.example.ledger_service.exception.OverloadedException;
+import com.example.ledger_service.repository.TransferJobRepository;
+import com.example.ledger_service.service.AppliedTransfers;
+import com.example.ledger_service.service.AsyncTransferService;
+import com.example.ledger_service.service.LedgerService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AsyncTransferServiceTest {
+
+    private LedgerService ledgerService;
+    private AppliedTransfers appliedTransfers;
+    private TransferJobRepository jobRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private AsyncTransferService asyncTransferService;
+
+    @BeforeEach
+    void setUp() {
+        ledgerService = mock(LedgerService.class);
+        appliedTransfers = mock(AppliedTransfers.class);
+        jobRepository = mock(TransferJobRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        when(jobRepository.save(ArgumentMatchers.any(TransferJob.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        LedgerProperties properties = new LedgerProperties();
+        properties.getAsync().setThreads(1);
+        properties.getAsync().setQueueCapacity(1);
+        asyncTransferService = new AsyncTransferService(ledgerService, appliedTransfers, jobRepository,
+                properties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        asyncTransferService.shutdown();
+    }
+
+    @Test
+    void acceptPersistsJobBeforeApplying() throws Exception {
+        when(ledgerService.doApplyTransfer(ArgumentMatchers.any()))
+                .thenReturn(new TransferResponse("t1", "SUCCESS", "OK", 1L, 2L, 10));
+
+        TransferResponse res = asyncTransferService.accept(transfer("t1", 1L, 2L, 10));
+
+        assertEquals("ACCEPTED", res.getStatus());
+        ArgumentCaptor<TransferJob> saved = ArgumentCaptor.forClass(TransferJob.class);
+        verify(jobRepository, timeout(2_000).times(2)).save(saved.capture());
+        assertEquals(TransferJob.Status.SUCCESS, saved.getValue().getStatus());
+        verify(ledgerService).doApplyTransfer(ArgumentMatchers.any());
+    }
+
+    @Test
+    void failedTransferIsRecordedOnItsJob() {
+        when(ledgerService.doApplyTransfer(ArgumentMatchers.any()))
+                .thenThrow(new InsufficientFundsException("Insufficient funds"));
+
+        asyncTransferService.accept(transfer("t1", 1L, 2L, 10));
+
+        ArgumentCaptor<TransferJob> saved = ArgumentCaptor.forClass(TransferJob.class);
+        verify(jobRepository, timeout(2_000).times(2)).save(saved.capture());
+        assertEquals(TransferJob.Status.FAILED, saved.getValue().getStatus());
+        assertEquals("Insufficient funds", saved.getValue().getMessage());
+    }
+
+    @Test
+    void rejectsWhenSaturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(ledgerService.doApplyTransfer(ArgumentMatchers.any())).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new TransferResponse("t", "SUCCESS", "OK", 1L, 2L, 10);
+        });
+
+        asyncTransferService.accept(transfer("t1", 1L, 2L, 10));
+        asyncTransferService.accept(transfer("t2", 1L, 2L, 10));
+        assertThrows(OverloadedException.class, () -> asyncTransferService.accept(transfer("t3", 1L, 2L, 10)));
+        assertEquals(1.0, meterRegistry.get("ledger.async.rejected").counter().count());
+        verify(jobRepository, never()).save(argThat(job -> job.getTransferId().equals("t3")));
+        release.countDown();
+    }
+
+    @Test
+    void statusOfAppliedTransferComesFromLedgerEntries() {
+        when(appliedTransfers.entries("t1")).thenReturn(List.of(
+                new LedgerEntry("t1", 1L, 10, LedgerEntry.Type.DEBIT),
+                new LedgerEntry("t1", 2L, 10, LedgerEntry.Type.CREDIT)));
+
+        TransferResponse res = asyncTransferService.status("t1");
+
+        assertEquals("SUCCESS", res.getStatus());
+        assertEquals(1L, res.getFromAccountId());
+        assertEquals(2L, res.getToAccountId());
+        verify(jobRepository, never()).findById(ArgumentMatchers.any());
+    }
+
+    @Test
+    void knownTransferIdIsCheckedAgainstItsPayload() {
+        when(jobRepository.findById("t1")).thenReturn(Optional.of(new TransferJob("t1", 1L, 2L, 10L)));
+        assertEquals("ACCEPTED", asyncTransferService.accept(transfer("t1", 1L, 2L, 10)).getStatus());
+
+        TransferRequest different = transfer("t1", 1L, 2L, 10);
+        different.setAmount(20L);
+        assertThrows(ConflictException.class, () -> asyncTransferService.accept(different));
+
+        when(appliedTransfers.entries("t2")).thenReturn(List.of(
+                new LedgerEntry("t2", 1L, 10, LedgerEntry.Type.DEBIT),
+                new LedgerEntry("t2", 3L, 10, LedgerEntry.Type.CREDIT)));
+        assertThrows(ConflictException.class, () -> asyncTransferService.accept(transfer("t2", 1L, 2L, 10)));
+        verify(jobRepository, never()).save(ArgumentMatchers.any());
+    }
+
+    @Test
+    void concurrentAcceptOfTheSameTransferIdReturnsTheWinner() {
+        when(jobRepository.save(ArgumentMatchers.any(TransferJob.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(jobRepository.findById("t1"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(new TransferJob("t1", 1L, 2L, 10L)));
+
+        assertEquals("ACCEPTED", asyncTransferService.accept(transfer("t1", 1L, 2L, 10)).getStatus());
+        verify(ledgerService, never()).doApplyTransfer(ArgumentMatchers.any());
+    }
+
+    @Test
+    void statusOfUnknownTransferIsNotFound() {
+        when(jobRepository.findById("nope")).thenReturn(Optional.empty());
+        assertThrows(NotFoundException.class, () -> asyncTransferService.status("nope"));
+    }
+}
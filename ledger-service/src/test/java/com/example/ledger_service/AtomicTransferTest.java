@@ -0,0 +1,249 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.dto.BatchTransferRequest;
+import com.example.ledger_service.dto.CaptureRequest;
+import com.example.ledger_service.dto.HoldRequest;
+import com.example.ledger_service.dto.PostingRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.BatchTransferService;
+import com.example.ledger_service.service.HoldService;
+import com.example.ledger_service.service.LedgerService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "ledger.transfer.strategy=atomic")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class AtomicTransferTest {
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    BatchTransferService batchTransferService;
+    @Autowired
+    HoldService holdService;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void happyPathTransfer() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(10));
+
+        var t = transfer(a1.getId(), a2.getId(), 25);
+        assertEquals("SUCCESS", ledgerService.doApplyTransfer(t).getStatus());
+
+        assertEquals(75, accountService.get(a1.getId()).getBalance());
+        assertEquals(35, accountService.get(a2.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(t.getTransferId()).size());
+    }
+
+    @Test
+    void insufficientFundsFails() {
+        var a1 = accountService.create(req(10));
+        var a2 = accountService.create(req(5));
+
+        var t = transfer(a1.getId(), a2.getId(), 50);
+        assertThrows(InsufficientFundsException.class, () -> ledgerService.doApplyTransfer(t));
+
+        assertEquals(10, accountService.get(a1.getId()).getBalance());
+        assertEquals(5, accountService.get(a2.getId()).getBalance());
+        assertTrue(ledgerRepo.findByTransferId(t.getTransferId()).isEmpty());
+    }
+
+    @Test
+    void creditThatWouldOverflowRollsBackDebit() {
+        var a1 = accountService.create(req(100));
+        var full = accountService.create(req(Long.MAX_VALUE));
+
+        var t = transfer(a1.getId(), full.getId(), 1);
+        assertThrows(ConflictException.class, () -> ledgerService.doApplyTransfer(t));
+
+        assertEquals(100, accountService.get(a1.getId()).getBalance());
+        assertEquals(Long.MAX_VALUE, accountService.get(full.getId()).getBalance());
+        assertEquals(0, ledgerRepo.count());
+    }
+
+    @Test
+    void missingDestinationRollsBackDebit() {
+        var a1 = accountService.create(req(100));
+
+        assertThrows(ConflictException.class,
+                () -> ledgerService.doApplyTransfer(transfer(a1.getId(), a1.getId() + 100, 10)));
+        assertThrows(ConflictException.class,
+                () -> ledgerService.doApplyTransfer(transfer(a1.getId() + 100, a1.getId(), 10)));
+        assertEquals(100, accountService.get(a1.getId()).getBalance());
+    }
+
+    @Test
+    void opposingConcurrentTransfersNeverConflict() throws Exception {
+        var a1 = accountService.create(req(1_000));
+        var a2 = accountService.create(req(1_000));
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            boolean forward = i % 2 == 0;
+            futures.add(pool.submit(() -> ledgerService.doApplyTransfer(forward
+                    ? transfer(a1.getId(), a2.getId(), 1)
+                    : transfer(a2.getId(), a1.getId(), 1))));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(1_000, accountService.get(a1.getId()).getBalance());
+        assertEquals(1_000, accountService.get(a2.getId()).getBalance());
+        assertEquals(0.0, meterRegistry.get("ledger.transfer.conflicts").tag("strategy", "atomic").counter().count());
+        assertEquals(200, meterRegistry.get("ledger.transfer.lock.wait").tag("strategy", "atomic").timer().count());
+    }
+
+    @Test
+    void concurrentDuplicatesOfOneTransferIdApplyOnce() throws Exception {
+        var a1 = accountService.create(req(1_000));
+        var a2 = accountService.create(req(0));
+        var t = transfer(a1.getId(), a2.getId(), 100);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<TransferResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(pool.submit(() -> {
+                go.await();
+                return ledgerService.doApplyTransfer(t);
+            }));
+        }
+        go.countDown();
+        for (Future<TransferResponse> f : futures) {
+            // The losers of the unique key replay the winner's outcome instead of failing
+            assertEquals("SUCCESS", f.get().getStatus());
+        }
+        pool.shutdown();
+
+        assertEquals(900, accountService.get(a1.getId()).getBalance());
+        assertEquals(100, accountService.get(a2.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(t.getTransferId()).size());
+    }
+
+    @Test
+    void transferIdAppliedOnAnotherNodeReplays() {
+        var a1 = accountService.create(req(1_000));
+        var a2 = accountService.create(req(0));
+        // Written by another node: this node's transferId filter has never seen either id
+        var t = transfer(a1.getId(), a2.getId(), 100);
+        ledgerRepo.saveAll(List.of(new LedgerEntry(t.getTransferId(), a1.getId(), 100L, LedgerEntry.Type.DEBIT),
+                new LedgerEntry(t.getTransferId(), a2.getId(), 100L, LedgerEntry.Type.CREDIT)));
+        PostingRequest p = new PostingRequest();
+        p.setTransferId(UUID.randomUUID().toString());
+        p.setLegs(List.of(new PostingRequest.Leg(a1.getId(), LedgerEntry.Type.DEBIT, 50L),
+                new PostingRequest.Leg(a2.getId(), LedgerEntry.Type.CREDIT, 50L)));
+        ledgerRepo.saveAll(List.of(new LedgerEntry(p.getTransferId(), a1.getId(), 50L, LedgerEntry.Type.DEBIT, 0),
+                new LedgerEntry(p.getTransferId(), a2.getId(), 50L, LedgerEntry.Type.CREDIT, 1)));
+
+        assertEquals("SUCCESS", ledgerService.doApplyTransfer(t).getStatus());
+        assertEquals("SUCCESS", ledgerService.doApplyPosting(p).getStatus());
+        assertEquals(1_000, accountService.get(a1.getId()).getBalance());
+        assertEquals(4, ledgerRepo.count());
+    }
+
+    @Test
+    void nettedBatchIsOneConditionalUpdatePerAccount() {
+        var a1 = accountService.create(req(0));
+        var a2 = accountService.create(req(100));
+
+        BatchTransferRequest batch = new BatchTransferRequest();
+        batch.setNetting(true);
+        batch.setTransfers(List.of(
+                transfer(a1.getId(), a2.getId(), 40),
+                transfer(a2.getId(), a1.getId(), 70),
+                transfer(a1.getId(), a2.getId(), 10)));
+        assertEquals(3, batchTransferService.applyBatch(batch).getSucceeded());
+
+        assertEquals(20, accountService.get(a1.getId()).getBalance());
+        assertEquals(80, accountService.get(a2.getId()).getBalance());
+        assertEquals(1L, accountService.get(a1.getId()).getVersion());
+        assertEquals(6, ledgerRepo.count());
+
+        batch.setTransfers(List.of(transfer(a1.getId(), a2.getId(), 30), transfer(a2.getId(), a1.getId(), 5)));
+        var res = batchTransferService.applyBatch(batch);
+        assertEquals(0, res.getSucceeded());
+        assertEquals("Insufficient funds: account " + a1.getId() + " nets -25 over the batch",
+                res.getResults().get(0).getMessage());
+        assertEquals(20, accountService.get(a1.getId()).getBalance());
+        assertEquals(80, accountService.get(a2.getId()).getBalance());
+
+        batch.setTransfers(List.of(transfer(a2.getId(), a1.getId(), 5), transfer(a1.getId() + 100, a1.getId(), 1)));
+        res = batchTransferService.applyBatch(batch);
+        assertEquals("Account " + (a1.getId() + 100) + " not found", res.getResults().get(1).getMessage());
+        assertEquals(20, accountService.get(a1.getId()).getBalance());
+    }
+
+    @Test
+    void postingMovesEveryLegWithoutReads() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        var a3 = accountService.create(req(0));
+
+        PostingRequest p = new PostingRequest();
+        p.setTransferId(UUID.randomUUID().toString());
+        p.setLegs(List.of(new PostingRequest.Leg(a1.getId(), LedgerEntry.Type.DEBIT, 90L),
+                new PostingRequest.Leg(a2.getId(), LedgerEntry.Type.CREDIT, 60L),
+                new PostingRequest.Leg(a3.getId(), LedgerEntry.Type.CREDIT, 30L)));
+        ledgerService.doApplyPosting(p);
+
+        assertEquals(10, accountService.get(a1.getId()).getBalance());
+        assertEquals(60, accountService.get(a2.getId()).getBalance());
+        assertEquals(30, accountService.get(a3.getId()).getBalance());
+
+        p.setTransferId(UUID.randomUUID().toString());
+        assertThrows(InsufficientFundsException.class, () -> ledgerService.doApplyPosting(p));
+        assertEquals(30, accountService.get(a3.getId()).getBalance());
+        assertEquals(3, ledgerRepo.count());
+    }
+
+    @Test
+    void conditionalDebitLeavesHeldFundsAlone() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        HoldRequest h = new HoldRequest();
+        h.setHoldId(UUID.randomUUID().toString());
+        h.setAccountId(a1.getId());
+        h.setAmount(70L);
+        holdService.authorize(h);
+
+        var tooMuch = transfer(a1.getId(), a2.getId(), 31);
+        assertThrows(InsufficientFundsException.class, () -> ledgerService.doApplyTransfer(tooMuch));
+        ledgerService.doApplyTransfer(transfer(a1.getId(), a2.getId(), 30));
+
+        CaptureRequest c = new CaptureRequest();
+        c.setToAccountId(a2.getId());
+        holdService.capture(h.getHoldId(), c);
+        assertEquals(0, accountService.get(a1.getId()).getBalance());
+        assertEquals(0, accountService.get(a1.getId()).getHeld());
+        assertEquals(100, accountService.get(a2.getId()).getBalance());
+    }
+}
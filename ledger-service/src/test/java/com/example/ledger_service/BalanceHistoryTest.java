@@ -0,0 +1,153 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.engine.ShardedBalanceEngine;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.NotFoundException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.BalanceSnapshotRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.BalanceHistoryService;
+import com.example.ledger_service.service.LedgerArchive;
+import com.example.ledger_service.service.LedgerService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "ledger.snapshots.enabled=false")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class BalanceHistoryTest {
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    BalanceHistoryService balanceHistoryService;
+    @Autowired
+    BalanceSnapshotRepository snapshotRepository;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    AccountRepository accountRepository;
+    @Autowired
+    LedgerArchive archive;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    LedgerProperties properties;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void balanceAsOfReplaysFromNearestSnapshot() throws InterruptedException {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        var idle = accountService.create(req(7));
+        Instant created = tick();
+
+        ledgerService.doApplyTransfer(transfer(a1.getId(), a2.getId(), 30));
+        Instant afterFirst = tick();
+        assertEquals(2, balanceHistoryService.takeSnapshots(afterFirst));
+
+        ledgerService.doApplyTransfer(transfer(a2.getId(), a1.getId(), 10));
+        Instant afterSecond = tick();
+        assertEquals(2, balanceHistoryService.takeSnapshots(afterSecond));
+        assertEquals(0, balanceHistoryService.takeSnapshots(afterSecond));
+
+        ledgerService.doApplyTransfer(transfer(a1.getId(), a2.getId(), 5));
+
+        assertEquals(100, balanceHistoryService.balanceAt(a1.getId(), created).getBalance());
+        assertEquals(70, balanceHistoryService.balanceAt(a1.getId(), afterFirst).getBalance());
+        assertEquals(80, balanceHistoryService.balanceAt(a1.getId(), afterSecond).getBalance());
+        assertEquals(75, balanceHistoryService.balanceAt(a1.getId(), null).getBalance());
+        assertEquals(25, balanceHistoryService.balanceAt(a2.getId(), null).getBalance());
+        assertEquals(7, balanceHistoryService.balanceAt(idle.getId(), null).getBalance());
+        assertEquals(4, snapshotRepository.count());
+    }
+
+    @Test
+    void entriesWrittenAfterARunWithOlderCreatedAtAreNotLost() throws InterruptedException {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        Instant created = tick();
+        ledgerService.doApplyTransfer(transfer(a1.getId(), a2.getId(), 30));
+        Instant afterFirst = tick();
+        assertEquals(2, balanceHistoryService.takeSnapshots(afterFirst));
+
+        // Committed after the run but stamped before it, as a journal replay writes them
+        String late = UUID.randomUUID().toString();
+        ledgerRepo.saveAll(List.of(new LedgerEntry(late, a1.getId(), 20L, LedgerEntry.Type.DEBIT, created),
+                new LedgerEntry(late, a2.getId(), 20L, LedgerEntry.Type.CREDIT, created)));
+
+        assertEquals(50, balanceHistoryService.balanceAt(a1.getId(), afterFirst).getBalance());
+        assertEquals(50, balanceHistoryService.balanceAt(a2.getId(), null).getBalance());
+
+        Instant afterSecond = tick();
+        assertEquals(2, balanceHistoryService.takeSnapshots(afterSecond));
+        assertEquals(50, snapshotRepository.findFirstByAccountIdAndAsOfLessThanEqualOrderByAsOfDesc(a1.getId(), afterSecond)
+                .orElseThrow().getBalance());
+        assertEquals(50, balanceHistoryService.balanceAt(a1.getId(), afterSecond).getBalance());
+        assertEquals(80, balanceHistoryService.balanceAt(a1.getId(), created).getBalance());
+    }
+
+    @Test
+    void runStopsBeforeTheShardedPersistersOldestUnwrittenEntry() throws InterruptedException {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        ledgerService.doApplyTransfer(transfer(a1.getId(), a2.getId(), 30));
+        Instant pending = tick();
+        ShardedBalanceEngine engine = mock(ShardedBalanceEngine.class);
+        when(engine.oldestUnwritten()).thenReturn(pending, (Instant) null);
+        @SuppressWarnings("unchecked")
+        ObjectProvider<ShardedBalanceEngine> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(engine);
+        var history = new BalanceHistoryService(accountRepository, ledgerRepo, snapshotRepository, archive,
+                transactionManager, properties, meterRegistry, provider);
+
+        assertEquals(2, history.takeSnapshots(tick()));
+        Instant asOf = snapshotRepository.findFirstByOrderByAsOfDesc().orElseThrow().getAsOf();
+        assertTrue(asOf.isBefore(pending));
+
+        // The persister gets to the entry it was holding, and the next run counts it
+        String held = UUID.randomUUID().toString();
+        ledgerRepo.saveAll(List.of(new LedgerEntry(held, a1.getId(), 20L, LedgerEntry.Type.DEBIT, pending),
+                new LedgerEntry(held, a2.getId(), 20L, LedgerEntry.Type.CREDIT, pending)));
+        Instant later = tick();
+        assertEquals(2, history.takeSnapshots(later));
+        assertEquals(50, history.balanceAt(a1.getId(), later).getBalance());
+        assertEquals(70, history.balanceAt(a1.getId(), asOf).getBalance());
+    }
+
+    @Test
+    void balanceBeforeAccountExistedIsNotFound() {
+        Instant before = Instant.now().minusSeconds(60);
+        var a1 = accountService.create(req(100));
+        assertThrows(NotFoundException.class, () -> balanceHistoryService.balanceAt(a1.getId(), before));
+        assertThrows(NotFoundException.class, () -> balanceHistoryService.balanceAt(999_999L, null));
+    }
+
+    // Separates consecutive steps on the entries' createdAt clock, at the microseconds the column keeps
+    private static Instant tick() throws InterruptedException {
+        Thread.sleep(5);
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        Thread.sleep(5);
+        return now;
+    }
+}
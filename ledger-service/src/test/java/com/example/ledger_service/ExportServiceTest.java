@@ -0,0 +1,92 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.ExportService;
+import com.example.ledger_service.service.LedgerService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "ledger.export.fetch-size=2")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ExportServiceTest {
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    ExportService exportService;
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void formatIsParsedInAnyCaseAndUnknownOnesAreRefused() {
+        assertEquals(ExportService.Format.CSV, ExportService.Format.of("csv"));
+        assertEquals(ExportService.Format.NDJSON, ExportService.Format.of("NDJSON"));
+        assertThrows(ConflictException.class, () -> ExportService.Format.of("xml"));
+    }
+
+    @Test
+    void exportsCsvForOneAccount() throws Exception {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        var a3 = accountService.create(req(0));
+        ledgerService.doApplyTransfer(transfer("t1", a1.getId(), a2.getId(), 10));
+        ledgerService.doApplyTransfer(transfer("t,\"2\"", a1.getId(), a3.getId(), 20));
+
+        String[] lines = export(ExportService.Format.CSV, a3.getId(), null, null).split("\n");
+
+        assertEquals(2, lines.length);
+        assertEquals("id,transfer_id,account_id,amount,type,created_at", lines[0]);
+        assertTrue(lines[1].contains(",\"t,\"\"2\"\"\"," + a3.getId() + ",20,CREDIT,"), lines[1]);
+    }
+
+    @Test
+    void exportsNdjsonInIdOrderAndHonoursTimeRange() throws Exception {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        for (int i = 1; i <= 5; i++) {
+            ledgerService.doApplyTransfer(transfer("t" + i, a1.getId(), a2.getId(), i));
+        }
+
+        List<JsonNode> rows = export(ExportService.Format.NDJSON, null, null, null).lines()
+                .map(this::parse).toList();
+        assertEquals(10, rows.size());
+        for (int i = 1; i < rows.size(); i++) {
+            assertTrue(rows.get(i).get("id").asLong() > rows.get(i - 1).get("id").asLong());
+        }
+        assertEquals("t1", rows.get(0).get("transferId").asText());
+
+        Instant future = Instant.now().plusSeconds(3600);
+        assertEquals("", export(ExportService.Format.NDJSON, null, future, null));
+        assertEquals(10, export(ExportService.Format.NDJSON, null, null, future).lines().count());
+    }
+
+    private String export(ExportService.Format format, Long accountId, Instant from, Instant to) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(format, accountId, from, to, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private JsonNode parse(String line) {
+        try {
+            return objectMapper.readTree(line);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
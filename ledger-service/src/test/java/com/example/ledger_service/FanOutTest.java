@@ -0,0 +1,227 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.FanOutRequest;
+import com.example.ledger_service.dto.FanOutRequest.Item;
+import com.example.ledger_service.dto.FanOutResponse;
+import com.example.ledger_service.entity.FanOutRun;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.FanOutItemRepository;
+import com.example.ledger_service.repository.FanOutRunRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.FanOutService;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.ReconciliationService;
+import com.example.ledger_service.service.TransferIdFilter;
+import com.example.ledger_service.service.TrialBalance;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "ledger.snapshots.enabled=false")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class FanOutTest {
+    private static final Logger log = LoggerFactory.getLogger(FanOutTest.class);
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    FanOutService fanOutService;
+    @Autowired
+    FanOutRunRepository runRepository;
+    @Autowired
+    FanOutItemRepository itemRepository;
+    @Autowired
+    AccountRepository accountRepository;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    ReconciliationService reconciliationService;
+    @Autowired
+    TrialBalance trialBalance;
+    @Autowired
+    TransferIdFilter transferIdFilter;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+    @Autowired
+    LedgerProperties properties;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void payrollCreditsEveryDestinationAndRefundsMissingOnes() throws Exception {
+        var employer = accountService.create(req(1_000_000));
+        List<Long> employees = accounts(1_200);
+        List<Item> items = new ArrayList<>();
+        employees.forEach(id -> items.add(new Item(id, 100L)));
+        long missing = employees.get(employees.size() - 1) + 1_000;
+        items.set(700, new Item(missing, 100L));
+
+        FanOutResponse accepted = fanOutService.start(fanOut(employer.getId(), items));
+        // Funded up front: the whole total has left the source before any destination is credited
+        assertEquals(120_000, accepted.getTotal());
+        FanOutResponse done = awaitCompletion(accepted.getRunId());
+
+        assertEquals(1_200, done.getProcessed());
+        assertEquals(1, done.getFailed());
+        assertEquals("FAILED", done.getResults().get(700).status());
+        assertEquals("SUCCESS", done.getResults().get(699).status());
+        assertEquals(1_000_000 - 119_900, balance(employer.getId()));
+        assertEquals(0, balance(done.getClearingAccountId()));
+        assertEquals(100, balance(employees.get(0)));
+        assertEquals(0, balance(employees.get(700)));
+        // Each destination is its own transfer out of the clearing account
+        assertEquals(2, ledgerRepo.findByTransferId(accepted.getRunId() + "-5").size());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+        assertTrue(trialBalance.snapshot().isBalanced());
+    }
+
+    @Test
+    void runIdsAreIdempotentAndUnfundedRunsChangeNothing() throws Exception {
+        var employer = accountService.create(req(1_000));
+        List<Long> employees = accounts(3);
+        FanOutRequest run = fanOut(employer.getId(), List.of(new Item(employees.get(0), 100L),
+                new Item(employees.get(1), 200L), new Item(employees.get(2), 300L)));
+
+        fanOutService.start(run);
+        awaitCompletion(run.getRunId());
+        assertEquals("COMPLETED", fanOutService.start(run).getStatus());
+        assertEquals(400, balance(employer.getId()));
+
+        FanOutRequest different = fanOut(employer.getId(), List.of(new Item(employees.get(0), 50L)));
+        different.setRunId(run.getRunId());
+        assertThrows(ConflictException.class, () -> fanOutService.start(different));
+        FanOutRequest toItself = fanOut(employer.getId(), List.of(new Item(employer.getId(), 50L)));
+        assertThrows(ConflictException.class, () -> fanOutService.start(toItself));
+        FanOutRequest unfunded = fanOut(employer.getId(), List.of(new Item(employees.get(0), 300L),
+                new Item(employees.get(1), 300L)));
+        assertThrows(InsufficientFundsException.class, () -> fanOutService.start(unfunded));
+
+        assertFalse(runRepository.existsById(unfunded.getRunId()));
+        assertEquals(400, balance(employer.getId()));
+        assertEquals(100, balance(employees.get(0)));
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    @Test
+    void interruptedRunResumesAtItsCursor() throws Exception {
+        properties.getFanOut().setChunkSize(10);
+        var employer = accountService.create(req(10_000));
+        List<Long> employees = accounts(1_000);
+        List<Item> items = new ArrayList<>();
+        employees.forEach(id -> items.add(new Item(id, 7L)));
+
+        FanOutRequest req = fanOut(employer.getId(), items);
+        fanOutService.start(req);
+        // The process goes away between chunks
+        fanOutService.shutdown();
+        FanOutRun stopped = runRepository.findById(req.getRunId()).orElseThrow();
+        assertEquals(FanOutRun.Status.RUNNING, stopped.getStatus());
+        assertTrue(stopped.getNextItem() < 1_000);
+        assertEquals(0, stopped.getNextItem() % 10);
+        // Every committed chunk balances on its own, so the ledger reconciles mid-run
+        assertTrue(reconciliationService.reconcile().isConsistent());
+
+        FanOutService restarted = new FanOutService(ledgerService, accountRepository, ledgerRepo, runRepository,
+                itemRepository, transferIdFilter, transactionManager, properties, meterRegistry);
+        try {
+            restarted.resumePending();
+            FanOutResponse done = awaitCompletion(req.getRunId());
+            assertEquals(0, done.getFailed());
+        } finally {
+            restarted.shutdown();
+        }
+
+        assertEquals(10_000 - 7_000, balance(employer.getId()));
+        for (Long id : List.of(employees.get(0), employees.get(stopped.getNextItem()), employees.get(999))) {
+            assertEquals(7, balance(id));
+        }
+        assertEquals(2 + 2 * 1_000, ledgerRepo.count());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+        assertTrue(trialBalance.snapshot().isBalanced());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void oneFanOutReplacesATransferPerDestination() throws Exception {
+        int destinations = 1_000;
+        var employer = accountService.create(req(10_000_000));
+        List<Long> employees = accounts(destinations);
+
+        // The first round only warms up both paths
+        long[] transfers = new long[2];
+        long[] fanOuts = new long[2];
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (Long id : employees) {
+                ledgerService.doApplyTransfer(transfer(employer.getId(), id, 10));
+            }
+            transfers[round] = System.nanoTime() - start;
+            List<Item> items = new ArrayList<>(destinations);
+            employees.forEach(id -> items.add(new Item(id, 10L)));
+            start = System.nanoTime();
+            awaitCompletion(fanOutService.start(fanOut(employer.getId(), items)).getRunId());
+            fanOuts[round] = System.nanoTime() - start;
+        }
+
+        log.info("{} destinations: {} ms as one transfer each, {} ms as one fan-out",
+                destinations, TimeUnit.NANOSECONDS.toMillis(transfers[1]), TimeUnit.NANOSECONDS.toMillis(fanOuts[1]));
+        assertEquals(10_000_000 - 4 * destinations * 10, balance(employer.getId()));
+        assertEquals(40, balance(employees.get(destinations / 2)));
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    /** Polls the run row, which is cheap, and returns the full status once the run completes. */
+    private FanOutResponse awaitCompletion(String runId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (runRepository.findById(runId).orElseThrow().getStatus() != FanOutRun.Status.COMPLETED) {
+            assertTrue(System.nanoTime() < deadline, "fan-out " + runId + " did not complete");
+            Thread.sleep(2);
+        }
+        return fanOutService.status(runId);
+    }
+
+    /**
+     * Read from the table: the cache is refreshed after each chunk commits, which can trail the
+     * run's COMPLETED status by a moment.
+     */
+    private long balance(Long id) {
+        return accountRepository.findById(id).orElseThrow().getBalance();
+    }
+
+    private List<Long> accounts(int n) {
+        List<Long> ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ids.add(accountService.create(req(0)).getId());
+        }
+        return ids;
+    }
+
+    private FanOutRequest fanOut(Long source, List<Item> items) {
+        FanOutRequest r = new FanOutRequest();
+        r.setRunId(UUID.randomUUID().toString());
+        r.setSourceAccountId(source);
+        r.setItems(items);
+        return r;
+    }
+}
@@ -0,0 +1,309 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.dto.BatchTransferRequest;
+import com.example.ledger_service.dto.CaptureRequest;
+import com.example.ledger_service.dto.FanOutRequest;
+import com.example.ledger_service.dto.HoldRequest;
+import com.example.ledger_service.dto.PostingRequest;
+import com.example.ledger_service.dto.PostingRequest.Leg;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.entity.FanOutRun;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.FanOutRunRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.BatchTransferService;
+import com.example.ledger_service.service.FanOutService;
+import com.example.ledger_service.service.FxRates;
+import com.example.ledger_service.service.HoldService;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.ReconciliationService;
+import com.example.ledger_service.service.TrialBalance;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static com.example.ledger_service.entity.LedgerEntry.Type.CREDIT;
+import static com.example.ledger_service.entity.LedgerEntry.Type.DEBIT;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"ledger.snapshots.enabled=false", "ledger.fx.enabled=true",
+        "ledger.fx.rates.EUR=0.9", "ledger.fx.rates.JPY=150"})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class FxTest {
+    private static final Logger log = LoggerFactory.getLogger(FxTest.class);
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    BatchTransferService batchTransferService;
+    @Autowired
+    FxRates fxRates;
+    @Autowired
+    HoldService holdService;
+    @Autowired
+    FanOutService fanOutService;
+    @Autowired
+    FanOutRunRepository runRepository;
+    @Autowired
+    AccountRepository accountRepository;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    ReconciliationService reconciliationService;
+    @Autowired
+    TrialBalance trialBalance;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void crossCurrencyTransferGoesThroughBothFxPositions() {
+        var usd = accountService.create(req(10_000, null));
+        var eur = accountService.create(req(0, "EUR"));
+        var jpy = accountService.create(req(0, "JPY"));
+        assertEquals("USD", usd.getCurrency());
+        assertEquals("EUR", eur.getCurrency());
+
+        // $10.00 at 0.9 EUR per USD
+        var t = transfer(usd.getId(), eur.getId(), 1_000);
+        TransferResponse res = ledgerService.doApplyTransfer(t);
+        assertEquals(900L, res.getConvertedAmount());
+        assertEquals(1L, res.getFxRateVersion());
+        assertEquals(9_000, balance(usd.getId()));
+        assertEquals(900, balance(eur.getId()));
+        Map<String, Long> positions = fxRates.current().getPositions();
+        assertEquals(1_000, balance(positions.get("USD")));
+        assertEquals(-900, balance(positions.get("EUR")));
+
+        List<LedgerEntry> entries = ledgerRepo.findByTransferId(t.getTransferId());
+        assertEquals(4, entries.size());
+        entries.forEach(e -> assertEquals(1L, e.getFxRateVersion()));
+
+        // Minor units follow each currency: yen have none
+        assertEquals(150L, ledgerService.doApplyTransfer(transfer(usd.getId(), jpy.getId(), 100)).getConvertedAmount());
+        assertEquals(1_500L, ledgerService.doApplyTransfer(transfer(eur.getId(), jpy.getId(), 900)).getConvertedAmount());
+
+        // A replay answers from the stored entries, conversion included
+        TransferResponse replay = ledgerService.doApplyTransfer(t);
+        assertEquals(900L, replay.getConvertedAmount());
+        var different = transfer(usd.getId(), eur.getId(), 2_000);
+        different.setTransferId(t.getTransferId());
+        assertThrows(ConflictException.class, () -> ledgerService.doApplyTransfer(different));
+
+        assertEquals(8_900, balance(usd.getId()));
+        assertTrue(reconciliationService.reconcile().isConsistent());
+        assertTrue(trialBalance.snapshot().isBalanced());
+    }
+
+    @Test
+    void publishedVersionsApplyToLaterTransfersAndStayOnRecord() {
+        var usd = accountService.create(req(10_000, null));
+        var eur = accountService.create(req(0, "EUR"));
+        assertThrows(ConflictException.class, () -> accountService.create(req(0, "GBP")));
+
+        var published = fxRates.publish(Map.of("EUR", new BigDecimal("0.8"), "GBP", new BigDecimal("0.75")));
+        assertEquals(2, published.getVersion());
+        assertEquals(new BigDecimal("150"), published.getRates().get("JPY"));
+        var gbp = accountService.create(req(0, "GBP"));
+        TransferResponse res = ledgerService.doApplyTransfer(transfer(usd.getId(), eur.getId(), 1_000));
+        assertEquals(800L, res.getConvertedAmount());
+        assertEquals(2L, res.getFxRateVersion());
+        assertEquals(750L, ledgerService.doApplyTransfer(transfer(usd.getId(), gbp.getId(), 1_000)).getConvertedAmount());
+
+        assertEquals(new BigDecimal("0.9"), fxRates.version(1).getRates().get("EUR"));
+        assertEquals(new BigDecimal("0.8"), fxRates.version(2).getRates().get("EUR"));
+        assertThrows(ConflictException.class, () -> fxRates.publish(Map.of("XYZ", BigDecimal.ONE)));
+        assertThrows(ConflictException.class, () -> fxRates.publish(Map.of("USD", new BigDecimal("1.1"))));
+        assertEquals(2, fxRates.current().getVersion());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    @Test
+    void flowsThatDoNotConvertRefuseMixedCurrencies() throws Exception {
+        var usd = accountService.create(req(10_000, null));
+        var usd2 = accountService.create(req(0, null));
+        var eur = accountService.create(req(0, "EUR"));
+
+        BatchTransferRequest batch = new BatchTransferRequest();
+        batch.setTransfers(List.of(transfer(usd.getId(), usd2.getId(), 100), transfer(usd.getId(), eur.getId(), 100)));
+        var results = batchTransferService.applyBatch(batch).getResults();
+        assertEquals("SUCCESS", results.get(0).getStatus());
+        assertEquals("FAILED", results.get(1).getStatus());
+
+        PostingRequest posting = new PostingRequest();
+        posting.setTransferId(UUID.randomUUID().toString());
+        posting.setLegs(List.of(new Leg(usd.getId(), DEBIT, 100L), new Leg(eur.getId(), CREDIT, 100L)));
+        assertThrows(ConflictException.class, () -> ledgerService.doApplyPosting(posting));
+
+        HoldRequest hold = new HoldRequest();
+        hold.setHoldId(UUID.randomUUID().toString());
+        hold.setAccountId(usd.getId());
+        hold.setAmount(100L);
+        holdService.authorize(hold);
+        CaptureRequest capture = new CaptureRequest();
+        capture.setToAccountId(eur.getId());
+        assertThrows(ConflictException.class, () -> holdService.capture(hold.getHoldId(), capture));
+
+        // A fan-out destination in another currency is refunded like a missing one
+        FanOutRequest fanOut = new FanOutRequest();
+        fanOut.setRunId(UUID.randomUUID().toString());
+        fanOut.setSourceAccountId(usd.getId());
+        fanOut.setItems(List.of(new FanOutRequest.Item(usd2.getId(), 50L), new FanOutRequest.Item(eur.getId(), 50L)));
+        fanOutService.start(fanOut);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (runRepository.findById(fanOut.getRunId()).orElseThrow().getStatus() != FanOutRun.Status.COMPLETED) {
+            assertTrue(System.nanoTime() < deadline, "fan-out did not complete");
+            Thread.sleep(2);
+        }
+        assertEquals(1, fanOutService.status(fanOut.getRunId()).getFailed());
+
+        assertEquals(0, balance(eur.getId()));
+        assertEquals(150, balance(usd2.getId()));
+        assertEquals(10_000 - 150, balance(usd.getId()));
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    @Test
+    void transfersNeverConvertAtAHalfPublishedTable() throws Exception {
+        var usd = accountService.create(req(10_000_000, null));
+        var eur = accountService.create(req(0, "EUR"));
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<TransferResponse>>> workers = new ArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                workers.add(pool.submit(() -> {
+                    List<TransferResponse> done = new ArrayList<>();
+                    for (int i = 0; i < 100; i++) {
+                        done.add(ledgerService.doApplyTransfer(transfer(usd.getId(), eur.getId(), 1_000)));
+                    }
+                    return done;
+                }));
+            }
+            // Each version changes EUR and JPY together; a transfer must see both from one version
+            for (int v = 0; v < 20; v++) {
+                String eurRate = v % 2 == 0 ? "0.8" : "0.9";
+                fxRates.publish(Map.of("EUR", new BigDecimal(eurRate), "JPY", new BigDecimal(v % 2 == 0 ? "140" : "150")));
+            }
+            for (Future<List<TransferResponse>> worker : workers) {
+                for (TransferResponse res : worker.get(60, TimeUnit.SECONDS)) {
+                    BigDecimal rate = fxRates.version(res.getFxRateVersion()).getRates().get("EUR");
+                    assertEquals(rate.multiply(BigDecimal.valueOf(1_000)).longValueExact(), res.getConvertedAmount());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(reconciliationService.reconcile().isConsistent());
+        assertTrue(trialBalance.snapshot().isBalanced());
+    }
+
+    @Test
+    void concurrentConversionsQueueOnThePositionsInsteadOfConflicting() throws Exception {
+        int pairs = 4;
+        int transfers = 50;
+        List<Long> usds = new ArrayList<>();
+        List<Long> eurs = new ArrayList<>();
+        for (int i = 0; i < pairs; i++) {
+            usds.add(accountService.create(req(1_000_000, null)).getId());
+            eurs.add(accountService.create(req(1_000_000, "EUR")).getId());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(2 * pairs);
+        try {
+            // Every conversion moves the same two positions, half of them the other way round
+            List<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < pairs; w++) {
+                Long usd = usds.get(w);
+                Long eur = eurs.get(w);
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < transfers; i++) {
+                        ledgerService.doApplyTransfer(transfer(usd, eur, 1_000));
+                    }
+                    return null;
+                }));
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < transfers; i++) {
+                        ledgerService.doApplyTransfer(transfer(eur, usd, 900));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(0.0, meterRegistry.get("ledger.transfer.conflicts").tag("strategy", "optimistic").counter().count());
+        var positions = fxRates.current().getPositions();
+        // USD in at 1_000 and out at 900 / 0.9, EUR the other way round: both nets are zero
+        assertEquals(0, balance(positions.get("USD")));
+        assertEquals(0, balance(positions.get("EUR")));
+        for (int i = 0; i < pairs; i++) {
+            assertEquals(1_000_000, balance(usds.get(i)));
+            assertEquals(1_000_000, balance(eurs.get(i)));
+        }
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void conversionAddsLittleToATransfer() {
+        int transfers = 1_000;
+        var usd = accountService.create(req(1_000_000_000, null));
+        var usd2 = accountService.create(req(0, null));
+        var eur = accountService.create(req(0, "EUR"));
+
+        // The first round only warms up both paths
+        long[] same = new long[2];
+        long[] cross = new long[2];
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < transfers; i++) {
+                ledgerService.doApplyTransfer(transfer(usd.getId(), usd2.getId(), 1_000));
+            }
+            same[round] = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < transfers; i++) {
+                ledgerService.doApplyTransfer(transfer(usd.getId(), eur.getId(), 1_000));
+            }
+            cross[round] = System.nanoTime() - start;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < transfers; i++) {
+            fxRates.quote(usd.getId(), eur.getId(), 1_000 + i);
+        }
+        long quote = System.nanoTime() - start;
+
+        // A converted transfer also moves both positions, so two of its four writes are the FX cost
+        log.info("{} transfers: {} us each in one currency, {} us converted; the quote alone {} ns",
+                transfers, TimeUnit.NANOSECONDS.toMicros(same[1] / transfers),
+                TimeUnit.NANOSECONDS.toMicros(cross[1] / transfers), quote / transfers);
+        assertEquals(2 * transfers * 900, balance(eur.getId()));
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    private long balance(Long id) {
+        return accountRepository.findById(id).orElseThrow().getBalance();
+    }
+}
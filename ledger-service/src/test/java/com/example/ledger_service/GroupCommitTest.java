@@ -0,0 +1,121 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.LedgerService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "ledger.group-commit.enabled=true",
+        "ledger.group-commit.window=20ms",
+        "ledger.group-commit.max-size=16"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class GroupCommitTest {
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void singleTransferGoesThroughGroupStage() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(10));
+
+        var t = transfer(a1.getId(), a2.getId(), 25);
+        assertEquals("SUCCESS", ledgerService.doApplyTransfer(t).getStatus());
+
+        assertEquals(75, accountService.get(a1.getId()).getBalance());
+        assertEquals(35, accountService.get(a2.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(t.getTransferId()).size());
+        assertEquals(1, meterRegistry.get("ledger.groupcommit.size").summary().count());
+    }
+
+    @Test
+    void failingItemsDoNotAbortTheirGroup() throws Exception {
+        var rich = accountService.create(req(1_000));
+        var poor = accountService.create(req(0));
+        var sink = accountService.create(req(0));
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<?>> good = new ArrayList<>();
+        List<Future<?>> bad = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            good.add(pool.submit(() -> ledgerService.doApplyTransfer(transfer(rich.getId(), sink.getId(), 10))));
+            bad.add(pool.submit(() -> ledgerService.doApplyTransfer(transfer(poor.getId(), sink.getId(), 10))));
+        }
+        bad.add(pool.submit(() -> ledgerService.doApplyTransfer(transfer(rich.getId(), sink.getId() + 100, 10))));
+        for (Future<?> f : good) {
+            f.get();
+        }
+        for (int i = 0; i < bad.size(); i++) {
+            ExecutionException e = assertThrows(ExecutionException.class, bad.get(i)::get);
+            Class<? extends RuntimeException> expected = i < 32 ? InsufficientFundsException.class : ConflictException.class;
+            assertEquals(expected, e.getCause().getClass());
+        }
+        pool.shutdown();
+
+        assertEquals(680, accountService.get(rich.getId()).getBalance());
+        assertEquals(0, accountService.get(poor.getId()).getBalance());
+        assertEquals(320, accountService.get(sink.getId()).getBalance());
+
+        DistributionSummary sizes = meterRegistry.get("ledger.groupcommit.size").summary();
+        assertEquals(65, (long) sizes.totalAmount());
+        assertTrue(sizes.count() < 65, "expected concurrent transfers to share groups");
+        assertTrue(sizes.max() <= 16);
+    }
+
+    @Test
+    void failedGroupIsRetriedMemberByMember() throws Exception {
+        var from = accountService.create(req(1_000));
+        var to = accountService.create(req(0));
+        // Applied elsewhere (another node), so this node's transferId filter has never seen it:
+        // the group it lands in fails on the unique key at flush
+        var elsewhere = transfer(from.getId(), to.getId(), 10);
+        ledgerRepo.saveAll(List.of(
+                new LedgerEntry(elsewhere.getTransferId(), from.getId(), 10L, LedgerEntry.Type.DEBIT),
+                new LedgerEntry(elsewhere.getTransferId(), to.getId(), 10L, LedgerEntry.Type.CREDIT)));
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<?>> innocent = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            innocent.add(pool.submit(() -> ledgerService.doApplyTransfer(transfer(from.getId(), to.getId(), 10))));
+        }
+        Future<TransferResponse> duplicate = pool.submit(() -> ledgerService.doApplyTransfer(elsewhere));
+        for (Future<?> f : innocent) {
+            f.get();
+        }
+        // Retried on its own, it loses the unique key and replays the stored outcome
+        assertEquals("SUCCESS", duplicate.get().getStatus());
+        pool.shutdown();
+
+        assertEquals(850, accountService.get(from.getId()).getBalance());
+        assertEquals(150, accountService.get(to.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(elsewhere.getTransferId()).size());
+    }
+}
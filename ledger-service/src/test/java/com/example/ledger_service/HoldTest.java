@@ -0,0 +1,165 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.dto.CaptureRequest;
+import com.example.ledger_service.dto.HoldRequest;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.HoldService;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.ReconciliationService;
+import com.example.ledger_service.service.TrialBalance;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "ledger.snapshots.enabled=false")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class HoldTest {
+    private static final Logger log = LoggerFactory.getLogger(HoldTest.class);
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    HoldService holdService;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    ReconciliationService reconciliationService;
+    @Autowired
+    TrialBalance trialBalance;
+
+    @Test
+    void authorizeReducesAvailableBalanceWithoutMovingMoney() {
+        var card = accountService.create(req(1_000));
+        var shop = accountService.create(req(0));
+
+        var auth = hold(card.getId(), 600);
+        assertEquals("AUTHORIZED", holdService.authorize(auth).getStatus());
+        var acc = accountService.get(card.getId());
+        assertEquals(1_000, acc.getBalance());
+        assertEquals(600, acc.getHeld());
+        assertEquals(400, acc.getAvailable());
+        assertEquals(0, ledgerRepo.count());
+
+        // Held funds are out of reach of transfers and of further holds
+        var tooMuch = transfer(card.getId(), shop.getId(), 401);
+        assertThrows(InsufficientFundsException.class, () -> ledgerService.doApplyTransfer(tooMuch));
+        assertThrows(InsufficientFundsException.class, () -> holdService.authorize(hold(card.getId(), 401)));
+        ledgerService.doApplyTransfer(transfer(card.getId(), shop.getId(), 400));
+        assertEquals(0, accountService.get(card.getId()).getAvailable());
+
+        // Same holdId again is the same hold, not a second reservation
+        holdService.authorize(auth);
+        assertEquals(600, accountService.get(card.getId()).getHeld());
+        var reused = hold(shop.getId(), 600);
+        reused.setHoldId(auth.getHoldId());
+        assertThrows(ConflictException.class, () -> holdService.authorize(reused));
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    @Test
+    void captureTurnsAHoldIntoATransferAndVoidReleasesIt() {
+        var card = accountService.create(req(1_000));
+        var shop = accountService.create(req(0));
+        var auth = hold(card.getId(), 600);
+        holdService.authorize(auth);
+
+        // Capturing less than was held releases the rest
+        var capture = capture(shop.getId(), 450L);
+        var captured = holdService.capture(auth.getHoldId(), capture);
+        assertEquals("CAPTURED", captured.getStatus());
+        assertEquals(450, captured.getCapturedAmount());
+        assertEquals(550, accountService.get(card.getId()).getBalance());
+        assertEquals(0, accountService.get(card.getId()).getHeld());
+        assertEquals(450, accountService.get(shop.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(auth.getHoldId()).size());
+        assertEquals("CAPTURED", holdService.capture(auth.getHoldId(), capture).getStatus());
+        assertThrows(ConflictException.class, () -> holdService.capture(auth.getHoldId(), capture(shop.getId(), 500L)));
+
+        var other = hold(card.getId(), 300);
+        holdService.authorize(other);
+        assertThrows(ConflictException.class, () -> holdService.capture(other.getHoldId(), capture(shop.getId(), 301L)));
+        assertEquals("VOIDED", holdService.voidHold(other.getHoldId()).getStatus());
+        assertEquals("VOIDED", holdService.voidHold(other.getHoldId()).getStatus());
+        assertThrows(ConflictException.class, () -> holdService.capture(other.getHoldId(), capture(shop.getId(), 100L)));
+        assertEquals(550, accountService.get(card.getId()).getAvailable());
+
+        assertTrue(reconciliationService.reconcile().isConsistent());
+        assertTrue(trialBalance.snapshot().isBalanced());
+    }
+
+    @Test
+    void expiredHoldsAreReleasedBySweep() throws Exception {
+        var card = accountService.create(req(1_000));
+        var shop = accountService.create(req(0));
+        var shortLived = hold(card.getId(), 700);
+        shortLived.setTtl(Duration.ofMillis(50));
+        holdService.authorize(shortLived);
+        var open = hold(card.getId(), 200);
+        holdService.authorize(open);
+
+        Thread.sleep(100);
+        assertThrows(ConflictException.class, () -> holdService.capture(shortLived.getHoldId(), capture(shop.getId(), null)));
+        assertEquals(1, holdService.expireHolds(Instant.now()));
+        assertEquals("EXPIRED", holdService.get(shortLived.getHoldId()).getStatus());
+        assertEquals(200, accountService.get(card.getId()).getHeld());
+        assertEquals(0, holdService.expireHolds(Instant.now()));
+
+        holdService.capture(open.getHoldId(), capture(shop.getId(), null));
+        assertEquals(800, accountService.get(card.getId()).getAvailable());
+        assertThrows(ConflictException.class, () -> holdService.voidHold(shortLived.getHoldId()));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void authorizeCostDoesNotGrowWithOpenHolds() {
+        int holds = 3_000;
+        var card = accountService.create(req(holds));
+        long[] nanos = new long[3];
+        for (int third = 0; third < 3; third++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < holds / 3; i++) {
+                holdService.authorize(hold(card.getId(), 1));
+            }
+            nanos[third] = System.nanoTime() - start;
+        }
+
+        // The first third warms up; the last runs with twice as many holds open as the second
+        log.info("Authorize with {} / {} holds open: {} / {} us per hold", holds / 3, 2 * holds / 3,
+                TimeUnit.NANOSECONDS.toMicros(nanos[1] / (holds / 3)), TimeUnit.NANOSECONDS.toMicros(nanos[2] / (holds / 3)));
+        assertEquals(holds, accountService.get(card.getId()).getHeld());
+        assertThrows(InsufficientFundsException.class, () -> holdService.authorize(hold(card.getId(), 1)));
+    }
+
+    private HoldRequest hold(Long accountId, long amount) {
+        HoldRequest h = new HoldRequest();
+        h.setHoldId(UUID.randomUUID().toString());
+        h.setAccountId(accountId);
+        h.setAmount(amount);
+        return h;
+    }
+
+    private CaptureRequest capture(Long to, Long amount) {
+        CaptureRequest c = new CaptureRequest();
+        c.setToAccountId(to);
+        c.setAmount(amount);
+        return c;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.HotAccountsResponse;
+import com.example.ledger_service.service.HotAccounts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotAccountsTest {
+    private static final Logger log = LoggerFactory.getLogger(HotAccountsTest.class);
+
+    private LedgerProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new LedgerProperties();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void findsTheHeaviestAccountsAmongManyColdOnes() {
+        HotAccounts hot = new HotAccounts(properties, meterRegistry);
+        for (long id = 1; id <= 20_000; id++) {
+            hot.recordRequest(id, id + 100_000);
+        }
+        for (int i = 0; i < 1_000; i++) {
+            for (long id = 1; id <= 5; id++) {
+                hot.recordRequest(id * 7, 999_999L);
+            }
+        }
+
+        HotAccountsResponse snapshot = hot.snapshot(6);
+        List<Long> top = snapshot.getRequests().stream().map(HotAccountsResponse.HotAccount::accountId).toList();
+        assertEquals(999_999L, top.get(0));
+        assertEquals(Set.of(7L, 14L, 21L, 28L, 35L), Set.copyOf(top.subList(1, 6)));
+        // Count-Min never undercounts, and 4 x 4096 counters keep the noise from 40k cold accounts small
+        assertTrue(hot.requestCount(7L) >= 1_001);
+        assertTrue(hot.requestCount(7L) < 1_050);
+        assertTrue(hot.requestCount(12_345L) < 50);
+        assertTrue(snapshot.getConflicts().isEmpty());
+    }
+
+    @Test
+    void conflictsAreCountedSeparately() {
+        HotAccounts hot = new HotAccounts(properties, meterRegistry);
+        hot.recordRequest(1L, 2L);
+        hot.recordConflicts(List.of(2L));
+        hot.recordConflicts(List.of(2L, 3L));
+
+        assertEquals(2, hot.conflictCount(2L));
+        assertEquals(1, hot.requestCount(2L));
+        assertEquals(2L, hot.snapshot(10).getConflicts().get(0).accountId());
+    }
+
+    @Test
+    void countsAgeOutAndTopAccountsArePublished() throws Exception {
+        properties.getHotAccounts().setWindow(Duration.ofMillis(50));
+        HotAccounts hot = new HotAccounts(properties, meterRegistry);
+        for (int i = 0; i < 100; i++) {
+            hot.recordRequest(1L, 2L);
+        }
+        Thread.sleep(60);
+        hot.recordRequest(3L, 4L);
+
+        // One rollover later the old counts are still in the previous window, and are published
+        assertEquals(100, hot.requestCount(1L));
+        assertEquals(100, meterRegistry.get("ledger.hotaccounts.requests").tag("account", "1").gauge().value());
+
+        Thread.sleep(60);
+        hot.recordRequest(3L, 4L);
+        assertEquals(0, hot.requestCount(1L));
+        assertEquals(List.of(3L, 4L), hot.snapshot(10).getRequests().stream()
+                .map(HotAccountsResponse.HotAccount::accountId).sorted().toList());
+    }
+
+    @Test
+    void disabledTrackingRecordsNothing() {
+        properties.getHotAccounts().setEnabled(false);
+        HotAccounts hot = new HotAccounts(properties, meterRegistry);
+        hot.recordRequest(1L, 2L);
+
+        assertEquals(0, hot.requestCount(1L));
+        assertTrue(hot.snapshot(10).getRequests().isEmpty());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void perRequestOverheadIsSmall() {
+        HotAccounts hot = new HotAccounts(properties, meterRegistry);
+        int requests = 2_000_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            // Skewed: every other request touches one of a few hot accounts
+            hot.recordRequest((long) (i % 2 == 0 ? (i / 2) % 8 : i), (long) (1_000 + i % 1_000));
+        }
+        long nanos = System.nanoTime() - start;
+        log.info("Hot account tracking: {} requests in {} ms ({} ns/request)",
+                requests, TimeUnit.NANOSECONDS.toMillis(nanos), nanos / requests);
+        assertEquals(8, hot.snapshot(8).getRequests().stream().filter(h -> h.accountId() < 8).count());
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.LedgerEntryResponse;
+import com.example.ledger_service.dto.PostingRequest;
+import com.example.ledger_service.dto.StatementResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.repository.ArchivedAccountTotalRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.AsyncTransferService;
+import com.example.ledger_service.service.BalanceHistoryService;
+import com.example.ledger_service.service.ExportService;
+import com.example.ledger_service.service.LedgerArchive;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.ReconciliationService;
+import com.example.ledger_service.service.StatementService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "ledger.snapshots.enabled=false")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class LedgerArchiveTest {
+    private static final Logger log = LoggerFactory.getLogger(LedgerArchiveTest.class);
+
+    @TempDir
+    static Path archiveDir;
+
+    @DynamicPropertySource
+    static void archiveDirectory(DynamicPropertyRegistry registry) {
+        registry.add("ledger.archive.directory", archiveDir::toString);
+    }
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    LedgerArchive archive;
+    @Autowired
+    StatementService statementService;
+    @Autowired
+    BalanceHistoryService balanceHistoryService;
+    @Autowired
+    ReconciliationService reconciliationService;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    ArchivedAccountTotalRepository totalRepository;
+    @Autowired
+    JdbcTemplate jdbc;
+    @Autowired
+    AsyncTransferService asyncTransferService;
+    @Autowired
+    ExportService exportService;
+    @Autowired
+    LedgerProperties properties;
+
+    @AfterEach
+    void clearArchive() throws Exception {
+        // Each test gets a fresh database, so it must not find the previous test's segments
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void readsSpanHotAndArchivedEntries() throws Exception {
+        var a1 = accountService.create(req(10_000));
+        var a2 = accountService.create(req(0));
+        var a3 = accountService.create(req(0));
+        for (int i = 0; i < 200; i++) {
+            ledgerService.doApplyTransfer(transfer(a1.getId(), i % 2 == 0 ? a2.getId() : a3.getId(), 1 + i % 7));
+        }
+        Thread.sleep(5);
+        Instant cutoff = Instant.now();
+        Thread.sleep(5);
+        for (int i = 0; i < 50; i++) {
+            ledgerService.doApplyTransfer(transfer(a2.getId(), a1.getId(), 1));
+        }
+
+        assertEquals(400, archive.archive(cutoff));
+        assertEquals(0, archive.archive(cutoff));
+        assertEquals(100, ledgerRepo.count());
+        assertEquals(200, totalRepository.findById(a1.getId()).orElseThrow().getEntries());
+
+        // Paging walks from the hot table into the archive without gaps or repeats
+        Set<Long> seen = new HashSet<>();
+        List<LedgerEntryResponse> all = new ArrayList<>();
+        Long cursor = null;
+        do {
+            StatementResponse page = statementService.entries(a1.getId(), cursor, null, null, 30);
+            all.addAll(page.getEntries());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(250, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertTrue(seen.add(all.get(i).getId()));
+            if (i > 0) assertTrue(all.get(i).getId() < all.get(i - 1).getId());
+        }
+
+        long balance = accountService.get(a1.getId()).getBalance();
+        assertEquals(balance, balanceHistoryService.balanceAt(a1.getId(), null).getBalance());
+        assertEquals(accountService.get(a2.getId()).getBalance(),
+                balanceHistoryService.balanceAt(a2.getId(), null).getBalance());
+        // Everything a2 held at the cutoff came from archived entries
+        long creditedBeforeCutoff = 0;
+        for (int i = 0; i < 200; i += 2) {
+            creditedBeforeCutoff += 1 + i % 7;
+        }
+        assertEquals(creditedBeforeCutoff, balanceHistoryService.balanceAt(a2.getId(), cutoff).getBalance());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+
+        // Export merges the archive in by id, as statements do
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(ExportService.Format.CSV, a1.getId(), null, null, out);
+        List<String> lines = out.toString(StandardCharsets.UTF_8).lines().skip(1).toList();
+        assertEquals(250, lines.size());
+        for (int i = 1; i < lines.size(); i++) {
+            assertTrue(Long.parseLong(lines.get(i).split(",")[0]) > Long.parseLong(lines.get(i - 1).split(",")[0]));
+        }
+        out.reset();
+        exportService.export(ExportService.Format.NDJSON, null, null, cutoff, out);
+        assertEquals(400, out.toString(StandardCharsets.UTF_8).lines().count());
+    }
+
+    @Test
+    void archivedTransfersStayWholeAndIdempotent() throws Exception {
+        properties.getArchive().setSegmentEntries(3);
+        var a1 = accountService.create(req(1_000));
+        var a2 = accountService.create(req(0));
+        var a3 = accountService.create(req(0));
+        var t = transfer(a1.getId(), a2.getId(), 100);
+        ledgerService.doApplyTransfer(t);
+        PostingRequest p = new PostingRequest();
+        p.setTransferId(UUID.randomUUID().toString());
+        p.setLegs(List.of(new PostingRequest.Leg(a1.getId(), LedgerEntry.Type.DEBIT, 30L),
+                new PostingRequest.Leg(a2.getId(), LedgerEntry.Type.CREDIT, 20L),
+                new PostingRequest.Leg(a3.getId(), LedgerEntry.Type.CREDIT, 10L)));
+        ledgerService.doApplyPosting(p);
+        ledgerService.doApplyTransfer(transfer(a2.getId(), a3.getId(), 5));
+        Thread.sleep(5);
+
+        assertEquals(7, archive.archive(Instant.now()));
+        // The third row starts the posting, so the first segment takes all of it
+        try (Stream<Path> files = Files.list(archiveDir)) {
+            assertEquals(2, files.count());
+        }
+        assertEquals(0, ledgerRepo.count());
+
+        assertEquals("SUCCESS", ledgerService.doApplyTransfer(t).getStatus());
+        assertEquals("SUCCESS", ledgerService.doApplyPosting(p).getStatus());
+        var reused = transfer(a1.getId(), a3.getId(), 100);
+        reused.setTransferId(t.getTransferId());
+        assertThrows(ConflictException.class, () -> ledgerService.doApplyTransfer(reused));
+        assertEquals("SUCCESS", asyncTransferService.status(t.getTransferId()).getStatus());
+        assertEquals(870, accountService.get(a1.getId()).getBalance());
+        assertEquals(0, ledgerRepo.count());
+    }
+
+    @Test
+    void archiveIsMuchSmallerThanTheRowsItReplaces() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(accountService.create(req(1_000_000)).getId());
+        }
+        for (int i = 0; i < 5_000; i++) {
+            ledgerService.doApplyTransfer(transfer(ids.get(i % 50), ids.get((i * 7 + 3) % 50), 1 + i % 500));
+        }
+        // Column payload only; row headers and the table's five indexes come on top of this
+        Long rowBytes = jdbc.queryForObject("select sum(8 + 8 + 4 + 8 + octet_length(transfer_id) + octet_length(cast(type as varchar))) " +
+                "from ledger_entries", Long.class);
+
+        assertEquals(10_000, archive.archive(Instant.now()));
+
+        long archiveBytes = archive.sizeOnDisk();
+        log.info("Archived 10000 entries: {} bytes of row data -> {} bytes on disk ({} bytes/entry, {}x smaller)",
+                rowBytes, archiveBytes, archiveBytes / 10_000, rowBytes / archiveBytes);
+        assertTrue(rowBytes >= 5 * archiveBytes, "expected the archive to be at least 5x smaller than the raw columns");
+    }
+}
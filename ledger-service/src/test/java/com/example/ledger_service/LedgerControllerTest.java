@@ -1,26 +1,46 @@
 package com.example.ledger_service;
 
 import com.example.ledger_service.controller.LedgerController;
+import com.example.ledger_service.dto.BatchTransferRequest;
+import com.example.ledger_service.dto.BatchTransferResponse;
 import com.example.ledger_service.dto.TransferRequest;
 import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.service.AsyncTransferService;
+import com.example.ledger_service.service.BatchTransferService;
+import com.example.ledger_service.service.ExportService;
+import com.example.ledger_service.service.FanOutService;
+import com.example.ledger_service.service.FxRates;
+import com.example.ledger_service.service.HoldService;
+import com.example.ledger_service.service.HotAccounts;
 import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.ReconciliationService;
+import com.example.ledger_service.service.TrialBalance;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.ResponseEntity;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
+import static org.springframework.http.HttpStatus.ACCEPTED;
 import static org.springframework.http.HttpStatus.OK;
 
 class LedgerControllerTest {
 
     private LedgerService ledgerService;
+    private BatchTransferService batchTransferService;
+    private AsyncTransferService asyncTransferService;
     private LedgerController ledgerController;
 
     @BeforeEach
     void setUp() {
         ledgerService = mock(LedgerService.class);
-        ledgerController = new LedgerController(ledgerService);
+        batchTransferService = mock(BatchTransferService.class);
+        asyncTransferService = mock(AsyncTransferService.class);
+        ledgerController = new LedgerController(ledgerService, batchTransferService, asyncTransferService, mock(ExportService.class),
+                mock(ReconciliationService.class), mock(TrialBalance.class), mock(HotAccounts.class),
+                mock(FanOutService.class), mock(HoldService.class), mock(FxRates.class));
     }
 
     @Test
@@ -29,11 +49,66 @@ class LedgerControllerTest {
         TransferResponse mockResponse = new TransferResponse("abc123", "SUCCESS", "Transfer successful", 1L, 2L, 100);
         when(ledgerService.doApplyTransfer(any(TransferRequest.class))).thenReturn(mockResponse);
 
-        ResponseEntity<TransferResponse> response = ledgerController.transfer(req);
+        ResponseEntity<TransferResponse> response = ledgerController.transfer(req, null);
 
         assertEquals(OK, response.getStatusCode());
         assertEquals(mockResponse, response.getBody());
         verify(ledgerService, times(1)).doApplyTransfer(req);
     }
 
+    @Test
+    void testBatchTransfer_Success() {
+        BatchTransferRequest req = new BatchTransferRequest();
+        BatchTransferResponse mockResponse = new BatchTransferResponse(List.of(
+                new TransferResponse("abc123", "SUCCESS", "OK", 1L, 2L, 100),
+                new TransferResponse("abc124", "FAILED", "Insufficient funds", 1L, 2L, 900)));
+        when(batchTransferService.applyBatch(any(BatchTransferRequest.class))).thenReturn(mockResponse);
+
+        ResponseEntity<BatchTransferResponse> response = ledgerController.batchTransfer(req);
+
+        assertEquals(OK, response.getStatusCode());
+        assertEquals(1, response.getBody().getSucceeded());
+        assertEquals(1, response.getBody().getFailed());
+        verify(batchTransferService, times(1)).applyBatch(req);
+    }
+
+    @Test
+    void testTransferAsync_Accepted() {
+        TransferRequest req = new TransferRequest();
+        TransferResponse mockResponse = new TransferResponse("abc123", "ACCEPTED", null, 1L, 2L, 100);
+        when(asyncTransferService.accept(any(TransferRequest.class))).thenReturn(mockResponse);
+
+        ResponseEntity<TransferResponse> response = ledgerController.transfer(req, "respond-async");
+
+        assertEquals(ACCEPTED, response.getStatusCode());
+        assertEquals("/v1/ledger/transfer/abc123", response.getHeaders().getLocation().toString());
+        assertEquals(mockResponse, response.getBody());
+        verify(ledgerService, never()).doApplyTransfer(any());
+    }
+
+    @Test
+    void testTransferAsync_PreferWithOtherPreferences() {
+        TransferRequest req = new TransferRequest();
+        when(asyncTransferService.accept(any(TransferRequest.class)))
+                .thenReturn(new TransferResponse("abc123", "ACCEPTED", null, 1L, 2L, 100));
+
+        assertEquals(ACCEPTED, ledgerController.transfer(req, "respond-async, wait=5").getStatusCode());
+        assertEquals(ACCEPTED, ledgerController.transfer(req, "handling=lenient,Respond-Async").getStatusCode());
+        verify(ledgerService, never()).doApplyTransfer(any());
+
+        when(ledgerService.doApplyTransfer(any(TransferRequest.class)))
+                .thenReturn(new TransferResponse("abc123", "SUCCESS", "OK", 1L, 2L, 100));
+        assertEquals(OK, ledgerController.transfer(req, "return=minimal").getStatusCode());
+    }
+
+    @Test
+    void testTransferStatus() {
+        TransferResponse mockResponse = new TransferResponse("abc123", "SUCCESS", "OK", 1L, 2L, 100);
+        when(asyncTransferService.status("abc123")).thenReturn(mockResponse);
+
+        ResponseEntity<TransferResponse> response = ledgerController.transferStatus("abc123");
+
+        assertEquals(OK, response.getStatusCode());
+        assertEquals(mockResponse, response.getBody());
+    }
 }
@@ -0,0 +1,330 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.engine.LedgerJournal;
+import com.example.ledger_service.engine.ShardedBalanceEngine;
+import com.example.ledger_service.entity.JournalCheckpoint;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.JournalCheckpointRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountCache;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.TrialBalance;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class LedgerJournalTest {
+    private static final Logger log = LoggerFactory.getLogger(LedgerJournalTest.class);
+    private static final int RECORD = 128;
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    AccountRepository accountRepository;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    AccountCache accountCache;
+    @Autowired
+    TrialBalance trialBalance;
+    @Autowired
+    JournalCheckpointRepository checkpointRepository;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rollsSegmentsAndReplaysFromAnySeq() throws Exception {
+        try (LedgerJournal journal = new LedgerJournal(dir, 10 * RECORD, false)) {
+            journal.open();
+            for (int i = 1; i <= 35; i++) {
+                assertEquals(i, journal.append("t-" + i, i, i + 1, i * 10L, 1_000L + i));
+            }
+        }
+        assertEquals(4, segmentCount());
+
+        try (LedgerJournal reopened = new LedgerJournal(dir, 10 * RECORD, false)) {
+            reopened.open();
+            assertEquals(35, reopened.lastSeq());
+            assertEquals(36, reopened.append("t-36", 1, 2, 1, 0));
+
+            List<LedgerJournal.JournalRecord> tail = new ArrayList<>();
+            assertEquals(14, reopened.replay(22, tail::add));
+            assertEquals(23, tail.get(0).seq());
+            assertEquals(new LedgerJournal.JournalRecord(30, 30, 31, 300, 1_030, "t-30"), tail.get(7));
+            assertEquals(36, reopened.replay(0, r -> {}));
+            assertEquals(0, reopened.replay(36, r -> {}));
+        }
+    }
+
+    @Test
+    void tornTailRecordIsDroppedAndOverwritten() throws Exception {
+        try (LedgerJournal journal = new LedgerJournal(dir, 10 * RECORD, false)) {
+            journal.open();
+            for (int i = 1; i <= 3; i++) {
+                journal.append("t-" + i, 1, 2, 5, 0);
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(onlySegment().toFile(), "rw")) {
+            file.seek(2 * RECORD + 30);
+            file.write(0x7f);
+        }
+
+        try (LedgerJournal reopened = new LedgerJournal(dir, 10 * RECORD, false)) {
+            reopened.open();
+            assertEquals(2, reopened.lastSeq());
+            assertEquals(3, reopened.append("t-3", 1, 2, 5, 0));
+            assertEquals(3, reopened.replay(0, r -> {}));
+        }
+    }
+
+    @Test
+    void journaledTransfersAdvanceTheCheckpoint() throws Exception {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        ShardedBalanceEngine engine = engine();
+        engine.start();
+        try {
+            for (int i = 0; i < 10; i++) {
+                engine.apply(transfer(a1.getId(), a2.getId(), 3));
+            }
+            assertTrue(engine.awaitIdle(Duration.ofSeconds(5)));
+        } finally {
+            engine.shutdown();
+        }
+
+        assertEquals(70, accountService.get(a1.getId()).getBalance());
+        assertEquals(30, accountService.get(a2.getId()).getBalance());
+        assertEquals(10L, checkpointRepository.findById(JournalCheckpoint.ID).orElseThrow().getLastSeq());
+    }
+
+    @Test
+    void checkpointNeverPassesAnUnwrittenRecordAcrossShards() throws Exception {
+        int accounts = 8;
+        int senders = 8;
+        int transfers = 250;
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            ids.add(accountService.create(req(1_000_000)).getId());
+        }
+        JournalCheckpointRepository checkpoints = mock(JournalCheckpointRepository.class, delegatesTo(checkpointRepository));
+        List<String> skipped = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> {
+            JournalCheckpoint checkpoint = inv.getArgument(0);
+            // In the persister's transaction, so the count includes the batch being written
+            long entries = ledgerRepo.count();
+            if (entries != 2 * checkpoint.getLastSeq()) {
+                skipped.add("checkpoint " + checkpoint.getLastSeq() + " over " + entries + " entries");
+            }
+            return checkpointRepository.save(checkpoint);
+        }).when(checkpoints).save(any());
+
+        ShardedBalanceEngine engine = engine(4, checkpoints);
+        engine.start();
+        ExecutorService pool = Executors.newFixedThreadPool(senders);
+        try {
+            // Every sender spreads its transfers over all shards, so destination shards journal concurrently
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < senders; w++) {
+                Long from = ids.get(w % accounts);
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < transfers; i++) {
+                        Long to = ids.get(i % accounts);
+                        if (!to.equals(from)) {
+                            engine.apply(transfer(from, to, 1));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+            assertTrue(engine.awaitIdle(Duration.ofSeconds(30)));
+        } finally {
+            pool.shutdownNow();
+            engine.shutdown();
+        }
+
+        assertEquals(List.of(), skipped);
+        long journaled = ledgerRepo.count() / 2;
+        assertEquals(journaled, checkpointRepository.findById(JournalCheckpoint.ID).orElseThrow().getLastSeq());
+        // Nothing is left to replay, so a restart projects nothing twice
+        ShardedBalanceEngine restarted = engine(4, checkpointRepository);
+        restarted.start();
+        restarted.shutdown();
+        assertEquals(2 * journaled, ledgerRepo.count());
+        long total = 0;
+        for (Long id : ids) {
+            total += accountService.get(id).getBalance();
+        }
+        assertEquals(accounts * 1_000_000L, total);
+    }
+
+    @Test
+    void deltaTheAccountRefusesStopsTheProjection() throws Exception {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        AccountRepository refusing = mock(AccountRepository.class, delegatesTo(accountRepository));
+        doReturn(0).when(refusing).credit(eq(a2.getId()), anyLong());
+        LedgerProperties.Sharded config = new LedgerProperties.Sharded();
+        config.setShards(2);
+        ShardedBalanceEngine engine = new ShardedBalanceEngine(config, refusing, ledgerRepo, accountCache, trialBalance,
+                transactionManager, new LedgerJournal(dir, 64 * 1024, false), checkpointRepository);
+        engine.start();
+        try {
+            engine.apply(transfer(a1.getId(), a2.getId(), 30));
+            assertTrue(engine.awaitIdle(Duration.ofSeconds(5)));
+        } finally {
+            engine.shutdown();
+        }
+        // Neither the entries nor the checkpoint are stored without the balance change
+        assertEquals(0, ledgerRepo.count());
+        assertTrue(checkpointRepository.findById(JournalCheckpoint.ID).isEmpty());
+        assertEquals(100, accountService.get(a1.getId()).getBalance());
+
+        ShardedBalanceEngine restarted = engine();
+        restarted.start();
+        restarted.shutdown();
+        assertEquals(70, accountService.get(a1.getId()).getBalance());
+        assertEquals(30, accountService.get(a2.getId()).getBalance());
+        assertEquals(2, ledgerRepo.count());
+    }
+
+    @Test
+    void unprojectedRecordsAreReplayedOnStart() throws Exception {
+        var a1 = accountService.create(req(1_000));
+        var a2 = accountService.create(req(0));
+        int records = 2_000;
+        // As if the process died after journaling and acknowledging, before the persister ran
+        try (LedgerJournal journal = new LedgerJournal(dir, 64 * 1024, false)) {
+            journal.open();
+            for (int i = 0; i < records; i++) {
+                boolean forward = i % 2 == 0;
+                journal.append(UUID.randomUUID().toString(), forward ? a1.getId() : a2.getId(),
+                        forward ? a2.getId() : a1.getId(), forward ? 2 : 1, System.currentTimeMillis());
+            }
+        }
+
+        ShardedBalanceEngine engine = engine();
+        engine.start();
+        try {
+            assertEquals(0, accountService.get(a1.getId()).getBalance());
+            assertEquals(1_000, accountService.get(a2.getId()).getBalance());
+            assertEquals(2L * records, ledgerRepo.count());
+            assertEquals((long) records, checkpointRepository.findById(JournalCheckpoint.ID).orElseThrow().getLastSeq());
+
+            // Shards load the recovered balances, and new records continue the sequence
+            engine.apply(transfer(a2.getId(), a1.getId(), 400));
+            assertTrue(engine.awaitIdle(Duration.ofSeconds(5)));
+        } finally {
+            engine.shutdown();
+        }
+        assertEquals(400, accountService.get(a1.getId()).getBalance());
+        assertEquals(records + 1L, checkpointRepository.findById(JournalCheckpoint.ID).orElseThrow().getLastSeq());
+
+        // A second start finds nothing after the checkpoint
+        ShardedBalanceEngine restarted = engine();
+        restarted.start();
+        restarted.shutdown();
+        assertEquals(2L * (records + 1), ledgerRepo.count());
+    }
+
+    /**
+     * Raw append and replay rates of the journal file itself; scale up with
+     * {@code -Dledger.journal.benchmark.records=100000000} (about 12.8 GB of segments).
+     */
+    @Test
+    @Tag("benchmark")
+    void appendAndReplayThroughput() throws Exception {
+        int records = Integer.getInteger("ledger.journal.benchmark.records", 500_000);
+        long appendNanos;
+        try (LedgerJournal journal = new LedgerJournal(dir, 64L * 1024 * 1024, false)) {
+            journal.open();
+            long start = System.nanoTime();
+            for (int i = 0; i < records; i++) {
+                journal.append("transfer-" + i, i, i + 1, 1, 0);
+            }
+            appendNanos = System.nanoTime() - start;
+        }
+
+        long start = System.nanoTime();
+        long[] checksum = new long[1];
+        long replayed;
+        try (LedgerJournal journal = new LedgerJournal(dir, 64L * 1024 * 1024, false)) {
+            journal.open();
+            assertEquals(records, journal.lastSeq());
+            replayed = journal.replay(0, r -> checksum[0] += r.amount());
+        }
+        long replayNanos = System.nanoTime() - start;
+
+        assertEquals(records, replayed);
+        assertEquals(records, checksum[0]);
+        log.info("Journal: appended {} records in {} ms ({} records/s), reopened and replayed in {} ms ({} records/s)",
+                records, TimeUnit.NANOSECONDS.toMillis(appendNanos), perSecond(records, appendNanos),
+                TimeUnit.NANOSECONDS.toMillis(replayNanos), perSecond(records, replayNanos));
+    }
+
+    private ShardedBalanceEngine engine() {
+        return engine(2, checkpointRepository);
+    }
+
+    private ShardedBalanceEngine engine(int shards, JournalCheckpointRepository checkpoints) {
+        LedgerProperties.Sharded config = new LedgerProperties.Sharded();
+        config.setShards(shards);
+        return new ShardedBalanceEngine(config, accountRepository, ledgerRepo, accountCache, trialBalance,
+                transactionManager, new LedgerJournal(dir, 64 * 1024, false), checkpoints);
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private Path onlySegment() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.findFirst().orElseThrow();
+        }
+    }
+
+    private static long perSecond(long count, long nanos) {
+        return nanos == 0 ? count : count * 1_000_000_000L / nanos;
+    }
+}
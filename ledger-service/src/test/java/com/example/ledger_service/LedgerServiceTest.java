@@ -1,20 +1,24 @@
 package com.example.ledger_service;
 
-import com.example.ledger_service.dto.CreateAccount;
+import com.example.ledger_service.dto.BatchTransferRequest;
+import com.example.ledger_service.dto.BatchTransferResponse;
 import com.example.ledger_service.dto.TransferRequest;
 import com.example.ledger_service.dto.TransferResponse;
 import com.example.ledger_service.exception.ConflictException;
 import com.example.ledger_service.exception.InsufficientFundsException;
 import com.example.ledger_service.repository.LedgerEntryRepository;
 import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.BatchTransferService;
 import com.example.ledger_service.service.LedgerService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
 
-import java.util.UUID;
+import java.util.List;
 
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -27,6 +31,8 @@ public class LedgerServiceTest {
     @Autowired
     LedgerService ledgerService;
     @Autowired
+    BatchTransferService batchTransferService;
+    @Autowired
     LedgerEntryRepository ledgerRepo;
 
     @Test
@@ -43,6 +49,21 @@ public class LedgerServiceTest {
         assertEquals(2, ledgerRepo.findByTransferId(t.getTransferId()).size());
     }
 
+    @Test
+    void balancesPastIntRangeAndOverflowIsRefused() {
+        // 30 million in cents no longer fits an int
+        var rich = accountService.create(req(3_000_000_000L));
+        var full = accountService.create(req(Long.MAX_VALUE - 10));
+
+        ledgerService.doApplyTransfer(transfer(rich.getId(), full.getId(), 10));
+        assertEquals(Long.MAX_VALUE, accountService.get(full.getId()).getBalance());
+        var wraps = transfer(rich.getId(), full.getId(), 1);
+        assertThrows(ConflictException.class, () -> ledgerService.doApplyTransfer(wraps));
+
+        assertEquals(2_999_999_990L, accountService.get(rich.getId()).getBalance());
+        assertTrue(ledgerRepo.findByTransferId(wraps.getTransferId()).isEmpty());
+    }
+
     @Test
     void insufficientFundsFails() {
         var a1 = accountService.create(req(10));
@@ -65,18 +86,143 @@ public class LedgerServiceTest {
         assertThrows(ConflictException.class, () -> ledgerService.doApplyTransfer(t));
     }
 
-    private CreateAccount req(int balance) {
-        var r = new CreateAccount();
-        r.setInitialBalance(balance);
-        return r;
+    @Test
+    void batchAppliesItemsInOrderAndReportsFailures() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        var a3 = accountService.create(req(0));
+
+        var ok1 = transfer(a1.getId(), a2.getId(), 60);
+        var tooMuch = transfer(a1.getId(), a3.getId(), 60);
+        var ok2 = transfer(a2.getId(), a3.getId(), 60);
+        BatchTransferResponse res = batchTransferService.applyBatch(batch(false, ok1, tooMuch, ok2));
+
+        assertEquals(2, res.getSucceeded());
+        assertEquals(1, res.getFailed());
+        assertEquals("FAILED", res.getResults().get(1).getStatus());
+        assertEquals("Insufficient funds", res.getResults().get(1).getMessage());
+        assertEquals(40, accountService.get(a1.getId()).getBalance());
+        assertEquals(0, accountService.get(a2.getId()).getBalance());
+        assertEquals(60, accountService.get(a3.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(ok2.getTransferId()).size());
+        assertTrue(ledgerRepo.findByTransferId(tooMuch.getTransferId()).isEmpty());
+    }
+
+    @Test
+    void allOrNothingBatchRollsBackOnFailure() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+
+        var ok = transfer(a1.getId(), a2.getId(), 60);
+        var missing = transfer(a1.getId(), a2.getId() + 100, 10);
+        BatchTransferResponse res = batchTransferService.applyBatch(batch(true, ok, missing));
+
+        assertEquals(0, res.getSucceeded());
+        assertEquals("To account not found", res.getResults().get(1).getMessage());
+        assertEquals(100, accountService.get(a1.getId()).getBalance());
+        assertEquals(0, accountService.get(a2.getId()).getBalance());
+        assertTrue(ledgerRepo.findByTransferId(ok.getTransferId()).isEmpty());
+    }
+
+    @Test
+    void cachedBalancesAreRefreshedOnCommit() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(10));
+        assertEquals(100, accountService.get(a1.getId()).getBalance());
+        assertEquals(10, accountService.get(a2.getId()).getBalance());
+
+        ledgerService.doApplyTransfer(transfer(a1.getId(), a2.getId(), 25));
+        batchTransferService.applyBatch(batch(false, transfer(a2.getId(), a1.getId(), 5)));
+
+        assertEquals(80, accountService.get(a1.getId()).getBalance());
+        assertEquals(30, accountService.get(a2.getId()).getBalance());
+    }
+
+    @Test
+    void replayedTransferIsNotAppliedTwice() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(10));
+
+        var t = transfer(a1.getId(), a2.getId(), 25);
+        assertEquals("SUCCESS", ledgerService.doApplyTransfer(t).getStatus());
+        assertEquals("SUCCESS", ledgerService.doApplyTransfer(t).getStatus());
+
+        assertEquals(75, accountService.get(a1.getId()).getBalance());
+        assertEquals(35, accountService.get(a2.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(t.getTransferId()).size());
+    }
+
+    @Test
+    void reusedTransferIdWithDifferentPayloadConflicts() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(10));
+
+        var t = transfer(a1.getId(), a2.getId(), 25);
+        ledgerService.doApplyTransfer(t);
+        t.setAmount(30L);
+
+        assertThrows(ConflictException.class, () -> ledgerService.doApplyTransfer(t));
+        assertEquals(75, accountService.get(a1.getId()).getBalance());
+    }
+
+    @Test
+    void duplicateInsideBatchIsAppliedOnce() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+
+        var t = transfer(a1.getId(), a2.getId(), 40);
+        BatchTransferResponse res = batchTransferService.applyBatch(batch(false, t, t));
+
+        assertEquals(2, res.getSucceeded());
+        assertEquals(60, accountService.get(a1.getId()).getBalance());
+        assertEquals(40, accountService.get(a2.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(t.getTransferId()).size());
+    }
+
+    @Test
+    void nettedBatchChecksFundsOnTheNetOnly() {
+        var a1 = accountService.create(req(0));
+        var a2 = accountService.create(req(100));
+        var a3 = accountService.create(req(0));
+
+        // a1 pays out before it is paid; item by item the first transfer would fail
+        var out = transfer(a1.getId(), a3.getId(), 50);
+        var in = transfer(a2.getId(), a1.getId(), 80);
+        var back = transfer(a3.getId(), a2.getId(), 10);
+        var b = batch(false, out, in, back, out);
+        b.setNetting(true);
+        BatchTransferResponse res = batchTransferService.applyBatch(b);
+
+        assertEquals(4, res.getSucceeded());
+        assertEquals(30, accountService.get(a1.getId()).getBalance());
+        assertEquals(30, accountService.get(a2.getId()).getBalance());
+        assertEquals(40, accountService.get(a3.getId()).getBalance());
+        assertEquals(6, ledgerRepo.count());
+        // One update per account, however many transfers touched it
+        assertEquals(1L, accountService.get(a1.getId()).getVersion());
+    }
+
+    @Test
+    void nettedBatchRollsBackWhenAnAccountNetsNegative() {
+        var a1 = accountService.create(req(10));
+        var a2 = accountService.create(req(0));
+
+        var b = batch(false, transfer(a2.getId(), a1.getId(), 30), transfer(a1.getId(), a2.getId(), 50));
+        b.setNetting(true);
+        BatchTransferResponse res = batchTransferService.applyBatch(b);
+
+        assertEquals(0, res.getSucceeded());
+        assertTrue(res.getResults().get(1).getMessage().startsWith("Insufficient funds: account " + a1.getId()));
+        assertEquals("Rolled back: batch is all-or-nothing", res.getResults().get(0).getMessage());
+        assertEquals(10, accountService.get(a1.getId()).getBalance());
+        assertEquals(0, accountService.get(a2.getId()).getBalance());
+        assertEquals(0, ledgerRepo.count());
     }
 
-    private TransferRequest transfer(Long from, Long to, int amount) {
-        TransferRequest t = new TransferRequest();
-        t.setTransferId(UUID.randomUUID().toString());
-        t.setFromAccountId(from);
-        t.setToAccountId(to);
-        t.setAmount(amount);
-        return t;
+    private BatchTransferRequest batch(boolean allOrNothing, TransferRequest... transfers) {
+        var b = new BatchTransferRequest();
+        b.setTransfers(List.of(transfers));
+        b.setAllOrNothing(allOrNothing);
+        return b;
     }
 }
@@ -0,0 +1,82 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.LedgerService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "ledger.transfer.strategy=pessimistic")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class PessimisticLockingTest {
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void happyPathTransfer() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(10));
+
+        var t = transfer(a1.getId(), a2.getId(), 25);
+        assertEquals("SUCCESS", ledgerService.doApplyTransfer(t).getStatus());
+
+        assertEquals(75, accountService.get(a1.getId()).getBalance());
+        assertEquals(35, accountService.get(a2.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(t.getTransferId()).size());
+    }
+
+    @Test
+    void missingAccountFails() {
+        var a1 = accountService.create(req(100));
+
+        assertThrows(ConflictException.class,
+                () -> ledgerService.doApplyTransfer(transfer(a1.getId(), a1.getId() + 100, 10)));
+        assertThrows(ConflictException.class,
+                () -> ledgerService.doApplyTransfer(transfer(a1.getId() + 100, a1.getId(), 10)));
+    }
+
+    @Test
+    void opposingConcurrentTransfersQueueInsteadOfConflicting() throws Exception {
+        var a1 = accountService.create(req(1_000));
+        var a2 = accountService.create(req(1_000));
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            boolean forward = i % 2 == 0;
+            futures.add(pool.submit(() -> ledgerService.doApplyTransfer(forward
+                    ? transfer(a1.getId(), a2.getId(), 1)
+                    : transfer(a2.getId(), a1.getId(), 1))));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(1_000, accountService.get(a1.getId()).getBalance());
+        assertEquals(1_000, accountService.get(a2.getId()).getBalance());
+        assertEquals(0.0, meterRegistry.get("ledger.transfer.conflicts").tag("strategy", "pessimistic").counter().count());
+        assertEquals(200, meterRegistry.get("ledger.transfer.lock.wait").tag("strategy", "pessimistic").timer().count());
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.dto.PostingRequest;
+import com.example.ledger_service.dto.PostingRequest.Leg;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.ReconciliationService;
+import com.example.ledger_service.service.TrialBalance;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static com.example.ledger_service.entity.LedgerEntry.Type.CREDIT;
+import static com.example.ledger_service.entity.LedgerEntry.Type.DEBIT;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "ledger.snapshots.enabled=false")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class PostingTest {
+    private static final Logger log = LoggerFactory.getLogger(PostingTest.class);
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    ReconciliationService reconciliationService;
+    @Autowired
+    TrialBalance trialBalance;
+
+    @Test
+    void marketplacePayoutPostsEveryLegTogether() {
+        var buyer = accountService.create(req(1_000));
+        var seller = accountService.create(req(0));
+        var platform = accountService.create(req(0));
+        var tax = accountService.create(req(0));
+
+        var p = posting(new Leg(buyer.getId(), DEBIT, 500L),
+                new Leg(seller.getId(), CREDIT, 430L),
+                new Leg(platform.getId(), CREDIT, 50L),
+                new Leg(tax.getId(), CREDIT, 20L));
+        assertEquals("SUCCESS", ledgerService.doApplyPosting(p).getStatus());
+
+        assertEquals(500, accountService.get(buyer.getId()).getBalance());
+        assertEquals(430, accountService.get(seller.getId()).getBalance());
+        assertEquals(50, accountService.get(platform.getId()).getBalance());
+        assertEquals(20, accountService.get(tax.getId()).getBalance());
+        List<LedgerEntry> entries = ledgerRepo.findByTransferId(p.getTransferId());
+        assertEquals(List.of(0, 1, 2, 3), entries.stream().map(LedgerEntry::getLeg).sorted().toList());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+        assertTrue(trialBalance.snapshot().isBalanced());
+    }
+
+    @Test
+    void unbalancedOrUnfundedPostingsChangeNothing() {
+        var a = accountService.create(req(100));
+        var b = accountService.create(req(0));
+        var c = accountService.create(req(50));
+
+        var unbalanced = posting(new Leg(a.getId(), DEBIT, 60L), new Leg(b.getId(), CREDIT, 50L));
+        assertThrows(ConflictException.class, () -> ledgerService.doApplyPosting(unbalanced));
+
+        // c covers its own leg, a does not: neither moves
+        var unfunded = posting(new Leg(c.getId(), DEBIT, 50L), new Leg(a.getId(), DEBIT, 150L),
+                new Leg(b.getId(), CREDIT, 200L));
+        assertThrows(InsufficientFundsException.class, () -> ledgerService.doApplyPosting(unfunded));
+
+        var missing = posting(new Leg(a.getId(), DEBIT, 10L), new Leg(c.getId() + 100, CREDIT, 10L));
+        assertThrows(ConflictException.class, () -> ledgerService.doApplyPosting(missing));
+
+        assertEquals(100, accountService.get(a.getId()).getBalance());
+        assertEquals(0, accountService.get(b.getId()).getBalance());
+        assertEquals(50, accountService.get(c.getId()).getBalance());
+        assertEquals(0, ledgerRepo.count());
+    }
+
+    @Test
+    void fundsAreCheckedOnEachAccountsNet() {
+        var a = accountService.create(req(10));
+        var b = accountService.create(req(100));
+
+        // a is debited more than it holds, but is credited in the same posting
+        var p = posting(new Leg(a.getId(), DEBIT, 50L), new Leg(b.getId(), DEBIT, 60L),
+                new Leg(a.getId(), CREDIT, 60L), new Leg(b.getId(), CREDIT, 50L));
+        ledgerService.doApplyPosting(p);
+
+        assertEquals(20, accountService.get(a.getId()).getBalance());
+        assertEquals(90, accountService.get(b.getId()).getBalance());
+        assertEquals(4, ledgerRepo.count());
+    }
+
+    @Test
+    void replayedPostingIsAppliedOnce() {
+        var a = accountService.create(req(100));
+        var b = accountService.create(req(0));
+        var c = accountService.create(req(0));
+
+        var p = posting(new Leg(a.getId(), DEBIT, 30L), new Leg(b.getId(), CREDIT, 20L), new Leg(c.getId(), CREDIT, 10L));
+        ledgerService.doApplyPosting(p);
+        // Same legs in another order is the same posting
+        var reordered = posting(new Leg(c.getId(), CREDIT, 10L), new Leg(a.getId(), DEBIT, 30L), new Leg(b.getId(), CREDIT, 20L));
+        reordered.setTransferId(p.getTransferId());
+        assertEquals("SUCCESS", ledgerService.doApplyPosting(reordered).getStatus());
+
+        var different = posting(new Leg(a.getId(), DEBIT, 30L), new Leg(b.getId(), CREDIT, 30L));
+        different.setTransferId(p.getTransferId());
+        assertThrows(ConflictException.class, () -> ledgerService.doApplyPosting(different));
+        var transfer = transfer(a.getId(), b.getId(), 30);
+        transfer.setTransferId(p.getTransferId());
+        assertThrows(ConflictException.class, () -> ledgerService.doApplyTransfer(transfer));
+
+        assertEquals(70, accountService.get(a.getId()).getBalance());
+        assertEquals(3, ledgerRepo.count());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void onePostingReplacesATransferPerLeg() {
+        int payouts = 300;
+        var buyer = accountService.create(req(1_000_000));
+        var seller = accountService.create(req(0));
+        var platform = accountService.create(req(0));
+        var tax = accountService.create(req(0));
+        List<Long> payees = List.of(seller.getId(), platform.getId(), tax.getId());
+
+        // The first round only warms up both paths
+        long[] transfers = new long[2];
+        long[] postings = new long[2];
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < payouts; i++) {
+                ledgerService.doApplyTransfer(transfer(buyer.getId(), payees.get(0), 86));
+                ledgerService.doApplyTransfer(transfer(buyer.getId(), payees.get(1), 10));
+                ledgerService.doApplyTransfer(transfer(buyer.getId(), payees.get(2), 4));
+            }
+            transfers[round] = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < payouts; i++) {
+                ledgerService.doApplyPosting(posting(new Leg(buyer.getId(), DEBIT, 100L),
+                        new Leg(payees.get(0), CREDIT, 86L),
+                        new Leg(payees.get(1), CREDIT, 10L),
+                        new Leg(payees.get(2), CREDIT, 4L)));
+            }
+            postings[round] = System.nanoTime() - start;
+        }
+
+        // In process this is the saving in transactions alone; over HTTP each leg is also a round trip
+        log.info("{} payouts: {} ms as three transfers each, {} ms as one posting each",
+                payouts, TimeUnit.NANOSECONDS.toMillis(transfers[1]), TimeUnit.NANOSECONDS.toMillis(postings[1]));
+        assertEquals(1_000_000 - 4 * payouts * 100, accountService.get(buyer.getId()).getBalance());
+        assertEquals(4 * payouts * 86, accountService.get(seller.getId()).getBalance());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    private PostingRequest posting(Leg... legs) {
+        PostingRequest p = new PostingRequest();
+        p.setTransferId(UUID.randomUUID().toString());
+        p.setLegs(List.of(legs));
+        return p;
+    }
+}
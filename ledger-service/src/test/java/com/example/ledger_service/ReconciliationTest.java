@@ -0,0 +1,89 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.dto.CreateAccount;
+import com.example.ledger_service.dto.ReconciliationReport;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.ReconciliationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Tiny ranges so even a handful of rows is split across several parallel tasks
+@SpringBootTest(properties = {
+        "ledger.reconciliation.range-size=4",
+        "ledger.reconciliation.parallelism=3"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ReconciliationTest {
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    ReconciliationService reconciliationService;
+    @Autowired
+    AccountRepository accountRepository;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    TransactionTemplate tx;
+
+    @Test
+    void consistentLedgerReconciles() {
+        List<Long> ids = createAccounts(20, 100);
+        for (int i = 0; i < 30; i++) {
+            ledgerService.doApplyTransfer(transfer(ids.get(i % 20), ids.get((i * 7 + 3) % 20), 1 + i % 5));
+        }
+
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        assertTrue(report.isConsistent());
+        assertEquals(20, report.getAccountsChecked());
+        assertEquals(30, report.getTransfersChecked());
+        assertTrue(report.getRanges().size() > 2, "expected the id space to be split");
+        assertTrue(report.getRanges().stream().anyMatch(r -> r.kind().equals("entries")));
+    }
+
+    @Test
+    void reportsOffendingAccountsAndTransfers() {
+        List<Long> ids = createAccounts(3, 100);
+        ledgerService.doApplyTransfer(transfer(ids.get(0), ids.get(1), 10));
+        tx.executeWithoutResult(s -> accountRepository.updateBalance(ids.get(2), 55));
+        ledgerRepo.save(new LedgerEntry("orphan-debit", ids.get(0), 5, LedgerEntry.Type.DEBIT));
+
+        ReconciliationReport report = reconciliationService.reconcile();
+
+        assertFalse(report.isConsistent());
+        assertEquals(2, report.getAccountMismatchCount());
+        assertEquals(List.of(ids.get(0), ids.get(2)), report.getAccountMismatches().stream()
+                .map(ReconciliationReport.AccountMismatch::accountId).sorted().toList());
+        assertEquals(1, report.getTransferMismatchCount());
+        var bad = report.getTransferMismatches().get(0);
+        assertEquals("orphan-debit", bad.transferId());
+        assertEquals(5, bad.debits());
+        assertEquals(0, bad.credits());
+    }
+
+    private List<Long> createAccounts(int n, long balance) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            var r = new CreateAccount();
+            r.setInitialBalance(balance);
+            ids.add(accountService.create(r).getId());
+        }
+        return ids;
+    }
+}
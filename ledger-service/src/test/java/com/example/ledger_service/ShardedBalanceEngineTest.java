@@ -0,0 +1,283 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.config.LedgerProperties;
+import com.example.ledger_service.dto.TransferRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.engine.ShardedBalanceEngine;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.AccountRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountCache;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.TrialBalance;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class ShardedBalanceEngineTest {
+    private static final Logger log = LoggerFactory.getLogger(ShardedBalanceEngineTest.class);
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    AccountRepository accountRepository;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    AccountCache accountCache;
+    @Autowired
+    TrialBalance trialBalance;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    ShardedBalanceEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        LedgerProperties.Sharded config = new LedgerProperties.Sharded();
+        config.setShards(4);
+        engine = new ShardedBalanceEngine(config, accountRepository, ledgerRepo, accountCache, trialBalance, transactionManager);
+        engine.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void appliesSameAndCrossShardTransfersAndPersists() throws Exception {
+        // ids are assigned sequentially, so a1/a2 land on different shards and a1/a5 on the same one
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(10));
+        accountService.create(req(0));
+        accountService.create(req(0));
+        var a5 = accountService.create(req(0));
+
+        var cross = transfer(a1.getId(), a2.getId(), 25);
+        var same = transfer(a1.getId(), a5.getId(), 5);
+        assertEquals("SUCCESS", engine.apply(cross).getStatus());
+        assertEquals("SUCCESS", engine.apply(same).getStatus());
+
+        assertTrue(engine.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(70, accountService.get(a1.getId()).getBalance());
+        assertEquals(35, accountService.get(a2.getId()).getBalance());
+        assertEquals(5, accountService.get(a5.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(cross.getTransferId()).size());
+        assertEquals(2, ledgerRepo.findByTransferId(same.getTransferId()).size());
+    }
+
+    @Test
+    void insufficientFundsFails() throws Exception {
+        var a1 = accountService.create(req(10));
+        var a2 = accountService.create(req(5));
+        var t = transfer(a1.getId(), a2.getId(), 50);
+
+        assertThrows(InsufficientFundsException.class, () -> engine.apply(t));
+        assertTrue(engine.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(10, accountService.get(a1.getId()).getBalance());
+        assertTrue(ledgerRepo.findByTransferId(t.getTransferId()).isEmpty());
+    }
+
+    @Test
+    void unknownCrossShardDestinationRefundsSource() throws Exception {
+        var a1 = accountService.create(req(100));
+        var t = transfer(a1.getId(), a1.getId() + 1001, 40);
+
+        assertThrows(ConflictException.class, () -> engine.apply(t));
+        assertTrue(engine.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(100, accountService.get(a1.getId()).getBalance());
+        assertTrue(ledgerRepo.findByTransferId(t.getTransferId()).isEmpty());
+    }
+
+    @Test
+    void failingCrossShardCreditRefundsSource() throws Exception {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        AccountRepository failing = mock(AccountRepository.class, delegatesTo(accountRepository));
+        doThrow(new DataAccessResourceFailureException("database unavailable")).when(failing).findById(a2.getId());
+        engine.shutdown();
+        engine = new ShardedBalanceEngine(new LedgerProperties.Sharded(), failing, ledgerRepo, accountCache, trialBalance,
+                transactionManager);
+        engine.start();
+
+        var t = transfer(a1.getId(), a2.getId(), 40);
+        assertThrows(DataAccessResourceFailureException.class, () -> engine.apply(t));
+        assertTrue(engine.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(100, accountService.get(a1.getId()).getBalance());
+        assertTrue(ledgerRepo.findByTransferId(t.getTransferId()).isEmpty());
+
+        // The refunded funds are still there to spend
+        var a3 = accountService.create(req(0));
+        assertEquals("SUCCESS", engine.apply(transfer(a1.getId(), a3.getId(), 100)).getStatus());
+    }
+
+    @Test
+    void duplicateTransferIdsAreAppliedOnceBeforeTheyArePersisted() throws Exception {
+        var a1 = accountService.create(req(1_000));
+        var a2 = accountService.create(req(0));
+        var a3 = accountService.create(req(1_000));
+        var t = transfer(a1.getId(), a2.getId(), 100);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<TransferResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(pool.submit(() -> {
+                go.await();
+                return engine.apply(t);
+            }));
+        }
+        go.countDown();
+        for (Future<TransferResponse> f : futures) {
+            assertEquals("SUCCESS", f.get().getStatus());
+        }
+        pool.shutdown();
+        // A retry straight after, the persister most likely still behind
+        assertEquals("SUCCESS", engine.apply(t).getStatus());
+
+        var different = transfer(a1.getId(), a2.getId(), 200);
+        different.setTransferId(t.getTransferId());
+        assertThrows(ConflictException.class, () -> engine.apply(different));
+        // Another source routes to another shard, and is caught all the same
+        var otherSource = transfer(a3.getId(), a2.getId(), 100);
+        otherSource.setTransferId(t.getTransferId());
+        assertThrows(ConflictException.class, () -> engine.apply(otherSource));
+
+        assertTrue(engine.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(900, accountService.get(a1.getId()).getBalance());
+        assertEquals(100, accountService.get(a2.getId()).getBalance());
+        assertEquals(1_000, accountService.get(a3.getId()).getBalance());
+        assertEquals(2, ledgerRepo.findByTransferId(t.getTransferId()).size());
+    }
+
+    @Test
+    void failedTransferIdCanBeRetried() throws Exception {
+        var a1 = accountService.create(req(10));
+        var a2 = accountService.create(req(0));
+        var t = transfer(a1.getId(), a2.getId(), 50);
+
+        assertThrows(InsufficientFundsException.class, () -> engine.apply(t));
+        t.setAmount(10L);
+        assertEquals("SUCCESS", engine.apply(t).getStatus());
+        assertTrue(engine.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(10, accountService.get(a2.getId()).getBalance());
+    }
+
+    @Test
+    void concurrentTransfersConserveMoney() throws Exception {
+        int accounts = 8;
+        int transfers = 1_000;
+        List<Long> ids = createAccounts(accounts, 1_000);
+
+        Result sharded = run(transfers, ids, t -> engine.apply(t));
+        assertTrue(engine.awaitIdle(Duration.ofSeconds(30)));
+
+        assertEquals(accounts * 1_000L, totalBalance(ids));
+        for (Long id : ids) {
+            assertTrue(accountService.get(id).getBalance() >= 0);
+        }
+        assertEquals(transfers, sharded.ok + sharded.rejected);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void throughputComparedWithJpaPath() throws Exception {
+        int accounts = 8;
+        int transfers = 1_000;
+        List<Long> jpaIds = createAccounts(accounts, 1_000);
+        List<Long> shardedIds = createAccounts(accounts, 1_000);
+
+        Result jpa = run(transfers, jpaIds, t -> ledgerService.doApplyTransfer(t));
+        Result sharded = run(transfers, shardedIds, t -> engine.apply(t));
+        assertTrue(engine.awaitIdle(Duration.ofSeconds(30)));
+
+        log.info("JPA path: {} ok / {} rejected in {} ms ({} tps)",
+                jpa.ok, jpa.rejected, jpa.millis, jpa.tps());
+        log.info("Sharded engine: {} ok / {} rejected in {} ms ({} tps)",
+                sharded.ok, sharded.rejected, sharded.millis, sharded.tps());
+
+        assertEquals(accounts * 1_000L, totalBalance(shardedIds));
+        assertEquals(accounts * 1_000L, totalBalance(jpaIds));
+        for (Long id : shardedIds) {
+            assertTrue(accountService.get(id).getBalance() >= 0);
+        }
+        assertEquals(transfers, sharded.ok + sharded.rejected);
+    }
+
+    private record Result(int ok, int rejected, long millis) {
+        long tps() { return millis == 0 ? ok : ok * 1000L / millis; }
+    }
+
+    private Result run(int transfers, List<Long> ids, Consumer<TransferRequest> apply) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < transfers; i++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                int from = rnd.nextInt(ids.size());
+                int to = (from + 1 + rnd.nextInt(ids.size() - 1)) % ids.size();
+                try {
+                    apply.accept(transfer(ids.get(from), ids.get(to), 1 + rnd.nextInt(50)));
+                    ok.incrementAndGet();
+                } catch (RuntimeException e) {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        pool.shutdown();
+        return new Result(ok.get(), rejected.get(), millis);
+    }
+
+    private List<Long> createAccounts(int count, int balance) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(accountService.create(req(balance)).getId());
+        }
+        return ids;
+    }
+
+    private long totalBalance(List<Long> ids) {
+        return ids.stream().mapToLong(id -> accountService.get(id).getBalance()).sum();
+    }
+}
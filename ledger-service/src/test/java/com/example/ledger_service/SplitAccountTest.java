@@ -0,0 +1,231 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.dto.BatchTransferRequest;
+import com.example.ledger_service.dto.TransferResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.ConflictException;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.repository.AccountSlotRepository;
+import com.example.ledger_service.repository.LedgerEntryRepository;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.BatchTransferService;
+import com.example.ledger_service.service.BalanceHistoryService;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.ReconciliationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "ledger.snapshots.enabled=false")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class SplitAccountTest {
+    private static final Logger log = LoggerFactory.getLogger(SplitAccountTest.class);
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    BatchTransferService batchTransferService;
+    @Autowired
+    ReconciliationService reconciliationService;
+    @Autowired
+    BalanceHistoryService balanceHistoryService;
+    @Autowired
+    LedgerEntryRepository ledgerRepo;
+    @Autowired
+    AccountSlotRepository slotRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void splitAccountReadsAsOneAccount() {
+        var merchant = accountService.create(req(1_000));
+        var payer = accountService.create(req(500));
+
+        var split = accountService.split(merchant.getId(), 4);
+        assertEquals(1_000, split.getBalance());
+        assertEquals(4, slotRepository.count());
+        assertThrows(ConflictException.class, () -> accountService.split(merchant.getId(), 4));
+
+        long version = accountService.version(merchant.getId());
+        var in = transfer(payer.getId(), merchant.getId(), 300);
+        ledgerService.doApplyTransfer(in);
+        ledgerService.doApplyTransfer(transfer(merchant.getId(), payer.getId(), 100));
+
+        assertEquals(1_200, accountService.get(merchant.getId()).getBalance());
+        assertEquals(300, accountService.get(payer.getId()).getBalance());
+        assertEquals(1_200, accountService.getAll(List.of(merchant.getId())).getAccounts().get(0).getBalance());
+        // The ETag follows the slots even though the account row itself did not change
+        assertTrue(accountService.version(merchant.getId()) > version);
+        assertEquals(accountService.version(merchant.getId()), accountService.get(merchant.getId()).getVersion());
+        // Entries still name the logical account
+        assertEquals(merchant.getId(), ledgerRepo.findByTransferId(in.getTransferId()).stream()
+                .filter(e -> e.getType() == LedgerEntry.Type.CREDIT)
+                .findFirst().orElseThrow().getAccountId());
+        assertEquals(1_200L, balanceHistoryService.balanceAt(merchant.getId(), null).getBalance());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    @Test
+    void debitThatNoSlotCoversRebalances() {
+        var merchant = accountService.create(req(100));
+        var payee = accountService.create(req(0));
+        accountService.split(merchant.getId(), 4);
+
+        // 25 per slot, so 60 needs the slots pooled
+        ledgerService.doApplyTransfer(transfer(merchant.getId(), payee.getId(), 60));
+        assertEquals(40, accountService.get(merchant.getId()).getBalance());
+        assertEquals(1.0, meterRegistry.get("ledger.split.rebalances").counter().count());
+        // What is left is spread evenly again, so the next small debits find a slot covering them
+        ledgerService.doApplyTransfer(transfer(merchant.getId(), payee.getId(), 10));
+        assertEquals(1.0, meterRegistry.get("ledger.split.rebalances").counter().count());
+
+        var tooMuch = transfer(merchant.getId(), payee.getId(), 31);
+        assertThrows(InsufficientFundsException.class, () -> ledgerService.doApplyTransfer(tooMuch));
+        assertEquals(30, accountService.get(merchant.getId()).getBalance());
+        assertEquals(70, accountService.get(payee.getId()).getBalance());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    @Test
+    void batchesMoveSplitBalances() {
+        var merchant = accountService.create(req(0));
+        var a = accountService.create(req(100));
+        var b = accountService.create(req(100));
+        accountService.split(merchant.getId(), 3);
+
+        BatchTransferRequest batch = new BatchTransferRequest();
+        batch.setTransfers(List.of(
+                transfer(a.getId(), merchant.getId(), 80),
+                transfer(b.getId(), merchant.getId(), 70),
+                transfer(merchant.getId(), a.getId(), 500),
+                transfer(merchant.getId(), b.getId(), 150)));
+        List<TransferResponse> results = batchTransferService.applyBatch(batch).getResults();
+
+        assertEquals(List.of("SUCCESS", "SUCCESS", "FAILED", "SUCCESS"),
+                results.stream().map(TransferResponse::getStatus).toList());
+        assertEquals(0, accountService.get(merchant.getId()).getBalance());
+        assertEquals(20, accountService.get(a.getId()).getBalance());
+        assertEquals(180, accountService.get(b.getId()).getBalance());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    @Test
+    void opposingBatchesBetweenSplitAccountsDoNotDeadlock() throws Exception {
+        var m1 = accountService.create(req(10_000));
+        var m2 = accountService.create(req(10_000));
+        accountService.split(m1.getId(), 2);
+        accountService.split(m2.getId(), 2);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<List<TransferResponse>>> futures = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            // Opposite request order, so slots moved in request order would be taken in opposite orders
+            Long first = i % 2 == 0 ? m1.getId() : m2.getId();
+            Long second = i % 2 == 0 ? m2.getId() : m1.getId();
+            futures.add(pool.submit(() -> {
+                BatchTransferRequest batch = new BatchTransferRequest();
+                batch.setTransfers(List.of(transfer(first, second, 2), transfer(second, first, 1)));
+                return batchTransferService.applyBatch(batch).getResults();
+            }));
+        }
+        for (Future<List<TransferResponse>> f : futures) {
+            assertEquals(List.of("SUCCESS", "SUCCESS"), f.get().stream().map(TransferResponse::getStatus).toList());
+        }
+        pool.shutdown();
+
+        assertEquals(10_000, accountService.get(m1.getId()).getBalance());
+        assertEquals(10_000, accountService.get(m2.getId()).getBalance());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    @Test
+    void splitDestinationTakesConcurrentCreditsWithoutConflicts() throws Exception {
+        int payers = 8;
+        int transfersEach = 50;
+        Long merchant = accountService.create(req(0)).getId();
+        accountService.split(merchant, 16);
+        Result result = creditsInto(merchant, payers, transfersEach);
+
+        // Payers are distinct, so once the destination is split nothing is left to conflict on
+        assertEquals(0, result.conflicts);
+        assertEquals(payers * transfersEach, result.ok);
+        assertEquals(result.ok, accountService.get(merchant).getBalance());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void splittingRemovesContentionOnAHotDestination() throws Exception {
+        int payers = 8;
+        int transfersEach = 150;
+        Result before = creditsInto(accountService.create(req(0)).getId(), payers, transfersEach);
+        Long merchant = accountService.create(req(0)).getId();
+        accountService.split(merchant, 16);
+        Result after = creditsInto(merchant, payers, transfersEach);
+
+        log.info("Hot destination, one row: {} ok / {} conflicts in {} ms ({} tps)",
+                before.ok, before.conflicts, before.millis, before.tps());
+        log.info("Hot destination, 16 slots: {} ok / {} conflicts in {} ms ({} tps)",
+                after.ok, after.conflicts, after.millis, after.tps());
+
+        // Payers are distinct, so once the destination is split nothing is left to conflict on
+        assertEquals(0, after.conflicts);
+        assertEquals(payers * transfersEach, after.ok);
+        assertEquals(after.ok, accountService.get(merchant).getBalance());
+        assertTrue(reconciliationService.reconcile().isConsistent());
+    }
+
+    private record Result(int ok, int conflicts, long millis) {
+        long tps() { return millis == 0 ? ok : ok * 1000L / millis; }
+    }
+
+    /** Every payer thread sends {@code transfersEach} credits of 1 into {@code merchant}. */
+    private Result creditsInto(Long merchant, int payers, int transfersEach) throws Exception {
+        List<Long> from = new ArrayList<>();
+        for (int i = 0; i < payers; i++) {
+            from.add(accountService.create(req(transfersEach)).getId());
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(payers);
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Long payer : from) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < transfersEach; i++) {
+                    try {
+                        ledgerService.doApplyTransfer(transfer(payer, merchant, 1));
+                        ok.incrementAndGet();
+                    } catch (ConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        pool.shutdown();
+        return new Result(ok.get(), conflicts.get(), millis);
+    }
+}
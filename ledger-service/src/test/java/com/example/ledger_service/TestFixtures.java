@@ -0,0 +1,39 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.dto.CreateAccount;
+import com.example.ledger_service.dto.TransferRequest;
+
+import java.util.UUID;
+
+/** Request builders shared by the ledger tests. */
+final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /** An account opened with {@code balance} in the base currency. */
+    static CreateAccount req(long balance) {
+        return req(balance, null);
+    }
+
+    static CreateAccount req(long balance, String currency) {
+        var r = new CreateAccount();
+        r.setInitialBalance(balance);
+        r.setCurrency(currency);
+        return r;
+    }
+
+    /** A transfer under a fresh transferId. */
+    static TransferRequest transfer(Long from, Long to, long amount) {
+        return transfer(UUID.randomUUID().toString(), from, to, amount);
+    }
+
+    static TransferRequest transfer(String transferId, Long from, Long to, long amount) {
+        TransferRequest t = new TransferRequest();
+        t.setTransferId(transferId);
+        t.setFromAccountId(from);
+        t.setToAccountId(to);
+        t.setAmount(amount);
+        return t;
+    }
+}
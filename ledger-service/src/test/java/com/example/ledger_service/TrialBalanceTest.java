@@ -0,0 +1,70 @@
+package com.example.ledger_service;
+
+import com.example.ledger_service.dto.BatchTransferRequest;
+import com.example.ledger_service.dto.TrialBalanceResponse;
+import com.example.ledger_service.entity.LedgerEntry;
+import com.example.ledger_service.exception.InsufficientFundsException;
+import com.example.ledger_service.service.AccountService;
+import com.example.ledger_service.service.BatchTransferService;
+import com.example.ledger_service.service.LedgerService;
+import com.example.ledger_service.service.TrialBalance;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static com.example.ledger_service.TestFixtures.req;
+import static com.example.ledger_service.TestFixtures.transfer;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class TrialBalanceTest {
+
+    @Autowired
+    AccountService accountService;
+    @Autowired
+    LedgerService ledgerService;
+    @Autowired
+    BatchTransferService batchTransferService;
+    @Autowired
+    TrialBalance trialBalance;
+
+    @Test
+    void committedTransfersKeepTheTrialBalanceBalanced() {
+        var a1 = accountService.create(req(100));
+        var a2 = accountService.create(req(0));
+        ledgerService.doApplyTransfer(transfer(a1.getId(), a2.getId(), 30));
+        assertThrows(InsufficientFundsException.class,
+                () -> ledgerService.doApplyTransfer(transfer(a2.getId(), a1.getId(), 500)));
+        var batch = new BatchTransferRequest();
+        batch.setTransfers(List.of(transfer(a2.getId(), a1.getId(), 5), transfer(a1.getId(), a2.getId(), 7)));
+        batchTransferService.applyBatch(batch);
+
+        TrialBalanceResponse tb = trialBalance.snapshot();
+
+        assertTrue(tb.isBalanced());
+        assertEquals(42, tb.getTotalDebits());
+        assertEquals(42, tb.getTotalCredits());
+        var today = tb.getDays().get(0);
+        assertEquals(LocalDate.now(ZoneOffset.UTC), today.date());
+        assertEquals(42, today.debits());
+    }
+
+    @Test
+    void unbalancedCommitIsFlaggedImmediately() {
+        trialBalance.recordAfterCommit(List.of(
+                new LedgerEntry("broken", 1L, 10, LedgerEntry.Type.DEBIT),
+                new LedgerEntry("broken", 2L, 9, LedgerEntry.Type.CREDIT)));
+
+        TrialBalanceResponse tb = trialBalance.snapshot();
+
+        assertFalse(tb.isBalanced());
+        assertEquals(-1, tb.getImbalance());
+        assertEquals(1, tb.getViolations());
+    }
+}
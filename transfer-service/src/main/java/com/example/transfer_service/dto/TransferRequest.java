@@ -12,10 +12,11 @@ public class TransferRequest {
     private Long fromAccountId;
     @NotNull
     private Long toAccountId;
+    // Minor units (cents); boxed so that a missing amount fails @NotNull rather than reading as 0
     @NotNull @Positive
-    private Integer amount;
+    private Long amount;
 
-    public TransferRequest(String transferId, Long fromAccountId, Long toAccountId, Integer amount) {
+    public TransferRequest(String transferId, Long fromAccountId, Long toAccountId, long amount) {
         this.transferId = transferId;
         this.fromAccountId = fromAccountId;
         this.toAccountId = toAccountId;
@@ -28,6 +29,6 @@ public class TransferRequest {
     public void setFromAccountId(Long fromAccountId) { this.fromAccountId = fromAccountId; }
     public Long getToAccountId() { return toAccountId; }
     public void setToAccountId(Long toAccountId) { this.toAccountId = toAccountId; }
-    public Integer getAmount() { return amount; }
-    public void setAmount(Integer amount) { this.amount = amount; }
+    public Long getAmount() { return amount; }
+    public void setAmount(Long amount) { this.amount = amount; }
 }
@@ -6,11 +6,11 @@ public class TransferResponse {
     private String message;
     private Long fromAccountId;
     private Long toAccountId;
-    private Integer amount;
+    private long amount;
 
     public  TransferResponse(){}
     public TransferResponse(String transferId, String status, String message,
-                            Long fromAccountId, Long toAccountId, Integer amount) {
+                            Long fromAccountId, Long toAccountId, long amount) {
         this.transferId = transferId;
         this.status = status;
         this.message = message;
@@ -24,7 +24,7 @@ public class TransferResponse {
     public String getMessage() { return message; }
     public Long getFromAccountId() { return fromAccountId; }
     public Long getToAccountId() { return toAccountId; }
-    public Integer getAmount() { return amount; }
+    public long getAmount() { return amount; }
 
     public void setTransferId(String transferId) {
         this.transferId = transferId;
@@ -46,7 +46,7 @@ public class TransferResponse {
         this.toAccountId = toAccountId;
     }
 
-    public void setAmount(Integer amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 }
@@ -34,13 +34,13 @@ public class Transfer {
     @Column(nullable = false, updatable = false)
     private Long toAccountId;
     @Column(nullable = false, updatable = false)
-    private Integer amount;
+    private long amount;
 
     public enum Status { SUCCESS, FAILED }
 
     public Transfer() {}
 
-    public Transfer(String transferId, Status status, String message, Long toAccountId, Long fromAccountId, Integer amount) {
+    public Transfer(String transferId, Status status, String message, Long toAccountId, Long fromAccountId, long amount) {
         this.transferId = transferId;
         this.status = status;
         this.message = message;
@@ -61,7 +61,7 @@ public class Transfer {
     public void setFromAccountId(Long fromAccountId) { this.fromAccountId = fromAccountId; }
     public Long getToAccountId() { return toAccountId; }
     public void setToAccountId(Long toAccountId) { this.toAccountId = toAccountId; }
-    public Integer getAmount() { return amount; }
-    public void setAmount(Integer amount) { this.amount = amount; }
+    public long getAmount() { return amount; }
+    public void setAmount(long amount) { this.amount = amount; }
 }
 